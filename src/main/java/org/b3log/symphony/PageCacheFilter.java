@@ -0,0 +1,366 @@
+/*
+ * Symphony - A modern community (forum/BBS/SNS/blog) platform written in Java.
+ * Copyright (C) 2012-2018, b3log.org & hacpai.com
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.b3log.symphony;
+
+import org.apache.commons.lang.StringUtils;
+import org.b3log.latke.Keys;
+import org.b3log.latke.Latkes;
+import org.b3log.latke.ioc.BeanManager;
+import org.b3log.latke.util.Locales;
+import org.b3log.symphony.cache.PageCache;
+import org.b3log.symphony.model.Common;
+import org.b3log.symphony.model.Option;
+import org.b3log.symphony.service.ArticleMgmtService;
+import org.b3log.symphony.service.OptionQueryService;
+import org.b3log.symphony.util.PageStore;
+import org.b3log.symphony.util.Symphonys;
+import org.json.JSONObject;
+
+import javax.servlet.*;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Page cache filter, serves article list pages and article pages to anonymous visitors from {@link PageCache}.
+ * <p>
+ * Pages are keyed by path, query, skin, locale, mobile, search engine bot and pjax container, served gzipped if
+ * accepted and with an ETag. Only complete HTML pages without cookies set are cached. Caching is skipped if anonymous
+ * view is limited, the limit is counted per visitor.
+ * </p>
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.0.1, Oct 25, 2018
+ * @since 3.4.3
+ */
+public final class PageCacheFilter implements Filter {
+
+    /**
+     * Cacheable paths.
+     */
+    private static final Pattern CACHEABLE_PATHS = Pattern.compile("/|/recent(/hot|/good|/reply)?|/hot|/perfect"
+            + "|/qna(/unanswered|/reward|/hot)?|/tag/[^/]+(/hot|/good|/reply|/perfect)?|/domain/[^/]+|/article/\\d+");
+
+    /**
+     * Whether page cache is enabled.
+     */
+    private static final boolean ENABLED = Symphonys.getBoolean("pageCache.enabled");
+
+    /**
+     * Page cache.
+     */
+    private PageCache pageCache;
+
+    /**
+     * Option query service.
+     */
+    private OptionQueryService optionQueryService;
+
+    /**
+     * Article management service.
+     */
+    private ArticleMgmtService articleMgmtService;
+
+    @Override
+    public void init(final FilterConfig filterConfig) {
+        final BeanManager beanManager = BeanManager.getInstance();
+        pageCache = beanManager.getReference(PageCache.class);
+        optionQueryService = beanManager.getReference(OptionQueryService.class);
+        articleMgmtService = beanManager.getReference(ArticleMgmtService.class);
+    }
+
+    @Override
+    public void doFilter(final ServletRequest req, final ServletResponse resp, final FilterChain chain)
+            throws IOException, ServletException {
+        final HttpServletRequest request = (HttpServletRequest) req;
+        final HttpServletResponse response = (HttpServletResponse) resp;
+        final String path = StringUtils.substringAfter(request.getRequestURI(), Latkes.getContextPath());
+        if (!ENABLED || !"GET".equals(request.getMethod()) || null != request.getAttribute(Common.CURRENT_USER)
+                || !CACHEABLE_PATHS.matcher(path).matches() || !isAnonymousViewUnlimited()) {
+            chain.doFilter(request, response);
+
+            return;
+        }
+
+        final CapturedResponse captured = new CapturedResponse(response);
+        final PageStore.Page page;
+        try {
+            page = pageCache.get(getKey(request, path), () -> {
+                chain.doFilter(request, captured);
+
+                return captured.toPage(pageCache.getDependencies(request));
+            });
+        } catch (final IOException | ServletException | RuntimeException e) {
+            throw e;
+        } catch (final Exception e) {
+            throw new ServletException(e);
+        }
+
+        if (captured.rendered) {
+            if (null == page) {
+                captured.flushTo(response);
+
+                return;
+            }
+        } else if (null == page) {
+            chain.doFilter(request, response);
+
+            return;
+        } else if (path.startsWith("/article/") && !Boolean.TRUE.equals(request.getAttribute(Keys.HttpRequest.IS_SEARCH_ENGINE_BOT))) {
+            articleMgmtService.incArticleViewCount(request, StringUtils.substringAfter(path, "/article/"));
+        }
+
+        serve(request, response, page);
+    }
+
+    @Override
+    public void destroy() {
+    }
+
+    /**
+     * Serves the specified page, responds 304 if the ETag matches.
+     *
+     * @param request  the specified request
+     * @param response the specified response
+     * @param page     the specified page
+     * @throws IOException io exception
+     */
+    private static void serve(final HttpServletRequest request, final HttpServletResponse response,
+                              final PageStore.Page page) throws IOException {
+        response.setHeader("ETag", page.getETag());
+        response.setHeader("Cache-Control", "no-cache");
+        response.setHeader("Vary", "Accept-Encoding");
+        if (StringUtils.contains(request.getHeader("If-None-Match"), page.getETag())) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+
+            return;
+        }
+
+        response.setContentType(page.getContentType());
+        final byte[] body;
+        if (StringUtils.containsIgnoreCase(request.getHeader("Accept-Encoding"), "gzip")) {
+            response.setHeader("Content-Encoding", "gzip");
+            body = page.getGzipBody();
+        } else {
+            body = page.getBody();
+        }
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+    }
+
+    /**
+     * Gets the page key of the specified request.
+     *
+     * @param request the specified request
+     * @param path    the specified path of the request
+     * @return page key
+     */
+    private static String getKey(final HttpServletRequest request, final String path) {
+        final String query = request.getQueryString();
+        final boolean isPJAX = Boolean.valueOf(request.getHeader("X-PJAX"));
+
+        return path + (null == query ? "" : "?" + query)
+                + '\n' + request.getAttribute(Keys.TEMAPLTE_DIR_NAME)
+                + '\n' + Locales.getLocale()
+                + '\n' + request.getAttribute(Common.IS_MOBILE)
+                + '\n' + request.getAttribute(Keys.HttpRequest.IS_SEARCH_ENGINE_BOT)
+                + '\n' + (isPJAX ? request.getHeader("X-PJAX-Container") : "");
+    }
+
+    /**
+     * Checks whether anonymous view is unlimited.
+     *
+     * @return {@code true} if it is unlimited, returns {@code false} otherwise
+     */
+    private boolean isAnonymousViewUnlimited() {
+        final JSONObject option = optionQueryService.getOption(Option.ID_C_MISC_ALLOW_ANONYMOUS_VIEW);
+
+        return null != option && "0".equals(option.optString(Option.OPTION_VALUE));
+    }
+
+    /**
+     * Captured response, buffers the body and passes the others through.
+     */
+    private static final class CapturedResponse extends HttpServletResponseWrapper {
+
+        /**
+         * Buffered body.
+         */
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream(32 * 1024);
+
+        /**
+         * Whether a response was rendered into this captured response.
+         */
+        private boolean rendered;
+
+        /**
+         * Status code.
+         */
+        private int status = HttpServletResponse.SC_OK;
+
+        /**
+         * Whether a cookie was set.
+         */
+        private boolean cookieSet;
+
+        /**
+         * Output stream.
+         */
+        private ServletOutputStream outputStream;
+
+        /**
+         * Writer.
+         */
+        private PrintWriter writer;
+
+        /**
+         * Constructs a captured response of the specified response.
+         *
+         * @param response the specified response
+         */
+        private CapturedResponse(final HttpServletResponse response) {
+            super(response);
+        }
+
+        /**
+         * Gets the page of the captured response.
+         *
+         * @param dependencies the specified dependencies of the page
+         * @return page, returns {@code null} if it is not cacheable
+         */
+        private PageStore.Page toPage(final Set<String> dependencies) {
+            rendered = true;
+            if (null != writer) {
+                writer.flush();
+            }
+
+            final String contentType = getContentType();
+            if (HttpServletResponse.SC_OK != status || cookieSet || 0 == body.size()
+                    || !StringUtils.startsWith(contentType, "text/html")) {
+                return null;
+            }
+
+            return new PageStore.Page(body.toByteArray(), contentType, dependencies);
+        }
+
+        /**
+         * Writes the buffered body to the specified response.
+         *
+         * @param response the specified response
+         * @throws IOException io exception
+         */
+        private void flushTo(final HttpServletResponse response) throws IOException {
+            if (0 < body.size()) {
+                response.getOutputStream().write(body.toByteArray());
+            }
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() {
+            if (null == outputStream) {
+                outputStream = new ServletOutputStream() {
+                    @Override
+                    public boolean isReady() {
+                        return true;
+                    }
+
+                    @Override
+                    public void setWriteListener(final WriteListener writeListener) {
+                    }
+
+                    @Override
+                    public void write(final int b) {
+                        body.write(b);
+                    }
+
+                    @Override
+                    public void write(final byte[] b, final int off, final int len) {
+                        body.write(b, off, len);
+                    }
+                };
+            }
+
+            return outputStream;
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            if (null == writer) {
+                writer = new PrintWriter(new OutputStreamWriter(getOutputStream(), getCharacterEncoding()));
+            }
+
+            return writer;
+        }
+
+        @Override
+        public void flushBuffer() {
+            if (null != writer) {
+                writer.flush();
+            }
+        }
+
+        @Override
+        public void setStatus(final int sc) {
+            status = sc;
+            super.setStatus(sc);
+        }
+
+        @Override
+        public void sendError(final int sc) throws IOException {
+            status = sc;
+            super.sendError(sc);
+        }
+
+        @Override
+        public void sendError(final int sc, final String msg) throws IOException {
+            status = sc;
+            super.sendError(sc, msg);
+        }
+
+        @Override
+        public void sendRedirect(final String location) throws IOException {
+            status = HttpServletResponse.SC_MOVED_TEMPORARILY;
+            super.sendRedirect(location);
+        }
+
+        @Override
+        public void addCookie(final Cookie cookie) {
+            cookieSet = true;
+            super.addCookie(cookie);
+        }
+
+        @Override
+        public void setHeader(final String name, final String value) {
+            cookieSet |= "Set-Cookie".equalsIgnoreCase(name);
+            super.setHeader(name, value);
+        }
+
+        @Override
+        public void addHeader(final String name, final String value) {
+            cookieSet |= "Set-Cookie".equalsIgnoreCase(name);
+            super.addHeader(name, value);
+        }
+    }
+}
@@ -29,7 +29,9 @@ import org.b3log.latke.logging.Logger;
 import org.b3log.latke.repository.jdbc.JdbcRepository;
 import org.b3log.latke.servlet.AbstractServletListener;
 import org.b3log.latke.util.*;
+import org.b3log.symphony.cache.ArticleCache;
 import org.b3log.symphony.cache.DomainCache;
+import org.b3log.symphony.cache.LeaderboardCache;
 import org.b3log.symphony.cache.TagCache;
 import org.b3log.symphony.event.*;
 import org.b3log.symphony.model.Common;
@@ -37,7 +39,13 @@ import org.b3log.symphony.model.Option;
 import org.b3log.symphony.model.UserExt;
 import org.b3log.symphony.repository.OptionRepository;
 import org.b3log.symphony.repository.UserRepository;
+import org.b3log.symphony.service.ChatRoomMgmtService;
 import org.b3log.symphony.service.InitMgmtService;
+import org.b3log.symphony.service.LinkMgmtService;
+import org.b3log.symphony.service.PresenceMgmtService;
+import org.b3log.symphony.service.RenderMgmtService;
+import org.b3log.symphony.service.SearchMgmtService;
+import org.b3log.symphony.service.SitemapMgmtService;
 import org.b3log.symphony.service.UserQueryService;
 import org.b3log.symphony.util.Sessions;
 import org.b3log.symphony.util.Symphonys;
@@ -56,7 +64,7 @@ import java.util.Locale;
  *
  * @author <a href="http://88250.b3log.org">Liang Ding</a>
  * @author Bill Ho
- * @version 3.19.10.20, Oct 24, 2018
+ * @version 3.19.18.0, Oct 25, 2018
  * @since 0.2.0
  */
 public final class SymphonyServletListener extends AbstractServletListener {
@@ -127,6 +135,38 @@ public final class SymphonyServletListener extends AbstractServletListener {
         final DomainCache domainCache = beanManager.getReference(DomainCache.class);
         domainCache.loadDomains();
 
+        final LeaderboardCache leaderboardCache = beanManager.getReference(LeaderboardCache.class);
+        leaderboardCache.loadLeaderboards();
+
+        final SearchMgmtService searchMgmtService = beanManager.getReference(SearchMgmtService.class);
+        searchMgmtService.startIndexQueues();
+
+        final LinkMgmtService linkMgmtService = beanManager.getReference(LinkMgmtService.class);
+        linkMgmtService.start();
+
+        final ChatRoomMgmtService chatRoomMgmtService = beanManager.getReference(ChatRoomMgmtService.class);
+        chatRoomMgmtService.start();
+
+        final PresenceMgmtService presenceMgmtService = beanManager.getReference(PresenceMgmtService.class);
+        presenceMgmtService.start();
+
+        final RenderMgmtService renderMgmtService = beanManager.getReference(RenderMgmtService.class);
+        renderMgmtService.start();
+
+        if (!SitemapMgmtService.getSitemapFile(SitemapMgmtService.INDEX_FILE).isFile()) {
+            final SitemapMgmtService sitemapMgmtService = beanManager.getReference(SitemapMgmtService.class);
+            sitemapMgmtService.refreshSitemapAsync();
+        }
+
+        final ArticleCache articleCache = beanManager.getReference(ArticleCache.class);
+        Symphonys.EXECUTOR_SERVICE.submit(() -> {
+            try {
+                articleCache.loadRelatedArticles();
+            } finally {
+                JdbcRepository.dispose();
+            }
+        });
+
         JdbcRepository.dispose();
 
         LOGGER.info("Initialized the context");
@@ -140,6 +180,18 @@ public final class SymphonyServletListener extends AbstractServletListener {
     public void contextDestroyed(final ServletContextEvent servletContextEvent) {
         super.contextDestroyed(servletContextEvent);
 
+        final SearchMgmtService searchMgmtService = beanManager.getReference(SearchMgmtService.class);
+        searchMgmtService.stopIndexQueues();
+
+        final LinkMgmtService linkMgmtService = beanManager.getReference(LinkMgmtService.class);
+        linkMgmtService.stop();
+
+        final ChatRoomMgmtService chatRoomMgmtService = beanManager.getReference(ChatRoomMgmtService.class);
+        chatRoomMgmtService.stop();
+
+        final PresenceMgmtService presenceMgmtService = beanManager.getReference(PresenceMgmtService.class);
+        presenceMgmtService.stop();
+
         Symphonys.EXECUTOR_SERVICE.shutdown();
 
         LOGGER.info("Destroyed the context");
@@ -35,19 +35,19 @@ import org.b3log.symphony.model.UserExt;
 import org.b3log.symphony.repository.ArticleRepository;
 import org.b3log.symphony.service.ArticleQueryService;
 import org.b3log.symphony.util.JSONs;
+import org.b3log.symphony.util.RandomSampler;
+import org.b3log.symphony.util.RefreshableList;
+import org.b3log.symphony.util.RelatedArticleIndex;
 import org.b3log.symphony.util.Symphonys;
 import org.json.JSONObject;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Date;
-import java.util.List;
+import java.util.*;
 
 /**
  * Article cache.
  *
  * @author <a href="http://88250.b3log.org">Liang Ding</a>
- * @version 1.3.1.1, Oct 23, 2018
+ * @version 1.6.0.0, Oct 25, 2018
  * @since 1.4.0
  */
 @Singleton
@@ -72,17 +72,33 @@ public class ArticleCache {
     /**
      * Side hot articles cache.
      */
-    private static final List<JSONObject> SIDE_HOT_ARTICLES = new ArrayList<>();
+    private static final RefreshableList<JSONObject> SIDE_HOT_ARTICLES = new RefreshableList<>("side hot articles");
 
     /**
      * Side random articles cache.
      */
-    private static final List<JSONObject> SIDE_RANDOM_ARTICLES = new ArrayList<>();
+    private static final RefreshableList<JSONObject> SIDE_RANDOM_ARTICLES = new RefreshableList<>("side random articles");
 
     /**
      * Perfect articles cache.
      */
-    private static final List<JSONObject> PERFECT_ARTICLES = new ArrayList<>();
+    private static final RefreshableList<JSONObject> PERFECT_ARTICLES = new RefreshableList<>("perfect articles");
+
+    /**
+     * Ids of articles eligible for random picks.
+     */
+    private static final RandomSampler RANDOM_ARTICLE_IDS = new RandomSampler();
+
+    /**
+     * Page size of loading article ids.
+     */
+    private static final int LOAD_ID_PAGE_SIZE = 10000;
+
+    /**
+     * Related articles index.
+     */
+    private static final RelatedArticleIndex<JSONObject> RELATED_ARTICLES =
+            new RelatedArticleIndex<>(Symphonys.getInt("sideRelevantArticlesCnt"));
 
     static {
         ARTICLE_CACHE.setMaxCount(Symphonys.getInt("cache.articleCnt"));
@@ -95,11 +111,12 @@ public class ArticleCache {
      * @return side hot articles
      */
     public List<JSONObject> getSideHotArticles() {
-        if (SIDE_HOT_ARTICLES.isEmpty()) {
+        final List<JSONObject> articles = SIDE_HOT_ARTICLES.get();
+        if (articles.isEmpty()) {
             return Collections.emptyList();
         }
 
-        return JSONs.clone(SIDE_HOT_ARTICLES);
+        return JSONs.clone(articles);
     }
 
     /**
@@ -112,29 +129,28 @@ public class ArticleCache {
 
         Stopwatchs.start("Load side hot articles");
         try {
-            final String id = String.valueOf(DateUtils.addDays(new Date(), -7).getTime());
-            final Query query = new Query().addSort(Article.ARTICLE_COMMENT_CNT, SortDirection.DESCENDING).
-                    addSort(Keys.OBJECT_ID, SortDirection.ASCENDING).setCurrentPageNum(1).setPageSize(Symphonys.getInt("sideHotArticlesCnt"));
-
-            final List<Filter> filters = new ArrayList<>();
-            filters.add(new PropertyFilter(Keys.OBJECT_ID, FilterOperator.GREATER_THAN_OR_EQUAL, id));
-            filters.add(new PropertyFilter(Article.ARTICLE_TYPE, FilterOperator.NOT_EQUAL, Article.ARTICLE_TYPE_C_DISCUSSION));
-            filters.add(new PropertyFilter(Article.ARTICLE_TAGS, FilterOperator.NOT_EQUAL, Tag.TAG_TITLE_C_SANDBOX));
-
-            query.setFilter(new CompositeFilter(CompositeFilterOperator.AND, filters)).
-                    addProjection(Article.ARTICLE_TITLE, String.class).
-                    addProjection(Article.ARTICLE_PERMALINK, String.class).
-                    addProjection(Article.ARTICLE_AUTHOR_ID, String.class).
-                    addProjection(Article.ARTICLE_ANONYMOUS, Integer.class);
-
-            final JSONObject result = articleRepository.get(query);
-            final List<JSONObject> articles = CollectionUtils.jsonArrayToList(result.optJSONArray(Keys.RESULTS));
-            articleQueryService.organizeArticles(UserExt.USER_AVATAR_VIEW_MODE_C_STATIC, articles);
-
-            SIDE_HOT_ARTICLES.clear();
-            SIDE_HOT_ARTICLES.addAll(articles);
-        } catch (final RepositoryException e) {
-            LOGGER.log(Level.ERROR, "Loads side hot articles failed", e);
+            SIDE_HOT_ARTICLES.refresh(() -> {
+                final String id = String.valueOf(DateUtils.addDays(new Date(), -7).getTime());
+                final Query query = new Query().addSort(Article.ARTICLE_COMMENT_CNT, SortDirection.DESCENDING).
+                        addSort(Keys.OBJECT_ID, SortDirection.ASCENDING).setCurrentPageNum(1).setPageSize(Symphonys.getInt("sideHotArticlesCnt"));
+
+                final List<Filter> filters = new ArrayList<>();
+                filters.add(new PropertyFilter(Keys.OBJECT_ID, FilterOperator.GREATER_THAN_OR_EQUAL, id));
+                filters.add(new PropertyFilter(Article.ARTICLE_TYPE, FilterOperator.NOT_EQUAL, Article.ARTICLE_TYPE_C_DISCUSSION));
+                filters.add(new PropertyFilter(Article.ARTICLE_TAGS, FilterOperator.NOT_EQUAL, Tag.TAG_TITLE_C_SANDBOX));
+
+                query.setFilter(new CompositeFilter(CompositeFilterOperator.AND, filters)).
+                        addProjection(Article.ARTICLE_TITLE, String.class).
+                        addProjection(Article.ARTICLE_PERMALINK, String.class).
+                        addProjection(Article.ARTICLE_AUTHOR_ID, String.class).
+                        addProjection(Article.ARTICLE_ANONYMOUS, Integer.class);
+
+                final JSONObject result = articleRepository.get(query);
+                final List<JSONObject> articles = CollectionUtils.jsonArrayToList(result.optJSONArray(Keys.RESULTS));
+                articleQueryService.organizeArticles(UserExt.USER_AVATAR_VIEW_MODE_C_STATIC, articles);
+
+                return articles;
+            });
         } finally {
             Stopwatchs.end();
         }
@@ -146,19 +162,17 @@ public class ArticleCache {
      * @return side random articles
      */
     public List<JSONObject> getSideRandomArticles() {
-        int size = Symphonys.getInt("sideRandomArticlesCnt");
+        final int size = Symphonys.getInt("sideRandomArticlesCnt");
         if (1 > size) {
             return Collections.emptyList();
         }
 
-        if (SIDE_RANDOM_ARTICLES.isEmpty()) {
+        final List<JSONObject> articles = SIDE_RANDOM_ARTICLES.sample(size);
+        if (articles.isEmpty()) {
             return Collections.emptyList();
         }
 
-        size = size > SIDE_RANDOM_ARTICLES.size() ? SIDE_RANDOM_ARTICLES.size() : size;
-        Collections.shuffle(SIDE_RANDOM_ARTICLES);
-
-        return JSONs.clone(SIDE_RANDOM_ARTICLES.subList(0, size));
+        return JSONs.clone(articles);
     }
 
     /**
@@ -176,18 +190,152 @@ public class ArticleCache {
 
         Stopwatchs.start("Load side random articles");
         try {
-            final List<JSONObject> articles = articleRepository.getRandomly(size * 5);
-            articleQueryService.organizeArticles(UserExt.USER_AVATAR_VIEW_MODE_C_STATIC, articles);
+            loadRandomArticleIds(articleRepository);
+            SIDE_RANDOM_ARTICLES.refresh(() -> {
+                final List<JSONObject> articles = articleRepository.getRandomly(size * 5);
+                articleQueryService.organizeArticles(UserExt.USER_AVATAR_VIEW_MODE_C_STATIC, articles);
 
-            SIDE_RANDOM_ARTICLES.clear();
-            SIDE_RANDOM_ARTICLES.addAll(articles);
-        } catch (final RepositoryException e) {
-            LOGGER.log(Level.ERROR, "Loads side random articles failed", e);
+                return articles;
+            });
         } finally {
             Stopwatchs.end();
         }
     }
 
+    /**
+     * Samples ids of articles eligible for random picks (valid and not discussion).
+     *
+     * @param fetchSize the specified fetch size
+     * @return article ids, returns an empty list if not loaded yet
+     */
+    public List<String> sampleArticleIds(final int fetchSize) {
+        return RANDOM_ARTICLE_IDS.sample(fetchSize);
+    }
+
+    /**
+     * Loads ids of articles eligible for random picks.
+     *
+     * @param articleRepository the specified article repository
+     */
+    private void loadRandomArticleIds(final ArticleRepository articleRepository) {
+        try {
+            final List<String> ids = new ArrayList<>();
+            String lastId = "0";
+            List<JSONObject> articles;
+            do {
+                final Query query = new Query().setFilter(CompositeFilterOperator.and(
+                        new PropertyFilter(Keys.OBJECT_ID, FilterOperator.GREATER_THAN, lastId),
+                        new PropertyFilter(Article.ARTICLE_STATUS, FilterOperator.NOT_EQUAL, Article.ARTICLE_STATUS_C_INVALID),
+                        new PropertyFilter(Article.ARTICLE_TYPE, FilterOperator.NOT_EQUAL, Article.ARTICLE_TYPE_C_DISCUSSION))).
+                        addSort(Keys.OBJECT_ID, SortDirection.ASCENDING).setPageCount(1).setPageSize(LOAD_ID_PAGE_SIZE).
+                        addProjection(Keys.OBJECT_ID, String.class);
+                articles = articleRepository.getList(query);
+                for (final JSONObject article : articles) {
+                    lastId = article.optString(Keys.OBJECT_ID);
+                    ids.add(lastId);
+                }
+            } while (LOAD_ID_PAGE_SIZE == articles.size());
+
+            RANDOM_ARTICLE_IDS.reset(ids);
+        } catch (final RepositoryException e) {
+            LOGGER.log(Level.ERROR, "Loads random article ids failed", e);
+        }
+    }
+
+    /**
+     * Gets related articles of the specified article.
+     *
+     * @param articleId the specified article id
+     * @param fetchSize the specified fetch size
+     * @return related articles (oId, title, permalink, authorId, anonymous), most related first, returns an empty
+     * list if the article is not indexed
+     */
+    public List<JSONObject> getRelatedArticles(final String articleId, final int fetchSize) {
+        return JSONs.clone(RELATED_ARTICLES.get(articleId, fetchSize));
+    }
+
+    /**
+     * Checks whether the specified article is in the related articles index.
+     *
+     * @param articleId the specified article id
+     * @return {@code true} if it is indexed, returns {@code false} otherwise
+     */
+    public boolean isRelatedArticlesIndexed(final String articleId) {
+        return RELATED_ARTICLES.contains(articleId);
+    }
+
+    /**
+     * Adds or updates the specified article in the related articles index, invalid and discussion articles are
+     * removed from the index.
+     *
+     * @param article the specified article
+     */
+    public void putRelatedArticle(final JSONObject article) {
+        final String articleId = article.optString(Keys.OBJECT_ID);
+        if (Article.ARTICLE_STATUS_C_INVALID == article.optInt(Article.ARTICLE_STATUS)
+                || Article.ARTICLE_TYPE_C_DISCUSSION == article.optInt(Article.ARTICLE_TYPE)) {
+            RELATED_ARTICLES.remove(articleId);
+
+            return;
+        }
+
+        final JSONObject payload = new JSONObject();
+        payload.put(Keys.OBJECT_ID, articleId);
+        payload.put(Article.ARTICLE_TITLE, article.optString(Article.ARTICLE_TITLE));
+        payload.put(Article.ARTICLE_PERMALINK, article.optString(Article.ARTICLE_PERMALINK));
+        payload.put(Article.ARTICLE_AUTHOR_ID, article.optString(Article.ARTICLE_AUTHOR_ID));
+        payload.put(Article.ARTICLE_ANONYMOUS, article.optInt(Article.ARTICLE_ANONYMOUS));
+        final List<String> tags = Arrays.asList(article.optString(Article.ARTICLE_TAGS).split(","));
+        RELATED_ARTICLES.put(articleId, tags, article.optString(Article.ARTICLE_TITLE), payload);
+    }
+
+    /**
+     * Removes an article from the related articles index by the specified article id.
+     *
+     * @param id the specified article id
+     */
+    public void removeRelatedArticle(final String id) {
+        RELATED_ARTICLES.remove(id);
+    }
+
+    /**
+     * Loads the related articles index.
+     */
+    public void loadRelatedArticles() {
+        final long start = System.currentTimeMillis();
+        final BeanManager beanManager = BeanManager.getInstance();
+        final ArticleRepository articleRepository = beanManager.getReference(ArticleRepository.class);
+        try {
+            String lastId = "0";
+            List<JSONObject> articles;
+            do {
+                final Query query = new Query().setFilter(CompositeFilterOperator.and(
+                        new PropertyFilter(Keys.OBJECT_ID, FilterOperator.GREATER_THAN, lastId),
+                        new PropertyFilter(Article.ARTICLE_STATUS, FilterOperator.NOT_EQUAL, Article.ARTICLE_STATUS_C_INVALID),
+                        new PropertyFilter(Article.ARTICLE_TYPE, FilterOperator.NOT_EQUAL, Article.ARTICLE_TYPE_C_DISCUSSION))).
+                        addSort(Keys.OBJECT_ID, SortDirection.ASCENDING).setPageCount(1).setPageSize(LOAD_ID_PAGE_SIZE).
+                        addProjection(Keys.OBJECT_ID, String.class).
+                        addProjection(Article.ARTICLE_TITLE, String.class).
+                        addProjection(Article.ARTICLE_TAGS, String.class).
+                        addProjection(Article.ARTICLE_PERMALINK, String.class).
+                        addProjection(Article.ARTICLE_AUTHOR_ID, String.class).
+                        addProjection(Article.ARTICLE_ANONYMOUS, Integer.class).
+                        addProjection(Article.ARTICLE_STATUS, Integer.class).
+                        addProjection(Article.ARTICLE_TYPE, Integer.class);
+                articles = articleRepository.getList(query);
+                for (final JSONObject article : articles) {
+                    lastId = article.optString(Keys.OBJECT_ID);
+                    putRelatedArticle(article);
+                }
+            } while (LOAD_ID_PAGE_SIZE == articles.size());
+
+            LOGGER.log(Level.INFO, "Loaded [" + RELATED_ARTICLES.size() + "] articles into related articles index in ["
+                    + (System.currentTimeMillis() - start) + "]ms");
+        } catch (final RepositoryException e) {
+            LOGGER.log(Level.ERROR, "Loads related articles index failed", e);
+        }
+    }
+
     /**
      * Gets an article abstract by the specified article id.
      *
@@ -209,11 +357,12 @@ public class ArticleCache {
      * @return side random articles
      */
     public List<JSONObject> getPerfectArticles() {
-        if (PERFECT_ARTICLES.isEmpty()) {
+        final List<JSONObject> articles = PERFECT_ARTICLES.get();
+        if (articles.isEmpty()) {
             return Collections.emptyList();
         }
 
-        return JSONs.clone(PERFECT_ARTICLES);
+        return JSONs.clone(articles);
     }
 
     /**
@@ -226,37 +375,36 @@ public class ArticleCache {
 
         Stopwatchs.start("Query perfect articles");
         try {
-            final Query query = new Query()
-                    .addSort(Keys.OBJECT_ID, SortDirection.DESCENDING)
-                    .setPageCount(1).setPageSize(Symphonys.getInt("indexPerfectCnt")).setCurrentPageNum(1);
-            query.setFilter(new PropertyFilter(Article.ARTICLE_PERFECT, FilterOperator.EQUAL, Article.ARTICLE_PERFECT_C_PERFECT));
-            query.addProjection(Keys.OBJECT_ID, String.class).
-                    addProjection(Article.ARTICLE_STICK, Long.class).
-                    addProjection(Article.ARTICLE_CREATE_TIME, Long.class).
-                    addProjection(Article.ARTICLE_UPDATE_TIME, Long.class).
-                    addProjection(Article.ARTICLE_LATEST_CMT_TIME, Long.class).
-                    addProjection(Article.ARTICLE_AUTHOR_ID, String.class).
-                    addProjection(Article.ARTICLE_TITLE, String.class).
-                    addProjection(Article.ARTICLE_STATUS, Integer.class).
-                    addProjection(Article.ARTICLE_VIEW_CNT, Integer.class).
-                    addProjection(Article.ARTICLE_TYPE, Integer.class).
-                    addProjection(Article.ARTICLE_PERMALINK, String.class).
-                    addProjection(Article.ARTICLE_TAGS, String.class).
-                    addProjection(Article.ARTICLE_LATEST_CMTER_NAME, String.class).
-                    addProjection(Article.ARTICLE_COMMENT_CNT, Integer.class).
-                    addProjection(Article.ARTICLE_ANONYMOUS, Integer.class).
-                    addProjection(Article.ARTICLE_PERFECT, Integer.class).
-                    addProjection(Article.ARTICLE_QNA_OFFER_POINT, Integer.class);
-
-            final JSONObject result = articleRepository.get(query);
-            final List<JSONObject> articles = CollectionUtils.jsonArrayToList(result.optJSONArray(Keys.RESULTS));
-
-            articleQueryService.organizeArticles(UserExt.USER_AVATAR_VIEW_MODE_C_STATIC, articles);
-
-            PERFECT_ARTICLES.clear();
-            PERFECT_ARTICLES.addAll(articles);
-        } catch (final RepositoryException e) {
-            LOGGER.log(Level.ERROR, "Loads perfect articles failed", e);
+            PERFECT_ARTICLES.refresh(() -> {
+                final Query query = new Query()
+                        .addSort(Keys.OBJECT_ID, SortDirection.DESCENDING)
+                        .setPageCount(1).setPageSize(Symphonys.getInt("indexPerfectCnt")).setCurrentPageNum(1);
+                query.setFilter(new PropertyFilter(Article.ARTICLE_PERFECT, FilterOperator.EQUAL, Article.ARTICLE_PERFECT_C_PERFECT));
+                query.addProjection(Keys.OBJECT_ID, String.class).
+                        addProjection(Article.ARTICLE_STICK, Long.class).
+                        addProjection(Article.ARTICLE_CREATE_TIME, Long.class).
+                        addProjection(Article.ARTICLE_UPDATE_TIME, Long.class).
+                        addProjection(Article.ARTICLE_LATEST_CMT_TIME, Long.class).
+                        addProjection(Article.ARTICLE_AUTHOR_ID, String.class).
+                        addProjection(Article.ARTICLE_TITLE, String.class).
+                        addProjection(Article.ARTICLE_STATUS, Integer.class).
+                        addProjection(Article.ARTICLE_VIEW_CNT, Integer.class).
+                        addProjection(Article.ARTICLE_TYPE, Integer.class).
+                        addProjection(Article.ARTICLE_PERMALINK, String.class).
+                        addProjection(Article.ARTICLE_TAGS, String.class).
+                        addProjection(Article.ARTICLE_LATEST_CMTER_NAME, String.class).
+                        addProjection(Article.ARTICLE_COMMENT_CNT, Integer.class).
+                        addProjection(Article.ARTICLE_ANONYMOUS, Integer.class).
+                        addProjection(Article.ARTICLE_PERFECT, Integer.class).
+                        addProjection(Article.ARTICLE_QNA_OFFER_POINT, Integer.class);
+
+                final JSONObject result = articleRepository.get(query);
+                final List<JSONObject> articles = CollectionUtils.jsonArrayToList(result.optJSONArray(Keys.RESULTS));
+
+                articleQueryService.organizeArticles(UserExt.USER_AVATAR_VIEW_MODE_C_STATIC, articles);
+
+                return articles;
+            });
         } finally {
             Stopwatchs.end();
         }
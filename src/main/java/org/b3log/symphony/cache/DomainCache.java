@@ -34,7 +34,7 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
  * Domain cache.
  *
  * @author <a href="http://88250.b3log.org">Liang Ding</a>
- * @version 1.0.2.3, Aug 31, 2018
+ * @version 1.0.4.0, Oct 25, 2018
  * @since 1.4.0
  */
 @Singleton
@@ -61,6 +61,18 @@ public class DomainCache {
     @Inject
     private DomainQueryService domainQueryService;
 
+    /**
+     * Page cache.
+     */
+    @Inject
+    private PageCache pageCache;
+
+    /**
+     * Feed cache.
+     */
+    @Inject
+    private FeedCache feedCache;
+
     /**
      * Gets domains with the specified fetch size.
      *
@@ -83,7 +95,8 @@ public class DomainCache {
     }
 
     /**
-     * Loads domains.
+     * Loads domains. Clears the page cache as domains and their tags are shown in the navigation of every page, invalidates
+     * the feed cache as domain feeds select articles by domain tags.
      */
     public void loadDomains() {
         LOCK.writeLock().lock();
@@ -93,5 +106,8 @@ public class DomainCache {
         } finally {
             LOCK.writeLock().unlock();
         }
+
+        pageCache.clear();
+        feedCache.invalidateAll();
     }
 }
@@ -0,0 +1,102 @@
+/*
+ * Symphony - A modern community (forum/BBS/SNS/blog) platform written in Java.
+ * Copyright (C) 2012-2018, b3log.org & hacpai.com
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.b3log.symphony.cache;
+
+import org.apache.commons.lang.StringUtils;
+import org.b3log.latke.ioc.Singleton;
+import org.b3log.latke.repository.jdbc.JdbcRepository;
+import org.b3log.latke.util.Locales;
+import org.b3log.symphony.util.FeedStore;
+import org.b3log.symphony.util.Symphonys;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Feed cache, caches generated RSS feeds.
+ * <p>
+ * Feeds are keyed by path and locale. Article changes mark the feeds selecting the article's tags stale, domain
+ * changes mark all feeds stale, stale feeds are regenerated in background.
+ * </p>
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.0.0, Oct 25, 2018
+ * @since 3.4.3
+ */
+@Singleton
+public class FeedCache {
+
+    /**
+     * Feeds.
+     */
+    private static final FeedStore FEEDS = new FeedStore(command -> Symphonys.EXECUTOR_SERVICE.submit(() -> {
+        try {
+            command.run();
+        } finally {
+            JdbcRepository.dispose();
+        }
+    }));
+
+    /**
+     * Gets a feed by the specified path of the current locale, generates it with the specified generator if missing.
+     * The generator runs with the current locale, in background if the feed is stale.
+     *
+     * @param path      the specified path
+     * @param generator the specified generator
+     * @return feed, returns {@code null} if not found
+     * @throws Exception exception of the generator
+     * @see FeedStore#get(String, FeedStore.Generator)
+     */
+    public FeedStore.Feed get(final String path, final FeedStore.Generator generator) throws Exception {
+        final Locale locale = Locales.getLocale();
+
+        return FEEDS.get(path + '\n' + locale, () -> {
+            final Locale previous = Locales.getLocale();
+            Locales.setLocale(locale);
+            try {
+                return generator.generate();
+            } finally {
+                Locales.setLocale(previous);
+            }
+        });
+    }
+
+    /**
+     * Invalidates feeds selecting an article with any of the specified tags.
+     *
+     * @param articleTags the specified tags of the article, each one is a comma separated tag titles, passes the old
+     *                    and the new tags if the tags of the article changed
+     */
+    public void invalidateArticle(final String... articleTags) {
+        final List<String> tagTitles = new ArrayList<>();
+        for (final String tags : articleTags) {
+            tagTitles.addAll(Arrays.asList(StringUtils.split(tags, ',')));
+        }
+
+        FEEDS.invalidate(tagTitles);
+    }
+
+    /**
+     * Invalidates all feeds.
+     */
+    public void invalidateAll() {
+        FEEDS.invalidateAll();
+    }
+}
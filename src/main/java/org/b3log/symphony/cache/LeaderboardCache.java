@@ -0,0 +1,276 @@
+/*
+ * Symphony - A modern community (forum/BBS/SNS/blog) platform written in Java.
+ * Copyright (C) 2012-2018, b3log.org & hacpai.com
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.b3log.symphony.cache;
+
+import org.b3log.latke.Keys;
+import org.b3log.latke.ioc.Inject;
+import org.b3log.latke.ioc.Singleton;
+import org.b3log.latke.logging.Level;
+import org.b3log.latke.logging.Logger;
+import org.b3log.latke.repository.*;
+import org.b3log.symphony.model.Pointtransfer;
+import org.b3log.symphony.model.UserExt;
+import org.b3log.symphony.repository.PointtransferRepository;
+import org.b3log.symphony.repository.UserRepository;
+import org.b3log.symphony.util.Leaderboard;
+import org.json.JSONObject;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Leaderboard cache.
+ * <p>
+ * Holds the balance, consumption, checkin and eating snake leaderboards. The boards are loaded once at startup and
+ * then maintained by the point transfer and user update write paths.
+ * </p>
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.1.0.0, Oct 25, 2018
+ * @since 3.4.3
+ */
+@Singleton
+public class LeaderboardCache {
+
+    /**
+     * Balance board, scored by {@value UserExt#USER_POINT} of users who join the point rank.
+     */
+    public static final String BOARD_BALANCE = "balance";
+
+    /**
+     * Consumption board, scored by {@value UserExt#USER_USED_POINT} of users who join the used point rank.
+     */
+    public static final String BOARD_CONSUMPTION = "consumption";
+
+    /**
+     * Checkin board, scored by the longest checkin streak then the current checkin streak.
+     */
+    public static final String BOARD_CHECKIN = "checkin";
+
+    /**
+     * Eating snake board, scored by the max point of a single game.
+     */
+    public static final String BOARD_EATING_SNAKE_MAX = "eatingSnakeMax";
+
+    /**
+     * Eating snake board, scored by the sum point of all games.
+     */
+    public static final String BOARD_EATING_SNAKE_SUM = "eatingSnakeSum";
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOGGER = Logger.getLogger(LeaderboardCache.class);
+
+    /**
+     * Max count of members of a board.
+     */
+    private static final int BOARD_CAPACITY = 10000;
+
+    /**
+     * Page size of loading users.
+     */
+    private static final int LOAD_PAGE_SIZE = 1000;
+
+    /**
+     * Boards, &lt;name, board&gt;.
+     */
+    private static final Map<String, Leaderboard> BOARDS = new HashMap<>();
+
+    static {
+        BOARDS.put(BOARD_BALANCE, new Leaderboard(BOARD_CAPACITY));
+        BOARDS.put(BOARD_CONSUMPTION, new Leaderboard(BOARD_CAPACITY));
+        BOARDS.put(BOARD_CHECKIN, new Leaderboard(BOARD_CAPACITY));
+        BOARDS.put(BOARD_EATING_SNAKE_MAX, new Leaderboard(BOARD_CAPACITY));
+        BOARDS.put(BOARD_EATING_SNAKE_SUM, new Leaderboard(BOARD_CAPACITY));
+    }
+
+    /**
+     * Whether the boards are loaded.
+     */
+    private static volatile boolean loaded;
+
+    /**
+     * User repository.
+     */
+    @Inject
+    private UserRepository userRepository;
+
+    /**
+     * Pointtransfer repository.
+     */
+    @Inject
+    private PointtransferRepository pointtransferRepository;
+
+    /**
+     * Checks whether the boards are loaded.
+     *
+     * @return {@code true} if loaded, returns {@code false} otherwise
+     */
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Gets the top user ids of the specified board.
+     *
+     * @param board     the specified board, for example {@value #BOARD_BALANCE}
+     * @param fetchSize the specified fetch size
+     * @return user ids ordered by rank, returns an empty list if the boards are not loaded
+     */
+    public List<String> getTop(final String board, final int fetchSize) {
+        if (!loaded) {
+            return Collections.emptyList();
+        }
+
+        return BOARDS.get(board).getTop(fetchSize);
+    }
+
+    /**
+     * Gets the rank of the specified user in the specified board.
+     *
+     * @param board  the specified board, for example {@value #BOARD_BALANCE}
+     * @param userId the specified user id
+     * @return rank starts from {@code 1}, returns {@code -1} if not ranked or the boards are not loaded
+     */
+    public int getRank(final String board, final String userId) {
+        if (!loaded) {
+            return -1;
+        }
+
+        return BOARDS.get(board).getRank(userId);
+    }
+
+    /**
+     * Gets the score of the specified user in the specified board.
+     *
+     * @param board  the specified board, for example {@value #BOARD_BALANCE}
+     * @param userId the specified user id
+     * @return score, returns {@code 0} if not ranked
+     */
+    public long getScore(final String board, final String userId) {
+        final Long ret = BOARDS.get(board).getScore(userId);
+
+        return null == ret ? 0 : ret;
+    }
+
+    /**
+     * Updates the balance, consumption and checkin boards with the specified user.
+     *
+     * @param userId the specified user id
+     * @param user   the specified user
+     */
+    public void putUser(final String userId, final JSONObject user) {
+        if (UserExt.USER_JOIN_POINT_RANK_C_JOIN == user.optInt(UserExt.USER_JOIN_POINT_RANK)) {
+            BOARDS.get(BOARD_BALANCE).set(userId, user.optInt(UserExt.USER_POINT));
+        } else {
+            BOARDS.get(BOARD_BALANCE).remove(userId);
+        }
+
+        if (UserExt.USER_JOIN_USED_POINT_RANK_C_JOIN == user.optInt(UserExt.USER_JOIN_USED_POINT_RANK)) {
+            BOARDS.get(BOARD_CONSUMPTION).set(userId, user.optInt(UserExt.USER_USED_POINT));
+        } else {
+            BOARDS.get(BOARD_CONSUMPTION).remove(userId);
+        }
+
+        final int longestStreak = user.optInt(UserExt.USER_LONGEST_CHECKIN_STREAK);
+        if (0 < longestStreak) {
+            BOARDS.get(BOARD_CHECKIN).set(userId, (long) longestStreak << 32 | user.optInt(UserExt.USER_CURRENT_CHECKIN_STREAK));
+        } else {
+            BOARDS.get(BOARD_CHECKIN).remove(userId);
+        }
+    }
+
+    /**
+     * Removes the specified user from all boards.
+     *
+     * @param userId the specified user id
+     */
+    public void removeUser(final String userId) {
+        BOARDS.values().forEach(board -> board.remove(userId));
+    }
+
+    /**
+     * Updates the eating snake boards with the specified point transfer.
+     *
+     * @param type the specified transfer type
+     * @param toId the specified to id
+     * @param sum  the specified sum
+     */
+    public void putTransfer(final int type, final String toId, final int sum) {
+        if (Pointtransfer.TRANSFER_TYPE_C_ACTIVITY_EATINGSNAKE_COLLECT != type || Pointtransfer.ID_C_SYS.equals(toId)) {
+            return;
+        }
+
+        BOARDS.get(BOARD_EATING_SNAKE_MAX).max(toId, sum);
+        BOARDS.get(BOARD_EATING_SNAKE_SUM).increment(toId, sum);
+    }
+
+    /**
+     * Loads the boards.
+     */
+    public void loadLeaderboards() {
+        BOARDS.values().forEach(Leaderboard::clear);
+
+        try {
+            String lastId = "0";
+            List<JSONObject> users;
+            do {
+                final Query query = new Query().setFilter(new PropertyFilter(Keys.OBJECT_ID, FilterOperator.GREATER_THAN, lastId)).
+                        addSort(Keys.OBJECT_ID, SortDirection.ASCENDING).setPageCount(1).setPageSize(LOAD_PAGE_SIZE).
+                        addProjection(Keys.OBJECT_ID, String.class).
+                        addProjection(UserExt.USER_POINT, Integer.class).
+                        addProjection(UserExt.USER_USED_POINT, Integer.class).
+                        addProjection(UserExt.USER_JOIN_POINT_RANK, Integer.class).
+                        addProjection(UserExt.USER_JOIN_USED_POINT_RANK, Integer.class).
+                        addProjection(UserExt.USER_LONGEST_CHECKIN_STREAK, Integer.class).
+                        addProjection(UserExt.USER_CURRENT_CHECKIN_STREAK, Integer.class);
+                users = userRepository.getList(query);
+                for (final JSONObject user : users) {
+                    lastId = user.optString(Keys.OBJECT_ID);
+                    putUser(lastId, user);
+                }
+            } while (LOAD_PAGE_SIZE == users.size());
+
+            final List<JSONObject> snakes = pointtransferRepository.select("SELECT\n"
+                    + "	toId, MAX(sum) AS maxPoint, SUM(sum) AS sumPoint\n"
+                    + "FROM\n"
+                    + "	`" + pointtransferRepository.getName() + "`\n"
+                    + "WHERE\n"
+                    + "	type = ?\n"
+                    + "GROUP BY\n"
+                    + "	toId", Pointtransfer.TRANSFER_TYPE_C_ACTIVITY_EATINGSNAKE_COLLECT);
+            for (final JSONObject snake : snakes) {
+                final String userId = snake.optString(Pointtransfer.TO_ID);
+                BOARDS.get(BOARD_EATING_SNAKE_MAX).set(userId, snake.optLong("maxPoint"));
+                BOARDS.get(BOARD_EATING_SNAKE_SUM).set(userId, snake.optLong("sumPoint"));
+            }
+
+            loaded = true;
+
+            LOGGER.info("Loaded leaderboards [balance=" + BOARDS.get(BOARD_BALANCE).size()
+                    + ", eatingSnake=" + BOARDS.get(BOARD_EATING_SNAKE_SUM).size() + "]");
+        } catch (final RepositoryException e) {
+            loaded = false;
+
+            LOGGER.log(Level.ERROR, "Loads leaderboards failed", e);
+        }
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * Symphony - A modern community (forum/BBS/SNS/blog) platform written in Java.
+ * Copyright (C) 2012-2018, b3log.org & hacpai.com
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.b3log.symphony.cache;
+
+import org.apache.commons.lang.time.DateUtils;
+import org.b3log.latke.ioc.Singleton;
+import org.b3log.symphony.model.Liveness;
+import org.json.JSONObject;
+
+import java.util.Calendar;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Navigation summary cache, caches the personal navigation data of logged-in users.
+ * <p>
+ * A summary holds the following article, tag and user counts, the role, whether checked in today and the current
+ * liveness point of a user. Follow and user updates invalidate the summary of the user, liveness increments update it
+ * in place. Summaries expire at the end of the day they are loaded and after {@link #EXPIRE} anyway, the latter
+ * bounds staleness of changes not going through those paths.
+ * </p>
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.0.0, Oct 25, 2018
+ * @since 3.4.3
+ */
+@Singleton
+public class NavSummaryCache {
+
+    /**
+     * Expiration time in milliseconds of a summary.
+     */
+    private static final long EXPIRE = 5 * 60 * 1000;
+
+    /**
+     * Max count of cached summaries.
+     */
+    private static final int MAX_SIZE = 10000;
+
+    /**
+     * Summaries, &lt;userId, summary&gt;, in access order.
+     */
+    private static final Map<String, Summary> SUMMARIES = new LinkedHashMap<String, Summary>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, Summary> eldest) {
+            return size() > MAX_SIZE;
+        }
+    };
+
+    /**
+     * Invalidation generation, increases on each invalidation.
+     */
+    private static long generation;
+
+    /**
+     * Gets the summary of a user specified by the given user id, loads it with the specified loader if missing or
+     * expired.
+     *
+     * @param userId the given user id
+     * @param loader the specified loader
+     * @return summary, do not modify it
+     */
+    public JSONObject get(final String userId, final Supplier<JSONObject> loader) {
+        final long gen;
+        synchronized (SUMMARIES) {
+            final Summary summary = SUMMARIES.get(userId);
+            if (null != summary && System.currentTimeMillis() < summary.expireTime) {
+                return summary.data;
+            }
+
+            gen = generation;
+        }
+
+        final JSONObject ret = loader.get();
+        synchronized (SUMMARIES) {
+            if (gen == generation) {
+                SUMMARIES.put(userId, new Summary(ret));
+            }
+        }
+
+        return ret;
+    }
+
+    /**
+     * Invalidates the summary of a user specified by the given user id.
+     *
+     * @param userId the given user id
+     */
+    public void invalidate(final String userId) {
+        synchronized (SUMMARIES) {
+            generation++;
+            SUMMARIES.remove(userId);
+        }
+    }
+
+    /**
+     * Updates the current liveness point in the summary of a user specified by the given user id.
+     *
+     * @param userId        the given user id
+     * @param livenessPoint the specified current liveness point
+     */
+    public void putLivenessPoint(final String userId, final int livenessPoint) {
+        synchronized (SUMMARIES) {
+            final Summary summary = SUMMARIES.get(userId);
+            if (null == summary) {
+                return;
+            }
+
+            final JSONObject data = new JSONObject(summary.data, JSONObject.getNames(summary.data));
+            data.put(Liveness.LIVENESS_POINT, livenessPoint);
+            SUMMARIES.put(userId, new Summary(data, summary.expireTime));
+        }
+    }
+
+    /**
+     * Removes all summaries.
+     */
+    public void clear() {
+        synchronized (SUMMARIES) {
+            generation++;
+            SUMMARIES.clear();
+        }
+    }
+
+    /**
+     * Summary of a user with its expiration time.
+     */
+    private static final class Summary {
+
+        /**
+         * Data.
+         */
+        private final JSONObject data;
+
+        /**
+         * Expiration time.
+         */
+        private final long expireTime;
+
+        /**
+         * Constructs a summary of the specified data loaded now.
+         *
+         * @param data the specified data
+         */
+        private Summary(final JSONObject data) {
+            this(data, Math.min(System.currentTimeMillis() + EXPIRE,
+                    DateUtils.truncate(new Date(), Calendar.DATE).getTime() + DateUtils.MILLIS_PER_DAY));
+        }
+
+        /**
+         * Constructs a summary of the specified data and expiration time.
+         *
+         * @param data       the specified data
+         * @param expireTime the specified expiration time
+         */
+        private Summary(final JSONObject data, final long expireTime) {
+            this.data = data;
+            this.expireTime = expireTime;
+        }
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * Symphony - A modern community (forum/BBS/SNS/blog) platform written in Java.
+ * Copyright (C) 2012-2018, b3log.org & hacpai.com
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.b3log.symphony.cache;
+
+import org.apache.commons.lang.StringUtils;
+import org.b3log.latke.ioc.Singleton;
+import org.b3log.symphony.model.Article;
+import org.b3log.symphony.util.PageStore;
+import org.b3log.symphony.util.Symphonys;
+import org.json.JSONObject;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.*;
+
+/**
+ * Page cache, caches pages rendered for anonymous visitors.
+ * <p>
+ * Pages declare their dependencies while rendering, see {@link #dependOnIndex(HttpServletRequest)},
+ * {@link #dependOnArticle(HttpServletRequest, String)} and {@link #dependOnTag(HttpServletRequest, String)}. Write
+ * paths invalidate the dependencies they change, domain changes clear all pages, pages expire after
+ * {@code pageCache.expire} anyway.
+ * </p>
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.0.1, Oct 25, 2018
+ * @since 3.4.3
+ */
+@Singleton
+public class PageCache {
+
+    /**
+     * Request attribute name of dependencies of the page being rendered.
+     */
+    private static final String DEPENDENCIES = "pageCacheDependencies";
+
+    /**
+     * Dependency of article list pages.
+     */
+    private static final String INDEX = "index";
+
+    /**
+     * Pages.
+     */
+    private static final PageStore PAGES = new PageStore(Symphonys.getLong("pageCache.maxBytes"),
+            Symphonys.getLong("pageCache.expire"));
+
+    /**
+     * Gets a page by the specified key, loads it with the specified loader if missing.
+     *
+     * @param key    the specified key
+     * @param loader the specified loader
+     * @return page, returns {@code null} if not loaded
+     * @throws Exception exception of the loader
+     * @see PageStore#get(String, PageStore.Loader)
+     */
+    public PageStore.Page get(final String key, final PageStore.Loader loader) throws Exception {
+        return PAGES.get(key, loader);
+    }
+
+    /**
+     * Declares the page being rendered for the specified request lists articles.
+     *
+     * @param request the specified request
+     */
+    public void dependOnIndex(final HttpServletRequest request) {
+        depend(request, INDEX);
+    }
+
+    /**
+     * Declares the page being rendered for the specified request shows the specified article.
+     *
+     * @param request   the specified request
+     * @param articleId the specified article id
+     */
+    public void dependOnArticle(final HttpServletRequest request, final String articleId) {
+        depend(request, Article.ARTICLE + "-" + articleId);
+    }
+
+    /**
+     * Declares the page being rendered for the specified request shows the specified tag or its articles.
+     *
+     * @param request  the specified request
+     * @param tagTitle the specified tag title
+     */
+    public void dependOnTag(final HttpServletRequest request, final String tagTitle) {
+        depend(request, getTagDependency(tagTitle));
+    }
+
+    /**
+     * Gets dependencies of the page rendered for the specified request.
+     *
+     * @param request the specified request
+     * @return dependencies
+     */
+    public Set<String> getDependencies(final HttpServletRequest request) {
+        final Set<String> ret = (Dependencies) request.getAttribute(DEPENDENCIES);
+
+        return null == ret ? Collections.emptySet() : ret;
+    }
+
+    /**
+     * Invalidates pages depending on the specified article, article lists and the specified tags.
+     *
+     * @param articleId   the specified article id
+     * @param articleTags the specified tags of the article, each one is a comma separated tag titles, passes the old
+     *                    and the new tags if the tags of the article changed
+     */
+    public void invalidateArticle(final String articleId, final String... articleTags) {
+        final List<String> dependencies = new ArrayList<>();
+        dependencies.add(INDEX);
+        dependencies.add(Article.ARTICLE + "-" + articleId);
+        for (final String tags : articleTags) {
+            for (final String tagTitle : StringUtils.split(tags, ',')) {
+                dependencies.add(getTagDependency(tagTitle));
+            }
+        }
+
+        PAGES.invalidate(dependencies);
+    }
+
+    /**
+     * Removes all pages.
+     */
+    public void clear() {
+        PAGES.clear();
+    }
+
+    /**
+     * Gets statistic.
+     *
+     * @return statistic, for example,
+     * {
+     *     "hitRatio": 0.95,
+     *     "hitCnt": long,
+     *     "missCnt": long,
+     *     "collapsedCnt": long,
+     *     "pageCnt": int,
+     *     "bytes": long
+     * }
+     */
+    public JSONObject getStat() {
+        final long hitCnt = PAGES.getHitCount();
+        final long missCnt = PAGES.getMissCount();
+
+        final JSONObject ret = new JSONObject();
+        ret.put("hitRatio", 0 == hitCnt + missCnt ? 0 : (double) hitCnt / (hitCnt + missCnt));
+        ret.put("hitCnt", hitCnt);
+        ret.put("missCnt", missCnt);
+        ret.put("collapsedCnt", PAGES.getCollapsedCount());
+        ret.put("pageCnt", PAGES.size());
+        ret.put("bytes", PAGES.getBytes());
+
+        return ret;
+    }
+
+    private static void depend(final HttpServletRequest request, final String dependency) {
+        Dependencies dependencies = (Dependencies) request.getAttribute(DEPENDENCIES);
+        if (null == dependencies) {
+            dependencies = new Dependencies();
+            request.setAttribute(DEPENDENCIES, dependencies);
+        }
+
+        dependencies.add(dependency);
+    }
+
+    private static String getTagDependency(final String tagTitle) {
+        return "tag-" + StringUtils.trim(tagTitle).toLowerCase();
+    }
+
+    /**
+     * Dependencies of the page being rendered, kept in a request attribute.
+     */
+    private static final class Dependencies extends HashSet<String> {
+
+        /**
+         * Serial version UID.
+         */
+        private static final long serialVersionUID = 1L;
+    }
+}
@@ -21,13 +21,13 @@ import org.apache.commons.lang.StringUtils;
 import org.b3log.latke.Keys;
 import org.b3log.latke.ioc.BeanManager;
 import org.b3log.latke.ioc.Singleton;
-import org.b3log.latke.logging.Level;
 import org.b3log.latke.logging.Logger;
 import org.b3log.latke.repository.*;
 import org.b3log.latke.util.CollectionUtils;
 import org.b3log.symphony.model.Tag;
 import org.b3log.symphony.repository.TagRepository;
 import org.b3log.symphony.util.JSONs;
+import org.b3log.symphony.util.RefreshableList;
 import org.b3log.symphony.util.Symphonys;
 import org.json.JSONObject;
 
@@ -38,7 +38,7 @@ import java.util.concurrent.ConcurrentHashMap;
  * Tag cache.
  *
  * @author <a href="http://88250.b3log.org">Liang Ding</a>
- * @version 1.5.6.5, Aug 31, 2018
+ * @version 1.7.0.0, Oct 25, 2018
  * @since 1.4.0
  */
 @Singleton
@@ -52,17 +52,17 @@ public class TagCache {
     /**
      * Icon tags.
      */
-    private static final List<JSONObject> ICON_TAGS = new ArrayList<>();
+    private static final RefreshableList<JSONObject> ICON_TAGS = new RefreshableList<>("icon tags");
 
     /**
      * New tags.
      */
-    private static final List<JSONObject> NEW_TAGS = new ArrayList<>();
+    private static final RefreshableList<JSONObject> NEW_TAGS = new RefreshableList<>("new tags");
 
     /**
      * All tags.
      */
-    private static final List<JSONObject> TAGS = new ArrayList<>();
+    private static final RefreshableList<JSONObject> TAGS = new RefreshableList<>("tags");
 
     /**
      * &lt;title, URI&gt;
@@ -136,27 +136,27 @@ public class TagCache {
      * @return new tags
      */
     public List<JSONObject> getNewTags() {
-        if (NEW_TAGS.isEmpty()) {
+        final List<JSONObject> tags = NEW_TAGS.get();
+        if (tags.isEmpty()) {
             return Collections.emptyList();
         }
 
-        return JSONs.clone(NEW_TAGS);
+        return JSONs.clone(tags);
     }
 
     /**
-     * Gets icon tags with the specified fetch size.
+     * Gets random icon tags with the specified fetch size.
      *
      * @param fetchSize the specified fetch size
      * @return icon tags
      */
     public List<JSONObject> getIconTags(final int fetchSize) {
-        if (ICON_TAGS.isEmpty()) {
+        final List<JSONObject> tags = ICON_TAGS.sample(fetchSize);
+        if (tags.isEmpty()) {
             return Collections.emptyList();
         }
 
-        final int end = fetchSize >= ICON_TAGS.size() ? ICON_TAGS.size() : fetchSize;
-
-        return JSONs.clone(ICON_TAGS.subList(0, end));
+        return JSONs.clone(tags);
     }
 
     /**
@@ -165,11 +165,12 @@ public class TagCache {
      * @return all tags
      */
     public List<JSONObject> getTags() {
-        if (TAGS.isEmpty()) {
+        final List<JSONObject> tags = TAGS.get();
+        if (tags.isEmpty()) {
             return Collections.emptyList();
         }
 
-        return JSONs.clone(TAGS);
+        return JSONs.clone(tags);
     }
 
     /**
@@ -193,13 +194,11 @@ public class TagCache {
 
         query.setFilter(new PropertyFilter(Tag.TAG_REFERENCE_CNT, FilterOperator.GREATER_THAN, 0));
 
-        try {
+        NEW_TAGS.refresh(() -> {
             final JSONObject result = tagRepository.get(query);
-            NEW_TAGS.clear();
-            NEW_TAGS.addAll(CollectionUtils.jsonArrayToList(result.optJSONArray(Keys.RESULTS)));
-        } catch (final RepositoryException e) {
-            LOGGER.log(Level.ERROR, "Gets new tags failed", e);
-        }
+
+            return CollectionUtils.jsonArrayToList(result.optJSONArray(Keys.RESULTS));
+        });
     }
 
     /**
@@ -213,35 +212,17 @@ public class TagCache {
                 CompositeFilterOperator.and(
                         new PropertyFilter(Tag.TAG_ICON_PATH, FilterOperator.NOT_EQUAL, ""),
                         new PropertyFilter(Tag.TAG_STATUS, FilterOperator.EQUAL, Tag.TAG_STATUS_C_VALID)))
-                .setCurrentPageNum(1).setPageSize(Integer.MAX_VALUE).setPageCount(1)
-                .addSort(Tag.TAG_RANDOM_DOUBLE, SortDirection.ASCENDING);
-        try {
+                .setCurrentPageNum(1).setPageSize(Integer.MAX_VALUE).setPageCount(1);
+        ICON_TAGS.refresh(() -> {
             final JSONObject result = tagRepository.get(query);
             final List<JSONObject> tags = CollectionUtils.jsonArrayToList(result.optJSONArray(Keys.RESULTS));
-            final List<JSONObject> toUpdateTags = new ArrayList<>();
-            for (final JSONObject tag : tags) {
-                toUpdateTags.add(JSONs.clone(tag));
-            }
-
             for (final JSONObject tag : tags) {
                 Tag.fillDescription(tag);
                 tag.put(Tag.TAG_T_TITLE_LOWER_CASE, tag.optString(Tag.TAG_TITLE).toLowerCase());
             }
 
-            ICON_TAGS.clear();
-            ICON_TAGS.addAll(tags);
-
-            // Updates random double
-            final Transaction transaction = tagRepository.beginTransaction();
-            for (final JSONObject tag : toUpdateTags) {
-                tag.put(Tag.TAG_RANDOM_DOUBLE, Math.random());
-
-                tagRepository.update(tag.optString(Keys.OBJECT_ID), tag);
-            }
-            transaction.commit();
-        } catch (final RepositoryException e) {
-            LOGGER.log(Level.ERROR, "Load icon tags failed", e);
-        }
+            return tags;
+        });
     }
 
     /**
@@ -254,7 +235,7 @@ public class TagCache {
         final Query query = new Query().setFilter(
                 new PropertyFilter(Tag.TAG_STATUS, FilterOperator.EQUAL, Tag.TAG_STATUS_C_VALID))
                 .setCurrentPageNum(1).setPageSize(Integer.MAX_VALUE).setPageCount(1);
-        try {
+        final boolean refreshed = TAGS.refresh(() -> {
             final JSONObject result = tagRepository.get(query);
             final List<JSONObject> tags = CollectionUtils.jsonArrayToList(result.optJSONArray(Keys.RESULTS));
 
@@ -290,15 +271,17 @@ public class TagCache {
                 return u1Title.compareTo(u2Title);
             });
 
-            TAGS.clear();
-            TAGS.addAll(tags);
+            return tags;
+        });
+        if (!refreshed) {
+            return;
+        }
 
-            TITLE_URIS.clear();
-            for (final JSONObject tag : tags) {
-                TITLE_URIS.put(tag.optString(Tag.TAG_TITLE), tag.optString(Tag.TAG_URI));
-            }
-        } catch (final RepositoryException e) {
-            LOGGER.log(Level.ERROR, "Load all tags failed", e);
+        final Map<String, String> titleURIs = new HashMap<>();
+        for (final JSONObject tag : TAGS.get()) {
+            titleURIs.put(tag.optString(Tag.TAG_TITLE), tag.optString(Tag.TAG_URI));
         }
+        TITLE_URIS.putAll(titleURIs);
+        TITLE_URIS.keySet().retainAll(titleURIs.keySet());
     }
 }
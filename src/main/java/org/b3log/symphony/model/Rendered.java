@@ -0,0 +1,85 @@
+/*
+ * Symphony - A modern community (forum/BBS/SNS/blog) platform written in Java.
+ * Copyright (C) 2012-2018, b3log.org & hacpai.com
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.b3log.symphony.model;
+
+/**
+ * This class defines all rendered model relevant keys. The id of a rendered is the id of its article or comment.
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.0.0, Oct 25, 2018
+ * @since 3.4.3
+ */
+public final class Rendered {
+
+    /**
+     * Rendered.
+     */
+    public static final String RENDERED = "rendered";
+
+    /**
+     * Key of rendered type.
+     */
+    public static final String RENDERED_TYPE = "renderedType";
+
+    /**
+     * Key of rendered content.
+     */
+    public static final String RENDERED_CONTENT = "renderedContent";
+
+    /**
+     * Key of rendered reward content.
+     */
+    public static final String RENDERED_REWARD_CONTENT = "renderedRewardContent";
+
+    /**
+     * Key of rendered ToC.
+     */
+    public static final String RENDERED_TOC = "renderedToC";
+
+    /**
+     * Key of rendered source hash.
+     */
+    public static final String RENDERED_SOURCE_HASH = "renderedSourceHash";
+
+    /**
+     * Key of rendered version.
+     */
+    public static final String RENDERED_VERSION = "renderedVersion";
+
+    /**
+     * Key of rendered time.
+     */
+    public static final String RENDERED_TIME = "renderedTime";
+
+    //// Type constants
+    /**
+     * Type - Article.
+     */
+    public static final int RENDERED_TYPE_C_ARTICLE = 0;
+
+    /**
+     * Type - Comment.
+     */
+    public static final int RENDERED_TYPE_C_COMMENT = 1;
+
+    /**
+     * Private constructor.
+     */
+    private Rendered() {
+    }
+}
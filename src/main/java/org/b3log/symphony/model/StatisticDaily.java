@@ -0,0 +1,60 @@
+/*
+ * Symphony - A modern community (forum/BBS/SNS/blog) platform written in Java.
+ * Copyright (C) 2012-2018, b3log.org & hacpai.com
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.b3log.symphony.model;
+
+/**
+ * This class defines all daily statistic model relevant keys. The id of a daily statistic is its date formatted
+ * as {@code yyyyMMdd}.
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.0.0, Oct 25, 2018
+ * @since 3.4.3
+ */
+public final class StatisticDaily {
+
+    /**
+     * Daily statistic.
+     */
+    public static final String STATISTIC_DAILY = "statistic_daily";
+
+    /**
+     * Key of new user count.
+     */
+    public static final String STATISTIC_DAILY_USER_CNT = "statisticDailyUserCnt";
+
+    /**
+     * Key of new article count.
+     */
+    public static final String STATISTIC_DAILY_ARTICLE_CNT = "statisticDailyArticleCnt";
+
+    /**
+     * Key of new comment count.
+     */
+    public static final String STATISTIC_DAILY_COMMENT_CNT = "statisticDailyCommentCnt";
+
+    /**
+     * Date format of daily statistic id.
+     */
+    public static final String DATE_FORMAT = "yyyyMMdd";
+
+    /**
+     * Private constructor.
+     */
+    private StatisticDaily() {
+    }
+}
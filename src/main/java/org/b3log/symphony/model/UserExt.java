@@ -28,7 +28,7 @@ import org.json.JSONObject;
  *
  * @author <a href="http://88250.b3log.org">Liang Ding</a>
  * @author Bill Ho
- * @version 2.15.0.0, Aug 29, 2018
+ * @version 2.16.0.0, Oct 25, 2018
  * @see org.b3log.latke.model.User
  * @since 0.2.0
  */
@@ -355,6 +355,11 @@ public final class UserExt {
      */
     public static final String USER_T_ID = "userId";
 
+    /**
+     * Key of user rank in the point balance leaderboard, {@code -1} if not ranked.
+     */
+    public static final String USER_T_POINT_RANK = "userPointRank";
+
     //// User subscription mail status constants
     /**
      * User subscription mail status - enabled.
@@ -19,6 +19,8 @@ package org.b3log.symphony.model.sitemap;
 
 import org.apache.commons.lang.StringUtils;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -31,7 +33,7 @@ import java.util.List;
  * </p>
  *
  * @author <a href="http://88250.b3log.org">Liang Ding</a>
- * @version 1.0.1.0, Nov 15, 2016
+ * @version 1.1.0.0, Oct 25, 2018
  * @since 1.6.0
  */
 public final class Sitemap {
@@ -65,6 +67,27 @@ public final class Sitemap {
         urls.add(url);
     }
 
+    /**
+     * Writes the start of a URL set document to the specified writer, used for streaming large sitemaps.
+     *
+     * @param writer the specified writer
+     * @throws IOException io exception
+     */
+    public static void writeStart(final Writer writer) throws IOException {
+        writer.write(START_DOCUMENT);
+        writer.write(START_URL_SET_ELEMENT);
+    }
+
+    /**
+     * Writes the end of a URL set document to the specified writer.
+     *
+     * @param writer the specified writer
+     * @throws IOException io exception
+     */
+    public static void writeEnd(final Writer writer) throws IOException {
+        writer.write(END_URL_SET_ELEMENT);
+    }
+
     @Override
     public String toString() {
         final StringBuilder stringBuilder = new StringBuilder();
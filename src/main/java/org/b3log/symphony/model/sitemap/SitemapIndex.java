@@ -0,0 +1,93 @@
+/*
+ * Symphony - A modern community (forum/BBS/SNS/blog) platform written in Java.
+ * Copyright (C) 2012-2018, b3log.org & hacpai.com
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.b3log.symphony.model.sitemap;
+
+import org.apache.commons.lang.StringUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sitemap index.
+ *
+ * <p>
+ * See <a href="https://www.sitemaps.org/protocol.html#index">Sitemap index XML format</a>
+ * for more details.
+ * </p>
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.0.0, Oct 25, 2018
+ * @since 3.4.3
+ */
+public final class SitemapIndex {
+
+    /**
+     * Max URL count of a sitemap.
+     */
+    public static final int MAX_URL_CNT = 50000;
+
+    /**
+     * Start document.
+     */
+    private static final String START_DOCUMENT = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>";
+
+    /**
+     * Start sitemap index element.
+     */
+    private static final String START_SITEMAP_INDEX_ELEMENT = "<sitemapindex xmlns=\"http://www.sitemaps.org/schemas/sitemap/0.9\">";
+
+    /**
+     * End sitemap index element.
+     */
+    private static final String END_SITEMAP_INDEX_ELEMENT = "</sitemapindex>";
+
+    /**
+     * Sitemap entries, each entry is [location, last modified].
+     */
+    private final List<String[]> sitemaps = new ArrayList<>();
+
+    /**
+     * Adds a sitemap with the specified location and last modified.
+     *
+     * @param loc     the specified location
+     * @param lastMod the specified last modified, may be {@code null}
+     */
+    public void addSitemap(final String loc, final String lastMod) {
+        sitemaps.add(new String[]{loc, lastMod});
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder stringBuilder = new StringBuilder();
+
+        stringBuilder.append(START_DOCUMENT);
+        stringBuilder.append(START_SITEMAP_INDEX_ELEMENT);
+
+        for (final String[] sitemap : sitemaps) {
+            stringBuilder.append("<sitemap><loc>").append(sitemap[0]).append("</loc>");
+            if (StringUtils.isNotBlank(sitemap[1])) {
+                stringBuilder.append("<lastmod>").append(sitemap[1]).append("</lastmod>");
+            }
+            stringBuilder.append("</sitemap>");
+        }
+
+        stringBuilder.append(END_SITEMAP_INDEX_ELEMENT);
+
+        return stringBuilder.toString();
+    }
+}
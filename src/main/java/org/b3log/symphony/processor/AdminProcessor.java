@@ -28,7 +28,6 @@ import org.b3log.latke.logging.Level;
 import org.b3log.latke.logging.Logger;
 import org.b3log.latke.model.Pagination;
 import org.b3log.latke.model.User;
-import org.b3log.latke.repository.jdbc.JdbcRepository;
 import org.b3log.latke.service.LangPropsService;
 import org.b3log.latke.service.ServiceException;
 import org.b3log.latke.servlet.HTTPRequestContext;
@@ -51,6 +50,7 @@ import org.b3log.symphony.processor.advice.validate.UserRegister2Validation;
 import org.b3log.symphony.processor.advice.validate.UserRegisterValidation;
 import org.b3log.symphony.service.*;
 import org.b3log.symphony.util.Escapes;
+import org.b3log.symphony.util.JSONs;
 import org.b3log.symphony.util.Symphonys;
 import org.json.JSONArray;
 import org.json.JSONObject;
@@ -105,6 +105,7 @@ import java.util.*;
  * <li>Shows miscellaneous (/admin/misc), GET</li>
  * <li>Updates miscellaneous (/admin/misc), POST</li>
  * <li>Rebuilds article search index (/admin/search/index), POST</li>
+ * <li>Shows article search index rebuilding progress (/admin/search/index), GET</li>
  * <li>Rebuilds one article search index(/admin/search-index-article), POST</li>
  * <li>Shows ad (/admin/ad), GET</li>
  * <li>Updates ad (/admin/ad), POST</li>
@@ -119,7 +120,7 @@ import java.util.*;
  * @author <a href="http://88250.b3log.org">Liang Ding</a>
  * @author Bill Ho
  * @author <a href="http://vanessa.b3log.org">Liyuan Li</a>
- * @version 2.29.0.8, Aug 31, 2018
+ * @version 2.30.0.0, Oct 25, 2018
  * @since 1.1.0
  */
 @RequestProcessor
@@ -2742,45 +2743,19 @@ public class AdminProcessor {
     @Before(adviceClass = {StopwatchStartAdvice.class, PermissionCheck.class})
     @After(adviceClass = StopwatchEndAdvice.class)
     public void rebuildArticleSearchIndex(final HTTPRequestContext context) {
-        context.renderJSON(true);
-
-        if (Symphonys.getBoolean("es.enabled")) {
-            searchMgmtService.rebuildESIndex();
-        }
-
-        if (Symphonys.getBoolean("algolia.enabled")) {
-            searchMgmtService.rebuildAlgoliaIndex();
-        }
-
-        new Thread(() -> {
-            try {
-                final JSONObject stat = optionQueryService.getStatistic();
-                final int articleCount = stat.optInt(Option.ID_C_STATISTIC_ARTICLE_COUNT);
-                final int pages = (int) Math.ceil((double) articleCount / 50.0);
-
-                for (int pageNum = 1; pageNum <= pages; pageNum++) {
-                    final List<JSONObject> articles = articleQueryService.getValidArticles(pageNum, 50, Article.ARTICLE_TYPE_C_NORMAL, Article.ARTICLE_TYPE_C_CITY_BROADCAST);
-
-                    for (final JSONObject article : articles) {
-                        if (Symphonys.getBoolean("algolia.enabled")) {
-                            searchMgmtService.updateAlgoliaDocument(article);
-                        }
-
-                        if (Symphonys.getBoolean("es.enabled")) {
-                            searchMgmtService.updateESDocument(article, Article.ARTICLE);
-                        }
-                    }
-
-                    LOGGER.info("Indexed page [" + pageNum + "]");
-                }
+        context.renderJSON(searchMgmtService.reindexArticles());
+    }
 
-                LOGGER.info("Index finished");
-            } catch (final Exception e) {
-                LOGGER.log(Level.ERROR, "Search index failed", e);
-            } finally {
-                JdbcRepository.dispose();
-            }
-        }).start();
+    /**
+     * Gets article search index rebuilding progress.
+     *
+     * @param context the specified context
+     */
+    @RequestProcessing(value = "/admin/search/index", method = HTTPRequestMethod.GET)
+    @Before(adviceClass = {StopwatchStartAdvice.class, PermissionCheck.class})
+    @After(adviceClass = StopwatchEndAdvice.class)
+    public void showArticleSearchIndexProgress(final HTTPRequestContext context) {
+        context.renderJSON(true).renderJSONValue(Common.DATA, searchMgmtService.getReindexProgress());
     }
 
     /**
@@ -2808,11 +2783,11 @@ public class AdminProcessor {
         }
 
         if (Symphonys.getBoolean("algolia.enabled")) {
-            searchMgmtService.updateAlgoliaDocument(article);
+            searchMgmtService.updateAlgoliaDocument(JSONs.clone(article));
         }
 
         if (Symphonys.getBoolean("es.enabled")) {
-            searchMgmtService.updateESDocument(article, Article.ARTICLE);
+            searchMgmtService.updateESDocument(JSONs.clone(article), Article.ARTICLE);
         }
 
         final String articlePermalink = Latkes.getServePath() + article.optString(Article.ARTICLE_PERMALINK);
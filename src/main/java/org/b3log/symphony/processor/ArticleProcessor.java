@@ -21,7 +21,6 @@ import com.qiniu.util.Auth;
 import jodd.util.Base64;
 import org.apache.commons.lang.ArrayUtils;
 import org.apache.commons.lang.StringUtils;
-import org.apache.commons.lang.time.DateUtils;
 import org.b3log.latke.Keys;
 import org.b3log.latke.ioc.Inject;
 import org.b3log.latke.logging.Level;
@@ -37,11 +36,13 @@ import org.b3log.latke.servlet.annotation.Before;
 import org.b3log.latke.servlet.annotation.RequestProcessing;
 import org.b3log.latke.servlet.annotation.RequestProcessor;
 import org.b3log.latke.servlet.renderer.AbstractFreeMarkerRenderer;
+import org.b3log.latke.util.Locales;
 import org.b3log.latke.util.Paginator;
 import org.b3log.latke.util.Requests;
 import org.b3log.latke.util.Stopwatchs;
 import org.b3log.latke.util.Strings;
 import org.b3log.symphony.cache.DomainCache;
+import org.b3log.symphony.cache.PageCache;
 import org.b3log.symphony.model.*;
 import org.b3log.symphony.processor.advice.*;
 import org.b3log.symphony.processor.advice.stopwatch.StopwatchEndAdvice;
@@ -88,7 +89,7 @@ import java.util.List;
  *
  * @author <a href="http://88250.b3log.org">Liang Ding</a>
  * @author <a href="http://zephyr.b3log.org">Zephyr</a>
- * @version 1.27.2.5, Aug 10, 2018
+ * @version 1.27.5.1, Oct 25, 2018
  * @since 0.2.0
  */
 @RequestProcessor
@@ -111,6 +112,12 @@ public class ArticleProcessor {
     @Inject
     private ShortLinkQueryService shortLinkQueryService;
 
+    /**
+     * Page cache.
+     */
+    @Inject
+    private PageCache pageCache;
+
     /**
      * Article management service.
      */
@@ -579,16 +586,13 @@ public class ArticleProcessor {
 
         dataModelService.fillHeaderAndFooter(request, response, dataModel);
 
-        String rewardEditorPlaceholderLabel = langPropsService.get("rewardEditorPlaceholderLabel");
-        rewardEditorPlaceholderLabel = rewardEditorPlaceholderLabel.replace("{point}",
-                String.valueOf(Pointtransfer.TRANSFER_SUM_C_ADD_ARTICLE_REWARD));
-        dataModel.put("rewardEditorPlaceholderLabel", rewardEditorPlaceholderLabel);
+        final LabelBundle labelBundle = LabelBundle.get(Locales.getLocale());
+        dataModel.put("rewardEditorPlaceholderLabel", labelBundle.format("rewardEditorPlaceholderLabel",
+                "point", Pointtransfer.TRANSFER_SUM_C_ADD_ARTICLE_REWARD));
         dataModel.put(Common.BROADCAST_POINT, Pointtransfer.TRANSFER_SUM_C_ADD_ARTICLE_BROADCAST);
 
-        String articleContentErrorLabel = langPropsService.get("articleContentErrorLabel");
-        articleContentErrorLabel = articleContentErrorLabel.replace("{maxArticleContentLength}",
-                String.valueOf(ArticleAddValidation.MAX_ARTICLE_CONTENT_LENGTH));
-        dataModel.put("articleContentErrorLabel", articleContentErrorLabel);
+        dataModel.put("articleContentErrorLabel", labelBundle.format("articleContentErrorLabel",
+                "maxArticleContentLength", ArticleAddValidation.MAX_ARTICLE_CONTENT_LENGTH));
 
         fillPostArticleRequisite(dataModel, currentUser);
         fillDomainsWithTags(dataModel);
@@ -635,6 +639,7 @@ public class ArticleProcessor {
             return;
         }
 
+        pageCache.dependOnArticle(request, articleId);
         dataModelService.fillHeaderAndFooter(request, response, dataModel);
 
         final String authorId = article.optString(Article.ARTICLE_AUTHOR_ID);
@@ -700,31 +705,14 @@ public class ArticleProcessor {
         }
 
         if (!(Boolean) request.getAttribute(Keys.HttpRequest.IS_SEARCH_ENGINE_BOT)) {
-            final long created = System.currentTimeMillis();
-            final long expired = DateUtils.addMonths(new Date(created), 1).getTime();
-            final String ip = Requests.getRemoteAddr(request);
-            final String ua = Headers.getHeader(request, Common.USER_AGENT, "");
-            final String referer = Headers.getHeader(request, "Referer", "");
-            final JSONObject visit = new JSONObject();
-            visit.put(Visit.VISIT_IP, ip);
-            visit.put(Visit.VISIT_CITY, "");
-            visit.put(Visit.VISIT_CREATED, created);
-            visit.put(Visit.VISIT_DEVICE_ID, "");
-            visit.put(Visit.VISIT_EXPIRED, expired);
-            visit.put(Visit.VISIT_REFERER_URL, referer);
-            visit.put(Visit.VISIT_UA, ua);
-            visit.put(Visit.VISIT_URL, "/article/" + articleId);
-            visit.put(Visit.VISIT_USER_ID, "");
-            if (null != viewer) {
-                visit.put(Visit.VISIT_USER_ID, viewer.optString(Keys.OBJECT_ID));
-            }
-
-            articleMgmtService.incArticleViewCount(visit);
+            articleMgmtService.incArticleViewCount(request, articleId);
         }
 
-        dataModelService.fillRelevantArticles(avatarViewMode, dataModel, article);
-        dataModelService.fillRandomArticles(dataModel);
-        dataModelService.fillSideHotArticles(dataModel);
+        if (!Skins.isFragmentRequest(request, renderer.getTemplateName())) {
+            dataModelService.fillRelevantArticles(avatarViewMode, dataModel, article);
+            dataModelService.fillRandomArticles(dataModel);
+            dataModelService.fillSideHotArticles(dataModel);
+        }
 
         // Qiniu file upload authenticate
         final Auth auth = Auth.create(Symphonys.get("qiniu.accessKey"), Symphonys.get("qiniu.secretKey"));
@@ -767,9 +755,8 @@ public class ArticleProcessor {
         dataModel.put(Article.ARTICLE_T_PREVIOUS, previous);
         dataModel.put(Article.ARTICLE_T_NEXT, next);
 
-        String stickConfirmLabel = langPropsService.get("stickConfirmLabel");
-        stickConfirmLabel = stickConfirmLabel.replace("{point}", Symphonys.get("pointStickArticle"));
-        dataModel.put("stickConfirmLabel", stickConfirmLabel);
+        final LabelBundle labelBundle = LabelBundle.get(Locales.getLocale());
+        dataModel.put("stickConfirmLabel", labelBundle.format("stickConfirmLabel", "point", Symphonys.get("pointStickArticle")));
         dataModel.put("pointThankArticle", Symphonys.get("pointThankArticle"));
         final int pageNum = Paginator.getPage(request);
         final int pageSize = Symphonys.getInt("articleCommentsPageSize");
@@ -805,10 +792,9 @@ public class ArticleProcessor {
             niceCmtScore = niceComments.get(niceComments.size() - 1).optDouble(Comment.COMMENT_SCORE, 0D);
 
             for (final JSONObject comment : niceComments) {
-                String thankTemplate = langPropsService.get("thankConfirmLabel");
-                thankTemplate = thankTemplate.replace("{point}", String.valueOf(Symphonys.getInt("pointThankComment")))
-                        .replace("{user}", comment.optJSONObject(Comment.COMMENT_T_COMMENTER).optString(User.USER_NAME));
-                comment.put(Comment.COMMENT_T_THANK_LABEL, thankTemplate);
+                comment.put(Comment.COMMENT_T_THANK_LABEL, labelBundle.format("thankConfirmLabel",
+                        "point", Symphonys.getInt("pointThankComment"),
+                        "user", comment.optJSONObject(Comment.COMMENT_T_COMMENTER).optString(User.USER_NAME)));
 
                 final String commentId = comment.optString(Keys.OBJECT_ID);
                 if (isLoggedIn) {
@@ -837,13 +823,12 @@ public class ArticleProcessor {
         // Fill comment thank
         Stopwatchs.start("Fills comment thank");
         try {
-            final String thankTemplate = langPropsService.get("thankConfirmLabel");
             for (final JSONObject comment : articleComments) {
                 comment.put(Comment.COMMENT_T_NICE, comment.optDouble(Comment.COMMENT_SCORE, 0D) >= niceCmtScore);
 
-                final String thankStr = thankTemplate.replace("{point}", String.valueOf(Symphonys.getInt("pointThankComment")))
-                        .replace("{user}", comment.optJSONObject(Comment.COMMENT_T_COMMENTER).optString(User.USER_NAME));
-                comment.put(Comment.COMMENT_T_THANK_LABEL, thankStr);
+                comment.put(Comment.COMMENT_T_THANK_LABEL, labelBundle.format("thankConfirmLabel",
+                        "point", Symphonys.getInt("pointThankComment"),
+                        "user", comment.optJSONObject(Comment.COMMENT_T_COMMENTER).optString(User.USER_NAME)));
 
                 final String commentId = comment.optString(Keys.OBJECT_ID);
                 if (isLoggedIn) {
@@ -1050,10 +1035,9 @@ public class ArticleProcessor {
 
         fillDomainsWithTags(dataModel);
 
-        String rewardEditorPlaceholderLabel = langPropsService.get("rewardEditorPlaceholderLabel");
-        rewardEditorPlaceholderLabel = rewardEditorPlaceholderLabel.replace("{point}",
-                String.valueOf(Pointtransfer.TRANSFER_SUM_C_ADD_ARTICLE_REWARD));
-        dataModel.put("rewardEditorPlaceholderLabel", rewardEditorPlaceholderLabel);
+        final LabelBundle labelBundle = LabelBundle.get(Locales.getLocale());
+        dataModel.put("rewardEditorPlaceholderLabel", labelBundle.format("rewardEditorPlaceholderLabel",
+                "point", Pointtransfer.TRANSFER_SUM_C_ADD_ARTICLE_REWARD));
         dataModel.put(Common.BROADCAST_POINT, Pointtransfer.TRANSFER_SUM_C_ADD_ARTICLE_BROADCAST);
 
         fillPostArticleRequisite(dataModel, currentUser);
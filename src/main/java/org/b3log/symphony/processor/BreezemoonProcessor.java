@@ -45,6 +45,7 @@ import org.b3log.symphony.service.OptionQueryService;
 import org.b3log.symphony.util.Geos;
 import org.b3log.symphony.util.Headers;
 import org.b3log.symphony.util.StatusCodes;
+import org.b3log.symphony.util.Skins;
 import org.b3log.symphony.util.Symphonys;
 import org.json.JSONObject;
 
@@ -65,7 +66,7 @@ import java.util.Map;
  * </ul>
  *
  * @author <a href="http://88250.b3log.org">Liang Ding</a>
- * @version 1.0.1.1, Sep 4, 2018
+ * @version 1.0.3.1, Oct 25, 2018
  * @since 2.8.0
  */
 @RequestProcessor
@@ -136,15 +137,18 @@ public class BreezemoonProcessor {
         }
 
         final int windowSize = Symphonys.getInt("latestArticlesWindowSize");
-        final JSONObject result = breezemoonQueryService.getFollowingUserBreezemoons(avatarViewMode, currentUserId, pageNum, pageSize, windowSize);
+        final JSONObject result = breezemoonQueryService.getFollowingUserBreezemoons(avatarViewMode, currentUserId,
+                request.getParameter("before"), pageNum, pageSize, windowSize);
         final List<JSONObject> bms = (List<JSONObject>) result.opt(Breezemoon.BREEZEMOONS);
         dataModel.put(Common.WATCHING_BREEZEMOONS, bms);
 
         dataModelService.fillHeaderAndFooter(request, response, dataModel);
-        dataModelService.fillRandomArticles(dataModel);
-        dataModelService.fillSideHotArticles(dataModel);
-        dataModelService.fillSideTags(dataModel);
-        dataModelService.fillLatestCmts(dataModel);
+        if (!Skins.isFragmentRequest(request, renderer.getTemplateName())) {
+            dataModelService.fillRandomArticles(dataModel);
+            dataModelService.fillSideHotArticles(dataModel);
+            dataModelService.fillSideTags(dataModel);
+            dataModelService.fillLatestCmts(dataModel);
+        }
 
         dataModel.put(Common.SELECTED, Common.WATCH);
         dataModel.put(Common.CURRENT, StringUtils.substringAfter(request.getRequestURI(), "/watch"));
@@ -19,6 +19,7 @@ package org.b3log.symphony.processor;
 
 import com.qiniu.util.Auth;
 import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.math.NumberUtils;
 import org.b3log.latke.Keys;
 import org.b3log.latke.ioc.Inject;
 import org.b3log.latke.logging.Level;
@@ -51,10 +52,8 @@ import org.jsoup.Jsoup;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 import static org.b3log.symphony.processor.channel.ChatRoomChannel.SESSIONS;
 
@@ -63,11 +62,12 @@ import static org.b3log.symphony.processor.channel.ChatRoomChannel.SESSIONS;
  * <ul>
  * <li>Shows char room (/cr), GET</li>
  * <li>Sends chat message (/chat-room/send), POST</li>
+ * <li>Gets older chat messages (/chat-room/more), GET</li>
  * <li>Receives <a href="https://github.com/b3log/xiaov">XiaoV</a> message (/community/push), POST</li>
  * </ul>
  *
  * @author <a href="http://88250.b3log.org">Liang Ding</a>
- * @version 1.3.5.16, Oct 21, 2018
+ * @version 1.4.0.0, Oct 25, 2018
  * @since 1.4.0
  */
 @RequestProcessor
@@ -79,15 +79,16 @@ public class ChatRoomProcessor {
     private static final Logger LOGGER = Logger.getLogger(ChatRoomProcessor.class);
 
     /**
-     * Chat messages.
+     * Data model service.
      */
-    public static LinkedList<JSONObject> messages = new LinkedList<>();
+    @Inject
+    private DataModelService dataModelService;
 
     /**
-     * Data model service.
+     * Chat room management service.
      */
     @Inject
-    private DataModelService dataModelService;
+    private ChatRoomMgmtService chatRoomMgmtService;
 
     /**
      * Turing query service.
@@ -227,7 +228,7 @@ public class ChatRoomProcessor {
      */
     @RequestProcessing(value = "/chat-room/send", method = HTTPRequestMethod.POST)
     @Before(adviceClass = {LoginCheck.class, ChatMsgAddValidation.class})
-    public synchronized void addChatRoomMsg(final HTTPRequestContext context, final HttpServletRequest request) {
+    public void addChatRoomMsg(final HTTPRequestContext context, final HttpServletRequest request) {
         context.renderJSON();
 
         final JSONObject requestJSONObject = (JSONObject) request.getAttribute(Keys.REQUEST);
@@ -248,11 +249,7 @@ public class ChatRoomProcessor {
         msg.put(Common.CONTENT, content);
         msg.put(Common.TIME, System.currentTimeMillis());
 
-        messages.addFirst(msg);
-        final int maxCnt = Symphonys.getInt("chatRoom.msgCnt");
-        if (messages.size() > maxCnt) {
-            messages.remove(maxCnt);
-        }
+        chatRoomMgmtService.addMessage(msg);
 
         final JSONObject pushMsg = JSONs.clone(msg);
         pushMsg.put(Common.TIME, Times.getTimeAgo(msg.optLong(Common.TIME), Locales.getLocale()));
@@ -268,10 +265,7 @@ public class ChatRoomProcessor {
                 xiaoVMsg.put(Common.CONTENT, "<p>@" + userName + " " + xiaoVSaid + "</p>");
                 xiaoVMsg.put(Common.TIME, System.currentTimeMillis());
 
-                messages.addFirst(xiaoVMsg);
-                if (messages.size() > maxCnt) {
-                    messages.remove(maxCnt);
-                }
+                chatRoomMgmtService.addMessage(xiaoVMsg);
 
                 final JSONObject pushXiaoVMsg = JSONs.clone(xiaoVMsg);
                 pushXiaoVMsg.put(Common.TIME, Times.getTimeAgo(System.currentTimeMillis(), Locales.getLocale()));
@@ -307,9 +301,7 @@ public class ChatRoomProcessor {
         renderer.setTemplateName("chat-room.ftl");
         final Map<String, Object> dataModel = renderer.getDataModel();
 
-        final List<JSONObject> msgs = messages.stream().
-                map(msg -> JSONs.clone(msg).put(Common.TIME, Times.getTimeAgo(msg.optLong(Common.TIME), Locales.getLocale()))).collect(Collectors.toList());
-        dataModel.put(Common.MESSAGES, msgs);
+        dataModel.put(Common.MESSAGES, chatRoomMgmtService.getLatestMessages());
         dataModel.put("chatRoomMsgCnt", Symphonys.getInt("chatRoom.msgCnt"));
 
         // Qiniu file upload authenticate
@@ -330,6 +322,24 @@ public class ChatRoomProcessor {
         dataModelService.fillLatestCmts(dataModel);
     }
 
+    /**
+     * Gets chat messages older than the specified message.
+     *
+     * @param context the specified context
+     * @param request the specified request
+     */
+    @RequestProcessing(value = "/chat-room/more", method = HTTPRequestMethod.GET)
+    @Before(adviceClass = {StopwatchStartAdvice.class, AnonymousViewCheck.class})
+    @After(adviceClass = StopwatchEndAdvice.class)
+    public void getOlderChatRoomMsgs(final HTTPRequestContext context, final HttpServletRequest request) {
+        final long before = NumberUtils.toLong(request.getParameter("before"), Long.MAX_VALUE);
+
+        final JSONObject ret = new JSONObject();
+        ret.put(Keys.STATUS_CODE, true);
+        ret.put(Common.MESSAGES, (Object) chatRoomMgmtService.getOlderMessages(before));
+        context.renderJSON(ret);
+    }
+
     /**
      * XiaoV push API.
      *
@@ -341,7 +351,7 @@ public class ChatRoomProcessor {
     @RequestProcessing(value = "/community/push", method = HTTPRequestMethod.POST)
     @Before(adviceClass = StopwatchStartAdvice.class)
     @After(adviceClass = StopwatchEndAdvice.class)
-    public synchronized void receiveXiaoV(final HTTPRequestContext context, final HttpServletRequest request, final HttpServletResponse response) throws Exception {
+    public void receiveXiaoV(final HTTPRequestContext context, final HttpServletRequest request, final HttpServletResponse response) throws Exception {
         final String key = Symphonys.get("xiaov.key");
         if (!key.equals(request.getParameter("key"))) {
             response.sendError(HttpServletResponse.SC_FORBIDDEN);
@@ -368,13 +378,12 @@ public class ChatRoomProcessor {
         chatroomMsg.put(User.USER_NAME, user);
         chatroomMsg.put(UserExt.USER_AVATAR_URL, AvatarQueryService.DEFAULT_AVATAR_URL);
         chatroomMsg.put(Common.CONTENT, msg);
+        chatroomMsg.put(Common.TIME, System.currentTimeMillis());
 
-        ChatRoomChannel.notifyChat(chatroomMsg);
-        messages.addFirst(chatroomMsg);
-        final int maxCnt = Symphonys.getInt("chatRoom.msgCnt");
-        if (messages.size() > maxCnt) {
-            messages.remove(maxCnt);
-        }
+        final JSONObject pushMsg = JSONs.clone(chatroomMsg);
+        pushMsg.put(Common.TIME, Times.getTimeAgo(chatroomMsg.optLong(Common.TIME), Locales.getLocale()));
+        ChatRoomChannel.notifyChat(pushMsg);
+        chatRoomMgmtService.addMessage(chatroomMsg);
 
         ret.put(Keys.STATUS_CODE, true);
     }
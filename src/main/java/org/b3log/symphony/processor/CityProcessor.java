@@ -61,7 +61,7 @@ import java.util.Map;
  *
  * @author <a href="http://88250.b3log.org">Liang Ding</a>
  * @author <a href="http://zephyr.b3log.org">Zephyr</a>
- * @version 1.3.1.10, Aug 9, 2018
+ * @version 1.3.2.0, Oct 25, 2018
  * @since 1.3.0
  */
 @RequestProcessor
@@ -85,6 +85,12 @@ public class CityProcessor {
     @Inject
     private OptionQueryService optionQueryService;
 
+    /**
+     * Presence management service.
+     */
+    @Inject
+    private PresenceMgmtService presenceMgmtService;
+
     /**
      * Avatar query service.
      */
@@ -275,7 +281,9 @@ public class CityProcessor {
         final JSONObject pagination = result.optJSONObject(Pagination.PAGINATION);
         if (null != cityUsers && cityUsers.length() > 0) {
             for (int i = 0; i < cityUsers.length(); i++) {
-                users.add(cityUsers.getJSONObject(i));
+                final JSONObject cityUser = cityUsers.getJSONObject(i);
+                presenceMgmtService.fillOnlineFlag(cityUser);
+                users.add(cityUser);
             }
             dataModel.put(User.USERS, users);
         }
@@ -29,12 +29,14 @@ import org.b3log.latke.servlet.annotation.RequestProcessing;
 import org.b3log.latke.servlet.annotation.RequestProcessor;
 import org.b3log.latke.servlet.renderer.AbstractFreeMarkerRenderer;
 import org.b3log.latke.util.Paginator;
+import org.b3log.symphony.cache.PageCache;
 import org.b3log.symphony.model.*;
 import org.b3log.symphony.processor.advice.AnonymousViewCheck;
 import org.b3log.symphony.processor.advice.PermissionGrant;
 import org.b3log.symphony.processor.advice.stopwatch.StopwatchEndAdvice;
 import org.b3log.symphony.processor.advice.stopwatch.StopwatchStartAdvice;
 import org.b3log.symphony.service.*;
+import org.b3log.symphony.util.Skins;
 import org.b3log.symphony.util.Symphonys;
 import org.json.JSONObject;
 
@@ -51,12 +53,18 @@ import java.util.Map;
  * </ul>
  *
  * @author <a href="http://88250.b3log.org">Liang Ding</a>
- * @version 1.1.0.11, Apr 6, 2018
+ * @version 1.1.2.1, Oct 25, 2018
  * @since 1.4.0
  */
 @RequestProcessor
 public class DomainProcessor {
 
+    /**
+     * Page cache.
+     */
+    @Inject
+    private PageCache pageCache;
+
     /**
      * Article query service.
      */
@@ -154,11 +162,14 @@ public class DomainProcessor {
         dataModel.put(Pagination.PAGINATION_PAGE_COUNT, pageCount);
         dataModel.put(Pagination.PAGINATION_PAGE_NUMS, pageNums);
 
+        pageCache.dependOnIndex(request);
         dataModelService.fillHeaderAndFooter(request, response, dataModel);
-        dataModelService.fillRandomArticles(dataModel);
-        dataModelService.fillSideHotArticles(dataModel);
-        dataModelService.fillSideTags(dataModel);
-        dataModelService.fillLatestCmts(dataModel);
+        if (!Skins.isFragmentRequest(request, renderer.getTemplateName())) {
+            dataModelService.fillRandomArticles(dataModel);
+            dataModelService.fillSideHotArticles(dataModel);
+            dataModelService.fillSideTags(dataModel);
+            dataModelService.fillLatestCmts(dataModel);
+        }
     }
 
     /**
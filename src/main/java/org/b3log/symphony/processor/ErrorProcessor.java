@@ -21,7 +21,6 @@ import org.apache.commons.lang.StringUtils;
 import org.b3log.latke.ioc.Inject;
 import org.b3log.latke.logging.Level;
 import org.b3log.latke.logging.Logger;
-import org.b3log.latke.service.LangPropsService;
 import org.b3log.latke.servlet.HTTPRequestContext;
 import org.b3log.latke.servlet.HTTPRequestMethod;
 import org.b3log.latke.servlet.annotation.After;
@@ -29,7 +28,6 @@ import org.b3log.latke.servlet.annotation.Before;
 import org.b3log.latke.servlet.annotation.RequestProcessing;
 import org.b3log.latke.servlet.annotation.RequestProcessor;
 import org.b3log.latke.servlet.renderer.AbstractFreeMarkerRenderer;
-import org.b3log.latke.util.Locales;
 import org.b3log.symphony.processor.advice.PermissionGrant;
 import org.b3log.symphony.processor.advice.stopwatch.StopwatchEndAdvice;
 import org.b3log.symphony.processor.advice.stopwatch.StopwatchStartAdvice;
@@ -43,7 +41,7 @@ import java.util.Map;
  * Error processor.
  *
  * @author <a href="http://88250.b3log.org">Liang Ding</a>
- * @version 1.2.0.10, Jun 2, 2018
+ * @version 1.2.0.11, Oct 25, 2018
  * @since 0.2.0
  */
 @RequestProcessor
@@ -54,12 +52,6 @@ public class ErrorProcessor {
      */
     private static final Logger LOGGER = Logger.getLogger(ErrorProcessor.class);
 
-    /**
-     * Language service.
-     */
-    @Inject
-    private LangPropsService langPropsService;
-
     /**
      * Data model service.
      */
@@ -89,7 +81,6 @@ public class ErrorProcessor {
             context.setRenderer(renderer);
 
             final Map<String, Object> dataModel = renderer.getDataModel();
-            dataModel.putAll(langPropsService.getAll(Locales.getLocale()));
             dataModelService.fillHeaderAndFooter(request, response, dataModel);
             dataModelService.fillSideHotArticles(dataModel);
             dataModelService.fillRandomArticles(dataModel);
@@ -17,6 +17,7 @@
  */
 package org.b3log.symphony.processor;
 
+import org.apache.commons.lang.StringUtils;
 import org.b3log.latke.Keys;
 import org.b3log.latke.Latkes;
 import org.b3log.latke.ioc.Inject;
@@ -27,11 +28,12 @@ import org.b3log.latke.servlet.HTTPRequestContext;
 import org.b3log.latke.servlet.HTTPRequestMethod;
 import org.b3log.latke.servlet.annotation.RequestProcessing;
 import org.b3log.latke.servlet.annotation.RequestProcessor;
-import org.b3log.latke.servlet.renderer.RssRenderer;
 import org.b3log.latke.util.Locales;
 import org.b3log.symphony.SymphonyServletListener;
+import org.b3log.symphony.cache.FeedCache;
 import org.b3log.symphony.model.Article;
 import org.b3log.symphony.model.Option;
+import org.b3log.symphony.model.Tag;
 import org.b3log.symphony.model.UserExt;
 import org.b3log.symphony.model.feed.RSSCategory;
 import org.b3log.symphony.model.feed.RSSChannel;
@@ -41,12 +43,16 @@ import org.b3log.symphony.service.DomainQueryService;
 import org.b3log.symphony.service.OptionQueryService;
 import org.b3log.symphony.service.ShortLinkQueryService;
 import org.b3log.symphony.util.Emotions;
+import org.b3log.symphony.util.FeedStore;
 import org.b3log.symphony.util.Markdowns;
+import org.b3log.symphony.util.StaticFiles;
 import org.b3log.symphony.util.Symphonys;
 import org.json.JSONObject;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 
@@ -57,9 +63,12 @@ import java.util.List;
  * <li>Generates recent articles' RSS (/rss/recent.xml), GET/HEAD</li>
  * <li>Generates domain articles' RSS (/rss/domain/{domainURL}.xml), GET/HEAD</li>
  * </ul>
+ * <p>
+ * Feeds are served from {@link FeedCache} with an ETag and a last modified time.
+ * </p>
  *
  * @author <a href="http://88250.b3log.org">Liang Ding</a>
- * @version 1.0.0.1, Aug 20, 2018
+ * @version 1.1.0.0, Oct 25, 2018
  * @since 3.1.0
  */
 @RequestProcessor
@@ -100,6 +109,12 @@ public class FeedProcessor {
     @Inject
     private ShortLinkQueryService shortLinkQueryService;
 
+    /**
+     * Feed cache.
+     */
+    @Inject
+    private FeedCache feedCache;
+
     /**
      * Generates recent articles' RSS.
      *
@@ -107,29 +122,15 @@ public class FeedProcessor {
      */
     @RequestProcessing(value = "/rss/recent.xml", method = {HTTPRequestMethod.GET, HTTPRequestMethod.HEAD})
     public void genRecentRSS(final HTTPRequestContext context) {
-        final RssRenderer renderer = new RssRenderer();
-        context.setRenderer(renderer);
-
         try {
-            final RSSChannel channel = new RSSChannel();
-            final JSONObject result = articleQueryService.getRecentArticles(UserExt.USER_AVATAR_VIEW_MODE_C_STATIC, 0, 1, Symphonys.getInt("indexArticlesCnt"));
-            final List<JSONObject> articles = (List<JSONObject>) result.get(Article.ARTICLES);
-            for (int i = 0; i < articles.size(); i++) {
-                RSSItem item = getItem(articles, i);
-                channel.addItem(item);
-            }
-            channel.setTitle(langPropsService.get("symphonyLabel"));
-            channel.setLastBuildDate(new Date());
-            channel.setLink(Latkes.getServePath());
-            channel.setAtomLink(Latkes.getServePath() + "/rss/recent.xml");
-            channel.setGenerator("Symphony v" + SymphonyServletListener.VERSION + ", https://sym.b3log.org");
-            final String localeString = optionQueryService.getOption("miscLanguage").optString(Option.OPTION_VALUE);
-            final String country = Locales.getCountry(localeString).toLowerCase();
-            final String language = Locales.getLanguage(localeString).toLowerCase();
-            channel.setLanguage(language + '-' + country);
-            channel.setDescription(langPropsService.get("symDescriptionLabel"));
-
-            renderer.setContent(channel.toString());
+            final FeedStore.Feed feed = feedCache.get("/rss/recent.xml", () -> {
+                final JSONObject result = articleQueryService.getRecentArticles(UserExt.USER_AVATAR_VIEW_MODE_C_STATIC, 0, 1, Symphonys.getInt("indexArticlesCnt"));
+                final List<JSONObject> articles = (List<JSONObject>) result.get(Article.ARTICLES);
+
+                return new FeedStore.Feed(genChannel(articles, "/rss/recent.xml").toString(), null);
+            });
+
+            send(context, feed);
         } catch (final Exception e) {
             LOGGER.log(Level.ERROR, "Generates recent articles' RSS failed", e);
 
@@ -148,37 +149,31 @@ public class FeedProcessor {
      */
     @RequestProcessing(value = "/rss/domain/{domainURI}.xml", method = {HTTPRequestMethod.GET, HTTPRequestMethod.HEAD})
     public void genDomainRSS(final HTTPRequestContext context, final String domainURI) {
-        final RssRenderer renderer = new RssRenderer();
-        context.setRenderer(renderer);
-
         try {
-            final JSONObject domain = domainQueryService.getByURI(domainURI);
-            if (null == domain) {
+            final FeedStore.Feed feed = feedCache.get("/rss/domain/" + domainURI + ".xml", () -> {
+                final JSONObject domain = domainQueryService.getByURI(domainURI);
+                if (null == domain) {
+                    return null;
+                }
+
+                final String domainId = domain.optString(Keys.OBJECT_ID);
+                final JSONObject result = articleQueryService.getDomainArticles(UserExt.USER_AVATAR_VIEW_MODE_C_STATIC, domainId, 1, Symphonys.getInt("indexArticlesCnt"));
+                final List<JSONObject> articles = (List<JSONObject>) result.get(Article.ARTICLES);
+                final List<String> tagTitles = new ArrayList<>();
+                for (final JSONObject tag : domainQueryService.getTags(domainId)) {
+                    tagTitles.add(tag.optString(Tag.TAG_TITLE));
+                }
+
+                return new FeedStore.Feed(genChannel(articles, "/rss/" + domainURI + ".xml").toString(), tagTitles);
+            });
+
+            if (null == feed) {
                 context.getResponse().sendError(HttpServletResponse.SC_NOT_FOUND);
 
                 return;
             }
 
-            final RSSChannel channel = new RSSChannel();
-            final String domainId = domain.optString(Keys.OBJECT_ID);
-            final JSONObject result = articleQueryService.getDomainArticles(UserExt.USER_AVATAR_VIEW_MODE_C_STATIC, domainId, 1, Symphonys.getInt("indexArticlesCnt"));
-            final List<JSONObject> articles = (List<JSONObject>) result.get(Article.ARTICLES);
-            for (int i = 0; i < articles.size(); i++) {
-                RSSItem item = getItem(articles, i);
-                channel.addItem(item);
-            }
-            channel.setTitle(langPropsService.get("symphonyLabel"));
-            channel.setLastBuildDate(new Date());
-            channel.setLink(Latkes.getServePath());
-            channel.setAtomLink(Latkes.getServePath() + "/rss/" + domainURI + ".xml");
-            channel.setGenerator("Symphony v" + SymphonyServletListener.VERSION + ", https://sym.b3log.org");
-            final String localeString = optionQueryService.getOption("miscLanguage").optString(Option.OPTION_VALUE);
-            final String country = Locales.getCountry(localeString).toLowerCase();
-            final String language = Locales.getLanguage(localeString).toLowerCase();
-            channel.setLanguage(language + '-' + country);
-            channel.setDescription(langPropsService.get("symDescriptionLabel"));
-
-            renderer.setContent(channel.toString());
+            send(context, feed);
         } catch (final Exception e) {
             LOGGER.log(Level.ERROR, "Generates recent articles' RSS failed", e);
 
@@ -190,6 +185,75 @@ public class FeedProcessor {
         }
     }
 
+    /**
+     * Sends the specified feed, responds 304 if the conditional headers match, gzipped if accepted.
+     *
+     * @param context the specified context
+     * @param feed    the specified feed
+     * @throws IOException io exception
+     */
+    private static void send(final HTTPRequestContext context, final FeedStore.Feed feed) throws IOException {
+        final HttpServletRequest request = context.getRequest();
+        final HttpServletResponse response = context.getResponse();
+        response.setHeader("ETag", feed.getETag());
+        response.setDateHeader("Last-Modified", feed.getLastModified());
+        response.setHeader("Cache-Control", "no-cache");
+        response.setHeader("Vary", "Accept-Encoding");
+        if (StaticFiles.isNotModified(request, feed.getETag(), feed.getLastModified())) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+
+            return;
+        }
+
+        response.setContentType("application/rss+xml");
+        response.setCharacterEncoding("UTF-8");
+        final byte[] body;
+        if (StringUtils.containsIgnoreCase(request.getHeader("Accept-Encoding"), "gzip")) {
+            response.setHeader("Content-Encoding", "gzip");
+            body = feed.getGzipBody();
+        } else {
+            body = feed.getBody();
+        }
+        response.setContentLength(body.length);
+        if (HTTPRequestMethod.HEAD.name().equals(request.getMethod())) {
+            return;
+        }
+
+        response.getOutputStream().write(body);
+    }
+
+    /**
+     * Generates a channel of the specified articles.
+     *
+     * @param articles the specified articles
+     * @param path     the specified path of the channel
+     * @return channel
+     * @throws Exception exception
+     */
+    private RSSChannel genChannel(final List<JSONObject> articles, final String path) throws Exception {
+        final RSSChannel ret = new RSSChannel();
+        Date lastBuildDate = null;
+        for (int i = 0; i < articles.size(); i++) {
+            RSSItem item = getItem(articles, i);
+            ret.addItem(item);
+            if (null == lastBuildDate || item.getPubDate().after(lastBuildDate)) {
+                lastBuildDate = item.getPubDate();
+            }
+        }
+        ret.setTitle(langPropsService.get("symphonyLabel"));
+        ret.setLastBuildDate(null == lastBuildDate ? new Date() : lastBuildDate);
+        ret.setLink(Latkes.getServePath());
+        ret.setAtomLink(Latkes.getServePath() + path);
+        ret.setGenerator("Symphony v" + SymphonyServletListener.VERSION + ", https://sym.b3log.org");
+        final String localeString = optionQueryService.getOption("miscLanguage").optString(Option.OPTION_VALUE);
+        final String country = Locales.getCountry(localeString).toLowerCase();
+        final String language = Locales.getLanguage(localeString).toLowerCase();
+        ret.setLanguage(language + '-' + country);
+        ret.setDescription(langPropsService.get("symDescriptionLabel"));
+
+        return ret;
+    }
+
     private RSSItem getItem(final List<JSONObject> articles, int i) throws org.json.JSONException {
         final JSONObject article = articles.get(i);
         final RSSItem ret = new RSSItem();
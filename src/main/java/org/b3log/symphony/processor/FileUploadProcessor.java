@@ -20,12 +20,9 @@ package org.b3log.symphony.processor;
 import jodd.io.FileUtil;
 import jodd.io.upload.FileUpload;
 import jodd.io.upload.MultipartStreamParser;
-import jodd.io.upload.impl.MemoryFileUploadFactory;
 import jodd.net.MimeTypes;
-import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
-import org.apache.commons.lang.time.DateFormatUtils;
 import org.b3log.latke.Latkes;
 import org.b3log.latke.logging.Level;
 import org.b3log.latke.logging.Logger;
@@ -33,7 +30,9 @@ import org.b3log.latke.servlet.HTTPRequestMethod;
 import org.b3log.latke.servlet.annotation.RequestProcessing;
 import org.b3log.latke.servlet.annotation.RequestProcessor;
 import org.b3log.latke.util.Strings;
-import org.b3log.symphony.SymphonyServletListener;
+import org.b3log.symphony.util.SpoolFileUploadFactory;
+import org.b3log.symphony.util.SpoolFileUploadFactory.SpoolFileUpload;
+import org.b3log.symphony.util.StaticFiles;
 import org.b3log.symphony.util.Symphonys;
 import org.json.JSONObject;
 
@@ -41,16 +40,14 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.*;
 import java.net.URLDecoder;
-import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.UUID;
 
 /**
  * File upload to local.
  *
  * @author <a href="http://88250.b3log.org">Liang Ding</a>
  * @author <a href="http://vanessa.b3log.org">Liyuan Li</a>
- * @version 2.0.0.3, Oct 20, 2018
+ * @version 2.2.2.0, Oct 25, 2018
  * @since 1.4.0
  */
 @RequestProcessor
@@ -71,6 +68,11 @@ public class FileUploadProcessor {
      */
     private static final Boolean QN_ENABLED = Symphonys.getBoolean("qiniu.enabled");
 
+    /**
+     * Spool directory of uploading files, out of the upload directory.
+     */
+    private static final File SPOOL_DIR = new File(Symphonys.get("upload.spoolDir"));
+
     static {
         if (!QN_ENABLED) {
             final File file = new File(UPLOAD_DIR);
@@ -109,37 +111,15 @@ public class FileUploadProcessor {
         String path = UPLOAD_DIR + key;
         path = URLDecoder.decode(path, "UTF-8");
 
-        if (!FileUtil.isExistingFile(new File(path)) ||
-                !FileUtil.isExistingFolder(new File(UPLOAD_DIR)) ||
-                !new File(path).getCanonicalPath().startsWith(new File(UPLOAD_DIR).getCanonicalPath())) {
+        final File file = new File(path);
+        if (!FileUtil.isExistingFile(file) || !FileUtil.isExistingFolder(new File(UPLOAD_DIR))
+                || !isUnder(file, new File(UPLOAD_DIR)) || isUnder(file, SPOOL_DIR)) {
             resp.sendError(HttpServletResponse.SC_NOT_FOUND);
 
             return;
         }
 
-        final byte[] data = IOUtils.toByteArray(new FileInputStream(path));
-
-        final String ifNoneMatch = req.getHeader("If-None-Match");
-        final String etag = "\"" + DigestUtils.md5Hex(new String(data)) + "\"";
-
-        resp.setHeader("Cache-Control", "public, max-age=31536000");
-        resp.setHeader("ETag", etag);
-        resp.setHeader("Server", "Sym File Server (v" + SymphonyServletListener.VERSION + ")");
-        resp.setHeader("Access-Control-Allow-Origin", "*");
-        final String ext = StringUtils.substringAfterLast(path, ".");
-        final String mimeType = MimeTypes.getMimeType(ext);
-        resp.addHeader("Content-Type", mimeType);
-
-        if (etag.equals(ifNoneMatch)) {
-            resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
-
-            return;
-        }
-
-        try (final OutputStream output = resp.getOutputStream()) {
-            IOUtils.write(data, output);
-            output.flush();
-        }
+        StaticFiles.send(file, req, resp);
     }
 
     /**
@@ -156,17 +136,56 @@ public class FileUploadProcessor {
         }
 
         final int maxSize = Symphonys.getInt("upload.file.maxSize");
-        final MultipartStreamParser parser = new MultipartStreamParser(new MemoryFileUploadFactory().setMaxFileSize(maxSize));
-        parser.parseRequestStream(request.getInputStream(), "UTF-8");
-        final FileUpload file = parser.getFiles("file")[0];
-        String fileName = file.getHeader().getFileName();
-        final String suffix = getSuffix(file);
-
-        final String[] allowedSuffixArray = Symphonys.get("upload.suffix").split(",");
-        if (!Strings.containsIgnoreCase(suffix, allowedSuffixArray)) {
+        final int memoryThreshold = Symphonys.getInt("upload.memoryThreshold");
+        final SpoolFileUploadFactory factory = new SpoolFileUploadFactory(SPOOL_DIR, memoryThreshold, maxSize);
+        final MultipartStreamParser parser = new MultipartStreamParser(factory);
+        try {
+            parser.parseRequestStream(request.getInputStream(), "UTF-8");
+            final SpoolFileUpload file = factory.getUpload("file");
+            String fileName = file.getHeader().getFileName();
+            if (file.isFileTooBig()) {
+                final JSONObject data = new JSONObject();
+                data.put("code", 1);
+                data.put("msg", "File is too large (max " + maxSize / 1024 / 1024 + "M)");
+                data.put("key", Latkes.getServePath() + "/upload/" + fileName);
+                data.put("name", fileName);
+                response.setContentType("application/json");
+                try (final PrintWriter writer = response.getWriter()) {
+                    writer.append(data.toString());
+                    writer.flush();
+                }
+
+                return;
+            }
+
+            final String suffix = getSuffix(file);
+
+            final String[] allowedSuffixArray = Symphonys.get("upload.suffix").split(",");
+            if (!Strings.containsIgnoreCase(suffix, allowedSuffixArray)) {
+                final JSONObject data = new JSONObject();
+                data.put("code", 1);
+                data.put("msg", "Invalid suffix [" + suffix + "], please compress this file and try again");
+                data.put("key", Latkes.getServePath() + "/upload/" + fileName);
+                data.put("name", fileName);
+                response.setContentType("application/json");
+                try (final PrintWriter writer = response.getWriter()) {
+                    writer.append(data.toString());
+                    writer.flush();
+                }
+
+                return;
+            }
+
+            // Content-addressed, identical files are stored once
+            final String sha256 = file.getSha256();
+            fileName = sha256.substring(0, 2) + "/" + sha256 + "." + suffix.toLowerCase();
+            final File target = Paths.get(UPLOAD_DIR, fileName).toFile();
+            if (file.moveTo(target)) {
+                StaticFiles.putETag(target, file.getMd5());
+            }
+
             final JSONObject data = new JSONObject();
-            data.put("code", 1);
-            data.put("msg", "Invalid suffix [" + suffix + "], please compress this file and try again");
+            data.put("code", 0);
             data.put("key", Latkes.getServePath() + "/upload/" + fileName);
             data.put("name", fileName);
             response.setContentType("application/json");
@@ -174,32 +193,21 @@ public class FileUploadProcessor {
                 writer.append(data.toString());
                 writer.flush();
             }
-
-            return;
-        }
-
-        final String name = StringUtils.substringBeforeLast(fileName, ".");
-        final String processName = name.replaceAll("\\W", "");
-        final String uuid = StringUtils.substring(UUID.randomUUID().toString().replaceAll("-", ""), 0, 8);
-        fileName = processName + '-' + uuid + "." + suffix;
-        final String date = DateFormatUtils.format(System.currentTimeMillis(), "yyyy/MM");
-        fileName = date + "/" + fileName;
-        final Path path = Paths.get(UPLOAD_DIR, fileName);
-        path.getParent().toFile().mkdirs();
-        try (final OutputStream output = new FileOutputStream(path.toFile());
-             final InputStream input = file.getFileInputStream()) {
-            IOUtils.copy(input, output);
+        } finally {
+            factory.deleteAll();
         }
+    }
 
-        final JSONObject data = new JSONObject();
-        data.put("code", 0);
-        data.put("key", Latkes.getServePath() + "/upload/" + fileName);
-        data.put("name", fileName);
-        response.setContentType("application/json");
-        try (final PrintWriter writer = response.getWriter()) {
-            writer.append(data.toString());
-            writer.flush();
-        }
+    /**
+     * Checks whether the specified file is under the specified directory, compares canonical paths.
+     *
+     * @param file the specified file
+     * @param dir  the specified directory
+     * @return {@code true} if it is under, returns {@code false} otherwise
+     * @throws IOException io exception
+     */
+    private static boolean isUnder(final File file, final File dir) throws IOException {
+        return file.getCanonicalPath().startsWith(dir.getCanonicalPath() + File.separator);
     }
 
     private static String getSuffix(final FileUpload file) {
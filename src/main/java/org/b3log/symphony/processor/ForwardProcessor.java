@@ -20,7 +20,6 @@ package org.b3log.symphony.processor;
 import org.apache.commons.lang.StringUtils;
 import org.b3log.latke.Latkes;
 import org.b3log.latke.ioc.Inject;
-import org.b3log.latke.repository.jdbc.JdbcRepository;
 import org.b3log.latke.servlet.HTTPRequestContext;
 import org.b3log.latke.servlet.HTTPRequestMethod;
 import org.b3log.latke.servlet.annotation.After;
@@ -35,7 +34,6 @@ import org.b3log.symphony.processor.advice.stopwatch.StopwatchEndAdvice;
 import org.b3log.symphony.processor.advice.stopwatch.StopwatchStartAdvice;
 import org.b3log.symphony.service.DataModelService;
 import org.b3log.symphony.service.LinkMgmtService;
-import org.b3log.symphony.util.Symphonys;
 import org.json.JSONObject;
 
 import javax.servlet.http.HttpServletRequest;
@@ -49,7 +47,7 @@ import java.util.Map;
  * </ul>
  *
  * @author <a href="http://88250.b3log.org">Liang Ding</a>
- * @version 1.0.0.2, Aug 29, 2018
+ * @version 1.0.1.0, Oct 25, 2018
  * @since 2.3.0
  */
 @RequestProcessor
@@ -82,14 +80,7 @@ public class ForwardProcessor {
             to = Latkes.getServePath();
         }
 
-        final String url = to;
-        Symphonys.EXECUTOR_SERVICE.submit(() -> {
-            try {
-                linkMgmtService.addLink(url);
-            } finally {
-                JdbcRepository.dispose();
-            }
-        });
+        linkMgmtService.addLink(to);
 
         final JSONObject user = (JSONObject) request.getAttribute(Common.CURRENT_USER);
         if (null != user && UserExt.USER_XXX_STATUS_C_DISABLED == user.optInt(UserExt.USER_FORWARD_PAGE_STATUS)) {
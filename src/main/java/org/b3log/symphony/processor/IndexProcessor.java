@@ -25,7 +25,6 @@ import org.b3log.latke.ioc.Inject;
 import org.b3log.latke.logging.Level;
 import org.b3log.latke.logging.Logger;
 import org.b3log.latke.model.Pagination;
-import org.b3log.latke.service.LangPropsService;
 import org.b3log.latke.servlet.HTTPRequestContext;
 import org.b3log.latke.servlet.HTTPRequestMethod;
 import org.b3log.latke.servlet.annotation.After;
@@ -33,9 +32,9 @@ import org.b3log.latke.servlet.annotation.Before;
 import org.b3log.latke.servlet.annotation.RequestProcessing;
 import org.b3log.latke.servlet.annotation.RequestProcessor;
 import org.b3log.latke.servlet.renderer.AbstractFreeMarkerRenderer;
-import org.b3log.latke.util.Locales;
 import org.b3log.latke.util.Paginator;
 import org.b3log.latke.util.Stopwatchs;
+import org.b3log.symphony.cache.PageCache;
 import org.b3log.symphony.model.Article;
 import org.b3log.symphony.model.Common;
 import org.b3log.symphony.model.UserExt;
@@ -49,6 +48,7 @@ import org.b3log.symphony.service.UserMgmtService;
 import org.b3log.symphony.service.UserQueryService;
 import org.b3log.symphony.util.Emotions;
 import org.b3log.symphony.util.Markdowns;
+import org.b3log.symphony.util.Skins;
 import org.b3log.symphony.util.Symphonys;
 import org.json.JSONObject;
 
@@ -73,7 +73,7 @@ import java.util.*;
  *
  * @author <a href="http://88250.b3log.org">Liang Ding</a>
  * @author <a href="http://vanessa.b3log.org">Liyuan Li</a>
- * @version 1.15.0.1, Sep 14, 2018
+ * @version 1.15.4.1, Oct 25, 2018
  * @since 0.2.0
  */
 @RequestProcessor
@@ -84,6 +84,12 @@ public class IndexProcessor {
      */
     private static final Logger LOGGER = Logger.getLogger(IndexProcessor.class);
 
+    /**
+     * Page cache.
+     */
+    @Inject
+    private PageCache pageCache;
+
     /**
      * Article query service.
      */
@@ -108,12 +114,6 @@ public class IndexProcessor {
     @Inject
     private DataModelService dataModelService;
 
-    /**
-     * Language service.
-     */
-    @Inject
-    private LangPropsService langPropsService;
-
     /**
      * Shows question articles.
      *
@@ -187,11 +187,14 @@ public class IndexProcessor {
         dataModel.put(Pagination.PAGINATION_PAGE_COUNT, pageCount);
         dataModel.put(Pagination.PAGINATION_PAGE_NUMS, pageNums);
 
+        pageCache.dependOnIndex(request);
         dataModelService.fillHeaderAndFooter(request, response, dataModel);
-        dataModelService.fillRandomArticles(dataModel);
-        dataModelService.fillSideHotArticles(dataModel);
-        dataModelService.fillSideTags(dataModel);
-        dataModelService.fillLatestCmts(dataModel);
+        if (!Skins.isFragmentRequest(request, renderer.getTemplateName())) {
+            dataModelService.fillRandomArticles(dataModel);
+            dataModelService.fillSideHotArticles(dataModel);
+            dataModelService.fillSideTags(dataModel);
+            dataModelService.fillLatestCmts(dataModel);
+        }
 
         dataModel.put(Common.CURRENT, StringUtils.substringAfter(request.getRequestURI(), "/qna"));
     }
@@ -228,12 +231,13 @@ public class IndexProcessor {
         }
 
         dataModel.put(Common.WATCHING_ARTICLES, Collections.emptyList());
+        final String beforeId = request.getParameter("before");
         String sortModeStr = StringUtils.substringAfter(request.getRequestURI(), "/watch");
         switch (sortModeStr) {
             case "":
                 if (null != user) {
                     final List<JSONObject> followingTagArticles = articleQueryService.getFollowingTagArticles(
-                            avatarViewMode, user.optString(Keys.OBJECT_ID), 1, pageSize);
+                            avatarViewMode, user.optString(Keys.OBJECT_ID), beforeId, pageSize);
                     dataModel.put(Common.WATCHING_ARTICLES, followingTagArticles);
                 }
 
@@ -241,7 +245,7 @@ public class IndexProcessor {
             case "/users":
                 if (null != user) {
                     final List<JSONObject> followingUserArticles = articleQueryService.getFollowingUserArticles(
-                            avatarViewMode, user.optString(Keys.OBJECT_ID), 1, pageSize);
+                            avatarViewMode, user.optString(Keys.OBJECT_ID), beforeId, pageSize);
                     dataModel.put(Common.WATCHING_ARTICLES, followingUserArticles);
                 }
 
@@ -249,10 +253,12 @@ public class IndexProcessor {
         }
 
         dataModelService.fillHeaderAndFooter(request, response, dataModel);
-        dataModelService.fillRandomArticles(dataModel);
-        dataModelService.fillSideHotArticles(dataModel);
-        dataModelService.fillSideTags(dataModel);
-        dataModelService.fillLatestCmts(dataModel);
+        if (!Skins.isFragmentRequest(request, renderer.getTemplateName())) {
+            dataModelService.fillRandomArticles(dataModel);
+            dataModelService.fillSideHotArticles(dataModel);
+            dataModelService.fillSideTags(dataModel);
+            dataModelService.fillLatestCmts(dataModel);
+        }
 
         dataModel.put(Common.SELECTED, Common.WATCH);
         dataModel.put(Common.CURRENT, StringUtils.substringAfter(request.getRequestURI(), "/watch"));
@@ -311,6 +317,7 @@ public class IndexProcessor {
         final List<JSONObject> perfectArticles = articleQueryService.getIndexPerfectArticles();
         dataModel.put(Common.PERFECT_ARTICLES, perfectArticles);
 
+        pageCache.dependOnIndex(request);
         dataModelService.fillHeaderAndFooter(request, response, dataModel);
         dataModelService.fillIndexTags(dataModel);
 
@@ -402,11 +409,14 @@ public class IndexProcessor {
         dataModel.put(Pagination.PAGINATION_PAGE_COUNT, pageCount);
         dataModel.put(Pagination.PAGINATION_PAGE_NUMS, pageNums);
 
+        pageCache.dependOnIndex(request);
         dataModelService.fillHeaderAndFooter(request, response, dataModel);
-        dataModelService.fillRandomArticles(dataModel);
-        dataModelService.fillSideHotArticles(dataModel);
-        dataModelService.fillSideTags(dataModel);
-        dataModelService.fillLatestCmts(dataModel);
+        if (!Skins.isFragmentRequest(request, renderer.getTemplateName())) {
+            dataModelService.fillRandomArticles(dataModel);
+            dataModelService.fillSideHotArticles(dataModel);
+            dataModelService.fillSideTags(dataModel);
+            dataModelService.fillLatestCmts(dataModel);
+        }
 
         dataModel.put(Common.CURRENT, StringUtils.substringAfter(request.getRequestURI(), "/recent"));
     }
@@ -442,6 +452,7 @@ public class IndexProcessor {
 
         Stopwatchs.start("Fills");
         try {
+            pageCache.dependOnIndex(request);
             dataModelService.fillHeaderAndFooter(request, response, dataModel);
             if (!(Boolean) dataModel.get(Common.IS_MOBILE)) {
                 dataModelService.fillRandomArticles(dataModel);
@@ -500,6 +511,7 @@ public class IndexProcessor {
         dataModel.put(Pagination.PAGINATION_PAGE_COUNT, pageCount);
         dataModel.put(Pagination.PAGINATION_PAGE_NUMS, pageNums);
 
+        pageCache.dependOnIndex(request);
         dataModelService.fillHeaderAndFooter(request, response, dataModel);
         dataModelService.fillRandomArticles(dataModel);
         dataModelService.fillSideHotArticles(dataModel);
@@ -562,9 +574,6 @@ public class IndexProcessor {
         context.setRenderer(renderer);
 
         final Map<String, Object> dataModel = renderer.getDataModel();
-        final Map<String, String> langs = langPropsService.getAll(Locales.getLocale());
-
-        dataModel.putAll(langs);
         Keys.fillRuntime(dataModel);
         dataModelService.fillMinified(dataModel);
     }
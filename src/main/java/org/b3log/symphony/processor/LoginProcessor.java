@@ -69,7 +69,7 @@ import java.util.concurrent.ConcurrentHashMap;
  *
  * @author <a href="http://88250.b3log.org">Liang Ding</a>
  * @author <a href="http://vanessa.b3log.org">Liyuan Li</a>
- * @version 1.13.12.5, Aug 7, 2018
+ * @version 1.13.13.0, Oct 25, 2018
  * @since 0.2.0
  */
 @RequestProcessor
@@ -106,6 +106,12 @@ public class LoginProcessor {
     @Inject
     private LangPropsService langPropsService;
 
+    /**
+     * Presence management service.
+     */
+    @Inject
+    private PresenceMgmtService presenceMgmtService;
+
     /**
      * Pointtransfer management service.
      */
@@ -241,6 +247,7 @@ public class LoginProcessor {
         dataModel.put(Tag.TAGS, tags);
 
         final List<JSONObject> users = userQueryService.getNiceUsers(6);
+        users.forEach(presenceMgmtService::fillOnlineFlag);
         final Iterator<JSONObject> iterator = users.iterator();
         while (iterator.hasNext()) {
             final JSONObject user = iterator.next();
@@ -36,9 +36,11 @@ import org.b3log.latke.servlet.annotation.Before;
 import org.b3log.latke.servlet.annotation.RequestProcessing;
 import org.b3log.latke.servlet.annotation.RequestProcessor;
 import org.b3log.latke.servlet.renderer.AbstractFreeMarkerRenderer;
+import org.b3log.latke.util.Locales;
 import org.b3log.latke.util.Requests;
 import org.b3log.latke.util.Strings;
 import org.b3log.latke.util.TimeZones;
+import org.b3log.symphony.cache.LeaderboardCache;
 import org.b3log.symphony.model.*;
 import org.b3log.symphony.processor.advice.*;
 import org.b3log.symphony.processor.advice.stopwatch.StopwatchEndAdvice;
@@ -48,6 +50,7 @@ import org.b3log.symphony.processor.advice.validate.UpdateEmotionListValidation;
 import org.b3log.symphony.processor.advice.validate.UpdatePasswordValidation;
 import org.b3log.symphony.processor.advice.validate.UpdateProfilesValidation;
 import org.b3log.symphony.service.*;
+import org.b3log.symphony.util.LabelBundle;
 import org.b3log.symphony.util.Languages;
 import org.b3log.symphony.util.Results;
 import org.b3log.symphony.util.Sessions;
@@ -82,7 +85,7 @@ import java.util.*;
  * </ul>
  *
  * @author <a href="http://88250.b3log.org">Liang Ding</a>
- * @version 1.3.1.0, Oct 13, 2018
+ * @version 1.3.3.0, Oct 25, 2018
  * @since 2.4.0
  */
 @RequestProcessor
@@ -171,6 +174,12 @@ public class SettingsProcessor {
     @Inject
     private RoleQueryService roleQueryService;
 
+    /**
+     * Leaderboard cache.
+     */
+    @Inject
+    private LeaderboardCache leaderboardCache;
+
     /**
      * Verifycode query service.
      */
@@ -430,7 +439,7 @@ public class SettingsProcessor {
         final Map<String, Object> dataModel = renderer.getDataModel();
 
         final JSONObject user = (JSONObject) request.getAttribute(Common.CURRENT_USER);
-        UserProcessor.fillHomeUser(dataModel, user, roleQueryService);
+        UserProcessor.fillHomeUser(dataModel, user, roleQueryService, leaderboardCache);
 
         final int avatarViewMode = (int) request.getAttribute(UserExt.USER_AVATAR_VIEW_MODE);
         avatarQueryService.fillUserAvatarURL(avatarViewMode, user);
@@ -457,39 +466,26 @@ public class SettingsProcessor {
 
         dataModelService.fillHeaderAndFooter(request, response, dataModel);
 
-        String inviteTipLabel = (String) dataModel.get("inviteTipLabel");
-        inviteTipLabel = inviteTipLabel.replace("{point}", String.valueOf(Pointtransfer.TRANSFER_SUM_C_INVITE_REGISTER));
-        dataModel.put("inviteTipLabel", inviteTipLabel);
-
-        String pointTransferTipLabel = (String) dataModel.get("pointTransferTipLabel");
-        pointTransferTipLabel = pointTransferTipLabel.replace("{point}", Symphonys.get("pointTransferMin"));
-        dataModel.put("pointTransferTipLabel", pointTransferTipLabel);
-
-        String dataExportTipLabel = (String) dataModel.get("dataExportTipLabel");
-        dataExportTipLabel = dataExportTipLabel.replace("{point}",
-                String.valueOf(Pointtransfer.TRANSFER_SUM_C_DATA_EXPORT));
-        dataModel.put("dataExportTipLabel", dataExportTipLabel);
+        final LabelBundle labelBundle = LabelBundle.get(Locales.getLocale());
+        dataModel.put("inviteTipLabel", labelBundle.format("inviteTipLabel",
+                "point", Pointtransfer.TRANSFER_SUM_C_INVITE_REGISTER));
+        dataModel.put("pointTransferTipLabel", labelBundle.format("pointTransferTipLabel",
+                "point", Symphonys.get("pointTransferMin")));
+        dataModel.put("dataExportTipLabel", labelBundle.format("dataExportTipLabel",
+                "point", Pointtransfer.TRANSFER_SUM_C_DATA_EXPORT));
 
         final String allowRegister = optionQueryService.getAllowRegister();
         dataModel.put("allowRegister", allowRegister);
 
-        String buyInvitecodeLabel = langPropsService.get("buyInvitecodeLabel");
-        buyInvitecodeLabel = buyInvitecodeLabel.replace("${point}",
-                String.valueOf(Pointtransfer.TRANSFER_SUM_C_BUY_INVITECODE));
-        buyInvitecodeLabel = buyInvitecodeLabel.replace("${point2}",
-                String.valueOf(Pointtransfer.TRANSFER_SUM_C_INVITECODE_USED));
-        dataModel.put("buyInvitecodeLabel", buyInvitecodeLabel);
-
-        String updateNameTipLabel = (String) dataModel.get("updateNameTipLabel");
-        updateNameTipLabel = updateNameTipLabel.replace("{point}", Symphonys.get("pointChangeUsername"));
-        dataModel.put("updateNameTipLabel", updateNameTipLabel);
+        dataModel.put("buyInvitecodeLabel", labelBundle.format("buyInvitecodeLabel",
+                "point", Pointtransfer.TRANSFER_SUM_C_BUY_INVITECODE, "point2", Pointtransfer.TRANSFER_SUM_C_INVITECODE_USED));
+        dataModel.put("updateNameTipLabel", labelBundle.format("updateNameTipLabel",
+                "point", Symphonys.get("pointChangeUsername")));
 
         final List<JSONObject> invitecodes = invitecodeQueryService.getValidInvitecodes(userId);
         for (final JSONObject invitecode : invitecodes) {
-            String msg = langPropsService.get("expireTipLabel");
-            msg = msg.replace("${time}", DateFormatUtils.format(invitecode.optLong(Keys.OBJECT_ID)
-                    + Symphonys.getLong("invitecode.expired"), "yyyy-MM-dd HH:mm"));
-            invitecode.put(Common.MEMO, msg);
+            invitecode.put(Common.MEMO, labelBundle.format("expireTipLabel", "time", DateFormatUtils.format(
+                    invitecode.optLong(Keys.OBJECT_ID) + Symphonys.getLong("invitecode.expired"), "yyyy-MM-dd HH:mm")));
         }
 
         dataModel.put(Invitecode.INVITECODES, invitecodes);
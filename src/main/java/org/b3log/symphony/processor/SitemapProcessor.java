@@ -18,73 +18,112 @@
 package org.b3log.symphony.processor;
 
 import org.b3log.latke.ioc.Inject;
-import org.b3log.latke.logging.Level;
-import org.b3log.latke.logging.Logger;
 import org.b3log.latke.servlet.HTTPRequestContext;
 import org.b3log.latke.servlet.HTTPRequestMethod;
 import org.b3log.latke.servlet.annotation.RequestProcessing;
 import org.b3log.latke.servlet.annotation.RequestProcessor;
-import org.b3log.latke.servlet.renderer.TextXMLRenderer;
-import org.b3log.symphony.model.sitemap.Sitemap;
-import org.b3log.symphony.service.SitemapQueryService;
+import org.b3log.symphony.service.SitemapMgmtService;
+import org.b3log.symphony.util.StaticFiles;
+import org.b3log.symphony.util.Symphonys;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import java.io.IOException;
+import java.io.File;
+import java.util.regex.Pattern;
 
 /**
  * Sitemap processor.
+ * <ul>
+ * <li>Shows the sitemap index (/sitemap.xml), GET</li>
+ * <li>Shows a sitemap (/sitemap/{name}), GET</li>
+ * <li>Refreshes the sitemap (/cron/sitemap), GET</li>
+ * </ul>
  *
  * @author <a href="http://88250.b3log.org">Liang Ding</a>
- * @version 1.0.0.0, Sep 24, 2016
+ * @version 2.0.1.0, Oct 25, 2018
  * @since 1.6.0
  */
 @RequestProcessor
 public class SitemapProcessor {
 
     /**
-     * Logger.
+     * Cache control of sitemaps.
      */
-    private static final Logger LOGGER = Logger.getLogger(SitemapProcessor.class);
+    private static final String CACHE_CONTROL = "public, max-age=3600";
 
     /**
-     * Sitemap query service.
+     * Sitemap name pattern.
+     */
+    private static final Pattern NAME_PATTERN = Pattern.compile("^(" + Pattern.quote(SitemapMgmtService.MAIN_FILE) + "|"
+            + SitemapMgmtService.ARTICLES_FILE_PREFIX + "\\d+" + Pattern.quote(SitemapMgmtService.ARTICLES_FILE_SUFFIX) + ")$");
+
+    /**
+     * Sitemap management service.
      */
     @Inject
-    private SitemapQueryService sitemapQueryService;
+    private SitemapMgmtService sitemapMgmtService;
 
     /**
-     * Returns the sitemap.
+     * Shows the sitemap index, generates it in background if not exists.
      *
-     * @param context the specified context
+     * @param request  the specified request
+     * @param response the specified response
+     * @throws Exception exception
      */
     @RequestProcessing(value = "/sitemap.xml", method = HTTPRequestMethod.GET)
-    public void sitemap(final HTTPRequestContext context) {
-        final TextXMLRenderer renderer = new TextXMLRenderer();
-
-        context.setRenderer(renderer);
+    public void sitemap(final HttpServletRequest request, final HttpServletResponse response) throws Exception {
+        final File file = SitemapMgmtService.getSitemapFile(SitemapMgmtService.INDEX_FILE);
+        if (!file.isFile()) {
+            sitemapMgmtService.refreshSitemapAsync();
+            response.setHeader("Retry-After", "60");
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
 
-        final Sitemap sitemap = new Sitemap();
+            return;
+        }
 
-        try {
-            LOGGER.log(Level.INFO, "Generating sitemap....");
+        StaticFiles.send(file, request, response, CACHE_CONTROL);
+    }
 
-            sitemapQueryService.genIndex(sitemap);
-            sitemapQueryService.genDomains(sitemap);
-            sitemapQueryService.genArticles(sitemap);
+    /**
+     * Shows a sitemap listed in the sitemap index.
+     *
+     * @param request  the specified request
+     * @param response the specified response
+     * @param name     the specified sitemap name
+     * @throws Exception exception
+     */
+    @RequestProcessing(value = "/sitemap/{name}", method = HTTPRequestMethod.GET)
+    public void sitemapShard(final HttpServletRequest request, final HttpServletResponse response, final String name) throws Exception {
+        final File file = SitemapMgmtService.getSitemapFile(name);
+        if (!NAME_PATTERN.matcher(name).matches() || !file.isFile()) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
 
-            final String content = sitemap.toString();
+            return;
+        }
 
-            LOGGER.log(Level.INFO, "Generated sitemap");
+        StaticFiles.send(file, request, response, CACHE_CONTROL);
+    }
 
-            renderer.setContent(content);
-        } catch (final Exception e) {
-            LOGGER.log(Level.ERROR, "Get blog article feed error", e);
+    /**
+     * Refreshes the sitemap.
+     *
+     * @param context  the specified context
+     * @param request  the specified request
+     * @param response the specified response
+     * @throws Exception exception
+     */
+    @RequestProcessing(value = "/cron/sitemap", method = HTTPRequestMethod.GET)
+    public void refreshSitemap(final HTTPRequestContext context,
+                               final HttpServletRequest request, final HttpServletResponse response) throws Exception {
+        final String key = Symphonys.get("keyOfSymphony");
+        if (!key.equals(request.getParameter("key"))) {
+            response.sendError(HttpServletResponse.SC_FORBIDDEN);
 
-            try {
-                context.getResponse().sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
-            } catch (final IOException ex) {
-                throw new RuntimeException(ex);
-            }
+            return;
         }
+
+        sitemapMgmtService.refreshSitemap();
+
+        context.renderJSON().renderTrueResult();
     }
 }
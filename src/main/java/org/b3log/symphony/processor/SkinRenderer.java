@@ -29,20 +29,36 @@ import org.b3log.latke.util.Locales;
 import org.b3log.symphony.model.Common;
 import org.b3log.symphony.model.UserExt;
 import org.b3log.symphony.util.Skins;
+import org.b3log.symphony.util.StreamingWriter;
 import org.b3log.symphony.util.Symphonys;
 import org.json.JSONObject;
 
+import javax.servlet.ServletResponseWrapper;
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
 import java.util.Map;
 import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * Skin user-switchable FreeMarker Renderer.
+ * <p>
+ * Full pages are streamed to the response through a {@link StreamingWriter}, templates flush the head and header early
+ * by {@code <@flush/>}. A wrapped response is post-processed by a filter, the page cache filter for example, so it is
+ * rendered buffered. A template error before anything is sent responds 500 as buffered rendering does, a template
+ * erred after output is sent gets status 500 set so no filter keeps the truncated page, and is rendered buffered for
+ * {@link #BUFFERED_EXPIRE} after that.
+ * </p>
  *
  * @author <a href="http://88250.b3log.org">Liang Ding</a>
- * @version 1.3.0.5, Sep 27, 2018
+ * @version 1.6.1.1, Oct 25, 2018
  * @since 1.3.0
  */
 public final class SkinRenderer extends AbstractFreeMarkerRenderer {
@@ -52,6 +68,26 @@ public final class SkinRenderer extends AbstractFreeMarkerRenderer {
      */
     private static final Logger LOGGER = Logger.getLogger(SkinRenderer.class);
 
+    /**
+     * Whether stream render is enabled.
+     */
+    private static final boolean STREAM = Symphonys.getBoolean("streamRender.enabled");
+
+    /**
+     * Whether to gzip streamed pages.
+     */
+    private static final boolean STREAM_GZIP = Symphonys.getBoolean("streamRender.gzip");
+
+    /**
+     * Time in milliseconds a template erred while streaming is rendered buffered.
+     */
+    private static final long BUFFERED_EXPIRE = 10 * 60 * 1000;
+
+    /**
+     * Templates rendered buffered as they erred while streaming, &lt;skinDirName/templateName, expiration time&gt;.
+     */
+    private static final Map<String, Long> BUFFERED_TEMPLATES = new ConcurrentHashMap<>();
+
     /**
      * HTTP servlet request.
      */
@@ -66,60 +102,111 @@ public final class SkinRenderer extends AbstractFreeMarkerRenderer {
         this.request = request;
     }
 
-    /**
-     * Gets a template with the specified search engine bot flag and user.
-     *
-     * @param isSearchEngineBot the specified search engine bot flag
-     * @param user              the specified user
-     * @return template
-     */
-    public Template getTemplate(final boolean isSearchEngineBot, final JSONObject user) {
-        String templateDirName = (String) request.getAttribute(Keys.TEMAPLTE_DIR_NAME);
-        final String templateName = getTemplateName();
+    @Override
+    public void render(final HTTPRequestContext context) {
+        final String templateKey = request.getAttribute(Keys.TEMAPLTE_DIR_NAME) + "/" + getTemplateName();
+        final HttpServletResponse response = context.getResponse();
+        if (!STREAM || null != Skins.getFragment(request) || response instanceof ServletResponseWrapper
+                || isBuffered(templateKey)) {
+            super.render(context);
+
+            return;
+        }
+
+        final Template template = getTemplate();
+        if (null == template || response.isCommitted()) {
+            super.render(context);
+
+            return;
+        }
+
+        final Map<String, Object> dataModel = getDataModel();
+        dataModel.put("request", request);
+        Keys.fillServer(dataModel);
+        dataModel.put("pjax", false);
+
+        response.setContentType("text/html");
+        response.setCharacterEncoding("UTF-8");
+        final boolean gzip = STREAM_GZIP && StringUtils.containsIgnoreCase(request.getHeader("Accept-Encoding"), "gzip");
+        StreamingWriter writer = null;
         try {
-            Template ret;
-            try {
-                ret = Skins.SKIN.getTemplate(templateDirName + "/" + templateName);
-            } catch (final Exception e) {
-                if (Symphonys.get("skinDirName").equals(templateDirName) ||
-                        Symphonys.get("mobileSkinDirName").equals(templateDirName)) {
-                    throw e;
+            OutputStream out = response.getOutputStream();
+            if (gzip) {
+                response.setHeader("Content-Encoding", "gzip");
+                response.setHeader("Vary", "Accept-Encoding");
+                out = new GZIPOutputStream(out, 8192, true);
+            }
+            writer = new StreamingWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+
+            Skins.process(template, dataModel, Locales.getLocale(), getTimeZone(), writer);
+            writer.write(getGeneratedComment());
+            writer.close();
+        } catch (final Exception e) {
+            if (null != writer && writer.isCommitted()) {
+                BUFFERED_TEMPLATES.put(templateKey, System.currentTimeMillis() + BUFFERED_EXPIRE);
+                LOGGER.log(Level.ERROR, "FreeMarker renders [" + templateKey + "] error, renders it buffered for a while", e);
+                response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+                try {
+                    writer.close();
+                } catch (final IOException ex) {
+                    // ignore
                 }
 
-                // Try to load default template
-                ret = Skins.SKIN.getTemplate(Symphonys.get("skinDirName") + "/" + templateName);
+                return;
             }
 
-            if (isSearchEngineBot) {
-                return ret;
+            LOGGER.log(Level.ERROR, "FreeMarker renders error", e);
+            if (null != writer) {
+                writer.discard();
             }
-
-            ret.setLocale(Locales.getLocale());
-
-            if (null != user) {
-                ret.setTimeZone(TimeZone.getTimeZone(user.optString(UserExt.USER_TIMEZONE)));
-            } else {
-                ret.setTimeZone(TimeZone.getTimeZone(TimeZone.getDefault().getID()));
+            try {
+                response.reset();
+                response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            } catch (final Exception ex) {
+                LOGGER.log(Level.ERROR, "Can not send error 500!", ex);
             }
+        }
+    }
 
-            return ret;
-        } catch (final IOException e) {
-            LOGGER.log(Level.ERROR, "Get template [dir=" + templateDirName + ", name=" + templateName + "] error", e);
+    /**
+     * Checks whether the template specified by the given template key is rendered buffered as it erred while
+     * streaming, removes the expired entry.
+     *
+     * @param templateKey the given template key, skinDirName/templateName
+     * @return {@code true} if it is rendered buffered, returns {@code false} otherwise
+     */
+    private static boolean isBuffered(final String templateKey) {
+        final Long expireTime = BUFFERED_TEMPLATES.get(templateKey);
+        if (null == expireTime) {
+            return false;
+        }
 
-            return null;
+        if (System.currentTimeMillis() < expireTime) {
+            return true;
         }
+
+        BUFFERED_TEMPLATES.remove(templateKey, expireTime);
+
+        return false;
     }
 
     @Override
     protected Template getTemplate() {
-        final boolean isSearchEngineBot = (Boolean) request.getAttribute(Keys.HttpRequest.IS_SEARCH_ENGINE_BOT);
-        final JSONObject user = (JSONObject) request.getAttribute(Common.CURRENT_USER);
+        final String templateDirName = (String) request.getAttribute(Keys.TEMAPLTE_DIR_NAME);
+        final String templateName = getTemplateName();
+        try {
+            return Skins.getTemplate(templateDirName, templateName);
+        } catch (final IOException e) {
+            LOGGER.log(Level.ERROR, "Get template [dir=" + templateDirName + ", name=" + templateName + "] error", e);
 
-        return getTemplate(isSearchEngineBot, user);
+            return null;
+        }
     }
 
     /**
-     * Processes the specified FreeMarker template with the specified request, data model, pjax hacking.
+     * Processes the specified FreeMarker template with the specified request, data model, renders only the requested
+     * fragment for pjax requests. The locale and the user's time zone are set on the processing environment as the
+     * template is shared between requests.
      *
      * @param request   the specified request
      * @param dataModel the specified data model
@@ -129,24 +216,52 @@ public final class SkinRenderer extends AbstractFreeMarkerRenderer {
      */
     protected String genHTML(final HttpServletRequest request, final Map<String, Object> dataModel, final Template template)
             throws Exception {
-        final boolean isPJAX = isPJAX(request);
-        dataModel.put("pjax", isPJAX);
-        if (!isPJAX) {
-            return super.genHTML(request, dataModel, template);
-        }
+        final String fragment = Skins.getFragment(request);
+        dataModel.put("pjax", null != fragment);
 
+        final TimeZone timeZone = getTimeZone();
+        final Locale locale = Locales.getLocale();
         final StringWriter stringWriter = new StringWriter();
-        template.setOutputEncoding("UTF-8");
-        template.process(dataModel, stringWriter);
+        final String html;
+        if (null == fragment) {
+            Skins.process(template, dataModel, locale, timeZone, stringWriter);
+            html = stringWriter.toString();
+        } else if (Skins.declaresFragment(template, fragment)
+                && Skins.processFragment(template, dataModel, locale, timeZone, fragment, stringWriter)) {
+            html = stringWriter.toString();
+        } else {
+            // Skins without fragment directives mark pjax containers with comments
+            Skins.process(template, dataModel, locale, timeZone, stringWriter);
+            html = StringUtils.substringBetween(stringWriter.toString(),
+                    "<!---- pjax {" + fragment + "} start ---->",
+                    "<!---- pjax {" + fragment + "} end ---->");
+        }
+
+        return html + getGeneratedComment();
+    }
+
+    /**
+     * Gets the time zone of the current user, or the default time zone.
+     *
+     * @return time zone
+     */
+    private TimeZone getTimeZone() {
+        final JSONObject user = (JSONObject) request.getAttribute(Common.CURRENT_USER);
+
+        return null != user ? TimeZone.getTimeZone(user.optString(UserExt.USER_TIMEZONE)) : TimeZone.getDefault();
+    }
+
+    /**
+     * Gets the generated comment appended to pages.
+     *
+     * @return generated comment
+     */
+    private String getGeneratedComment() {
         final long endTimeMillis = System.currentTimeMillis();
         final String dateString = DateFormatUtils.format(endTimeMillis, "yyyy/MM/dd HH:mm:ss");
         final long startTimeMillis = (Long) request.getAttribute(Keys.HttpRequest.START_TIME_MILLIS);
-        final String msg = String.format("\n<!-- Generated by Latke (https://github.com/b3log/latke) in %1$dms, %2$s -->", endTimeMillis - startTimeMillis, dateString);
-        final String pjaxContainer = request.getHeader("X-PJAX-Container");
 
-        return StringUtils.substringBetween(stringWriter.toString(),
-                "<!---- pjax {" + pjaxContainer + "} start ---->",
-                "<!---- pjax {" + pjaxContainer + "} end ---->") + msg;
+        return String.format("\n<!-- Generated by Latke (https://github.com/b3log/latke) in %1$dms, %2$s -->", endTimeMillis - startTimeMillis, dateString);
     }
 
     @Override
@@ -156,17 +271,4 @@ public final class SkinRenderer extends AbstractFreeMarkerRenderer {
     @Override
     protected void afterRender(final HTTPRequestContext context) {
     }
-
-    /**
-     * Determines whether the specified request is sending with pjax.
-     *
-     * @param request the specified request
-     * @return {@code true} if it is sending with pjax, otherwise returns {@code false}
-     */
-    private static boolean isPJAX(final HttpServletRequest request) {
-        final boolean pjax = Boolean.valueOf(request.getHeader("X-PJAX"));
-        final String pjaxContainer = request.getHeader("X-PJAX-Container");
-
-        return pjax && StringUtils.isNotBlank(pjaxContainer);
-    }
 }
@@ -17,7 +17,6 @@
  */
 package org.b3log.symphony.processor;
 
-import org.apache.commons.lang.time.DateFormatUtils;
 import org.apache.commons.lang.time.DateUtils;
 import org.b3log.latke.Keys;
 import org.b3log.latke.ioc.Inject;
@@ -31,6 +30,7 @@ import org.b3log.latke.servlet.renderer.AbstractFreeMarkerRenderer;
 import org.b3log.latke.util.Times;
 import org.b3log.symphony.model.Common;
 import org.b3log.symphony.model.Option;
+import org.b3log.symphony.model.StatisticDaily;
 import org.b3log.symphony.processor.advice.AnonymousViewCheck;
 import org.b3log.symphony.processor.advice.PermissionGrant;
 import org.b3log.symphony.processor.advice.stopwatch.StopwatchEndAdvice;
@@ -50,11 +50,13 @@ import java.util.Map;
  * Data statistic processor.
  * <ul>
  * <li>Shows data statistic (/statistic), GET</li>
+ * <li>Loads statistic data (/cron/stat), GET</li>
+ * <li>Backfills daily statistics (/cron/stat/backfill), GET</li>
  * </ul>
  *
  * @author <a href="http://88250.b3log.org">Liang Ding</a>
  * @author <a href="http://vanessa.b3log.org">Liyuan Li</a>
- * @version 1.2.1.1, Jul 27, 2018
+ * @version 2.0.0.0, Oct 25, 2018
  * @since 1.4.0
  */
 @RequestProcessor
@@ -107,16 +109,16 @@ public class StatisticProcessor {
     private UserQueryService userQueryService;
 
     /**
-     * Article query service.
+     * Daily statistic management service.
      */
     @Inject
-    private ArticleQueryService articleQueryService;
+    private StatisticMgmtService statisticMgmtService;
 
     /**
-     * Comment query service.
+     * Daily statistic query service.
      */
     @Inject
-    private CommentQueryService commentQueryService;
+    private StatisticQueryService statisticQueryService;
 
     /**
      * Option query service.
@@ -156,61 +158,63 @@ public class StatisticProcessor {
             return;
         }
 
-        final Date end = new Date();
-        final Date dayStart = DateUtils.addDays(end, -30);
-
-        monthDays.clear();
-        userCnts.clear();
-        articleCnts.clear();
-        commentCnts.clear();
-        months.clear();
-        historyArticleCnts.clear();
-        historyCommentCnts.clear();
-        historyUserCnts.clear();
-
-        for (int i = 0; i < 31; i++) {
-            final Date day = DateUtils.addDays(dayStart, i);
-            monthDays.add(DateFormatUtils.format(day, "yyyy-MM-dd"));
-
-            final int userCnt = userQueryService.getUserCntInDay(day);
-            userCnts.add(userCnt);
-
-            final int articleCnt = articleQueryService.getArticleCntInDay(day);
-            articleCnts.add(articleCnt);
-
-            final int commentCnt = commentQueryService.getCommentCntInDay(day);
-            commentCnts.add(commentCnt);
-        }
+        statisticMgmtService.reconcileYesterday();
 
+        final Date end = new Date();
+        final List<JSONObject> dailies = statisticQueryService.getDailyStatistics(DateUtils.addDays(end, -30), end);
         final JSONObject firstAdmin = userQueryService.getAdmins().get(0);
-        final long monthStartTime = Times.getMonthStartTime(firstAdmin.optLong(Keys.OBJECT_ID));
-        final Date monthStart = new Date(monthStartTime);
-
-        int i = 1;
-        while (true) {
-            final Date month = DateUtils.addMonths(monthStart, i);
-
-            if (month.after(end)) {
-                break;
+        final Date monthStart = new Date(Times.getMonthStartTime(firstAdmin.optLong(Keys.OBJECT_ID)));
+        final List<JSONObject> histories = statisticQueryService.getMonthlyStatistics(DateUtils.addMonths(monthStart, 1), end);
+
+        synchronized (this) {
+            monthDays.clear();
+            userCnts.clear();
+            articleCnts.clear();
+            commentCnts.clear();
+            months.clear();
+            historyArticleCnts.clear();
+            historyCommentCnts.clear();
+            historyUserCnts.clear();
+
+            for (final JSONObject daily : dailies) {
+                monthDays.add(daily.optString(Keys.OBJECT_ID));
+                userCnts.add(daily.optInt(StatisticDaily.STATISTIC_DAILY_USER_CNT));
+                articleCnts.add(daily.optInt(StatisticDaily.STATISTIC_DAILY_ARTICLE_CNT));
+                commentCnts.add(daily.optInt(StatisticDaily.STATISTIC_DAILY_COMMENT_CNT));
             }
 
-            i++;
+            for (final JSONObject history : histories) {
+                months.add(history.optString(Keys.OBJECT_ID));
+                historyUserCnts.add(history.optInt(StatisticDaily.STATISTIC_DAILY_USER_CNT));
+                historyArticleCnts.add(history.optInt(StatisticDaily.STATISTIC_DAILY_ARTICLE_CNT));
+                historyCommentCnts.add(history.optInt(StatisticDaily.STATISTIC_DAILY_COMMENT_CNT));
+            }
+        }
 
-            months.add(DateFormatUtils.format(month, "yyyy-MM"));
+        visitMgmtService.expire();
 
-            final int userCnt = userQueryService.getUserCntInMonth(month);
-            historyUserCnts.add(userCnt);
+        context.renderJSON().renderTrueResult();
+    }
 
-            final int articleCnt = articleQueryService.getArticleCntInMonth(month);
-            historyArticleCnts.add(articleCnt);
+    /**
+     * Backfills the daily statistics for an existing installation.
+     *
+     * @param request  the specified HTTP servlet request
+     * @param response the specified HTTP servlet response
+     * @param context  the specified HTTP request context
+     * @throws Exception exception
+     */
+    @RequestProcessing(value = "/cron/stat/backfill", method = HTTPRequestMethod.GET)
+    public void backfillStatData(final HttpServletRequest request, final HttpServletResponse response, final HTTPRequestContext context)
+            throws Exception {
+        final String key = Symphonys.get("keyOfSymphony");
+        if (!key.equals(request.getParameter("key"))) {
+            response.sendError(HttpServletResponse.SC_FORBIDDEN);
 
-            final int commentCnt = commentQueryService.getCommentCntInMonth(month);
-            historyCommentCnts.add(commentCnt);
+            return;
         }
 
-        visitMgmtService.expire();
-
-        context.renderJSON().renderTrueResult();
+        context.renderJSON(statisticMgmtService.backfill());
     }
 
     /**
@@ -231,15 +235,17 @@ public class StatisticProcessor {
         renderer.setTemplateName("statistic.ftl");
         final Map<String, Object> dataModel = renderer.getDataModel();
 
-        dataModel.put("monthDays", monthDays);
-        dataModel.put("userCnts", userCnts);
-        dataModel.put("articleCnts", articleCnts);
-        dataModel.put("commentCnts", commentCnts);
+        synchronized (this) {
+            dataModel.put("monthDays", new ArrayList<>(monthDays));
+            dataModel.put("userCnts", new ArrayList<>(userCnts));
+            dataModel.put("articleCnts", new ArrayList<>(articleCnts));
+            dataModel.put("commentCnts", new ArrayList<>(commentCnts));
 
-        dataModel.put("months", months);
-        dataModel.put("historyUserCnts", historyUserCnts);
-        dataModel.put("historyArticleCnts", historyArticleCnts);
-        dataModel.put("historyCommentCnts", historyCommentCnts);
+            dataModel.put("months", new ArrayList<>(months));
+            dataModel.put("historyUserCnts", new ArrayList<>(historyUserCnts));
+            dataModel.put("historyArticleCnts", new ArrayList<>(historyArticleCnts));
+            dataModel.put("historyCommentCnts", new ArrayList<>(historyCommentCnts));
+        }
 
         dataModelService.fillHeaderAndFooter(request, response, dataModel);
         dataModelService.fillRandomArticles(dataModel);
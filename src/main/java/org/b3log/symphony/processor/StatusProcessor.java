@@ -26,6 +26,7 @@ import org.b3log.latke.servlet.HTTPRequestContext;
 import org.b3log.latke.servlet.HTTPRequestMethod;
 import org.b3log.latke.servlet.annotation.RequestProcessing;
 import org.b3log.latke.servlet.annotation.RequestProcessor;
+import org.b3log.symphony.cache.PageCache;
 import org.b3log.symphony.model.Common;
 import org.b3log.symphony.processor.channel.ArticleChannel;
 import org.b3log.symphony.processor.channel.ArticleListChannel;
@@ -44,7 +45,7 @@ import javax.servlet.http.HttpServletResponse;
  * </ul>
  *
  * @author <a href="http://88250.b3log.org">Liang Ding</a>
- * @version 1.1.0.7, Sep 25, 2018
+ * @version 1.1.1.0, Oct 25, 2018
  * @since 1.3.0
  */
 @RequestProcessor
@@ -61,6 +62,12 @@ public class StatusProcessor {
     @Inject
     private OptionQueryService optionQueryService;
 
+    /**
+     * Page cache.
+     */
+    @Inject
+    private PageCache pageCache;
+
     /**
      * Reports running status.
      *
@@ -88,6 +95,7 @@ public class StatusProcessor {
         ret.put(Common.ARTICLE_LIST_CHANNEL_CNT, ArticleListChannel.SESSIONS.size());
         ret.put(Common.THREAD_CNT, Symphonys.getActiveThreadCount() + "/" + Symphonys.getMaxThreadCount());
         ret.put(Common.DB_CONN_CNT, Connections.getActiveConnectionCount() + "/" + Connections.getTotalConnectionCount() + "/" + Connections.getMaxConnectionCount());
+        ret.put("pageCache", pageCache.getStat());
         ret.put(Keys.Runtime.RUNTIME_CACHE, Latkes.getRuntimeCache().name());
         ret.put(Keys.Runtime.RUNTIME_DATABASE, Latkes.getRuntimeDatabase().name());
         ret.put(Keys.Runtime.RUNTIME_MODE, Latkes.getRuntimeMode().name());
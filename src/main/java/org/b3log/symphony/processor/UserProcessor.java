@@ -33,6 +33,7 @@ import org.b3log.latke.servlet.annotation.RequestProcessor;
 import org.b3log.latke.servlet.renderer.AbstractFreeMarkerRenderer;
 import org.b3log.latke.util.CollectionUtils;
 import org.b3log.latke.util.Paginator;
+import org.b3log.symphony.cache.LeaderboardCache;
 import org.b3log.symphony.model.*;
 import org.b3log.symphony.processor.advice.AnonymousViewCheck;
 import org.b3log.symphony.processor.advice.CSRFToken;
@@ -70,7 +71,7 @@ import java.util.Map;
  * @author <a href="http://88250.b3log.org">Liang Ding</a>
  * @author <a href="http://zephyr.b3log.org">Zephyr</a>
  * @author <a href="http://vanessa.b3log.org">Liyuan Li</a>
- * @version 1.27.0.6, Sep 15, 2018
+ * @version 1.27.1.0, Oct 25, 2018
  * @since 0.2.0
  */
 @RequestProcessor
@@ -171,6 +172,12 @@ public class UserProcessor {
     @Inject
     private RoleQueryService roleQueryService;
 
+    /**
+     * Leaderboard cache.
+     */
+    @Inject
+    private LeaderboardCache leaderboardCache;
+
     /**
      * Breezemoon query service.
      */
@@ -202,7 +209,7 @@ public class UserProcessor {
         final int pageSize = Symphonys.getInt("userHomeBreezemoonsCnt");
         final int windowSize = Symphonys.getInt("userHomeBreezemoonsWindowSize");
 
-        fillHomeUser(dataModel, user, roleQueryService);
+        fillHomeUser(dataModel, user, roleQueryService, leaderboardCache);
 
         final int avatarViewMode = (int) request.getAttribute(UserExt.USER_AVATAR_VIEW_MODE);
         avatarQueryService.fillUserAvatarURL(avatarViewMode, user);
@@ -282,7 +289,7 @@ public class UserProcessor {
         final int pageSize = Symphonys.getInt("userHomeCmtsCnt");
         final int windowSize = Symphonys.getInt("userHomeCmtsWindowSize");
 
-        fillHomeUser(dataModel, user, roleQueryService);
+        fillHomeUser(dataModel, user, roleQueryService, leaderboardCache);
 
         final int avatarViewMode = (int) request.getAttribute(UserExt.USER_AVATAR_VIEW_MODE);
         avatarQueryService.fillUserAvatarURL(avatarViewMode, user);
@@ -364,7 +371,7 @@ public class UserProcessor {
         final String followingId = user.optString(Keys.OBJECT_ID);
         dataModel.put(Follow.FOLLOWING_ID, followingId);
 
-        fillHomeUser(dataModel, user, roleQueryService);
+        fillHomeUser(dataModel, user, roleQueryService, leaderboardCache);
 
         final int avatarViewMode = (int) request.getAttribute(UserExt.USER_AVATAR_VIEW_MODE);
         avatarQueryService.fillUserAvatarURL(avatarViewMode, user);
@@ -433,7 +440,7 @@ public class UserProcessor {
 
         renderer.setTemplateName("home/home.ftl");
 
-        fillHomeUser(dataModel, user, roleQueryService);
+        fillHomeUser(dataModel, user, roleQueryService, leaderboardCache);
 
         final int avatarViewMode = (int) request.getAttribute(UserExt.USER_AVATAR_VIEW_MODE);
         avatarQueryService.fillUserAvatarURL(avatarViewMode, user);
@@ -508,7 +515,7 @@ public class UserProcessor {
         final int pageSize = Symphonys.getInt("userHomeCmtsCnt");
         final int windowSize = Symphonys.getInt("userHomeCmtsWindowSize");
 
-        fillHomeUser(dataModel, user, roleQueryService);
+        fillHomeUser(dataModel, user, roleQueryService, leaderboardCache);
 
         final int avatarViewMode = (int) request.getAttribute(UserExt.USER_AVATAR_VIEW_MODE);
         avatarQueryService.fillUserAvatarURL(avatarViewMode, user);
@@ -576,7 +583,7 @@ public class UserProcessor {
         final int pageSize = Symphonys.getInt("userHomeFollowingUsersCnt");
         final int windowSize = Symphonys.getInt("userHomeFollowingUsersWindowSize");
 
-        fillHomeUser(dataModel, user, roleQueryService);
+        fillHomeUser(dataModel, user, roleQueryService, leaderboardCache);
 
         final String followingId = user.optString(Keys.OBJECT_ID);
         dataModel.put(Follow.FOLLOWING_ID, followingId);
@@ -645,7 +652,7 @@ public class UserProcessor {
         final int pageSize = Symphonys.getInt("userHomeFollowingTagsCnt");
         final int windowSize = Symphonys.getInt("userHomeFollowingTagsWindowSize");
 
-        fillHomeUser(dataModel, user, roleQueryService);
+        fillHomeUser(dataModel, user, roleQueryService, leaderboardCache);
 
         final String followingId = user.optString(Keys.OBJECT_ID);
         dataModel.put(Follow.FOLLOWING_ID, followingId);
@@ -713,7 +720,7 @@ public class UserProcessor {
         final int pageSize = Symphonys.getInt("userHomeFollowingArticlesCnt");
         final int windowSize = Symphonys.getInt("userHomeFollowingArticlesWindowSize");
 
-        fillHomeUser(dataModel, user, roleQueryService);
+        fillHomeUser(dataModel, user, roleQueryService, leaderboardCache);
 
         final String followingId = user.optString(Keys.OBJECT_ID);
         dataModel.put(Follow.FOLLOWING_ID, followingId);
@@ -782,7 +789,7 @@ public class UserProcessor {
         final int pageSize = Symphonys.getInt("userHomeFollowingArticlesCnt");
         final int windowSize = Symphonys.getInt("userHomeFollowingArticlesWindowSize");
 
-        fillHomeUser(dataModel, user, roleQueryService);
+        fillHomeUser(dataModel, user, roleQueryService, leaderboardCache);
 
         final String followingId = user.optString(Keys.OBJECT_ID);
         dataModel.put(Follow.FOLLOWING_ID, followingId);
@@ -851,7 +858,7 @@ public class UserProcessor {
         final int pageSize = Symphonys.getInt("userHomeFollowersCnt");
         final int windowSize = Symphonys.getInt("userHomeFollowersWindowSize");
 
-        fillHomeUser(dataModel, user, roleQueryService);
+        fillHomeUser(dataModel, user, roleQueryService, leaderboardCache);
 
         final String followingId = user.optString(Keys.OBJECT_ID);
         dataModel.put(Follow.FOLLOWING_ID, followingId);
@@ -928,7 +935,7 @@ public class UserProcessor {
         final int pageSize = Symphonys.getInt("userHomePointsCnt");
         final int windowSize = Symphonys.getInt("userHomePointsWindowSize");
 
-        fillHomeUser(dataModel, user, roleQueryService);
+        fillHomeUser(dataModel, user, roleQueryService, leaderboardCache);
 
         final int avatarViewMode = (int) request.getAttribute(UserExt.USER_AVATAR_VIEW_MODE);
         avatarQueryService.fillUserAvatarURL(avatarViewMode, user);
@@ -1069,10 +1076,13 @@ public class UserProcessor {
     /**
      * Fills home user.
      *
-     * @param dataModel the specified data model
-     * @param user      the specified user
+     * @param dataModel        the specified data model
+     * @param user             the specified user
+     * @param roleQueryService the specified role query service
+     * @param leaderboardCache the specified leaderboard cache
      */
-    static void fillHomeUser(final Map<String, Object> dataModel, final JSONObject user, final RoleQueryService roleQueryService) {
+    static void fillHomeUser(final Map<String, Object> dataModel, final JSONObject user, final RoleQueryService roleQueryService,
+                             final LeaderboardCache leaderboardCache) {
         Escapes.escapeHTML(user);
         dataModel.put(User.USER, user);
 
@@ -1080,5 +1090,6 @@ public class UserProcessor {
         final JSONObject role = roleQueryService.getRole(roleId);
         user.put(Role.ROLE_NAME, role.optString(Role.ROLE_NAME));
         user.put(UserExt.USER_T_CREATE_TIME, new Date(user.optLong(Keys.OBJECT_ID)));
+        user.put(UserExt.USER_T_POINT_RANK, leaderboardCache.getRank(LeaderboardCache.BOARD_BALANCE, user.optString(Keys.OBJECT_ID)));
     }
 }
@@ -21,15 +21,16 @@ import org.b3log.latke.ioc.Inject;
 import org.b3log.latke.ioc.Singleton;
 import org.b3log.latke.logging.Logger;
 import org.b3log.latke.model.User;
-import org.b3log.latke.service.LangPropsService;
 import org.b3log.latke.servlet.HTTPRequestContext;
 import org.b3log.latke.servlet.advice.AfterRequestProcessAdvice;
 import org.b3log.latke.servlet.renderer.AbstractHTTPResponseRenderer;
+import org.b3log.latke.util.Locales;
 import org.b3log.latke.util.Stopwatchs;
 import org.b3log.symphony.model.Common;
 import org.b3log.symphony.model.Permission;
 import org.b3log.symphony.model.Role;
 import org.b3log.symphony.service.RoleQueryService;
+import org.b3log.symphony.util.LabelBundle;
 import org.json.JSONObject;
 
 import java.util.Map;
@@ -38,7 +39,7 @@ import java.util.Map;
  * Permission grant.
  *
  * @author <a href="http://88250.b3log.org">Liang Ding</a>
- * @version 1.0.3.2, Jan 7, 2017
+ * @version 1.0.4.0, Oct 25, 2018
  * @since 1.8.0
  */
 @Singleton
@@ -54,11 +55,6 @@ public class PermissionGrant extends AfterRequestProcessAdvice {
      */
     @Inject
     private RoleQueryService roleQueryService;
-    /**
-     * Language service.
-     */
-    @Inject
-    private LangPropsService langPropsService;
 
     @Override
     public void doAdvice(final HTTPRequestContext context, final Object ret) {
@@ -78,9 +74,8 @@ public class PermissionGrant extends AfterRequestProcessAdvice {
 
             final JSONObject role = roleQueryService.getRole(roleId);
 
-            String noPermissionLabel = langPropsService.get("noPermissionLabel");
-            noPermissionLabel = noPermissionLabel.replace("{roleName}", role.optString(Role.ROLE_NAME));
-            dataModel.put("noPermissionLabel", noPermissionLabel);
+            dataModel.put("noPermissionLabel", LabelBundle.get(Locales.getLocale()).format("noPermissionLabel",
+                    "roleName", role.optString(Role.ROLE_NAME)));
         } finally {
             Stopwatchs.end();
         }
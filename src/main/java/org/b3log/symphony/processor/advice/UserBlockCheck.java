@@ -26,6 +26,7 @@ import org.b3log.latke.servlet.HTTPRequestContext;
 import org.b3log.latke.servlet.advice.BeforeRequestProcessAdvice;
 import org.b3log.latke.servlet.advice.RequestProcessAdviceException;
 import org.b3log.symphony.model.UserExt;
+import org.b3log.symphony.service.PresenceMgmtService;
 import org.b3log.symphony.service.UserQueryService;
 import org.json.JSONObject;
 
@@ -37,7 +38,7 @@ import java.util.Map;
  * User block check. Gets user from request attribute named "user".
  *
  * @author <a href="http://88250.b3log.org">Liang Ding</a>
- * @version 1.1.3.2, Apr 23, 2017
+ * @version 1.1.4.0, Oct 25, 2018
  * @since 0.2.5
  */
 @Singleton
@@ -54,6 +55,12 @@ public class UserBlockCheck extends BeforeRequestProcessAdvice {
     @Inject
     private UserQueryService userQueryService;
 
+    /**
+     * Presence management service.
+     */
+    @Inject
+    private PresenceMgmtService presenceMgmtService;
+
     @Override
     public void doAdvice(final HTTPRequestContext context, final Map<String, Object> args) throws RequestProcessAdviceException {
         final HttpServletRequest request = context.getRequest();
@@ -84,6 +91,7 @@ public class UserBlockCheck extends BeforeRequestProcessAdvice {
             throw new RequestProcessAdviceException(exception);
         }
 
+        presenceMgmtService.fillOnlineFlag(user);
         request.setAttribute(User.USER, user);
     }
 }
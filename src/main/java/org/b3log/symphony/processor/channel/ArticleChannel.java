@@ -25,7 +25,6 @@ import org.b3log.latke.logging.Level;
 import org.b3log.latke.logging.Logger;
 import org.b3log.latke.model.User;
 import org.b3log.latke.repository.jdbc.JdbcRepository;
-import org.b3log.latke.service.LangPropsService;
 import org.b3log.latke.util.Locales;
 import org.b3log.symphony.model.*;
 import org.b3log.symphony.service.RoleQueryService;
@@ -36,17 +35,14 @@ import org.json.JSONObject;
 import javax.websocket.*;
 import javax.websocket.server.ServerEndpoint;
 import java.io.StringWriter;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Set;
+import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Article channel.
  *
  * @author <a href="http://88250.b3log.org">Liang Ding</a>
- * @version 2.3.9.9, Sep 27, 2018
+ * @version 2.3.11.0, Oct 25, 2018
  * @since 1.3.0
  */
 @ServerEndpoint(value = "/article-channel", configurator = Channels.WebSocketConfigurator.class)
@@ -103,7 +99,6 @@ public class ArticleChannel {
         final BeanManager beanManager = BeanManager.getInstance();
         final UserQueryService userQueryService = beanManager.getReference(UserQueryService.class);
         final RoleQueryService roleQueryService = beanManager.getReference(RoleQueryService.class);
-        final LangPropsService langPropsService = beanManager.getReference(LangPropsService.class);
         final JSONObject article = message.optJSONObject(Article.ARTICLE);
 
         for (final Session session : SESSIONS) {
@@ -157,7 +152,7 @@ public class ArticleChannel {
                 message.put(Common.REWARDED, false);
                 message.put(Comment.COMMENT_REVISION_COUNT, 1);
 
-                final Map dataModel = new HashMap();
+                final Map<String, Object> dataModel = new HashMap<>();
                 dataModel.put(Common.IS_LOGGED_IN, isLoggedIn);
                 dataModel.put(Common.CURRENT_USER, user);
                 article.put(Common.OFFERED, false);
@@ -166,23 +161,27 @@ public class ArticleChannel {
                 Keys.fillServer(dataModel);
                 dataModel.put(Comment.COMMENT, message);
 
+                final Locale locale;
+                final TimeZone timeZone;
                 if (isLoggedIn) {
-                    dataModel.putAll(langPropsService.getAll(Locales.getLocale(user.optString(UserExt.USER_LANGUAGE))));
+                    locale = Locales.getLocale(user.optString(UserExt.USER_LANGUAGE));
+                    timeZone = TimeZone.getTimeZone(user.optString(UserExt.USER_TIMEZONE));
                     final String userId = user.optString(Keys.OBJECT_ID);
                     final Map<String, JSONObject> permissions
                             = roleQueryService.getUserPermissionsGrantMap(userId);
                     dataModel.put(Permission.PERMISSIONS, permissions);
                 } else {
-                    dataModel.putAll(langPropsService.getAll(Locales.getLocale()));
+                    locale = Locales.getLocale();
+                    timeZone = TimeZone.getDefault();
                     final Map<String, JSONObject> permissions
                             = roleQueryService.getPermissionsGrantMap(Role.ROLE_ID_C_VISITOR);
                     dataModel.put(Permission.PERMISSIONS, permissions);
                 }
 
                 final String templateDirName = (String) session.getUserProperties().get(Keys.TEMAPLTE_DIR_NAME);
-                final Template template = Skins.SKIN.getTemplate(templateDirName + "/common/comment.ftl");
+                final Template template = Skins.getTemplate(templateDirName, "common/comment.ftl");
                 final StringWriter stringWriter = new StringWriter();
-                template.process(dataModel, stringWriter);
+                Skins.process(template, dataModel, locale, timeZone, stringWriter);
                 stringWriter.close();
 
                 message.put("cmtTpl", stringWriter.toString());
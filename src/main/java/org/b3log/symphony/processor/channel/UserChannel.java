@@ -22,24 +22,22 @@ import org.b3log.latke.Keys;
 import org.b3log.latke.ioc.BeanManager;
 import org.b3log.latke.logging.Logger;
 import org.b3log.latke.model.User;
-import org.b3log.latke.repository.jdbc.JdbcRepository;
 import org.b3log.symphony.model.Common;
 import org.b3log.symphony.model.UserExt;
-import org.b3log.symphony.service.UserMgmtService;
+import org.b3log.symphony.service.PresenceMgmtService;
+import org.b3log.symphony.util.CoalescingSender;
+import org.b3log.symphony.util.SessionRegistry;
 import org.json.JSONObject;
 
 import javax.websocket.*;
 import javax.websocket.server.ServerEndpoint;
-import java.util.Collections;
-import java.util.Map;
-import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
 
 /**
  * User channel.
  *
  * @author <a href="http://88250.b3log.org">Liang Ding</a>
- * @version 1.0.1.2, Sep 3, 2018
+ * @version 1.2.0.1, Oct 25, 2018
  * @since 1.4.0
  */
 @ServerEndpoint(value = "/user-channel", configurator = Channels.WebSocketConfigurator.class)
@@ -51,9 +49,24 @@ public class UserChannel {
     private static final Logger LOGGER = Logger.getLogger(UserChannel.class);
 
     /**
-     * Session set.
+     * Sessions by user id.
      */
-    public static final Map<String, Set<Session>> SESSIONS = new ConcurrentHashMap();
+    public static final SessionRegistry<Session> SESSIONS = new SessionRegistry<>();
+
+    /**
+     * Coalescing window in milliseconds of commands.
+     */
+    private static final long CMD_COALESCE_WINDOW = 100;
+
+    /**
+     * Command sender.
+     */
+    private static final CoalescingSender CMD_SENDER = new CoalescingSender(Executors.newSingleThreadScheduledExecutor(r -> {
+        final Thread ret = new Thread(r, "UserChannelCmdSender");
+        ret.setDaemon(true);
+
+        return ret;
+    }), CMD_COALESCE_WINDOW, UserChannel::sendText);
 
     /**
      * Called when the socket connection with the browser is established.
@@ -68,23 +81,12 @@ public class UserChannel {
         }
 
         final String userId = user.optString(Keys.OBJECT_ID);
-
-        Set<Session> userSessions = SESSIONS.get(userId);
-        if (null == userSessions) {
-            userSessions = Collections.newSetFromMap(new ConcurrentHashMap());
-        }
-        userSessions.add(session);
-
-        SESSIONS.put(userId, userSessions);
+        SESSIONS.add(userId, session);
 
         final BeanManager beanManager = BeanManager.getInstance();
-        final UserMgmtService userMgmtService = beanManager.getReference(UserMgmtService.class);
+        final PresenceMgmtService presenceMgmtService = beanManager.getReference(PresenceMgmtService.class);
         final String ip = (String) Channels.getHttpSessionAttribute(session, Common.IP);
-        try {
-            userMgmtService.updateOnlineStatus(userId, ip, true, true);
-        } finally {
-            JdbcRepository.dispose();
-        }
+        presenceMgmtService.connect(userId, ip);
     }
 
     /**
@@ -113,13 +115,9 @@ public class UserChannel {
 
         final String userId = user.optString(Keys.OBJECT_ID);
         final BeanManager beanManager = BeanManager.getInstance();
-        final UserMgmtService userMgmtService = beanManager.getReference(UserMgmtService.class);
+        final PresenceMgmtService presenceMgmtService = beanManager.getReference(PresenceMgmtService.class);
         final String ip = (String) Channels.getHttpSessionAttribute(session, Common.IP);
-        try {
-            userMgmtService.updateOnlineStatus(userId, ip, true, true);
-        } finally {
-            JdbcRepository.dispose();
-        }
+        presenceMgmtService.heartbeat(userId, ip);
     }
 
     /**
@@ -134,7 +132,7 @@ public class UserChannel {
     }
 
     /**
-     * Sends command to browsers.
+     * Sends command to browsers. Identical commands to the same user within a short window are sent once.
      *
      * @param message the specified message, for example,
      *                "userId": "",
@@ -146,17 +144,19 @@ public class UserChannel {
             return;
         }
 
-        final String msgStr = message.toString();
-
-        for (final String userId : SESSIONS.keySet()) {
-            if (userId.equals(recvUserId)) {
-                final Set<Session> sessions = SESSIONS.get(userId);
+        CMD_SENDER.send(recvUserId, message.toString());
+    }
 
-                for (final Session session : sessions) {
-                    if (session.isOpen()) {
-                        session.getAsyncRemote().sendText(msgStr);
-                    }
-                }
+    /**
+     * Sends the specified text to the open sessions of the specified user.
+     *
+     * @param userId the specified user id
+     * @param text   the specified text
+     */
+    private static void sendText(final String userId, final String text) {
+        for (final Session session : SESSIONS.get(userId)) {
+            if (session.isOpen()) {
+                session.getAsyncRemote().sendText(text);
             }
         }
     }
@@ -173,30 +173,12 @@ public class UserChannel {
         }
 
         final String userId = user.optString(Keys.OBJECT_ID);
-        final BeanManager beanManager = BeanManager.getInstance();
-        final UserMgmtService userMgmtService = beanManager.getReference(UserMgmtService.class);
-        final String ip = (String) Channels.getHttpSessionAttribute(session, Common.IP);
-
-        Set<Session> userSessions = SESSIONS.get(userId);
-        if (null == userSessions) {
-            try {
-                userMgmtService.updateOnlineStatus(userId, ip, false, false);
-            } finally {
-                JdbcRepository.dispose();
-            }
-
+        if (!SESSIONS.remove(userId, session)) {
             return;
         }
 
-        userSessions.remove(session);
-        if (userSessions.isEmpty()) {
-            try {
-                userMgmtService.updateOnlineStatus(userId, ip, false, false);
-            } finally {
-                JdbcRepository.dispose();
-            }
-
-            return;
-        }
+        final BeanManager beanManager = BeanManager.getInstance();
+        final PresenceMgmtService presenceMgmtService = beanManager.getReference(PresenceMgmtService.class);
+        presenceMgmtService.disconnect(userId);
     }
 }
@@ -33,7 +33,7 @@ import java.util.List;
  * Article repository.
  *
  * @author <a href="http://88250.b3log.org">Liang Ding</a>
- * @version 1.1.1.6, Aug 27, 2018
+ * @version 1.3.0.0, Oct 25, 2018
  * @since 0.2.0
  */
 @Repository
@@ -52,11 +52,22 @@ public class ArticleRepository extends AbstractRepository {
         super(Article.ARTICLE);
     }
 
+    @Override
+    public String add(final JSONObject article) throws RepositoryException {
+        final String ret = super.add(article);
+
+        article.put(Keys.OBJECT_ID, ret);
+        articleCache.putRelatedArticle(article);
+
+        return ret;
+    }
+
     @Override
     public void remove(final String id) throws RepositoryException {
         super.remove(id);
 
         articleCache.removeArticle(id);
+        articleCache.removeRelatedArticle(id);
     }
 
     @Override
@@ -82,43 +93,25 @@ public class ArticleRepository extends AbstractRepository {
 
         article.put(Keys.OBJECT_ID, id);
         articleCache.putArticle(article);
+        articleCache.putRelatedArticle(article);
     }
 
     @Override
     public List<JSONObject> getRandomly(final int fetchSize) throws RepositoryException {
-        final List<JSONObject> ret = new ArrayList<>();
-
-        final double mid = Math.random();
+        final List<String> ids = articleCache.sampleArticleIds(fetchSize);
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
 
-        Query query = new Query().setFilter(
-                CompositeFilterOperator.and(new PropertyFilter(Article.ARTICLE_RANDOM_DOUBLE, FilterOperator.GREATER_THAN_OR_EQUAL, mid),
-                        new PropertyFilter(Article.ARTICLE_RANDOM_DOUBLE, FilterOperator.LESS_THAN_OR_EQUAL, mid),
-                        new PropertyFilter(Article.ARTICLE_STATUS, FilterOperator.NOT_EQUAL, Article.ARTICLE_STATUS_C_INVALID),
-                        new PropertyFilter(Article.ARTICLE_TYPE, FilterOperator.NOT_EQUAL, Article.ARTICLE_TYPE_C_DISCUSSION))).
+        final Query query = new Query().setFilter(
+                CompositeFilterOperator.and(new PropertyFilter(Keys.OBJECT_ID, FilterOperator.IN, ids),
+                        new PropertyFilter(Article.ARTICLE_STATUS, FilterOperator.NOT_EQUAL, Article.ARTICLE_STATUS_C_INVALID))).
                 addProjection(Article.ARTICLE_TITLE, String.class).
                 addProjection(Article.ARTICLE_PERMALINK, String.class).
                 addProjection(Article.ARTICLE_AUTHOR_ID, String.class).
-                setCurrentPageNum(1).setPageSize(fetchSize).setPageCount(1);
-        final List<JSONObject> list1 = getList(query);
-        ret.addAll(list1);
-
-        final int reminingSize = fetchSize - list1.size();
-        if (0 != reminingSize) { // Query for remains
-            query = new Query().setFilter(
-                    CompositeFilterOperator.and(new PropertyFilter(Article.ARTICLE_RANDOM_DOUBLE, FilterOperator.GREATER_THAN_OR_EQUAL, 0D),
-                            new PropertyFilter(Article.ARTICLE_RANDOM_DOUBLE, FilterOperator.LESS_THAN_OR_EQUAL, mid),
-                            new PropertyFilter(Article.ARTICLE_STATUS, FilterOperator.NOT_EQUAL, Article.ARTICLE_STATUS_C_INVALID),
-                            new PropertyFilter(Article.ARTICLE_TYPE, FilterOperator.NOT_EQUAL, Article.ARTICLE_TYPE_C_DISCUSSION))).
-                    addProjection(Article.ARTICLE_TITLE, String.class).
-                    addProjection(Article.ARTICLE_PERMALINK, String.class).
-                    addProjection(Article.ARTICLE_AUTHOR_ID, String.class).
-                    setCurrentPageNum(1).setPageSize(reminingSize).setPageCount(1);
-            final List<JSONObject> list2 = getList(query);
-
-            ret.addAll(list2);
-        }
+                setCurrentPageNum(1).setPageSize(ids.size()).setPageCount(1);
 
-        return ret;
+        return getList(query);
     }
 
     /**
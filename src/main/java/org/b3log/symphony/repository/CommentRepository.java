@@ -32,7 +32,7 @@ import org.json.JSONObject;
  * Comment repository.
  *
  * @author <a href="http://88250.b3log.org">Liang Ding</a>
- * @version 1.1.1.0, May 7, 2018
+ * @version 1.1.2.0, Oct 25, 2018
  * @since 0.2.0
  */
 @Repository
@@ -74,6 +74,12 @@ public class CommentRepository extends AbstractRepository {
     @Inject
     private NotificationRepository notificationRepository;
 
+    /**
+     * Rendered repository.
+     */
+    @Inject
+    private RenderedRepository renderedRepository;
+
     /**
      * Public constructor.
      */
@@ -143,6 +149,7 @@ public class CommentRepository extends AbstractRepository {
         }
 
         notificationRepository.removeByDataId(commentId);
+        renderedRepository.remove(commentId);
     }
 
     @Override
@@ -24,14 +24,13 @@ import org.b3log.symphony.model.Follow;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
 
 /**
  * Follow repository.
  *
  * @author <a href="http://88250.b3log.org">Liang Ding</a>
- * @version 1.0.0.1, Jan 18, 2018
+ * @version 1.1.0.0, Oct 25, 2018
  * @since 0.2.5
  */
 @Repository
@@ -91,6 +90,45 @@ public class FollowRepository extends AbstractRepository {
         return array.optJSONObject(0);
     }
 
+    /**
+     * Gets the following entities of the specified following entity ids followed by at least the specified count of
+     * followers, in one grouped query.
+     *
+     * @param followingIds   the specified following entity ids
+     * @param followingType  the specified following type
+     * @param minFollowerCnt the specified min follower count
+     * @return following entity ids
+     * @throws RepositoryException repository exception
+     */
+    public Set<String> getFollowedAtLeast(final Collection<String> followingIds, final int followingType, final int minFollowerCnt)
+            throws RepositoryException {
+        final Set<String> ret = new HashSet<>();
+        if (followingIds.isEmpty()) {
+            return ret;
+        }
+
+        final List<Object> params = new ArrayList<>();
+        params.add(followingType);
+        params.addAll(followingIds);
+        params.add(minFollowerCnt);
+        final List<JSONObject> result = select("SELECT\n"
+                + "	" + Follow.FOLLOWING_ID + "\n"
+                + "FROM\n"
+                + "	`" + getName() + "`\n"
+                + "WHERE\n"
+                + "	" + Follow.FOLLOWING_TYPE + " = ?\n"
+                + "AND " + Follow.FOLLOWING_ID + " IN (" + String.join(", ", Collections.nCopies(followingIds.size(), "?")) + ")\n"
+                + "GROUP BY\n"
+                + "	" + Follow.FOLLOWING_ID + "\n"
+                + "HAVING\n"
+                + "	COUNT(*) >= ?", params.toArray());
+        for (final JSONObject row : result) {
+            ret.add(row.optString(Follow.FOLLOWING_ID));
+        }
+
+        return ret;
+    }
+
     /**
      * Determines whether exists a follow relationship for the specified follower and the specified following entity.
      *
@@ -20,6 +20,7 @@ package org.b3log.symphony.repository;
 import org.b3log.latke.logging.Level;
 import org.b3log.latke.logging.Logger;
 import org.b3log.latke.repository.AbstractRepository;
+import org.b3log.latke.repository.RepositoryException;
 import org.b3log.latke.repository.annotation.Repository;
 import org.b3log.symphony.model.Common;
 import org.b3log.symphony.model.Pointtransfer;
@@ -31,7 +32,7 @@ import java.util.List;
  * Pointtransfer repository.
  *
  * @author <a href="http://88250.b3log.org">Liang Ding</a>
- * @version 1.1.1.0, Dec 12, 2016
+ * @version 1.2.0.0, Oct 25, 2018
  * @since 1.3.0
  */
 @Repository
@@ -75,6 +76,57 @@ public class PointtransferRepository extends AbstractRepository {
         return ret;
     }
 
+    /**
+     * Gets a page of pointtransfers sent or received by a user specified by the given user id, ordered by id
+     * descending.
+     * <p>
+     * Uses a union of the {@code fromId} and {@code toId} lookups instead of an OR filter so that each branch can be
+     * served by the index of its column. Each branch fetches at most the rows up to the end of the requested page.
+     * </p>
+     *
+     * @param userId         the given user id
+     * @param currentPageNum the specified page number
+     * @param pageSize       the specified page size
+     * @return pointtransfers, returns an empty list if not found
+     * @throws RepositoryException repository exception
+     */
+    public List<JSONObject> getByUserId(final String userId, final int currentPageNum, final int pageSize) throws RepositoryException {
+        final int offset = (currentPageNum - 1) * pageSize;
+        final int limit = offset + pageSize;
+
+        return select("SELECT\n"
+                + "	*\n"
+                + "FROM\n"
+                + "	(\n"
+                + "		(SELECT * FROM `" + getName() + "` WHERE fromId = ? ORDER BY oId DESC LIMIT " + limit + ")\n"
+                + "		UNION\n"
+                + "		(SELECT * FROM `" + getName() + "` WHERE toId = ? ORDER BY oId DESC LIMIT " + limit + ")\n"
+                + "	) t\n"
+                + "ORDER BY\n"
+                + "	oId DESC\n"
+                + "LIMIT " + pageSize + " OFFSET " + offset, userId, userId);
+    }
+
+    /**
+     * Counts pointtransfers sent or received by a user specified by the given user id.
+     *
+     * @param userId the given user id
+     * @return count
+     * @throws RepositoryException repository exception
+     */
+    public int countByUserId(final String userId) throws RepositoryException {
+        final List<JSONObject> result = select("SELECT\n"
+                + "	COUNT(*) AS cnt\n"
+                + "FROM\n"
+                + "	(\n"
+                + "		SELECT oId FROM `" + getName() + "` WHERE fromId = ?\n"
+                + "		UNION\n"
+                + "		SELECT oId FROM `" + getName() + "` WHERE toId = ?\n"
+                + "	) t", userId, userId);
+
+        return result.isEmpty() ? 0 : result.get(0).optInt("cnt");
+    }
+
     /**
      * Public constructor.
      */
@@ -0,0 +1,86 @@
+/*
+ * Symphony - A modern community (forum/BBS/SNS/blog) platform written in Java.
+ * Copyright (C) 2012-2018, b3log.org & hacpai.com
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.b3log.symphony.repository;
+
+import org.b3log.latke.Keys;
+import org.b3log.latke.repository.*;
+import org.b3log.latke.repository.annotation.Repository;
+import org.b3log.symphony.model.Rendered;
+import org.json.JSONObject;
+
+import java.util.*;
+
+/**
+ * Rendered repository.
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.0.0, Oct 25, 2018
+ * @since 3.4.3
+ */
+@Repository
+public class RenderedRepository extends AbstractRepository {
+
+    /**
+     * Public constructor.
+     */
+    public RenderedRepository() {
+        super(Rendered.RENDERED);
+    }
+
+    /**
+     * Gets rendereds by the specified ids.
+     *
+     * @param ids the specified ids of articles or comments
+     * @return rendereds, &lt;id, rendered&gt;
+     * @throws RepositoryException repository exception
+     */
+    public Map<String, JSONObject> getByIds(final Collection<String> ids) throws RepositoryException {
+        final Map<String, JSONObject> ret = new HashMap<>();
+        if (ids.isEmpty()) {
+            return ret;
+        }
+
+        final Query query = new Query().setFilter(new PropertyFilter(Keys.OBJECT_ID, FilterOperator.IN, ids)).
+                setPageCount(1);
+        for (final JSONObject rendered : getList(query)) {
+            ret.put(rendered.optString(Keys.OBJECT_ID), rendered);
+        }
+
+        return ret;
+    }
+
+    /**
+     * Gets rendereds rendered by a renderer version other than the specified version.
+     *
+     * @param version the specified version
+     * @param lastId  the specified id, only rendereds with larger ids are returned
+     * @param size    the specified max count
+     * @return rendereds (oId, renderedType) ordered by id
+     * @throws RepositoryException repository exception
+     */
+    public List<JSONObject> getStale(final int version, final String lastId, final int size) throws RepositoryException {
+        final Query query = new Query().setFilter(CompositeFilterOperator.and(
+                new PropertyFilter(Keys.OBJECT_ID, FilterOperator.GREATER_THAN, lastId),
+                new PropertyFilter(Rendered.RENDERED_VERSION, FilterOperator.NOT_EQUAL, version))).
+                addSort(Keys.OBJECT_ID, SortDirection.ASCENDING).setPageCount(1).setPageSize(size).
+                addProjection(Keys.OBJECT_ID, String.class).
+                addProjection(Rendered.RENDERED_TYPE, Integer.class);
+
+        return getList(query);
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Symphony - A modern community (forum/BBS/SNS/blog) platform written in Java.
+ * Copyright (C) 2012-2018, b3log.org & hacpai.com
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.b3log.symphony.repository;
+
+import org.b3log.latke.Keys;
+import org.b3log.latke.repository.*;
+import org.b3log.latke.repository.annotation.Repository;
+import org.b3log.latke.repository.jdbc.JdbcTransaction;
+import org.b3log.latke.repository.jdbc.util.JdbcUtil;
+import org.b3log.symphony.model.StatisticDaily;
+import org.json.JSONObject;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Daily statistic repository.
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.1.0.0, Oct 25, 2018
+ * @since 3.4.3
+ */
+@Repository
+public class StatisticDailyRepository extends AbstractRepository {
+
+    /**
+     * Public constructor.
+     */
+    public StatisticDailyRepository() {
+        super(StatisticDaily.STATISTIC_DAILY);
+    }
+
+    /**
+     * Increments a counter of the daily statistic with the specified date atomically, inserts the daily statistic if
+     * not exists.
+     *
+     * @param date  the specified date, formatted as {@code yyyyMMdd}
+     * @param field the specified counter field, for example {@value StatisticDaily#STATISTIC_DAILY_ARTICLE_CNT}
+     * @throws RepositoryException repository exception
+     */
+    public void inc(final String date, final String field) throws RepositoryException {
+        final List<String> fields = Arrays.asList(StatisticDaily.STATISTIC_DAILY_USER_CNT,
+                StatisticDaily.STATISTIC_DAILY_ARTICLE_CNT, StatisticDaily.STATISTIC_DAILY_COMMENT_CNT);
+        if (!fields.contains(field)) {
+            throw new IllegalArgumentException("Unknown counter field [" + field + "]");
+        }
+
+        final String sql = "INSERT INTO " + getName() + " (" + Keys.OBJECT_ID + ", " + String.join(", ", fields)
+                + ") VALUES (?, ?, ?, ?) ON DUPLICATE KEY UPDATE " + field + " = " + field + " + 1";
+        final List<Object> params = Arrays.asList(date, fields.get(0).equals(field) ? 1 : 0,
+                fields.get(1).equals(field) ? 1 : 0, fields.get(2).equals(field) ? 1 : 0);
+        final Transaction transaction = beginTransaction();
+        try {
+            JdbcUtil.executeSql(sql, params, ((JdbcTransaction) transaction).getConnection(), false);
+            transaction.commit();
+        } catch (final Exception e) {
+            if (transaction.isActive()) {
+                transaction.rollback();
+            }
+
+            throw new RepositoryException(e);
+        }
+    }
+
+    /**
+     * Gets daily statistics between the specified dates.
+     *
+     * @param start the specified start date (inclusive), formatted as {@code yyyyMMdd}
+     * @param end   the specified end date (inclusive), formatted as {@code yyyyMMdd}
+     * @return daily statistics ordered by date
+     * @throws RepositoryException repository exception
+     */
+    public List<JSONObject> getRange(final String start, final String end) throws RepositoryException {
+        final Query query = new Query().setFilter(CompositeFilterOperator.and(
+                new PropertyFilter(Keys.OBJECT_ID, FilterOperator.GREATER_THAN_OR_EQUAL, start),
+                new PropertyFilter(Keys.OBJECT_ID, FilterOperator.LESS_THAN_OR_EQUAL, end))).
+                addSort(Keys.OBJECT_ID, SortDirection.ASCENDING).setPageCount(1);
+
+        return getList(query);
+    }
+}
@@ -34,6 +34,7 @@ import org.b3log.symphony.model.UserExt;
 import org.b3log.symphony.repository.CharacterRepository;
 import org.b3log.symphony.repository.PointtransferRepository;
 import org.b3log.symphony.util.Results;
+import org.b3log.symphony.util.StripedLocks;
 import org.b3log.symphony.util.Symphonys;
 import org.b3log.symphony.util.Tesseracts;
 import org.json.JSONObject;
@@ -47,13 +48,14 @@ import java.net.URL;
 import java.util.Date;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.locks.Lock;
 
 /**
  * Activity management service.
  *
  * @author <a href="http://88250.b3log.org">Liang Ding</a>
  * @author <a href="http://zephyr.b3log.org">Zephyr</a>
- * @version 1.6.10.1, Jan 30, 2018
+ * @version 1.7.0.0, Oct 25, 2018
  * @since 1.3.0
  */
 @Service
@@ -64,6 +66,11 @@ public class ActivityMgmtService {
      */
     private static final Logger LOGGER = Logger.getLogger(ActivityMgmtService.class);
 
+    /**
+     * Per-user locks, serializes activities of a user without blocking other users.
+     */
+    private static final StripedLocks USER_LOCKS = new StripedLocks(256);
+
     /**
      * Character repository.
      */
@@ -130,23 +137,29 @@ public class ActivityMgmtService {
      * @param userId the specified user id
      * @return result
      */
-    public synchronized JSONObject startEatingSnake(final String userId) {
-        final JSONObject ret = Results.falseResult();
+    public JSONObject startEatingSnake(final String userId) {
+        final Lock lock = USER_LOCKS.get(userId);
+        lock.lock();
+        try {
+            final JSONObject ret = Results.falseResult();
 
-        final int startPoint = pointtransferRepository.getActivityEatingSnakeAvg(userId);
+            final int startPoint = pointtransferRepository.getActivityEatingSnakeAvg(userId);
 
-        final boolean succ = null != pointtransferMgmtService.transfer(userId, Pointtransfer.ID_C_SYS,
-                Pointtransfer.TRANSFER_TYPE_C_ACTIVITY_EATINGSNAKE,
-                startPoint, "", System.currentTimeMillis(), "");
+            final boolean succ = null != pointtransferMgmtService.transfer(userId, Pointtransfer.ID_C_SYS,
+                    Pointtransfer.TRANSFER_TYPE_C_ACTIVITY_EATINGSNAKE,
+                    startPoint, "", System.currentTimeMillis(), "");
 
-        ret.put(Keys.STATUS_CODE, succ);
+            ret.put(Keys.STATUS_CODE, succ);
 
-        final String msg = succ ? "started" : langPropsService.get("activityStartEatingSnakeFailLabel");
-        ret.put(Keys.MSG, msg);
+            final String msg = succ ? "started" : langPropsService.get("activityStartEatingSnakeFailLabel");
+            ret.put(Keys.MSG, msg);
 
-        livenessMgmtService.incLiveness(userId, Liveness.LIVENESS_ACTIVITY);
+            livenessMgmtService.incLiveness(userId, Liveness.LIVENESS_ACTIVITY);
 
-        return ret;
+            return ret;
+        } finally {
+            lock.unlock();
+        }
     }
 
     /**
@@ -156,29 +169,35 @@ public class ActivityMgmtService {
      * @param score  the specified score
      * @return result
      */
-    public synchronized JSONObject collectEatingSnake(final String userId, final int score) {
-        final JSONObject ret = Results.falseResult();
+    public JSONObject collectEatingSnake(final String userId, final int score) {
+        final Lock lock = USER_LOCKS.get(userId);
+        lock.lock();
+        try {
+            final JSONObject ret = Results.falseResult();
 
-        if (score < 1) {
-            ret.put(Keys.STATUS_CODE, true);
+            if (score < 1) {
+                ret.put(Keys.STATUS_CODE, true);
 
-            return ret;
-        }
+                return ret;
+            }
 
-        final int max = Symphonys.getInt("pointActivityEatingSnakeCollectMax");
-        final int amout = score > max ? max : score;
+            final int max = Symphonys.getInt("pointActivityEatingSnakeCollectMax");
+            final int amout = score > max ? max : score;
 
-        final boolean succ = null != pointtransferMgmtService.transfer(Pointtransfer.ID_C_SYS, userId,
-                Pointtransfer.TRANSFER_TYPE_C_ACTIVITY_EATINGSNAKE_COLLECT, amout,
-                "", System.currentTimeMillis(), "");
+            final boolean succ = null != pointtransferMgmtService.transfer(Pointtransfer.ID_C_SYS, userId,
+                    Pointtransfer.TRANSFER_TYPE_C_ACTIVITY_EATINGSNAKE_COLLECT, amout,
+                    "", System.currentTimeMillis(), "");
 
-        if (!succ) {
-            ret.put(Keys.MSG, "Sorry, transfer point failed, please contact admin");
-        }
+            if (!succ) {
+                ret.put(Keys.MSG, "Sorry, transfer point failed, please contact admin");
+            }
 
-        ret.put(Keys.STATUS_CODE, succ);
+            ret.put(Keys.STATUS_CODE, succ);
 
-        return ret;
+            return ret;
+        } finally {
+            lock.unlock();
+        }
     }
 
     /**
@@ -189,98 +208,104 @@ public class ActivityMgmtService {
      * @param character    the specified character
      * @return recognition result
      */
-    public synchronized JSONObject submitCharacter(final String userId, final String characterImg, final String character) {
-        String recongnizeFailedMsg = langPropsService.get("activityCharacterRecognizeFailedLabel");
-
-        final JSONObject ret = new JSONObject();
-        ret.put(Keys.STATUS_CODE, false);
-        ret.put(Keys.MSG, recongnizeFailedMsg);
+    public JSONObject submitCharacter(final String userId, final String characterImg, final String character) {
+        final Lock lock = USER_LOCKS.get(userId);
+        lock.lock();
+        try {
+            String recongnizeFailedMsg = langPropsService.get("activityCharacterRecognizeFailedLabel");
 
-        if (StringUtils.isBlank(characterImg) || StringUtils.isBlank(character)) {
+            final JSONObject ret = new JSONObject();
             ret.put(Keys.STATUS_CODE, false);
             ret.put(Keys.MSG, recongnizeFailedMsg);
 
-            return ret;
-        }
+            if (StringUtils.isBlank(characterImg) || StringUtils.isBlank(character)) {
+                ret.put(Keys.STATUS_CODE, false);
+                ret.put(Keys.MSG, recongnizeFailedMsg);
 
-        final byte[] data = Base64.decode(characterImg);
-        OutputStream stream = null;
-        final String tmpDir = System.getProperty("java.io.tmpdir");
-        final String imagePath = tmpDir + "/" + userId + "-character.png";
+                return ret;
+            }
 
-        try {
-            stream = new FileOutputStream(imagePath);
-            stream.write(data);
-            stream.flush();
-            stream.close();
-        } catch (final IOException e) {
-            LOGGER.log(Level.ERROR, "Submits character failed", e);
+            final byte[] data = Base64.decode(characterImg);
+            OutputStream stream = null;
+            final String tmpDir = System.getProperty("java.io.tmpdir");
+            final String imagePath = tmpDir + "/" + userId + "-character.png";
 
-            return ret;
-        } finally {
-            if (null != stream) {
-                try {
-                    stream.close();
-                } catch (final IOException ex) {
-                    LOGGER.log(Level.ERROR, "Closes stream failed", ex);
+            try {
+                stream = new FileOutputStream(imagePath);
+                stream.write(data);
+                stream.flush();
+                stream.close();
+            } catch (final IOException e) {
+                LOGGER.log(Level.ERROR, "Submits character failed", e);
+
+                return ret;
+            } finally {
+                if (null != stream) {
+                    try {
+                        stream.close();
+                    } catch (final IOException ex) {
+                        LOGGER.log(Level.ERROR, "Closes stream failed", ex);
+                    }
                 }
             }
-        }
 
-        final String recognizedCharacter = Tesseracts.recognizeCharacter(imagePath);
-        LOGGER.info("Character [" + character + "], recognized [" + recognizedCharacter + "], image path [" + imagePath
-                + "]");
-        if (StringUtils.equals(character, recognizedCharacter)) {
-            final Query query = new Query();
-            query.setFilter(CompositeFilterOperator.and(
-                    new PropertyFilter(org.b3log.symphony.model.Character.CHARACTER_USER_ID, FilterOperator.EQUAL, userId),
-                    new PropertyFilter(org.b3log.symphony.model.Character.CHARACTER_CONTENT, FilterOperator.EQUAL, character)
-            ));
+            final String recognizedCharacter = Tesseracts.recognizeCharacter(imagePath);
+            LOGGER.info("Character [" + character + "], recognized [" + recognizedCharacter + "], image path [" + imagePath
+                    + "]");
+            if (StringUtils.equals(character, recognizedCharacter)) {
+                final Query query = new Query();
+                query.setFilter(CompositeFilterOperator.and(
+                        new PropertyFilter(org.b3log.symphony.model.Character.CHARACTER_USER_ID, FilterOperator.EQUAL, userId),
+                        new PropertyFilter(org.b3log.symphony.model.Character.CHARACTER_CONTENT, FilterOperator.EQUAL, character)
+                ));
+
+                try {
+                    if (characterRepository.count(query) > 0) {
+                        return ret;
+                    }
+                } catch (final RepositoryException e) {
+                    LOGGER.log(Level.ERROR, "Count characters failed [userId=" + userId + ", character=" + character + "]", e);
 
-            try {
-                if (characterRepository.count(query) > 0) {
                     return ret;
                 }
-            } catch (final RepositoryException e) {
-                LOGGER.log(Level.ERROR, "Count characters failed [userId=" + userId + ", character=" + character + "]", e);
 
-                return ret;
-            }
+                final JSONObject record = new JSONObject();
+                record.put(org.b3log.symphony.model.Character.CHARACTER_CONTENT, character);
+                record.put(org.b3log.symphony.model.Character.CHARACTER_IMG, characterImg);
+                record.put(org.b3log.symphony.model.Character.CHARACTER_USER_ID, userId);
 
-            final JSONObject record = new JSONObject();
-            record.put(org.b3log.symphony.model.Character.CHARACTER_CONTENT, character);
-            record.put(org.b3log.symphony.model.Character.CHARACTER_IMG, characterImg);
-            record.put(org.b3log.symphony.model.Character.CHARACTER_USER_ID, userId);
+                String characterId = "";
+                final Transaction transaction = characterRepository.beginTransaction();
+                try {
+                    characterId = characterRepository.add(record);
 
-            String characterId = "";
-            final Transaction transaction = characterRepository.beginTransaction();
-            try {
-                characterId = characterRepository.add(record);
+                    transaction.commit();
+                } catch (final RepositoryException e) {
+                    LOGGER.log(Level.ERROR, "Submits character failed", e);
 
-                transaction.commit();
-            } catch (final RepositoryException e) {
-                LOGGER.log(Level.ERROR, "Submits character failed", e);
+                    if (null != transaction) {
+                        transaction.rollback();
+                    }
 
-                if (null != transaction) {
-                    transaction.rollback();
+                    return ret;
                 }
 
-                return ret;
-            }
+                pointtransferMgmtService.transfer(Pointtransfer.ID_C_SYS, userId,
+                        Pointtransfer.TRANSFER_TYPE_C_ACTIVITY_CHARACTER, Pointtransfer.TRANSFER_SUM_C_ACTIVITY_CHARACTER,
+                        characterId, System.currentTimeMillis(), "");
 
-            pointtransferMgmtService.transfer(Pointtransfer.ID_C_SYS, userId,
-                    Pointtransfer.TRANSFER_TYPE_C_ACTIVITY_CHARACTER, Pointtransfer.TRANSFER_SUM_C_ACTIVITY_CHARACTER,
-                    characterId, System.currentTimeMillis(), "");
+                ret.put(Keys.STATUS_CODE, true);
+                ret.put(Keys.MSG, langPropsService.get("activityCharacterRecognizeSuccLabel"));
+            } else {
+                recongnizeFailedMsg = recongnizeFailedMsg.replace("{一}", recognizedCharacter);
+                ret.put(Keys.STATUS_CODE, false);
+                ret.put(Keys.MSG, recongnizeFailedMsg);
+            }
 
-            ret.put(Keys.STATUS_CODE, true);
-            ret.put(Keys.MSG, langPropsService.get("activityCharacterRecognizeSuccLabel"));
-        } else {
-            recongnizeFailedMsg = recongnizeFailedMsg.replace("{一}", recognizedCharacter);
-            ret.put(Keys.STATUS_CODE, false);
-            ret.put(Keys.MSG, recongnizeFailedMsg);
+            return ret;
+        } finally {
+            lock.unlock();
         }
-
-        return ret;
     }
 
     /**
@@ -289,101 +314,107 @@ public class ActivityMgmtService {
      * @param userId the specified user id
      * @return {@code Random int} if checkin succeeded, returns {@code Integer.MIN_VALUE} otherwise
      */
-    public synchronized int dailyCheckin(final String userId) {
-        if (activityQueryService.isCheckedinToday(userId)) {
-            return Integer.MIN_VALUE;
-        }
+    public int dailyCheckin(final String userId) {
+        final Lock lock = USER_LOCKS.get(userId);
+        lock.lock();
+        try {
+            if (activityQueryService.isCheckedinToday(userId)) {
+                return Integer.MIN_VALUE;
+            }
 
-        final Random random = new Random();
-        final int sum = random.nextInt(Pointtransfer.TRANSFER_SUM_C_ACTIVITY_CHECKIN_MAX)
-                % (Pointtransfer.TRANSFER_SUM_C_ACTIVITY_CHECKIN_MAX - Pointtransfer.TRANSFER_SUM_C_ACTIVITY_CHECKIN_MIN + 1)
-                + Pointtransfer.TRANSFER_SUM_C_ACTIVITY_CHECKIN_MIN;
-        final boolean succ = null != pointtransferMgmtService.transfer(Pointtransfer.ID_C_SYS, userId,
-                Pointtransfer.TRANSFER_TYPE_C_ACTIVITY_CHECKIN, sum, userId, System.currentTimeMillis(), "");
-        if (!succ) {
-            return Integer.MIN_VALUE;
-        }
+            final Random random = new Random();
+            final int sum = random.nextInt(Pointtransfer.TRANSFER_SUM_C_ACTIVITY_CHECKIN_MAX)
+                    % (Pointtransfer.TRANSFER_SUM_C_ACTIVITY_CHECKIN_MAX - Pointtransfer.TRANSFER_SUM_C_ACTIVITY_CHECKIN_MIN + 1)
+                    + Pointtransfer.TRANSFER_SUM_C_ACTIVITY_CHECKIN_MIN;
+            final boolean succ = null != pointtransferMgmtService.transfer(Pointtransfer.ID_C_SYS, userId,
+                    Pointtransfer.TRANSFER_TYPE_C_ACTIVITY_CHECKIN, sum, userId, System.currentTimeMillis(), "");
+            if (!succ) {
+                return Integer.MIN_VALUE;
+            }
 
-        try {
-            final JSONObject user = userQueryService.getUser(userId);
+            try {
+                final JSONObject user = userQueryService.getUser(userId);
 
-            int currentStreakStart = user.optInt(UserExt.USER_CURRENT_CHECKIN_STREAK_START);
-            int currentStreakEnd = user.optInt(UserExt.USER_CURRENT_CHECKIN_STREAK_END);
+                int currentStreakStart = user.optInt(UserExt.USER_CURRENT_CHECKIN_STREAK_START);
+                int currentStreakEnd = user.optInt(UserExt.USER_CURRENT_CHECKIN_STREAK_END);
 
-            final Date today = new Date();
-            user.put(UserExt.USER_CHECKIN_TIME, today.getTime());
+                final Date today = new Date();
+                user.put(UserExt.USER_CHECKIN_TIME, today.getTime());
 
-            final String todayStr = DateFormatUtils.format(today, "yyyyMMdd");
-            final int todayInt = Integer.valueOf(todayStr);
+                final String todayStr = DateFormatUtils.format(today, "yyyyMMdd");
+                final int todayInt = Integer.valueOf(todayStr);
 
-            if (0 == currentStreakStart) {
-                user.put(UserExt.USER_CURRENT_CHECKIN_STREAK_START, todayInt);
-                user.put(UserExt.USER_CURRENT_CHECKIN_STREAK_END, todayInt);
-                user.put(UserExt.USER_LONGEST_CHECKIN_STREAK_START, todayInt);
-                user.put(UserExt.USER_LONGEST_CHECKIN_STREAK_END, todayInt);
-                user.put(UserExt.USER_CURRENT_CHECKIN_STREAK, 1);
-                user.put(UserExt.USER_LONGEST_CHECKIN_STREAK, 1);
+                if (0 == currentStreakStart) {
+                    user.put(UserExt.USER_CURRENT_CHECKIN_STREAK_START, todayInt);
+                    user.put(UserExt.USER_CURRENT_CHECKIN_STREAK_END, todayInt);
+                    user.put(UserExt.USER_LONGEST_CHECKIN_STREAK_START, todayInt);
+                    user.put(UserExt.USER_LONGEST_CHECKIN_STREAK_END, todayInt);
+                    user.put(UserExt.USER_CURRENT_CHECKIN_STREAK, 1);
+                    user.put(UserExt.USER_LONGEST_CHECKIN_STREAK, 1);
 
-                userMgmtService.updateUser(userId, user);
+                    userMgmtService.updateUser(userId, user);
 
-                return sum;
-            }
+                    return sum;
+                }
 
-            final Date endDate = DateUtils.parseDate(String.valueOf(currentStreakEnd), new String[]{"yyyyMMdd"});
-            final Date nextDate = DateUtils.addDays(endDate, 1);
+                final Date endDate = DateUtils.parseDate(String.valueOf(currentStreakEnd), new String[]{"yyyyMMdd"});
+                final Date nextDate = DateUtils.addDays(endDate, 1);
 
-            if (DateUtils.isSameDay(nextDate, today)) {
-                user.put(UserExt.USER_CURRENT_CHECKIN_STREAK_END, todayInt);
-            } else {
-                user.put(UserExt.USER_CURRENT_CHECKIN_STREAK_START, todayInt);
-                user.put(UserExt.USER_CURRENT_CHECKIN_STREAK_END, todayInt);
-            }
+                if (DateUtils.isSameDay(nextDate, today)) {
+                    user.put(UserExt.USER_CURRENT_CHECKIN_STREAK_END, todayInt);
+                } else {
+                    user.put(UserExt.USER_CURRENT_CHECKIN_STREAK_START, todayInt);
+                    user.put(UserExt.USER_CURRENT_CHECKIN_STREAK_END, todayInt);
+                }
 
-            currentStreakStart = user.optInt(UserExt.USER_CURRENT_CHECKIN_STREAK_START);
-            currentStreakEnd = user.optInt(UserExt.USER_CURRENT_CHECKIN_STREAK_END);
-            final int longestStreakStart = user.optInt(UserExt.USER_LONGEST_CHECKIN_STREAK_START);
-            final int longestStreakEnd = user.optInt(UserExt.USER_LONGEST_CHECKIN_STREAK_END);
-
-            final Date currentStreakStartDate
-                    = DateUtils.parseDate(String.valueOf(currentStreakStart), new String[]{"yyyyMMdd"});
-            final Date currentStreakEndDate
-                    = DateUtils.parseDate(String.valueOf(currentStreakEnd), new String[]{"yyyyMMdd"});
-            final Date longestStreakStartDate
-                    = DateUtils.parseDate(String.valueOf(longestStreakStart), new String[]{"yyyyMMdd"});
-            final Date longestStreakEndDate
-                    = DateUtils.parseDate(String.valueOf(longestStreakEnd), new String[]{"yyyyMMdd"});
-
-            final int currentStreakDays
-                    = (int) ((currentStreakEndDate.getTime() - currentStreakStartDate.getTime()) / 86400000) + 1;
-            final int longestStreakDays
-                    = (int) ((longestStreakEndDate.getTime() - longestStreakStartDate.getTime()) / 86400000) + 1;
-
-            user.put(UserExt.USER_CURRENT_CHECKIN_STREAK, currentStreakDays);
-            user.put(UserExt.USER_LONGEST_CHECKIN_STREAK, longestStreakDays);
-
-            if (longestStreakDays < currentStreakDays) {
-                user.put(UserExt.USER_LONGEST_CHECKIN_STREAK_START, currentStreakStart);
-                user.put(UserExt.USER_LONGEST_CHECKIN_STREAK_END, currentStreakEnd);
-
-                user.put(UserExt.USER_LONGEST_CHECKIN_STREAK, currentStreakDays);
-            }
+                currentStreakStart = user.optInt(UserExt.USER_CURRENT_CHECKIN_STREAK_START);
+                currentStreakEnd = user.optInt(UserExt.USER_CURRENT_CHECKIN_STREAK_END);
+                final int longestStreakStart = user.optInt(UserExt.USER_LONGEST_CHECKIN_STREAK_START);
+                final int longestStreakEnd = user.optInt(UserExt.USER_LONGEST_CHECKIN_STREAK_END);
+
+                final Date currentStreakStartDate
+                        = DateUtils.parseDate(String.valueOf(currentStreakStart), new String[]{"yyyyMMdd"});
+                final Date currentStreakEndDate
+                        = DateUtils.parseDate(String.valueOf(currentStreakEnd), new String[]{"yyyyMMdd"});
+                final Date longestStreakStartDate
+                        = DateUtils.parseDate(String.valueOf(longestStreakStart), new String[]{"yyyyMMdd"});
+                final Date longestStreakEndDate
+                        = DateUtils.parseDate(String.valueOf(longestStreakEnd), new String[]{"yyyyMMdd"});
+
+                final int currentStreakDays
+                        = (int) ((currentStreakEndDate.getTime() - currentStreakStartDate.getTime()) / 86400000) + 1;
+                final int longestStreakDays
+                        = (int) ((longestStreakEndDate.getTime() - longestStreakStartDate.getTime()) / 86400000) + 1;
+
+                user.put(UserExt.USER_CURRENT_CHECKIN_STREAK, currentStreakDays);
+                user.put(UserExt.USER_LONGEST_CHECKIN_STREAK, longestStreakDays);
+
+                if (longestStreakDays < currentStreakDays) {
+                    user.put(UserExt.USER_LONGEST_CHECKIN_STREAK_START, currentStreakStart);
+                    user.put(UserExt.USER_LONGEST_CHECKIN_STREAK_END, currentStreakEnd);
+
+                    user.put(UserExt.USER_LONGEST_CHECKIN_STREAK, currentStreakDays);
+                }
 
-            userMgmtService.updateUser(userId, user);
+                userMgmtService.updateUser(userId, user);
 
-            if (currentStreakDays > 0 && 0 == currentStreakDays % 10) {
-                // Additional Point
-                pointtransferMgmtService.transfer(Pointtransfer.ID_C_SYS, userId,
-                        Pointtransfer.TRANSFER_TYPE_C_ACTIVITY_CHECKIN_STREAK,
-                        Pointtransfer.TRANSFER_SUM_C_ACTIVITY_CHECKINT_STREAK, userId, System.currentTimeMillis(), "");
-            }
+                if (currentStreakDays > 0 && 0 == currentStreakDays % 10) {
+                    // Additional Point
+                    pointtransferMgmtService.transfer(Pointtransfer.ID_C_SYS, userId,
+                            Pointtransfer.TRANSFER_TYPE_C_ACTIVITY_CHECKIN_STREAK,
+                            Pointtransfer.TRANSFER_SUM_C_ACTIVITY_CHECKINT_STREAK, userId, System.currentTimeMillis(), "");
+                }
 
-            livenessMgmtService.incLiveness(userId, Liveness.LIVENESS_ACTIVITY);
+                livenessMgmtService.incLiveness(userId, Liveness.LIVENESS_ACTIVITY);
 
-            return sum;
-        } catch (final Exception e) {
-            LOGGER.log(Level.ERROR, "Checkin streak error", e);
+                return sum;
+            } catch (final Exception e) {
+                LOGGER.log(Level.ERROR, "Checkin streak error", e);
 
-            return Integer.MIN_VALUE;
+                return Integer.MIN_VALUE;
+            }
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -395,29 +426,35 @@ public class ActivityMgmtService {
      * @param smallOrLarge the specified small or large
      * @return result
      */
-    public synchronized JSONObject bet1A0001(final String userId, final int amount, final int smallOrLarge) {
-        final JSONObject ret = Results.falseResult();
+    public JSONObject bet1A0001(final String userId, final int amount, final int smallOrLarge) {
+        final Lock lock = USER_LOCKS.get(userId);
+        lock.lock();
+        try {
+            final JSONObject ret = Results.falseResult();
 
-        if (activityQueryService.is1A0001Today(userId)) {
-            ret.put(Keys.MSG, langPropsService.get("activityParticipatedLabel"));
+            if (activityQueryService.is1A0001Today(userId)) {
+                ret.put(Keys.MSG, langPropsService.get("activityParticipatedLabel"));
 
-            return ret;
-        }
+                return ret;
+            }
 
-        final String date = DateFormatUtils.format(new Date(), "yyyyMMdd");
+            final String date = DateFormatUtils.format(new Date(), "yyyyMMdd");
 
-        final boolean succ = null != pointtransferMgmtService.transfer(userId, Pointtransfer.ID_C_SYS,
-                Pointtransfer.TRANSFER_TYPE_C_ACTIVITY_1A0001, amount, date + "-" + smallOrLarge, System.currentTimeMillis(), "");
+            final boolean succ = null != pointtransferMgmtService.transfer(userId, Pointtransfer.ID_C_SYS,
+                    Pointtransfer.TRANSFER_TYPE_C_ACTIVITY_1A0001, amount, date + "-" + smallOrLarge, System.currentTimeMillis(), "");
 
-        ret.put(Keys.STATUS_CODE, succ);
+            ret.put(Keys.STATUS_CODE, succ);
 
-        final String msg = succ
-                ? langPropsService.get("activityBetSuccLabel") : langPropsService.get("activityBetFailLabel");
-        ret.put(Keys.MSG, msg);
+            final String msg = succ
+                    ? langPropsService.get("activityBetSuccLabel") : langPropsService.get("activityBetFailLabel");
+            ret.put(Keys.MSG, msg);
 
-        livenessMgmtService.incLiveness(userId, Liveness.LIVENESS_ACTIVITY);
+            livenessMgmtService.incLiveness(userId, Liveness.LIVENESS_ACTIVITY);
 
-        return ret;
+            return ret;
+        } finally {
+            lock.unlock();
+        }
     }
 
     /**
@@ -426,86 +463,92 @@ public class ActivityMgmtService {
      * @param userId the specified user id
      * @return result
      */
-    public synchronized JSONObject collect1A0001(final String userId) {
-        final JSONObject ret = Results.falseResult();
+    public JSONObject collect1A0001(final String userId) {
+        final Lock lock = USER_LOCKS.get(userId);
+        lock.lock();
+        try {
+            final JSONObject ret = Results.falseResult();
 
-        if (!activityQueryService.is1A0001Today(userId)) {
-            ret.put(Keys.MSG, langPropsService.get("activityNotParticipatedLabel"));
+            if (!activityQueryService.is1A0001Today(userId)) {
+                ret.put(Keys.MSG, langPropsService.get("activityNotParticipatedLabel"));
 
-            return ret;
-        }
-
-        if (activityQueryService.isCollected1A0001Today(userId)) {
-            ret.put(Keys.MSG, langPropsService.get("activityParticipatedLabel"));
+                return ret;
+            }
 
-            return ret;
-        }
+            if (activityQueryService.isCollected1A0001Today(userId)) {
+                ret.put(Keys.MSG, langPropsService.get("activityParticipatedLabel"));
 
-        final List<JSONObject> records = pointtransferQueryService.getLatestPointtransfers(userId,
-                Pointtransfer.TRANSFER_TYPE_C_ACTIVITY_1A0001, 1);
-        final JSONObject pointtransfer = records.get(0);
-        final String data = pointtransfer.optString(Pointtransfer.DATA_ID);
-        final String smallOrLarge = data.split("-")[1];
-        final int sum = pointtransfer.optInt(Pointtransfer.SUM);
+                return ret;
+            }
 
-        String smallOrLargeResult = null;
-        try {
-            final Document doc = Jsoup.parse(new URL("http://stockpage.10jqka.com.cn/1A0001/quote/header/"), 5000);
-            final JSONObject result = new JSONObject(doc.text());
-            final String price = result.optJSONObject("data").optJSONObject("1A0001").optString("10");
+            final List<JSONObject> records = pointtransferQueryService.getLatestPointtransfers(userId,
+                    Pointtransfer.TRANSFER_TYPE_C_ACTIVITY_1A0001, 1);
+            final JSONObject pointtransfer = records.get(0);
+            final String data = pointtransfer.optString(Pointtransfer.DATA_ID);
+            final String smallOrLarge = data.split("-")[1];
+            final int sum = pointtransfer.optInt(Pointtransfer.SUM);
 
-            if (!price.contains(".")) {
-                smallOrLargeResult = "0";
-            } else {
-                int endInt = 0;
-                if (price.split("\\.")[1].length() > 1) {
-                    final String end = price.substring(price.length() - 1);
-                    endInt = Integer.valueOf(end);
-                }
+            String smallOrLargeResult = null;
+            try {
+                final Document doc = Jsoup.parse(new URL("http://stockpage.10jqka.com.cn/1A0001/quote/header/"), 5000);
+                final JSONObject result = new JSONObject(doc.text());
+                final String price = result.optJSONObject("data").optJSONObject("1A0001").optString("10");
 
-                if (0 <= endInt && endInt <= 4) {
+                if (!price.contains(".")) {
                     smallOrLargeResult = "0";
-                } else if (5 <= endInt && endInt <= 9) {
-                    smallOrLargeResult = "1";
                 } else {
-                    LOGGER.error("Activity 1A0001 collect result [" + endInt + "]");
+                    int endInt = 0;
+                    if (price.split("\\.")[1].length() > 1) {
+                        final String end = price.substring(price.length() - 1);
+                        endInt = Integer.valueOf(end);
+                    }
+
+                    if (0 <= endInt && endInt <= 4) {
+                        smallOrLargeResult = "0";
+                    } else if (5 <= endInt && endInt <= 9) {
+                        smallOrLargeResult = "1";
+                    } else {
+                        LOGGER.error("Activity 1A0001 collect result [" + endInt + "]");
+                    }
                 }
-            }
-        } catch (final Exception e) {
-            LOGGER.log(Level.ERROR, "Collect 1A0001 failed", e);
+            } catch (final Exception e) {
+                LOGGER.log(Level.ERROR, "Collect 1A0001 failed", e);
 
-            ret.put(Keys.MSG, langPropsService.get("activity1A0001CollectFailLabel"));
+                ret.put(Keys.MSG, langPropsService.get("activity1A0001CollectFailLabel"));
 
-            return ret;
-        }
+                return ret;
+            }
 
-        if (StringUtils.isBlank(smallOrLarge)) {
-            ret.put(Keys.MSG, langPropsService.get("activity1A0001CollectFailLabel"));
+            if (StringUtils.isBlank(smallOrLarge)) {
+                ret.put(Keys.MSG, langPropsService.get("activity1A0001CollectFailLabel"));
 
-            return ret;
-        }
+                return ret;
+            }
 
-        ret.put(Keys.STATUS_CODE, true);
-        if (StringUtils.equals(smallOrLarge, smallOrLargeResult)) {
-            final int amount = sum * 2;
+            ret.put(Keys.STATUS_CODE, true);
+            if (StringUtils.equals(smallOrLarge, smallOrLargeResult)) {
+                final int amount = sum * 2;
 
-            final boolean succ = null != pointtransferMgmtService.transfer(Pointtransfer.ID_C_SYS, userId,
-                    Pointtransfer.TRANSFER_TYPE_C_ACTIVITY_1A0001_COLLECT, amount,
-                    DateFormatUtils.format(new Date(), "yyyyMMdd") + "-" + smallOrLargeResult, System.currentTimeMillis(), "");
+                final boolean succ = null != pointtransferMgmtService.transfer(Pointtransfer.ID_C_SYS, userId,
+                        Pointtransfer.TRANSFER_TYPE_C_ACTIVITY_1A0001_COLLECT, amount,
+                        DateFormatUtils.format(new Date(), "yyyyMMdd") + "-" + smallOrLargeResult, System.currentTimeMillis(), "");
 
-            if (succ) {
-                String msg = langPropsService.get("activity1A0001CollectSucc1Label");
-                msg = msg.replace("{point}", String.valueOf(amount));
+                if (succ) {
+                    String msg = langPropsService.get("activity1A0001CollectSucc1Label");
+                    msg = msg.replace("{point}", String.valueOf(amount));
 
-                ret.put(Keys.MSG, msg);
+                    ret.put(Keys.MSG, msg);
+                } else {
+                    ret.put(Keys.MSG, langPropsService.get("activity1A0001CollectFailLabel"));
+                }
             } else {
-                ret.put(Keys.MSG, langPropsService.get("activity1A0001CollectFailLabel"));
+                ret.put(Keys.MSG, langPropsService.get("activity1A0001CollectSucc0Label"));
             }
-        } else {
-            ret.put(Keys.MSG, langPropsService.get("activity1A0001CollectSucc0Label"));
-        }
 
-        return ret;
+            return ret;
+        } finally {
+            lock.unlock();
+        }
     }
 
     /**
@@ -513,30 +556,36 @@ public class ActivityMgmtService {
      *
      * @param userId the specified user id
      */
-    public synchronized void yesterdayLivenessReward(final String userId) {
-        if (activityQueryService.isCollectedYesterdayLivenessReward(userId)) {
-            return;
-        }
+    public void yesterdayLivenessReward(final String userId) {
+        final Lock lock = USER_LOCKS.get(userId);
+        lock.lock();
+        try {
+            if (activityQueryService.isCollectedYesterdayLivenessReward(userId)) {
+                return;
+            }
 
-        final JSONObject yesterdayLiveness = livenessQueryService.getYesterdayLiveness(userId);
-        if (null == yesterdayLiveness) {
-            return;
-        }
+            final JSONObject yesterdayLiveness = livenessQueryService.getYesterdayLiveness(userId);
+            if (null == yesterdayLiveness) {
+                return;
+            }
 
-        final int sum = Liveness.calcPoint(yesterdayLiveness);
+            final int sum = Liveness.calcPoint(yesterdayLiveness);
 
-        if (0 == sum) {
-            return;
-        }
+            if (0 == sum) {
+                return;
+            }
 
-        boolean succ = null != pointtransferMgmtService.transfer(Pointtransfer.ID_C_SYS, userId,
-                Pointtransfer.TRANSFER_TYPE_C_ACTIVITY_YESTERDAY_LIVENESS_REWARD, sum, userId, System.currentTimeMillis(), "");
-        if (!succ) {
-            return;
-        }
+            boolean succ = null != pointtransferMgmtService.transfer(Pointtransfer.ID_C_SYS, userId,
+                    Pointtransfer.TRANSFER_TYPE_C_ACTIVITY_YESTERDAY_LIVENESS_REWARD, sum, userId, System.currentTimeMillis(), "");
+            if (!succ) {
+                return;
+            }
 
-        // Today liveness (activity)
-        livenessMgmtService.incLiveness(userId, Liveness.LIVENESS_ACTIVITY);
+            // Today liveness (activity)
+            livenessMgmtService.incLiveness(userId, Liveness.LIVENESS_ACTIVITY);
+        } finally {
+            lock.unlock();
+        }
     }
 
     /**
@@ -545,23 +594,29 @@ public class ActivityMgmtService {
      * @param userId the specified user id
      * @return result
      */
-    public synchronized JSONObject startGobang(final String userId) {
-        final JSONObject ret = Results.falseResult();
+    public JSONObject startGobang(final String userId) {
+        final Lock lock = USER_LOCKS.get(userId);
+        lock.lock();
+        try {
+            final JSONObject ret = Results.falseResult();
 
-        final int startPoint = Pointtransfer.TRANSFER_SUM_C_ACTIVITY_GOBANG_START;
+            final int startPoint = Pointtransfer.TRANSFER_SUM_C_ACTIVITY_GOBANG_START;
 
-        final boolean succ = null != pointtransferMgmtService.transfer(userId, Pointtransfer.ID_C_SYS,
-                Pointtransfer.TRANSFER_TYPE_C_ACTIVITY_GOBANG,
-                startPoint, "", System.currentTimeMillis(), "");
+            final boolean succ = null != pointtransferMgmtService.transfer(userId, Pointtransfer.ID_C_SYS,
+                    Pointtransfer.TRANSFER_TYPE_C_ACTIVITY_GOBANG,
+                    startPoint, "", System.currentTimeMillis(), "");
 
-        ret.put(Keys.STATUS_CODE, succ);
+            ret.put(Keys.STATUS_CODE, succ);
 
-        final String msg = succ ? "started" : langPropsService.get("activityStartGobangFailLabel");
-        ret.put(Keys.MSG, msg);
+            final String msg = succ ? "started" : langPropsService.get("activityStartGobangFailLabel");
+            ret.put(Keys.MSG, msg);
 
-        livenessMgmtService.incLiveness(userId, Liveness.LIVENESS_ACTIVITY);
+            livenessMgmtService.incLiveness(userId, Liveness.LIVENESS_ACTIVITY);
 
-        return ret;
+            return ret;
+        } finally {
+            lock.unlock();
+        }
     }
 
     /**
@@ -571,19 +626,25 @@ public class ActivityMgmtService {
      * @param score  the specified score
      * @return result
      */
-    public synchronized JSONObject collectGobang(final String userId, final int score) {
-        final JSONObject ret = Results.falseResult();
+    public JSONObject collectGobang(final String userId, final int score) {
+        final Lock lock = USER_LOCKS.get(userId);
+        lock.lock();
+        try {
+            final JSONObject ret = Results.falseResult();
 
-        final boolean succ = null != pointtransferMgmtService.transfer(Pointtransfer.ID_C_SYS, userId,
-                Pointtransfer.TRANSFER_TYPE_C_ACTIVITY_GOBANG_COLLECT, score,
-                "", System.currentTimeMillis(), "");
+            final boolean succ = null != pointtransferMgmtService.transfer(Pointtransfer.ID_C_SYS, userId,
+                    Pointtransfer.TRANSFER_TYPE_C_ACTIVITY_GOBANG_COLLECT, score,
+                    "", System.currentTimeMillis(), "");
 
-        if (!succ) {
-            ret.put(Keys.MSG, "Sorry, transfer point failed, please contact admin");
-        }
+            if (!succ) {
+                ret.put(Keys.MSG, "Sorry, transfer point failed, please contact admin");
+            }
 
-        ret.put(Keys.STATUS_CODE, succ);
+            ret.put(Keys.STATUS_CODE, succ);
 
-        return ret;
+            return ret;
+        } finally {
+            lock.unlock();
+        }
     }
 }
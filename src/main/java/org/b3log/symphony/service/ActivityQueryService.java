@@ -28,6 +28,8 @@ import org.b3log.latke.repository.SortDirection;
 import org.b3log.latke.service.annotation.Service;
 import org.b3log.latke.util.CollectionUtils;
 import org.b3log.latke.util.Stopwatchs;
+import org.b3log.symphony.cache.LeaderboardCache;
+import org.b3log.symphony.model.Common;
 import org.b3log.symphony.model.Pointtransfer;
 import org.b3log.symphony.model.UserExt;
 import org.b3log.symphony.repository.PointtransferRepository;
@@ -42,7 +44,7 @@ import java.util.List;
  * Activity query service.
  *
  * @author <a href="http://88250.b3log.org">Liang Ding</a>
- * @version 1.5.1.6, May 27, 2018
+ * @version 1.6.1.0, Oct 25, 2018
  * @since 1.3.0
  */
 @Service
@@ -77,6 +79,18 @@ public class ActivityQueryService {
     @Inject
     private AvatarQueryService avatarQueryService;
 
+    /**
+     * User query service.
+     */
+    @Inject
+    private UserQueryService userQueryService;
+
+    /**
+     * Leaderboard cache.
+     */
+    @Inject
+    private LeaderboardCache leaderboardCache;
+
     /**
      * Gets average point of activity eating snake of a user specified by the given user id.
      *
@@ -96,6 +110,16 @@ public class ActivityQueryService {
      * @return users, returns an empty list if not found
      */
     public List<JSONObject> getTopEatingSnakeUsersMax(final int avatarViewMode, final int fetchSize) {
+        if (leaderboardCache.isLoaded()) {
+            final List<JSONObject> ret = userQueryService.getUsersByIds(leaderboardCache.getTop(LeaderboardCache.BOARD_EATING_SNAKE_MAX, fetchSize));
+            for (final JSONObject user : ret) {
+                user.put(Common.POINT, leaderboardCache.getScore(LeaderboardCache.BOARD_EATING_SNAKE_MAX, user.optString(Keys.OBJECT_ID)));
+                avatarQueryService.fillUserAvatarURL(avatarViewMode, user);
+            }
+
+            return ret;
+        }
+
         final List<JSONObject> ret = new ArrayList<>();
 
         try {
@@ -133,6 +157,16 @@ public class ActivityQueryService {
      * @return users, returns an empty list if not found
      */
     public List<JSONObject> getTopEatingSnakeUsersSum(final int avatarViewMode, final int fetchSize) {
+        if (leaderboardCache.isLoaded()) {
+            final List<JSONObject> ret = userQueryService.getUsersByIds(leaderboardCache.getTop(LeaderboardCache.BOARD_EATING_SNAKE_SUM, fetchSize));
+            for (final JSONObject user : ret) {
+                user.put(Common.POINT, leaderboardCache.getScore(LeaderboardCache.BOARD_EATING_SNAKE_SUM, user.optString(Keys.OBJECT_ID)));
+                avatarQueryService.fillUserAvatarURL(avatarViewMode, user);
+            }
+
+            return ret;
+        }
+
         final List<JSONObject> ret = new ArrayList<>();
 
         try {
@@ -172,13 +206,17 @@ public class ActivityQueryService {
     public List<JSONObject> getTopCheckinUsers(final int avatarViewMode, final int fetchSize) {
         final List<JSONObject> ret = new ArrayList<>();
 
-        final Query query = new Query().addSort(UserExt.USER_LONGEST_CHECKIN_STREAK, SortDirection.DESCENDING).
-                addSort(UserExt.USER_CURRENT_CHECKIN_STREAK, SortDirection.DESCENDING).
-                setCurrentPageNum(1).setPageSize(fetchSize);
-
         try {
-            final JSONObject result = userRepository.get(query);
-            final List<JSONObject> users = CollectionUtils.jsonArrayToList(result.optJSONArray(Keys.RESULTS));
+            List<JSONObject> users;
+            if (leaderboardCache.isLoaded()) {
+                users = userQueryService.getUsersByIds(leaderboardCache.getTop(LeaderboardCache.BOARD_CHECKIN, fetchSize));
+            } else {
+                final Query query = new Query().addSort(UserExt.USER_LONGEST_CHECKIN_STREAK, SortDirection.DESCENDING).
+                        addSort(UserExt.USER_CURRENT_CHECKIN_STREAK, SortDirection.DESCENDING).
+                        setCurrentPageNum(1).setPageSize(fetchSize);
+                final JSONObject result = userRepository.get(query);
+                users = CollectionUtils.jsonArrayToList(result.optJSONArray(Keys.RESULTS));
+            }
 
             for (final JSONObject user : users) {
                 if (UserExt.USER_APP_ROLE_C_HACKER == user.optInt(UserExt.USER_APP_ROLE)) {
@@ -204,7 +242,7 @@ public class ActivityQueryService {
      * @param userId the specified user id
      * @return {@code true} if checkin succeeded, returns {@code false} otherwise
      */
-    public synchronized boolean isCheckedinToday(final String userId) {
+    public boolean isCheckedinToday(final String userId) {
         Stopwatchs.start("Checks checkin");
         try {
             final JSONObject user = userRepository.get(userId);
@@ -226,7 +264,7 @@ public class ActivityQueryService {
      * @param userId the specified user id
      * @return {@code true} if participated, returns {@code false} otherwise
      */
-    public synchronized boolean is1A0001Today(final String userId) {
+    public boolean is1A0001Today(final String userId) {
         final Date now = new Date();
 
         final List<JSONObject> records = pointtransferQueryService.getLatestPointtransfers(userId,
@@ -247,7 +285,7 @@ public class ActivityQueryService {
      * @param userId the specified user id
      * @return {@code true} if collected, returns {@code false} otherwise
      */
-    public synchronized boolean isCollected1A0001Today(final String userId) {
+    public boolean isCollected1A0001Today(final String userId) {
         final Date now = new Date();
 
         final List<JSONObject> records = pointtransferQueryService.getLatestPointtransfers(userId,
@@ -268,7 +306,7 @@ public class ActivityQueryService {
      * @param userId the specified user id
      * @return {@code true} if collected, returns {@code false} otherwise
      */
-    public synchronized boolean isCollectedYesterdayLivenessReward(final String userId) {
+    public boolean isCollectedYesterdayLivenessReward(final String userId) {
         final Date now = new Date();
 
         final List<JSONObject> records = pointtransferQueryService.getLatestPointtransfers(userId,
@@ -21,6 +21,7 @@ import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang.ArrayUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.time.DateFormatUtils;
+import org.apache.commons.lang.time.DateUtils;
 import org.b3log.latke.Keys;
 import org.b3log.latke.event.Event;
 import org.b3log.latke.event.EventException;
@@ -36,8 +37,11 @@ import org.b3log.latke.service.LangPropsService;
 import org.b3log.latke.service.ServiceException;
 import org.b3log.latke.service.annotation.Service;
 import org.b3log.latke.util.Ids;
+import org.b3log.latke.util.Requests;
 import org.b3log.latke.util.Strings;
 import org.b3log.latke.util.URLs;
+import org.b3log.symphony.cache.FeedCache;
+import org.b3log.symphony.cache.PageCache;
 import org.b3log.symphony.event.EventTypes;
 import org.b3log.symphony.model.*;
 import org.b3log.symphony.repository.*;
@@ -51,6 +55,7 @@ import org.jsoup.nodes.Element;
 import org.jsoup.select.Elements;
 import org.yaml.snakeyaml.Yaml;
 
+import javax.servlet.http.HttpServletRequest;
 import java.io.File;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -64,7 +69,7 @@ import java.util.stream.Collectors;
  *
  * @author <a href="http://88250.b3log.org">Liang Ding</a>
  * @author <a href="http://zephyr.b3log.org">Zephyr</a>
- * @version 2.18.4.2, Oct 14, 2018
+ * @version 2.18.11.0, Oct 25, 2018
  * @since 0.2.0
  */
 @Service
@@ -199,6 +204,12 @@ public class ArticleMgmtService {
     @Inject
     private NotificationMgmtService notificationMgmtService;
 
+    /**
+     * Daily statistic management service.
+     */
+    @Inject
+    private StatisticMgmtService statisticMgmtService;
+
     /**
      * Liveness management service.
      */
@@ -223,6 +234,36 @@ public class ArticleMgmtService {
     @Inject
     private VisitMgmtService visitMgmtService;
 
+    /**
+     * Home timeline management service.
+     */
+    @Inject
+    private HomeTimelineMgmtService homeTimelineMgmtService;
+
+    /**
+     * Render management service.
+     */
+    @Inject
+    private RenderMgmtService renderMgmtService;
+
+    /**
+     * Page cache.
+     */
+    @Inject
+    private PageCache pageCache;
+
+    /**
+     * Feed cache.
+     */
+    @Inject
+    private FeedCache feedCache;
+
+    /**
+     * Rendered repository.
+     */
+    @Inject
+    private RenderedRepository renderedRepository;
+
     /**
      * Determines whether the specified tag title exists in the specified tags.
      *
@@ -436,6 +477,9 @@ public class ArticleMgmtService {
             notificationRepository.removeByDataId(articleId);
             rewardRepository.removeByDataId(articleId);
             voteRepository.removeByDataId(articleId);
+            renderedRepository.remove(articleId);
+            pageCache.invalidateArticle(articleId, article.optString(Article.ARTICLE_TAGS));
+            feedCache.invalidateArticle(article.optString(Article.ARTICLE_TAGS));
 
             if (Symphonys.getBoolean("algolia.enabled")) {
                 searchMgmtService.removeAlgoliaDocument(article);
@@ -449,6 +493,36 @@ public class ArticleMgmtService {
         }
     }
 
+    /**
+     * Increments the view count of the specified article by the specified request.
+     *
+     * @param request   the specified request
+     * @param articleId the specified article id
+     */
+    public void incArticleViewCount(final HttpServletRequest request, final String articleId) {
+        final long created = System.currentTimeMillis();
+        final long expired = DateUtils.addMonths(new Date(created), 1).getTime();
+        final String ip = Requests.getRemoteAddr(request);
+        final String ua = Headers.getHeader(request, Common.USER_AGENT, "");
+        final String referer = Headers.getHeader(request, "Referer", "");
+        final JSONObject visit = new JSONObject();
+        visit.put(Visit.VISIT_IP, ip);
+        visit.put(Visit.VISIT_CITY, "");
+        visit.put(Visit.VISIT_CREATED, created);
+        visit.put(Visit.VISIT_DEVICE_ID, "");
+        visit.put(Visit.VISIT_EXPIRED, expired);
+        visit.put(Visit.VISIT_REFERER_URL, referer);
+        visit.put(Visit.VISIT_UA, ua);
+        visit.put(Visit.VISIT_URL, "/article/" + articleId);
+        visit.put(Visit.VISIT_USER_ID, "");
+        final JSONObject viewer = (JSONObject) request.getAttribute(Common.CURRENT_USER);
+        if (null != viewer) {
+            visit.put(Visit.VISIT_USER_ID, viewer.optString(Keys.OBJECT_ID));
+        }
+
+        incArticleViewCount(visit);
+    }
+
     /**
      * Increments the view count of the specified article by the given visit.
      *
@@ -486,7 +560,6 @@ public class ArticleMgmtService {
 
                 final int viewCnt = article.optInt(Article.ARTICLE_VIEW_CNT);
                 article.put(Article.ARTICLE_VIEW_CNT, viewCnt + 1);
-                article.put(Article.ARTICLE_RANDOM_DOUBLE, Math.random());
 
                 articleRepository.update(articleId, article);
 
@@ -780,9 +853,14 @@ public class ArticleMgmtService {
             } catch (final Exception e) {
             }
 
+            statisticMgmtService.incDaily(StatisticDaily.STATISTIC_DAILY_ARTICLE_CNT, currentTimeMillis);
+
             // Grows the tag graph
             tagMgmtService.relateTags(article.optString(Article.ARTICLE_TAGS));
 
+            // Fans out to home timelines
+            homeTimelineMgmtService.publishArticle(article);
+
             if (Article.ARTICLE_ANONYMOUS_C_PUBLIC == articleAnonymous) {
                 // Point
                 final long followerCnt = followQueryService.getFollowerCount(authorId, Follow.FOLLOWING_TYPE_C_USER);
@@ -808,6 +886,11 @@ public class ArticleMgmtService {
                 livenessMgmtService.incLiveness(authorId, Liveness.LIVENESS_ARTICLE);
             }
 
+            // Pre-renders content
+            renderMgmtService.renderAsync(articleId, Rendered.RENDERED_TYPE_C_ARTICLE);
+            pageCache.invalidateArticle(articleId, article.optString(Article.ARTICLE_TAGS));
+            feedCache.invalidateArticle(article.optString(Article.ARTICLE_TAGS));
+
             // Event
             final JSONObject eventData = new JSONObject();
             eventData.put(Article.ARTICLE, article);
@@ -923,6 +1006,7 @@ public class ArticleMgmtService {
 
         final int articleType = requestJSONObject.optInt(Article.ARTICLE_TYPE, Article.ARTICLE_TYPE_C_NORMAL);
 
+        final String oldTags = oldArticle.optString(Article.ARTICLE_TAGS);
         final Transaction transaction = articleRepository.beginTransaction();
 
         try {
@@ -1001,6 +1085,9 @@ public class ArticleMgmtService {
             } catch (final Exception e) {
             }
 
+            // Fans out to home timelines of the followers of new tags
+            homeTimelineMgmtService.publishArticle(oldArticle);
+
             if (Article.ARTICLE_ANONYMOUS_C_PUBLIC == articleAnonymous) {
                 if (currentTimeMillis - createTime > 1000 * 60 * 5) {
                     pointtransferMgmtService.transfer(authorId, Pointtransfer.ID_C_SYS,
@@ -1015,6 +1102,11 @@ public class ArticleMgmtService {
                 }
             }
 
+            // Pre-renders content
+            renderMgmtService.renderAsync(articleId, Rendered.RENDERED_TYPE_C_ARTICLE);
+            pageCache.invalidateArticle(articleId, oldTags, oldArticle.optString(Article.ARTICLE_TAGS));
+            feedCache.invalidateArticle(oldTags, oldArticle.optString(Article.ARTICLE_TAGS));
+
             // Event
             final JSONObject eventData = new JSONObject();
             eventData.put(Article.ARTICLE, oldArticle);
@@ -1076,14 +1168,17 @@ public class ArticleMgmtService {
             if (Article.ARTICLE_PERFECT_C_PERFECT == perfect) {
                 // if it is perfect, allow anonymous view
                 article.put(Article.ARTICLE_ANONYMOUS_VIEW, Article.ARTICLE_ANONYMOUS_VIEW_C_ALLOW);
+            }
 
-                // updates tag-article perfect
-                final List<JSONObject> tagArticleRels = tagArticleRepository.getByArticleId(articleId);
-                for (final JSONObject tagArticleRel : tagArticleRels) {
-                    tagArticleRel.put(Article.ARTICLE_PERFECT, Article.ARTICLE_PERFECT_C_PERFECT);
-
-                    tagArticleRepository.update(tagArticleRel.optString(Keys.OBJECT_ID), tagArticleRel);
+            // updates tag-article perfect, the per-tag feeds sort by it
+            final List<JSONObject> tagArticleRels = tagArticleRepository.getByArticleId(articleId);
+            for (final JSONObject tagArticleRel : tagArticleRels) {
+                if (perfect == tagArticleRel.optInt(Article.ARTICLE_PERFECT)) {
+                    continue;
                 }
+
+                tagArticleRel.put(Article.ARTICLE_PERFECT, perfect);
+                tagArticleRepository.update(tagArticleRel.optString(Keys.OBJECT_ID), tagArticleRel);
             }
 
             userRepository.update(authorId, author);
@@ -1091,6 +1186,11 @@ public class ArticleMgmtService {
 
             transaction.commit();
 
+            renderMgmtService.renderAsync(articleId, Rendered.RENDERED_TYPE_C_ARTICLE);
+            pageCache.invalidateArticle(articleId, oldArticle.optString(Article.ARTICLE_TAGS),
+                    article.optString(Article.ARTICLE_TAGS));
+            feedCache.invalidateArticle(oldArticle.optString(Article.ARTICLE_TAGS), article.optString(Article.ARTICLE_TAGS));
+
             if (Article.ARTICLE_PERFECT_C_NOT_PERFECT == oldArticle.optInt(Article.ARTICLE_PERFECT)
                     && Article.ARTICLE_PERFECT_C_PERFECT == perfect) {
                 final JSONObject notification = new JSONObject();
@@ -1869,6 +1969,14 @@ public class ArticleMgmtService {
             // Grows the tag graph
             tagMgmtService.relateTags(article.optString(Article.ARTICLE_TAGS));
 
+            // Fans out to home timelines
+            homeTimelineMgmtService.publishArticle(article);
+
+            // Pre-renders content
+            renderMgmtService.renderAsync(ret, Rendered.RENDERED_TYPE_C_ARTICLE);
+            pageCache.invalidateArticle(ret, article.optString(Article.ARTICLE_TAGS));
+            feedCache.invalidateArticle(article.optString(Article.ARTICLE_TAGS));
+
             // Event
             final JSONObject eventData = new JSONObject();
             eventData.put(Article.ARTICLE, article);
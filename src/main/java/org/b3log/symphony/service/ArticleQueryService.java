@@ -43,11 +43,7 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
-import org.jsoup.nodes.Element;
-import org.jsoup.parser.Parser;
 import org.jsoup.safety.Whitelist;
-import org.jsoup.select.Elements;
 import org.owasp.encoder.Encode;
 
 import javax.servlet.http.HttpServletRequest;
@@ -59,7 +55,7 @@ import java.util.*;
  *
  * @author <a href="http://88250.b3log.org">Liang Ding</a>
  * @author <a href="http://vanessa.b3log.org">Liyuan Li</a>
- * @version 2.28.0.6, Sep 28, 2018
+ * @version 2.32.0.2, Oct 25, 2018
  * @since 0.2.0
  */
 @Service
@@ -75,6 +71,11 @@ public class ArticleQueryService {
      */
     private static final int RELEVANT_ARTICLE_RANDOM_FETCH_TAG_CNT = 3;
 
+    /**
+     * Max page number of articles by multiple tags, each tag reads at most this many pages of relations.
+     */
+    private static final int TAGS_ARTICLE_MAX_PAGE_NUM = 10;
+
     /**
      * Article repository.
      */
@@ -130,16 +131,16 @@ public class ArticleQueryService {
     private AvatarQueryService avatarQueryService;
 
     /**
-     * Short link query service.
+     * Render query service.
      */
     @Inject
-    private ShortLinkQueryService shortLinkQueryService;
+    private RenderQueryService renderQueryService;
 
     /**
-     * Follow query service.
+     * Home timeline management service.
      */
     @Inject
-    private FollowQueryService followQueryService;
+    private HomeTimelineMgmtService homeTimelineMgmtService;
 
     /**
      * Language service.
@@ -293,60 +294,16 @@ public class ArticleQueryService {
      *
      * @param avatarViewMode the specified avatar view mode
      * @param userId         the specified user id
-     * @param currentPageNum the specified page number
+     * @param beforeId       the specified keyset cursor, gets articles older than it, {@code null} for the first page
      * @param pageSize       the specified page size
-     * @return following tag articles, returns an empty list if not found
+     * @return following user articles, returns an empty list if not found
      * @throws ServiceException service exception
      */
     public List<JSONObject> getFollowingUserArticles(final int avatarViewMode, final String userId,
-                                                     final int currentPageNum, final int pageSize) throws ServiceException {
-        final List<JSONObject> users = (List<JSONObject>) followQueryService.getFollowingUsers(
-                avatarViewMode, userId, 1, Integer.MAX_VALUE).opt(Keys.RESULTS);
-        if (users.isEmpty()) {
-            return Collections.emptyList();
-        }
-
-        final Query query = new Query()
-                .addSort(Keys.OBJECT_ID, SortDirection.DESCENDING)
-                .setPageSize(pageSize).setCurrentPageNum(currentPageNum);
-
-        final List<String> followingUserIds = new ArrayList<>();
-        for (final JSONObject user : users) {
-            followingUserIds.add(user.optString(Keys.OBJECT_ID));
-        }
-
-        final List<Filter> filters = new ArrayList<>();
-        filters.add(new PropertyFilter(Article.ARTICLE_STATUS, FilterOperator.NOT_EQUAL, Article.ARTICLE_STATUS_C_INVALID));
-        filters.add(new PropertyFilter(Article.ARTICLE_TYPE, FilterOperator.NOT_EQUAL, Article.ARTICLE_TYPE_C_DISCUSSION));
-        filters.add(new PropertyFilter(Article.ARTICLE_AUTHOR_ID, FilterOperator.IN, followingUserIds));
-        query.setFilter(new CompositeFilter(CompositeFilterOperator.AND, filters));
-        addListProjections(query);
-
-        JSONObject result;
-        try {
-            Stopwatchs.start("Query following user articles");
-
-            result = articleRepository.get(query);
-        } catch (final RepositoryException e) {
-            LOGGER.log(Level.ERROR, "Gets following user articles failed", e);
-
-            throw new ServiceException(e);
-        } finally {
-            Stopwatchs.end();
-        }
-
-        final JSONArray data = result.optJSONArray(Keys.RESULTS);
-        final List<JSONObject> ret = CollectionUtils.jsonArrayToList(data);
+                                                     final String beforeId, final int pageSize) throws ServiceException {
+        final List<String> articleIds = homeTimelineMgmtService.getFollowingUserArticleIds(userId, beforeId, pageSize);
 
-        try {
-            organizeArticles(avatarViewMode, ret);
-        } catch (final RepositoryException e) {
-            LOGGER.log(Level.ERROR, "Organizes articles failed", e);
-
-            throw new ServiceException(e);
-        }
-
-        return ret;
+        return getTimelineArticles(avatarViewMode, articleIds);
     }
 
     /**
@@ -354,40 +311,44 @@ public class ArticleQueryService {
      *
      * @param avatarViewMode the specified avatar view mode
      * @param userId         the specified user id
-     * @param currentPageNum the specified page number
+     * @param beforeId       the specified keyset cursor, gets articles older than it, {@code null} for the first page
      * @param pageSize       the specified page size
      * @return following tag articles, returns an empty list if not found
      * @throws ServiceException service exception
      */
     public List<JSONObject> getFollowingTagArticles(final int avatarViewMode, final String userId,
-                                                    final int currentPageNum, final int pageSize) throws ServiceException {
-        final List<JSONObject> tags = (List<JSONObject>) followQueryService.getFollowingTags(
-                userId, 1, Integer.MAX_VALUE).opt(Keys.RESULTS);
-        if (tags.isEmpty()) {
-            return Collections.emptyList();
-        }
+                                                    final String beforeId, final int pageSize) throws ServiceException {
+        final List<String> articleIds = homeTimelineMgmtService.getFollowingTagArticleIds(userId, beforeId, pageSize);
 
-        final Map<String, Class<?>> articleFields = new HashMap<>();
-        articleFields.put(Keys.OBJECT_ID, String.class);
-        articleFields.put(Article.ARTICLE_STICK, Long.class);
-        articleFields.put(Article.ARTICLE_CREATE_TIME, Long.class);
-        articleFields.put(Article.ARTICLE_UPDATE_TIME, Long.class);
-        articleFields.put(Article.ARTICLE_LATEST_CMT_TIME, Long.class);
-        articleFields.put(Article.ARTICLE_AUTHOR_ID, String.class);
-        articleFields.put(Article.ARTICLE_TITLE, String.class);
-        articleFields.put(Article.ARTICLE_STATUS, Integer.class);
-        articleFields.put(Article.ARTICLE_VIEW_CNT, Integer.class);
-        articleFields.put(Article.ARTICLE_TYPE, Integer.class);
-        articleFields.put(Article.ARTICLE_PERMALINK, String.class);
-        articleFields.put(Article.ARTICLE_TAGS, String.class);
-        articleFields.put(Article.ARTICLE_LATEST_CMTER_NAME, String.class);
-        articleFields.put(Article.ARTICLE_COMMENT_CNT, Integer.class);
-        articleFields.put(Article.ARTICLE_ANONYMOUS, Integer.class);
-        articleFields.put(Article.ARTICLE_PERFECT, Integer.class);
-        articleFields.put(Article.ARTICLE_CONTENT, String.class);
-        articleFields.put(Article.ARTICLE_QNA_OFFER_POINT, Integer.class);
-
-        return getArticlesByTags(avatarViewMode, currentPageNum, pageSize, articleFields, tags.toArray(new JSONObject[0]));
+        return getTimelineArticles(avatarViewMode, articleIds);
+    }
+
+    /**
+     * Gets articles of the specified home timeline article ids.
+     *
+     * @param avatarViewMode the specified avatar view mode
+     * @param articleIds     the specified article ids
+     * @return articles, skips invalid ones
+     * @throws ServiceException service exception
+     */
+    private List<JSONObject> getTimelineArticles(final int avatarViewMode, final List<String> articleIds) throws ServiceException {
+        try {
+            Stopwatchs.start("Query timeline articles");
+
+            final Query query = new Query();
+            addListProjections(query);
+            final List<JSONObject> ret = getArticlesInOrder(articleIds, query);
+            ret.removeIf(article -> Article.ARTICLE_STATUS_C_INVALID == article.optInt(Article.ARTICLE_STATUS));
+            organizeArticles(avatarViewMode, ret);
+
+            return ret;
+        } catch (final RepositoryException e) {
+            LOGGER.log(Level.ERROR, "Gets timeline articles failed", e);
+
+            throw new ServiceException(e);
+        } finally {
+            Stopwatchs.end();
+        }
     }
 
     /**
@@ -507,8 +468,9 @@ public class ArticleQueryService {
      *
      * @param day the specified day
      * @return article count
+     * @throws ServiceException service exception
      */
-    public int getArticleCntInDay(final Date day) {
+    public int getArticleCntInDay(final Date day) throws ServiceException {
         final long time = day.getTime();
         final long start = Times.getDayStartTime(time);
         final long end = Times.getDayEndTime(time);
@@ -524,7 +486,7 @@ public class ArticleQueryService {
         } catch (final RepositoryException e) {
             LOGGER.log(Level.ERROR, "Count day article failed", e);
 
-            return 1;
+            throw new ServiceException(e);
         }
     }
 
@@ -684,7 +646,8 @@ public class ArticleQueryService {
     /**
      * Gets the relevant articles of the specified article with the specified fetch size.
      * <p>
-     * The relevant articles exist the same tag with the specified article.
+     * The relevant articles are the nearest articles by tags and title in the related articles index, falls back to
+     * articles of random tags of the specified article if it is not indexed yet.
      * </p>
      *
      * @param avatarViewMode the specified avatar view mode
@@ -693,6 +656,35 @@ public class ArticleQueryService {
      * @return relevant articles, returns an empty list if not found
      */
     public List<JSONObject> getRelevantArticles(final int avatarViewMode, final JSONObject article, final int fetchSize) {
+        final String articleId = article.optString(Keys.OBJECT_ID);
+        if (!articleCache.isRelatedArticlesIndexed(articleId)) {
+            return getRelevantArticlesByTags(avatarViewMode, article, fetchSize);
+        }
+
+        try {
+            final List<JSONObject> ret = articleCache.getRelatedArticles(articleId, fetchSize);
+            organizeArticles(avatarViewMode, ret);
+
+            return ret;
+        } catch (final Exception e) {
+            LOGGER.log(Level.ERROR, "Gets relevant articles failed", e);
+
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Gets the relevant articles of the specified article with the specified fetch size by random tags.
+     * <p>
+     * The relevant articles exist the same tag with the specified article.
+     * </p>
+     *
+     * @param avatarViewMode the specified avatar view mode
+     * @param article        the specified article
+     * @param fetchSize      the specified fetch size
+     * @return relevant articles, returns an empty list if not found
+     */
+    private List<JSONObject> getRelevantArticlesByTags(final int avatarViewMode, final JSONObject article, final int fetchSize) {
         final String tagsString = article.optString(Article.ARTICLE_TAGS);
         String[] tagTitles = tagsString.split(",");
         final List<String> excludedB3logTitles = new ArrayList<>();
@@ -893,7 +885,8 @@ public class ArticleQueryService {
     }
 
     /**
-     * Gets articles by the specified tags (order by article create date desc).
+     * Gets articles by the specified tags (order by article create date desc). Pages of multiple tags beyond
+     * {@value #TAGS_ARTICLE_MAX_PAGE_NUM} are empty.
      *
      * @param avatarViewMode the specified avatar view mode
      * @param tags           the specified tags
@@ -906,39 +899,36 @@ public class ArticleQueryService {
     public List<JSONObject> getArticlesByTags(final int avatarViewMode, final int currentPageNum, final int pageSize,
                                               final Map<String, Class<?>> articleFields, final JSONObject... tags) throws ServiceException {
         try {
-            final List<Filter> filters = new ArrayList<>();
-            for (final JSONObject tag : tags) {
-                filters.add(new PropertyFilter(Tag.TAG + '_' + Keys.OBJECT_ID, FilterOperator.EQUAL, tag.optString(Keys.OBJECT_ID)));
-            }
-
-            Filter filter;
-            if (filters.size() >= 2) {
-                filter = new CompositeFilter(CompositeFilterOperator.OR, filters);
-            } else {
-                filter = filters.get(0);
+            final String articleIdKey = Article.ARTICLE + '_' + Keys.OBJECT_ID;
+            final boolean single = 1 == tags.length;
+            if (!single && currentPageNum > TAGS_ARTICLE_MAX_PAGE_NUM) {
+                return new ArrayList<>();
             }
 
-            // XXX: 这里的分页是有问题的，后面取文章的时候会少（因为一篇文章可以有多个标签，但是文章 id 一样）
-            Query query = new Query().addSort(Keys.OBJECT_ID, SortDirection.DESCENDING).
-                    setFilter(filter).setPageCount(1).setPageSize(pageSize).setCurrentPageNum(currentPageNum);
-
-            JSONObject result = tagArticleRepository.get(query);
-            final JSONArray tagArticleRelations = result.optJSONArray(Keys.RESULTS);
+            final List<List<JSONObject>> feeds = new ArrayList<>();
+            for (final JSONObject tag : tags) {
+                final Query query = new Query().
+                        setFilter(new PropertyFilter(Tag.TAG + '_' + Keys.OBJECT_ID, FilterOperator.EQUAL, tag.optString(Keys.OBJECT_ID))).
+                        addSort(articleIdKey, SortDirection.DESCENDING).addProjection(articleIdKey, String.class).setPageCount(1);
+                if (single) {
+                    query.setPageSize(pageSize).setCurrentPageNum(currentPageNum);
+                } else { // A page of the merged feed is within the first currentPageNum * pageSize relations of each tag
+                    query.setPageSize(currentPageNum * pageSize).setCurrentPageNum(1);
+                }
 
-            final Set<String> articleIds = new HashSet<>();
-            for (int i = 0; i < tagArticleRelations.length(); i++) {
-                articleIds.add(tagArticleRelations.optJSONObject(i).optString(Article.ARTICLE + '_' + Keys.OBJECT_ID));
+                feeds.add(CollectionUtils.jsonArrayToList(tagArticleRepository.get(query).optJSONArray(Keys.RESULTS)));
             }
 
-            query = new Query().setFilter(new PropertyFilter(Keys.OBJECT_ID, FilterOperator.IN, articleIds)).
-                    addSort(Keys.OBJECT_ID, SortDirection.DESCENDING);
+            final List<JSONObject> relations = FeedMerger.merge(feeds,
+                    (r1, r2) -> r2.optString(articleIdKey).compareTo(r1.optString(articleIdKey)),
+                    relation -> relation.optString(articleIdKey), single ? 0 : (currentPageNum - 1) * pageSize, pageSize);
+
+            final Query query = new Query();
             for (final Map.Entry<String, Class<?>> articleField : articleFields.entrySet()) {
                 query.addProjection(articleField.getKey(), articleField.getValue());
             }
 
-            result = articleRepository.get(query);
-
-            final List<JSONObject> ret = CollectionUtils.jsonArrayToList(result.optJSONArray(Keys.RESULTS));
+            final List<JSONObject> ret = getFeedArticles(relations, query);
             organizeArticles(avatarViewMode, ret);
 
             return ret;
@@ -995,118 +985,20 @@ public class ArticleQueryService {
     public List<JSONObject> getArticlesByTag(final int avatarViewMode, final int sortMode, final JSONObject tag,
                                              final int currentPageNum, final int pageSize) throws ServiceException {
         try {
-            Query query = new Query();
-            switch (sortMode) {
-                case 0:
-                    query.addSort(Keys.OBJECT_ID, SortDirection.DESCENDING).
-                            setFilter(new PropertyFilter(Tag.TAG + '_' + Keys.OBJECT_ID, FilterOperator.EQUAL, tag.optString(Keys.OBJECT_ID)))
-                            .setPageCount(1).setPageSize(pageSize).setCurrentPageNum(currentPageNum);
-
-                    break;
-                case 1:
-                    query.addSort(Article.ARTICLE_COMMENT_CNT, SortDirection.DESCENDING).
-                            addSort(Keys.OBJECT_ID, SortDirection.DESCENDING).
-                            setFilter(new PropertyFilter(Tag.TAG + '_' + Keys.OBJECT_ID, FilterOperator.EQUAL, tag.optString(Keys.OBJECT_ID)))
-                            .setPageCount(1).setPageSize(pageSize).setCurrentPageNum(currentPageNum);
-
-                    break;
-                case 2:
-                    query.addSort(Article.REDDIT_SCORE, SortDirection.DESCENDING).
-                            addSort(Keys.OBJECT_ID, SortDirection.DESCENDING).
-                            setFilter(new PropertyFilter(Tag.TAG + '_' + Keys.OBJECT_ID, FilterOperator.EQUAL, tag.optString(Keys.OBJECT_ID)))
-                            .setPageCount(1).setPageSize(pageSize).setCurrentPageNum(currentPageNum);
-
-                    break;
-                case 3:
-                    query.addSort(Article.ARTICLE_LATEST_CMT_TIME, SortDirection.DESCENDING).
-                            addSort(Keys.OBJECT_ID, SortDirection.DESCENDING).
-                            setFilter(new PropertyFilter(Tag.TAG + '_' + Keys.OBJECT_ID, FilterOperator.EQUAL, tag.optString(Keys.OBJECT_ID)))
-                            .setPageCount(1).setPageSize(pageSize).setCurrentPageNum(currentPageNum);
-
-                    break;
-                case 4:
-                    query.addSort(Article.ARTICLE_PERFECT, SortDirection.DESCENDING).
-                            addSort(Keys.OBJECT_ID, SortDirection.DESCENDING).
-                            setFilter(new PropertyFilter(Tag.TAG + '_' + Keys.OBJECT_ID, FilterOperator.EQUAL, tag.optString(Keys.OBJECT_ID)))
-                            .setPageCount(1).setPageSize(pageSize).setCurrentPageNum(currentPageNum);
-
-                    break;
-                default:
-                    LOGGER.warn("Unknown sort mode [" + sortMode + "]");
-                    query.addSort(Keys.OBJECT_ID, SortDirection.DESCENDING).
-                            setFilter(new PropertyFilter(Tag.TAG + '_' + Keys.OBJECT_ID, FilterOperator.EQUAL, tag.optString(Keys.OBJECT_ID)))
-                            .setPageCount(1).setPageSize(pageSize).setCurrentPageNum(currentPageNum);
-            }
-
-            JSONObject result = tagArticleRepository.get(query);
-            final JSONArray tagArticleRelations = result.optJSONArray(Keys.RESULTS);
-
-            final List<String> articleIds = new ArrayList<>();
-            for (int i = 0; i < tagArticleRelations.length(); i++) {
-                articleIds.add(tagArticleRelations.optJSONObject(i).optString(Article.ARTICLE + '_' + Keys.OBJECT_ID));
+            final Query query = new Query().
+                    setFilter(new PropertyFilter(Tag.TAG + '_' + Keys.OBJECT_ID, FilterOperator.EQUAL, tag.optString(Keys.OBJECT_ID))).
+                    setPageCount(1).setPageSize(pageSize).setCurrentPageNum(currentPageNum);
+            final String sortProperty = getTagFeedSortProperty(sortMode);
+            if (null != sortProperty) {
+                query.addSort(sortProperty, SortDirection.DESCENDING);
             }
+            query.addSort(Article.ARTICLE + '_' + Keys.OBJECT_ID, SortDirection.DESCENDING);
 
-            query = new Query().setFilter(new PropertyFilter(Keys.OBJECT_ID, FilterOperator.IN, articleIds));
-            addListProjections(query);
-
-            result = articleRepository.get(query);
-
-            final List<JSONObject> ret = CollectionUtils.jsonArrayToList(result.optJSONArray(Keys.RESULTS));
-
-            switch (sortMode) {
-                default:
-                    LOGGER.warn("Unknown sort mode [" + sortMode + "]");
-                case 0:
-                    Collections.sort(ret, (o1, o2) -> o2.optString(Keys.OBJECT_ID).compareTo(o1.optString(Keys.OBJECT_ID)));
-
-                    break;
-                case 1:
-                    Collections.sort(ret, (o1, o2) -> {
-                        final int v = o2.optInt(Article.ARTICLE_COMMENT_CNT) - o1.optInt(Article.ARTICLE_COMMENT_CNT);
-                        if (0 == v) {
-                            return o2.optString(Keys.OBJECT_ID).compareTo(o1.optString(Keys.OBJECT_ID));
-                        }
-
-                        return v > 0 ? 1 : -1;
-                    });
-
-                    break;
-                case 2:
-                    Collections.sort(ret, (o1, o2) -> {
-                        final double v = o2.optDouble(Article.REDDIT_SCORE) - o1.optDouble(Article.REDDIT_SCORE);
-                        if (0 == v) {
-                            return o2.optString(Keys.OBJECT_ID).compareTo(o1.optString(Keys.OBJECT_ID));
-                        }
-
-                        return v > 0 ? 1 : -1;
-                    });
-
-                    break;
-                case 3:
-                    Collections.sort(ret, (o1, o2) -> {
-                        final long v = (o2.optLong(Article.ARTICLE_LATEST_CMT_TIME)
-                                - o1.optLong(Article.ARTICLE_LATEST_CMT_TIME));
-                        if (0 == v) {
-                            return o2.optString(Keys.OBJECT_ID).compareTo(o1.optString(Keys.OBJECT_ID));
-                        }
-
-                        return v > 0 ? 1 : -1;
-                    });
-
-                    break;
-                case 4:
-                    Collections.sort(ret, (o1, o2) -> {
-                        final long v = (o2.optLong(Article.ARTICLE_PERFECT) - o1.optLong(Article.ARTICLE_PERFECT));
-                        if (0 == v) {
-                            return o2.optString(Keys.OBJECT_ID).compareTo(o1.optString(Keys.OBJECT_ID));
-                        }
-
-                        return v > 0 ? 1 : -1;
-                    });
-
-                    break;
-            }
+            final List<JSONObject> relations = CollectionUtils.jsonArrayToList(tagArticleRepository.get(query).optJSONArray(Keys.RESULTS));
+            final Query articleQuery = new Query();
+            addListProjections(articleQuery);
 
+            final List<JSONObject> ret = getFeedArticles(relations, articleQuery);
             organizeArticles(avatarViewMode, ret);
 
             final Integer participantsCnt = Symphonys.getInt("tagArticleParticipantsCnt");
@@ -1119,6 +1011,84 @@ public class ArticleQueryService {
         }
     }
 
+    /**
+     * Gets the sort property of tag-article relations by the specified sort mode.
+     *
+     * @param sortMode the specified sort mode, 0: default, 1: hot, 2: score, 3: reply, 4: perfect
+     * @return sort property, returns {@code null} for the default sort mode
+     */
+    private String getTagFeedSortProperty(final int sortMode) {
+        switch (sortMode) {
+            case 0:
+                return null;
+            case 1:
+                return Article.ARTICLE_COMMENT_CNT;
+            case 2:
+                return Article.REDDIT_SCORE;
+            case 3:
+                return Article.ARTICLE_LATEST_CMT_TIME;
+            case 4:
+                return Article.ARTICLE_PERFECT;
+            default:
+                LOGGER.warn("Unknown sort mode [" + sortMode + "]");
+
+                return null;
+        }
+    }
+
+    /**
+     * Gets articles of the specified tag-article relations, keeps the order of the relations.
+     * <p>
+     * The order comes from the denormalized sort keys of the relations, so articles are not re-sorted in memory.
+     * </p>
+     *
+     * @param relations the specified tag-article relations
+     * @param query     the specified query with article projections
+     * @return articles, returns an empty list if not found
+     * @throws RepositoryException repository exception
+     */
+    private List<JSONObject> getFeedArticles(final List<JSONObject> relations, final Query query) throws RepositoryException {
+        final List<String> articleIds = new ArrayList<>();
+        for (final JSONObject relation : relations) {
+            articleIds.add(relation.optString(Article.ARTICLE + '_' + Keys.OBJECT_ID));
+        }
+
+        return getArticlesInOrder(articleIds, query);
+    }
+
+    /**
+     * Gets articles by the specified ids, keeps the order of the ids.
+     *
+     * @param articleIds the specified article ids
+     * @param query      the specified query with article projections
+     * @return articles, returns an empty list if not found
+     * @throws RepositoryException repository exception
+     */
+    private List<JSONObject> getArticlesInOrder(final List<String> articleIds, final Query query) throws RepositoryException {
+        if (articleIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        query.setFilter(new PropertyFilter(Keys.OBJECT_ID, FilterOperator.IN, articleIds)).setPageCount(1).
+                addProjection(Keys.OBJECT_ID, String.class);
+        final JSONArray articles = articleRepository.get(query).optJSONArray(Keys.RESULTS);
+        final Map<String, JSONObject> articleMap = new HashMap<>();
+        for (int i = 0; i < articles.length(); i++) {
+            final JSONObject article = articles.optJSONObject(i);
+            articleMap.put(article.optString(Keys.OBJECT_ID), article);
+        }
+
+        final List<JSONObject> ret = new ArrayList<>();
+        for (final String articleId : articleIds) {
+            final JSONObject article = articleMap.get(articleId);
+            if (null != article) {
+                ret.add(article);
+            }
+        }
+
+        return ret;
+    }
+
     /**
      * Gets an article with {@link #organizeArticle(int, JSONObject)} by the specified id.
      * <p>
@@ -2026,6 +1996,8 @@ public class ArticleQueryService {
      * <li>Generates article abstract (preview content)</li>
      * <li>Generates article ToC</li>
      * </ul>
+     * Viewer independent parts are served from the persisted rendered HTML if it is fresh, see
+     * {@link RenderQueryService#getArticle(JSONObject)}.
      *
      * @param article the specified article, for example,
      *                "articleTitle": "",
@@ -2093,32 +2065,11 @@ public class ArticleQueryService {
                 }
             }
 
-            if (Article.ARTICLE_TYPE_C_THOUGHT != articleType) {
-                articleContent = shortLinkQueryService.linkArticle(articleContent);
-                articleContent = shortLinkQueryService.linkTag(articleContent);
-                articleContent = Emotions.convert(articleContent);
-                article.put(Article.ARTICLE_CONTENT, articleContent);
-            }
-
-            if (article.optInt(Article.ARTICLE_REWARD_POINT) > 0) {
-                String rewardContent = article.optString(Article.ARTICLE_REWARD_CONTENT);
-                rewardContent = shortLinkQueryService.linkArticle(rewardContent);
-                rewardContent = shortLinkQueryService.linkTag(rewardContent);
-                rewardContent = Emotions.convert(rewardContent);
-                article.put(Article.ARTICLE_REWARD_CONTENT, rewardContent);
-            }
-
-            markdown(article);
-            articleContent = article.optString(Article.ARTICLE_CONTENT);
-
-            if (Article.ARTICLE_TYPE_C_THOUGHT != articleType) {
-                articleContent = MP3Players.render(articleContent);
-                articleContent = VideoPlayers.render(articleContent);
-            }
-
-            article.put(Article.ARTICLE_CONTENT, articleContent);
+            final JSONObject rendered = renderQueryService.getArticle(article);
+            article.put(Article.ARTICLE_CONTENT, rendered.optString(Rendered.RENDERED_CONTENT));
+            article.put(Article.ARTICLE_REWARD_CONTENT, rendered.optString(Rendered.RENDERED_REWARD_CONTENT));
             article.put(Article.ARTICLE_T_PREVIEW_CONTENT, getArticleMetaDesc(article));
-            article.put(Article.ARTICLE_T_TOC, getArticleToC(article));
+            article.put(Article.ARTICLE_T_TOC, rendered.optString(Rendered.RENDERED_TOC));
         } finally {
             Stopwatchs.end();
         }
@@ -2202,46 +2153,6 @@ public class ArticleQueryService {
         return ret;
     }
 
-    /**
-     * Markdowns the specified article content.
-     * <ul>
-     * <li>Markdowns article content/reward content</li>
-     * <li>Generates secured article content/reward content</li>
-     * </ul>
-     *
-     * @param article the specified article content
-     */
-    private void markdown(final JSONObject article) {
-        String content = article.optString(Article.ARTICLE_CONTENT);
-
-        final int articleType = article.optInt(Article.ARTICLE_TYPE);
-        if (Article.ARTICLE_TYPE_C_THOUGHT != articleType) {
-            content = Markdowns.toHTML(content);
-            content = Markdowns.clean(content, Latkes.getServePath() + article.optString(Article.ARTICLE_PERMALINK));
-        } else {
-            final Document.OutputSettings outputSettings = new Document.OutputSettings();
-            outputSettings.prettyPrint(false);
-
-            content = Jsoup.clean(content, Latkes.getServePath() + article.optString(Article.ARTICLE_PERMALINK),
-                    Whitelist.relaxed().addAttributes(":all", "id", "target", "class").
-                            addTags("span", "hr").addAttributes("iframe", "src", "width", "height")
-                            .addAttributes("audio", "controls", "src"), outputSettings);
-
-            content = content.replace("\n", "\\n").replace("'", "\\'")
-                    .replace("\"", "\\\"");
-        }
-
-        article.put(Article.ARTICLE_CONTENT, content);
-
-        if (article.optInt(Article.ARTICLE_REWARD_POINT) > 0) {
-            String rewardContent = article.optString(Article.ARTICLE_REWARD_CONTENT);
-            rewardContent = Markdowns.toHTML(rewardContent);
-            rewardContent = Markdowns.clean(rewardContent,
-                    Latkes.getServePath() + article.optString(Article.ARTICLE_PERMALINK));
-            article.put(Article.ARTICLE_REWARD_CONTENT, rewardContent);
-        }
-    }
-
     /**
      * Gets meta description content of the specified article.
      *
@@ -2379,49 +2290,6 @@ public class ArticleQueryService {
         }
     }
 
-    /**
-     * Gets ToC of the specified article.
-     *
-     * @param article the specified article
-     * @return ToC
-     */
-    private String getArticleToC(final JSONObject article) {
-        Stopwatchs.start("ToC");
-
-        if (Article.ARTICLE_TYPE_C_THOUGHT == article.optInt(Article.ARTICLE_TYPE)) {
-            return "";
-        }
-
-        try {
-            final String content = article.optString(Article.ARTICLE_CONTENT);
-            final Document doc = Jsoup.parse(content, StringUtils.EMPTY, Parser.htmlParser());
-            doc.outputSettings().prettyPrint(false);
-            final Elements hs = doc.select("h1, h2, h3, h4, h5");
-            if (hs.size() < 3) {
-                return "";
-            }
-
-            final StringBuilder listBuilder = new StringBuilder();
-            listBuilder.append("<ul class=\"article-toc\">");
-            for (int i = 0; i < hs.size(); i++) {
-                final Element element = hs.get(i);
-                final String tagName = element.tagName().toLowerCase();
-                final String text = element.text();
-                final String id = "toc_" + tagName + "_" + i;
-                element.attr("id", id);
-                listBuilder.append("<li class='toc-").append(tagName).append("'><a data-id=\"").append(id).append("\" href=\"javascript:Comment._bgFade($('#").append(id).append("'))\">").append(text).append(
-                        "</a></li>");
-            }
-            listBuilder.append("</ul>");
-
-            article.put(Article.ARTICLE_CONTENT, doc.select("body").html());
-
-            return listBuilder.toString();
-        } finally {
-            Stopwatchs.end();
-        }
-    }
-
     private void addListProjections(final Query query) {
         query.addProjection(Keys.OBJECT_ID, String.class).
                 addProjection(Article.ARTICLE_STICK, Long.class).
@@ -34,7 +34,7 @@ import org.json.JSONObject;
  * Breezemoon management service.
  *
  * @author <a href="http://88250.b3log.org">Liang Ding</a>
- * @version 1.0.0.2, Aug 31, 2018
+ * @version 1.1.0.0, Oct 25, 2018
  * @since 2.8.0
  */
 @Service
@@ -69,6 +69,12 @@ public class BreezemoonMgmtService {
     @Inject
     private LangPropsService langPropsService;
 
+    /**
+     * Home timeline management service.
+     */
+    @Inject
+    private HomeTimelineMgmtService homeTimelineMgmtService;
+
     /**
      * Adds a breezemoon with the specified request json object.
      *
@@ -98,12 +104,14 @@ public class BreezemoonMgmtService {
         bm.put(Breezemoon.BREEZEMOON_CITY, requestJSONObject.optString(Breezemoon.BREEZEMOON_CITY));
 
         try {
-            breezemoonRepository.add(bm);
+            bm.put(Keys.OBJECT_ID, breezemoonRepository.add(bm));
         } catch (final Exception e) {
             LOGGER.log(Level.ERROR, "Adds a breezemoon failed", e);
 
             throw new ServiceException(langPropsService.get("systemErrLabel"));
         }
+
+        homeTimelineMgmtService.publishBreezemoon(bm);
     }
 
     /**
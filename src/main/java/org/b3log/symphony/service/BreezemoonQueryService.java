@@ -45,7 +45,7 @@ import java.util.*;
  * Breezemoon query service.
  *
  * @author <a href="http://88250.b3log.org">Liang Ding</a>
- * @version 1.0.0.6, Sep 7, 2018
+ * @version 1.1.0.0, Oct 25, 2018
  * @since 2.8.0
  */
 @Service
@@ -69,10 +69,10 @@ public class BreezemoonQueryService {
     private UserRepository userRepository;
 
     /**
-     * Follow query service.
+     * Home timeline management service.
      */
     @Inject
-    private FollowQueryService followQueryService;
+    private HomeTimelineMgmtService homeTimelineMgmtService;
 
     /**
      * Avatar query service.
@@ -88,15 +88,20 @@ public class BreezemoonQueryService {
 
     /**
      * Get following user breezemoons.
+     * <p>
+     * Falls back to the breezemoons of all users with pagination if the specified user follows nobody who has
+     * breezemoons.
+     * </p>
      *
      * @param avatarViewMode the specified avatar view mode
      * @param userId         the specified user id, may be {@code null}
-     * @param page           the specified page number
+     * @param beforeId       the specified keyset cursor, gets breezemoons older than it, {@code null} for the first page
+     * @param page           the specified page number of the fallback
      * @param pageSize       the specified page size
-     * @param windowSize     the specified window size
+     * @param windowSize     the specified window size of the fallback
      * @return for example, <pre>
      * {
-     *     "pagination": {
+     *     "pagination": { // only for the fallback
      *         "paginationPageCount": 100,
      *         "paginationPageNums": [1, 2, 3, 4, 5]
      *     },
@@ -108,41 +113,43 @@ public class BreezemoonQueryService {
      * </pre>
      * @throws ServiceException service exception
      */
-    public JSONObject getFollowingUserBreezemoons(final int avatarViewMode, final String userId,
+    public JSONObject getFollowingUserBreezemoons(final int avatarViewMode, final String userId, final String beforeId,
                                                   final int page, final int pageSize, final int windowSize) throws ServiceException {
-        final JSONObject ret = new JSONObject();
-
-        final List<JSONObject> users = (List<JSONObject>) followQueryService.getFollowingUsers(
-                avatarViewMode, userId, 1, Integer.MAX_VALUE).opt(Keys.RESULTS);
-        if (users.isEmpty()) {
+        if (StringUtils.isBlank(userId)) {
             return getBreezemoons(avatarViewMode, userId, "", page, pageSize, windowSize);
         }
 
-        final Query query = new Query().addSort(Keys.OBJECT_ID, SortDirection.DESCENDING)
-                .setPageSize(pageSize).setCurrentPageNum(page);
-        final List<String> followingUserIds = new ArrayList<>();
-        for (final JSONObject user : users) {
-            followingUserIds.add(user.optString(Keys.OBJECT_ID));
+        final List<String> ids = homeTimelineMgmtService.getFollowingUserBreezemoonIds(userId, beforeId, pageSize);
+        if (ids.isEmpty() && StringUtils.isBlank(beforeId)) {
+            return getBreezemoons(avatarViewMode, userId, "", page, pageSize, windowSize);
         }
-        query.setFilter(CompositeFilterOperator.and(
-                new PropertyFilter(Breezemoon.BREEZEMOON_STATUS, FilterOperator.EQUAL, Breezemoon.BREEZEMOON_STATUS_C_VALID),
-                new PropertyFilter(Breezemoon.BREEZEMOON_AUTHOR_ID, FilterOperator.IN, followingUserIds)
-        ));
 
-        JSONObject result;
+        final JSONObject ret = new JSONObject();
         try {
             Stopwatchs.start("Query following user breezemoons");
 
-            result = breezemoonRepository.get(query);
-            final JSONArray data = result.optJSONArray(Keys.RESULTS);
-            final List<JSONObject> bms = CollectionUtils.jsonArrayToList(data);
-            if (bms.isEmpty()) {
-                return getBreezemoons(avatarViewMode, userId, "", page, pageSize, windowSize);
+            final List<JSONObject> bms = new ArrayList<>();
+            if (!ids.isEmpty()) {
+                final Query query = new Query().setFilter(CompositeFilterOperator.and(
+                        new PropertyFilter(Keys.OBJECT_ID, FilterOperator.IN, ids),
+                        new PropertyFilter(Breezemoon.BREEZEMOON_STATUS, FilterOperator.EQUAL, Breezemoon.BREEZEMOON_STATUS_C_VALID)
+                )).setPageCount(1);
+                final Map<String, JSONObject> bmMap = new HashMap<>();
+                final JSONArray data = breezemoonRepository.get(query).optJSONArray(Keys.RESULTS);
+                for (int i = 0; i < data.length(); i++) {
+                    final JSONObject bm = data.optJSONObject(i);
+                    bmMap.put(bm.optString(Keys.OBJECT_ID), bm);
+                }
+                for (final String id : ids) {
+                    final JSONObject bm = bmMap.get(id);
+                    if (null != bm) {
+                        bms.add(bm);
+                    }
+                }
             }
 
             organizeBreezemoons(avatarViewMode, userId, bms);
             ret.put(Breezemoon.BREEZEMOONS, (Object) bms);
-
         } catch (final Exception e) {
             LOGGER.log(Level.ERROR, "Gets following user breezemoons failed", e);
 
@@ -151,12 +158,6 @@ public class BreezemoonQueryService {
             Stopwatchs.end();
         }
 
-        final JSONObject pagination = result.optJSONObject(Pagination.PAGINATION);
-        ret.put(Pagination.PAGINATION, pagination);
-        final int pageCount = pagination.optInt(Pagination.PAGINATION_PAGE_COUNT);
-        final List<Integer> pageNums = Paginator.paginate(page, pageSize, pageCount, windowSize);
-        pagination.put(Pagination.PAGINATION_PAGE_NUMS, pageNums);
-
         return ret;
     }
 
@@ -0,0 +1,176 @@
+/*
+ * Symphony - A modern community (forum/BBS/SNS/blog) platform written in Java.
+ * Copyright (C) 2012-2018, b3log.org & hacpai.com
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.b3log.symphony.service;
+
+import org.b3log.latke.logging.Level;
+import org.b3log.latke.logging.Logger;
+import org.b3log.latke.service.annotation.Service;
+import org.b3log.latke.util.Locales;
+import org.b3log.latke.util.Times;
+import org.b3log.symphony.model.Common;
+import org.b3log.symphony.util.ChatLog;
+import org.b3log.symphony.util.JSONs;
+import org.b3log.symphony.util.Symphonys;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Chat room management service.
+ * <p>
+ * Chat messages are stored in a {@link ChatLog} under {@code chatRoom.logDir}. The display list of the latest
+ * messages (with time-ago strings) is built once and reused until a new message arrives, the minute changes or the
+ * locale differs.
+ * </p>
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.0.0, Oct 25, 2018
+ * @since 3.4.3
+ */
+@Service
+public class ChatRoomMgmtService {
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOGGER = Logger.getLogger(ChatRoomMgmtService.class);
+
+    /**
+     * Chat log.
+     */
+    private volatile ChatLog chatLog;
+
+    /**
+     * Display list of the latest messages, [latest sequence number, minute, locale, messages].
+     */
+    private volatile Object[] display;
+
+    /**
+     * Opens the chat log.
+     */
+    public synchronized void start() {
+        if (null != chatLog) {
+            return;
+        }
+
+        try {
+            chatLog = new ChatLog(new File(Symphonys.get("chatRoom.logDir")), Symphonys.getInt("chatRoom.msgCnt"),
+                    Symphonys.getLong("chatRoom.logSegmentSize"), Symphonys.getLong("chatRoom.logRetentionSize"),
+                    Symphonys.getLong("chatRoom.logRetentionDays") * 24 * 60 * 60 * 1000);
+            LOGGER.info("Opened chat log [latestSeq=" + chatLog.getLastSeq() + "]");
+        } catch (final Exception e) {
+            LOGGER.log(Level.ERROR, "Opens chat log failed", e);
+        }
+    }
+
+    /**
+     * Closes the chat log.
+     */
+    public synchronized void stop() {
+        if (null == chatLog) {
+            return;
+        }
+
+        try {
+            chatLog.close();
+        } catch (final Exception e) {
+            LOGGER.log(Level.ERROR, "Closes chat log failed", e);
+        }
+        chatLog = null;
+    }
+
+    /**
+     * Adds the specified chat message.
+     *
+     * @param msg the specified chat message, should not be modified after added
+     */
+    public void addMessage(final JSONObject msg) {
+        final ChatLog log = chatLog;
+        if (null == log) {
+            LOGGER.warn("Chat log is not opened, drops message");
+
+            return;
+        }
+
+        try {
+            log.append(msg);
+        } catch (final Exception e) {
+            LOGGER.log(Level.ERROR, "Appends chat message failed", e);
+        }
+    }
+
+    /**
+     * Gets the latest chat messages for display.
+     *
+     * @return messages, newest first, should not be modified
+     */
+    public List<JSONObject> getLatestMessages() {
+        final ChatLog log = chatLog;
+        if (null == log) {
+            return Collections.emptyList();
+        }
+
+        final long latestSeq = log.getLastSeq();
+        final long minute = System.currentTimeMillis() / (60 * 1000);
+        final Locale locale = Locales.getLocale();
+        final Object[] cached = display;
+        if (null != cached && latestSeq == (Long) cached[0] && minute == (Long) cached[1] && locale.equals(cached[2])) {
+            return (List<JSONObject>) cached[3];
+        }
+
+        final List<JSONObject> ret = Collections.unmodifiableList(toDisplay(log.getLatest(Symphonys.getInt("chatRoom.msgCnt")), locale));
+        display = new Object[]{latestSeq, minute, locale, ret};
+
+        return ret;
+    }
+
+    /**
+     * Gets the chat messages before the specified message for display.
+     *
+     * @param seq the specified message sequence number (exclusive)
+     * @return messages, newest first
+     */
+    public List<JSONObject> getOlderMessages(final long seq) {
+        final ChatLog log = chatLog;
+        if (null == log) {
+            return Collections.emptyList();
+        }
+
+        return toDisplay(log.getBefore(seq, Symphonys.getInt("chatRoom.msgCnt")), Locales.getLocale());
+    }
+
+    /**
+     * Converts the specified messages for display, fills time-ago strings.
+     *
+     * @param msgs   the specified messages
+     * @param locale the specified locale
+     * @return display messages
+     */
+    private static List<JSONObject> toDisplay(final List<JSONObject> msgs, final Locale locale) {
+        final List<JSONObject> ret = new ArrayList<>(msgs.size());
+        for (final JSONObject msg : msgs) {
+            ret.add(JSONs.clone(msg).put(Common.TIME, Times.getTimeAgo(msg.optLong(Common.TIME), locale)));
+        }
+
+        return ret;
+    }
+}
@@ -33,6 +33,7 @@ import org.b3log.latke.service.ServiceException;
 import org.b3log.latke.service.annotation.Service;
 import org.b3log.latke.util.CollectionUtils;
 import org.b3log.latke.util.Ids;
+import org.b3log.symphony.cache.PageCache;
 import org.b3log.symphony.event.EventTypes;
 import org.b3log.symphony.model.*;
 import org.b3log.symphony.repository.*;
@@ -48,7 +49,7 @@ import java.util.Locale;
  * Comment management service.
  *
  * @author <a href="http://88250.b3log.org">Liang Ding</a>
- * @version 2.15.0.0, Aug 28, 2018
+ * @version 2.15.3.0, Oct 25, 2018
  * @since 0.2.0
  */
 @Service
@@ -143,12 +144,30 @@ public class CommentMgmtService {
     @Inject
     private NotificationMgmtService notificationMgmtService;
 
+    /**
+     * Daily statistic management service.
+     */
+    @Inject
+    private StatisticMgmtService statisticMgmtService;
+
     /**
      * Liveness management service.
      */
     @Inject
     private LivenessMgmtService livenessMgmtService;
 
+    /**
+     * Render management service.
+     */
+    @Inject
+    private RenderMgmtService renderMgmtService;
+
+    /**
+     * Page cache.
+     */
+    @Inject
+    private PageCache pageCache;
+
     /**
      * Accepts a comment specified with the given comment id.
      *
@@ -267,7 +286,13 @@ public class CommentMgmtService {
     @Transactional
     public void removeCommentByAdmin(final String commentId) {
         try {
+            final JSONObject comment = commentRepository.get(commentId);
+            if (null == comment) {
+                return;
+            }
+
             commentRepository.removeComment(commentId);
+            pageCache.invalidateArticle(comment.optString(Comment.COMMENT_ON_ARTICLE_ID));
         } catch (final Exception e) {
             LOGGER.log(Level.ERROR, "Removes a comment error [id=" + commentId + "]", e);
         }
@@ -560,6 +585,11 @@ public class CommentMgmtService {
 
             transaction.commit();
 
+            renderMgmtService.renderAsync(commentId, Rendered.RENDERED_TYPE_C_COMMENT);
+            pageCache.invalidateArticle(articleId, article.optString(Article.ARTICLE_TAGS));
+
+            statisticMgmtService.incDaily(StatisticDaily.STATISTIC_DAILY_COMMENT_CNT, currentTimeMillis);
+
             if (Comment.COMMENT_ANONYMOUS_C_PUBLIC == commentAnonymous
                     && Article.ARTICLE_ANONYMOUS_C_PUBLIC == articleAnonymous
                     && !TuringQueryService.ROBOT_NAME.equals(commenterName)) {
@@ -648,7 +678,10 @@ public class CommentMgmtService {
 
             transaction.commit();
 
+            renderMgmtService.renderAsync(commentId, Rendered.RENDERED_TYPE_C_COMMENT);
+
             final JSONObject article = articleRepository.get(comment.optString(Comment.COMMENT_ON_ARTICLE_ID));
+            pageCache.invalidateArticle(article.optString(Keys.OBJECT_ID));
             final int articleAnonymous = article.optInt(Article.ARTICLE_ANONYMOUS);
             final int commentAnonymous = comment.optInt(Comment.COMMENT_ANONYMOUS);
 
@@ -717,6 +750,9 @@ public class CommentMgmtService {
             commentRepository.update(commentId, comment);
 
             transaction.commit();
+
+            renderMgmtService.renderAsync(commentId, Rendered.RENDERED_TYPE_C_COMMENT);
+            pageCache.invalidateArticle(oldComment.optString(Comment.COMMENT_ON_ARTICLE_ID));
         } catch (final RepositoryException e) {
             if (transaction.isActive()) {
                 transaction.rollback();
@@ -48,7 +48,7 @@ import java.util.*;
  * Comment management service.
  *
  * @author <a href="http://88250.b3log.org">Liang Ding</a>
- * @version 2.12.2.1, Aug 21, 2018
+ * @version 2.13.0.1, Oct 25, 2018
  * @since 0.2.0
  */
 @Service
@@ -102,10 +102,10 @@ public class CommentQueryService {
     private LangPropsService langPropsService;
 
     /**
-     * Short link query service.
+     * Render query service.
      */
     @Inject
-    private ShortLinkQueryService shortLinkQueryService;
+    private RenderQueryService renderQueryService;
 
 
     /**
@@ -399,8 +399,9 @@ public class CommentQueryService {
      *
      * @param day the specified day
      * @return comment count
+     * @throws ServiceException service exception
      */
-    public int getCommentCntInDay(final Date day) {
+    public int getCommentCntInDay(final Date day) throws ServiceException {
         final long time = day.getTime();
         final long start = Times.getDayStartTime(time);
         final long end = Times.getDayEndTime(time);
@@ -416,7 +417,7 @@ public class CommentQueryService {
         } catch (final RepositoryException e) {
             LOGGER.log(Level.ERROR, "Count day comment failed", e);
 
-            return 1;
+            throw new ServiceException(e);
         }
     }
 
@@ -855,14 +856,15 @@ public class CommentQueryService {
      * @param avatarViewMode the specified avatar view mode
      * @param comments       the specified comments
      * @throws RepositoryException repository exception
-     * @see #organizeComment(int, JSONObject)
+     * @see #organizeComment(int, JSONObject, String)
      */
     private void organizeComments(final int avatarViewMode, final List<JSONObject> comments) throws RepositoryException {
         Stopwatchs.start("Organizes comments");
 
         try {
+            final Map<String, String> renderedContents = renderQueryService.getComments(comments);
             for (final JSONObject comment : comments) {
-                organizeComment(avatarViewMode, comment);
+                organizeComment(avatarViewMode, comment, renderedContents.get(comment.optString(Keys.OBJECT_ID)));
             }
         } finally {
             Stopwatchs.end();
@@ -889,6 +891,20 @@ public class CommentQueryService {
      * @throws RepositoryException repository exception
      */
     private void organizeComment(final int avatarViewMode, final JSONObject comment) throws RepositoryException {
+        organizeComment(avatarViewMode, comment, null);
+    }
+
+    /**
+     * Organizes the specified comment with the specified rendered content.
+     *
+     * @param avatarViewMode  the specified avatar view mode
+     * @param comment         the specified comment
+     * @param renderedContent the specified rendered content, {@code null} to get it by the comment
+     * @throws RepositoryException repository exception
+     * @see #organizeComment(int, JSONObject)
+     */
+    private void organizeComment(final int avatarViewMode, final JSONObject comment, final String renderedContent)
+            throws RepositoryException {
         Stopwatchs.start("Organize comment");
 
         try {
@@ -912,7 +928,7 @@ public class CommentQueryService {
                 comment.put(Comment.COMMENT_T_AUTHOR_THUMBNAIL_URL, avatarQueryService.getDefaultAvatarURL("48"));
             }
 
-            processCommentContent(comment);
+            processCommentContent(comment, renderedContent);
         } finally {
             Stopwatchs.end();
         }
@@ -935,6 +951,17 @@ public class CommentQueryService {
      *                "commenter": {}
      */
     private void processCommentContent(final JSONObject comment) {
+        processCommentContent(comment, null);
+    }
+
+    /**
+     * Processes the specified comment content with the specified rendered content.
+     *
+     * @param comment         the specified comment
+     * @param renderedContent the specified rendered content, {@code null} to get it by the comment
+     * @see #processCommentContent(JSONObject)
+     */
+    private void processCommentContent(final JSONObject comment, final String renderedContent) {
         final JSONObject commenter = comment.optJSONObject(Comment.COMMENT_T_COMMENTER);
 
         if (Comment.COMMENT_STATUS_C_INVALID == comment.optInt(Comment.COMMENT_STATUS)
@@ -944,15 +971,13 @@ public class CommentQueryService {
             return;
         }
 
-        String commentContent = comment.optString(Comment.COMMENT_CONTENT);
+        if (null != renderedContent) {
+            comment.put(Comment.COMMENT_CONTENT, renderedContent);
+
+            return;
+        }
 
-        commentContent = shortLinkQueryService.linkArticle(commentContent);
-        commentContent = shortLinkQueryService.linkTag(commentContent);
-        commentContent = Emotions.convert(commentContent);
-        commentContent = Markdowns.toHTML(commentContent);
-        commentContent = Markdowns.clean(commentContent, "");
-        commentContent = MP3Players.render(commentContent);
-        commentContent = VideoPlayers.render(commentContent);
-        comment.put(Comment.COMMENT_CONTENT, commentContent);
+        final String commentId = comment.optString(Keys.OBJECT_ID);
+        comment.put(Comment.COMMENT_CONTENT, renderQueryService.getComments(Collections.singletonList(comment)).get(commentId));
     }
 }
@@ -27,9 +27,12 @@ import org.b3log.latke.service.LangPropsService;
 import org.b3log.latke.service.annotation.Service;
 import org.b3log.latke.util.Locales;
 import org.b3log.latke.util.Stopwatchs;
+import org.b3log.latke.util.Strings;
 import org.b3log.symphony.SymphonyServletListener;
 import org.b3log.symphony.cache.DomainCache;
+import org.b3log.symphony.cache.NavSummaryCache;
 import org.b3log.symphony.model.*;
+import org.b3log.symphony.util.LabelBundle;
 import org.b3log.symphony.util.Markdowns;
 import org.b3log.symphony.util.Symphonys;
 import org.json.JSONObject;
@@ -42,7 +45,7 @@ import java.util.*;
  * Data model service.
  *
  * @author <a href="http://88250.b3log.org">Liang Ding</a>
- * @version 1.12.2.35, Aug 20, 2018
+ * @version 1.13.0.0, Oct 25, 2018
  * @since 0.2.0
  */
 @Service
@@ -125,6 +128,12 @@ public class DataModelService {
     @Inject
     private DomainCache domainCache;
 
+    /**
+     * Navigation summary cache.
+     */
+    @Inject
+    private NavSummaryCache navSummaryCache;
+
     /**
      * Fills relevant articles.
      *
@@ -259,7 +268,6 @@ public class DataModelService {
         // fillTrendTags(dataModel);
         fillPersonalNav(request, response, dataModel);
 
-        fillLangs(dataModel);
         fillSideAd(dataModel);
         fillHeaderBanner(dataModel);
         fillSideTips(dataModel);
@@ -360,14 +368,15 @@ public class DataModelService {
             avatarQueryService.fillUserAvatarURL(curUser.optInt(UserExt.USER_AVATAR_VIEW_MODE), curUser);
 
             final String userId = curUser.optString(Keys.OBJECT_ID);
+            JSONObject summary = navSummaryCache.get(userId, () -> loadNavSummary(userId, userRole));
+            if (!userRole.equals(summary.optString(User.USER_ROLE))) {
+                navSummaryCache.invalidate(userId);
+                summary = navSummaryCache.get(userId, () -> loadNavSummary(userId, userRole));
+            }
 
-            final long followingArticleCnt = followQueryService.getFollowingCount(userId, Follow.FOLLOWING_TYPE_C_ARTICLE);
-            final long followingTagCnt = followQueryService.getFollowingCount(userId, Follow.FOLLOWING_TYPE_C_TAG);
-            final long followingUserCnt = followQueryService.getFollowingCount(userId, Follow.FOLLOWING_TYPE_C_USER);
-
-            curUser.put(Common.FOLLOWING_ARTICLE_CNT, followingArticleCnt);
-            curUser.put(Common.FOLLOWING_TAG_CNT, followingTagCnt);
-            curUser.put(Common.FOLLOWING_USER_CNT, followingUserCnt);
+            curUser.put(Common.FOLLOWING_ARTICLE_CNT, summary.optLong(Common.FOLLOWING_ARTICLE_CNT));
+            curUser.put(Common.FOLLOWING_TAG_CNT, summary.optLong(Common.FOLLOWING_TAG_CNT));
+            curUser.put(Common.FOLLOWING_USER_CNT, summary.optLong(Common.FOLLOWING_USER_CNT));
             final int point = curUser.optInt(UserExt.USER_POINT);
             final int appRole = curUser.optInt(UserExt.USER_APP_ROLE);
             if (UserExt.USER_APP_ROLE_C_HACKER == appRole) {
@@ -378,23 +387,58 @@ public class DataModelService {
 
             dataModel.put(Common.CURRENT_USER, curUser);
 
-            final JSONObject role = roleQueryService.getRole(userRole);
-            curUser.put(Role.ROLE_NAME, role.optString(Role.ROLE_NAME));
+            if (Strings.isNumeric(userRole)) {
+                curUser.put(Role.ROLE_NAME, summary.optString(Role.ROLE_NAME));
+            } else {
+                curUser.put(Role.ROLE_NAME, LabelBundle.get(Locales.getLocale()).getLabel(userRole + "NameLabel"));
+            }
 
             // final int unreadNotificationCount = notificationQueryService.getUnreadNotificationCount(curUser.optString(Keys.OBJECT_ID));
             dataModel.put(Notification.NOTIFICATION_T_UNREAD_COUNT, 0); // AJAX polling 
 
-            dataModel.put(Common.IS_DAILY_CHECKIN, activityQueryService.isCheckedinToday(userId));
+            dataModel.put(Common.IS_DAILY_CHECKIN, summary.optBoolean(Common.IS_DAILY_CHECKIN));
             dataModel.put(Common.USE_CAPTCHA_CHECKIN, Symphonys.getBoolean("geetest.enabled"));
 
             final int livenessMax = Symphonys.getInt("activitYesterdayLivenessReward.maxPoint");
-            final int currentLiveness = livenessQueryService.getCurrentLivenessPoint(userId);
+            final int currentLiveness = summary.optInt(Liveness.LIVENESS_POINT);
             dataModel.put(Liveness.LIVENESS, (float) (Math.round((float) currentLiveness / livenessMax * 100 * 100)) / 100);
         } finally {
             Stopwatchs.end();
         }
     }
 
+    /**
+     * Loads the personal navigation summary of a user specified by the given user id.
+     *
+     * @param userId the given user id
+     * @param roleId the specified role id of the user
+     * @return summary, for example,
+     * {
+     *     "followingArticleCnt": long,
+     *     "followingTagCnt": long,
+     *     "followingUserCnt": long,
+     *     "userRole": "",
+     *     "roleName": "", // custom role only, builtin roles are named by language labels
+     *     "isDailyCheckin": boolean,
+     *     "livenessPoint": int
+     * }
+     */
+    private JSONObject loadNavSummary(final String userId, final String roleId) {
+        final JSONObject ret = new JSONObject();
+        ret.put(Common.FOLLOWING_ARTICLE_CNT, followQueryService.getFollowingCount(userId, Follow.FOLLOWING_TYPE_C_ARTICLE));
+        ret.put(Common.FOLLOWING_TAG_CNT, followQueryService.getFollowingCount(userId, Follow.FOLLOWING_TYPE_C_TAG));
+        ret.put(Common.FOLLOWING_USER_CNT, followQueryService.getFollowingCount(userId, Follow.FOLLOWING_TYPE_C_USER));
+        ret.put(User.USER_ROLE, roleId);
+        if (Strings.isNumeric(roleId)) {
+            final JSONObject role = roleQueryService.getRole(roleId);
+            ret.put(Role.ROLE_NAME, null == role ? "" : role.optString(Role.ROLE_NAME));
+        }
+        ret.put(Common.IS_DAILY_CHECKIN, activityQueryService.isCheckedinToday(userId));
+        ret.put(Liveness.LIVENESS_POINT, livenessQueryService.getCurrentLivenessPoint(userId));
+
+        return ret;
+    }
+
     /**
      * Fills minified directory and file postfix for static JavaScript, CSS.
      *
@@ -413,20 +457,6 @@ public class DataModelService {
         }
     }
 
-    /**
-     * Fills the all language labels.
-     *
-     * @param dataModel the specified data model
-     */
-    private void fillLangs(final Map<String, Object> dataModel) {
-        Stopwatchs.start("Fills lang");
-        try {
-            dataModel.putAll(langPropsService.getAll(Locales.getLocale()));
-        } finally {
-            Stopwatchs.end();
-        }
-    }
-
     /**
      * Fills the side ad labels.
      *
@@ -451,14 +481,7 @@ public class DataModelService {
             return;
         }
 
-        final List<String> tipsLabels = new ArrayList<>();
-        final Map<String, String> labels = langPropsService.getAll(Locales.getLocale());
-        for (final Map.Entry<String, String> entry : labels.entrySet()) {
-            final String key = entry.getKey();
-            if (key.startsWith("tips")) {
-                tipsLabels.add(entry.getValue());
-            }
-        }
+        final List<String> tipsLabels = new ArrayList<>(LabelBundle.get(Locales.getLocale()).getLabels("tips"));
 
         // Builtin for Sym promotion
         tipsLabels.add("<img align=\"absmiddle\" alt=\"tada\" class=\"emoji\" src=\"" + Latkes.getStaticServePath() +
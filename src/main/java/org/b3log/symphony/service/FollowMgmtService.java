@@ -21,9 +21,10 @@ import org.b3log.latke.ioc.Inject;
 import org.b3log.latke.logging.Level;
 import org.b3log.latke.logging.Logger;
 import org.b3log.latke.repository.RepositoryException;
-import org.b3log.latke.repository.annotation.Transactional;
+import org.b3log.latke.repository.Transaction;
 import org.b3log.latke.service.ServiceException;
 import org.b3log.latke.service.annotation.Service;
+import org.b3log.symphony.cache.NavSummaryCache;
 import org.b3log.symphony.model.Article;
 import org.b3log.symphony.model.Follow;
 import org.b3log.symphony.model.Tag;
@@ -36,7 +37,7 @@ import org.json.JSONObject;
  * Follow management service.
  *
  * @author <a href="http://88250.b3log.org">Liang Ding</a>
- * @version 1.3.1.2, Jan 18, 2017
+ * @version 1.4.2.1, Oct 25, 2018
  * @since 0.2.5
  */
 @Service
@@ -65,6 +66,18 @@ public class FollowMgmtService {
     @Inject
     private ArticleRepository articleRepository;
 
+    /**
+     * Home timeline management service.
+     */
+    @Inject
+    private HomeTimelineMgmtService homeTimelineMgmtService;
+
+    /**
+     * Navigation summary cache.
+     */
+    @Inject
+    private NavSummaryCache navSummaryCache;
+
     /**
      * The specified follower follows the specified following tag.
      *
@@ -72,7 +85,6 @@ public class FollowMgmtService {
      * @param followingTagId the specified following tag id
      * @throws ServiceException service exception
      */
-    @Transactional
     public void followTag(final String followerId, final String followingTagId) throws ServiceException {
         try {
             follow(followerId, followingTagId, Follow.FOLLOWING_TYPE_C_TAG);
@@ -91,7 +103,6 @@ public class FollowMgmtService {
      * @param followingUserId the specified following user id
      * @throws ServiceException service exception
      */
-    @Transactional
     public void followUser(final String followerId, final String followingUserId) throws ServiceException {
         try {
             follow(followerId, followingUserId, Follow.FOLLOWING_TYPE_C_USER);
@@ -110,7 +121,6 @@ public class FollowMgmtService {
      * @param followingArticleId the specified following article id
      * @throws ServiceException service exception
      */
-    @Transactional
     public void followArticle(final String followerId, final String followingArticleId) throws ServiceException {
         try {
             follow(followerId, followingArticleId, Follow.FOLLOWING_TYPE_C_ARTICLE);
@@ -129,7 +139,6 @@ public class FollowMgmtService {
      * @param followingArticleId the specified following article id
      * @throws ServiceException service exception
      */
-    @Transactional
     public void watchArticle(final String followerId, final String followingArticleId) throws ServiceException {
         try {
             follow(followerId, followingArticleId, Follow.FOLLOWING_TYPE_C_ARTICLE_WATCH);
@@ -148,7 +157,6 @@ public class FollowMgmtService {
      * @param followingTagId the specified following tag id
      * @throws ServiceException service exception
      */
-    @Transactional
     public void unfollowTag(final String followerId, final String followingTagId) throws ServiceException {
         try {
             unfollow(followerId, followingTagId, Follow.FOLLOWING_TYPE_C_TAG);
@@ -167,7 +175,6 @@ public class FollowMgmtService {
      * @param followingUserId the specified following user id
      * @throws ServiceException service exception
      */
-    @Transactional
     public void unfollowUser(final String followerId, final String followingUserId) throws ServiceException {
         try {
             unfollow(followerId, followingUserId, Follow.FOLLOWING_TYPE_C_USER);
@@ -186,7 +193,6 @@ public class FollowMgmtService {
      * @param followingArticleId the specified following article id
      * @throws ServiceException service exception
      */
-    @Transactional
     public void unfollowArticle(final String followerId, final String followingArticleId) throws ServiceException {
         try {
             unfollow(followerId, followingArticleId, Follow.FOLLOWING_TYPE_C_ARTICLE);
@@ -206,7 +212,6 @@ public class FollowMgmtService {
      * @param followingArticleId the specified following article id
      * @throws ServiceException service exception
      */
-    @Transactional
     public void unwatchArticle(final String followerId, final String followingArticleId) throws ServiceException {
         try {
             unfollow(followerId, followingArticleId, Follow.FOLLOWING_TYPE_C_ARTICLE_WATCH);
@@ -219,7 +224,8 @@ public class FollowMgmtService {
     }
 
     /**
-     * The specified follower follows the specified following entity with the specified following type.
+     * The specified follower follows the specified following entity with the specified following type, updates the
+     * home timeline and the navigation summary after commit.
      *
      * @param followerId    the specified follower id
      * @param followingId   the specified following entity id
@@ -227,8 +233,38 @@ public class FollowMgmtService {
      * @throws RepositoryException repository exception
      */
     private synchronized void follow(final String followerId, final String followingId, final int followingType) throws RepositoryException {
+        final Transaction transaction = followRepository.beginTransaction();
+        final boolean followed;
+        try {
+            followed = addFollow(followerId, followingId, followingType);
+
+            transaction.commit();
+        } catch (final RepositoryException e) {
+            if (transaction.isActive()) {
+                transaction.rollback();
+            }
+
+            throw e;
+        }
+
+        if (followed) {
+            homeTimelineMgmtService.follow(followerId, followingId, followingType);
+            navSummaryCache.invalidate(followerId);
+        }
+    }
+
+    /**
+     * Adds a follow relationship.
+     *
+     * @param followerId    the specified follower id
+     * @param followingId   the specified following entity id
+     * @param followingType the specified following type
+     * @return {@code true} if the relationship is added, returns {@code false} otherwise
+     * @throws RepositoryException repository exception
+     */
+    private boolean addFollow(final String followerId, final String followingId, final int followingType) throws RepositoryException {
         if (followRepository.exists(followerId, followingId, followingType)) {
-            return;
+            return false;
         }
 
         if (Follow.FOLLOWING_TYPE_C_TAG == followingType) {
@@ -236,7 +272,7 @@ public class FollowMgmtService {
             if (null == tag) {
                 LOGGER.log(Level.ERROR, "Not found tag [id={0}] to follow", followingId);
 
-                return;
+                return false;
             }
 
             tag.put(Tag.TAG_FOLLOWER_CNT, tag.optInt(Tag.TAG_FOLLOWER_CNT) + 1);
@@ -248,7 +284,7 @@ public class FollowMgmtService {
             if (null == article) {
                 LOGGER.log(Level.ERROR, "Not found article [id={0}] to follow", followingId);
 
-                return;
+                return false;
             }
 
             article.put(Article.ARTICLE_COLLECT_CNT, article.optInt(Article.ARTICLE_COLLECT_CNT) + 1);
@@ -259,7 +295,7 @@ public class FollowMgmtService {
             if (null == article) {
                 LOGGER.log(Level.ERROR, "Not found article [id={0}] to watch", followingId);
 
-                return;
+                return false;
             }
 
             article.put(Article.ARTICLE_WATCH_CNT, article.optInt(Article.ARTICLE_WATCH_CNT) + 1);
@@ -273,10 +309,13 @@ public class FollowMgmtService {
         follow.put(Follow.FOLLOWING_TYPE, followingType);
 
         followRepository.add(follow);
+
+        return true;
     }
 
     /**
-     * Removes a follow relationship.
+     * The specified follower unfollows the specified following entity with the specified following type, updates the
+     * home timeline and the navigation summary after commit.
      *
      * @param followerId    the specified follower id
      * @param followingId   the specified following entity id
@@ -284,6 +323,32 @@ public class FollowMgmtService {
      * @throws RepositoryException repository exception
      */
     public synchronized void unfollow(final String followerId, final String followingId, final int followingType) throws RepositoryException {
+        final Transaction transaction = followRepository.beginTransaction();
+        try {
+            removeFollow(followerId, followingId, followingType);
+
+            transaction.commit();
+        } catch (final RepositoryException e) {
+            if (transaction.isActive()) {
+                transaction.rollback();
+            }
+
+            throw e;
+        }
+
+        homeTimelineMgmtService.unfollow(followerId, followingId, followingType);
+        navSummaryCache.invalidate(followerId);
+    }
+
+    /**
+     * Removes a follow relationship.
+     *
+     * @param followerId    the specified follower id
+     * @param followingId   the specified following entity id
+     * @param followingType the specified following type
+     * @throws RepositoryException repository exception
+     */
+    private void removeFollow(final String followerId, final String followingId, final int followingType) throws RepositoryException {
         followRepository.removeByFollowerIdAndFollowingId(followerId, followingId, followingType);
 
         if (Follow.FOLLOWING_TYPE_C_TAG == followingType) {
@@ -42,7 +42,7 @@ import java.util.List;
  * Follow query service.
  *
  * @author <a href="http://88250.b3log.org">Liang Ding</a>
- * @version 1.4.0.7, May 23, 2018
+ * @version 1.4.1.0, Oct 25, 2018
  * @since 0.2.5
  */
 @Service
@@ -83,6 +83,12 @@ public class FollowQueryService {
     @Inject
     private AvatarQueryService avatarQueryService;
 
+    /**
+     * Presence management service.
+     */
+    @Inject
+    private PresenceMgmtService presenceMgmtService;
+
     /**
      * Determines whether exists a follow relationship for the specified follower and the specified following entity.
      *
@@ -144,6 +150,7 @@ public class FollowQueryService {
                 }
 
                 avatarQueryService.fillUserAvatarURL(avatarViewMode, user);
+                presenceMgmtService.fillOnlineFlag(user);
 
                 records.add(user);
             }
@@ -386,6 +393,7 @@ public class FollowQueryService {
                 }
 
                 avatarQueryService.fillUserAvatarURL(avatarViewMode, user);
+                presenceMgmtService.fillOnlineFlag(user);
 
                 records.add(user);
             }
@@ -0,0 +1,411 @@
+/*
+ * Symphony - A modern community (forum/BBS/SNS/blog) platform written in Java.
+ * Copyright (C) 2012-2018, b3log.org & hacpai.com
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.b3log.symphony.service;
+
+import org.apache.commons.lang.StringUtils;
+import org.b3log.latke.Keys;
+import org.b3log.latke.ioc.Inject;
+import org.b3log.latke.logging.Level;
+import org.b3log.latke.logging.Logger;
+import org.b3log.latke.repository.*;
+import org.b3log.latke.service.ServiceException;
+import org.b3log.latke.service.annotation.Service;
+import org.b3log.symphony.model.*;
+import org.b3log.symphony.repository.*;
+import org.b3log.symphony.util.HomeTimeline;
+import org.b3log.symphony.util.Symphonys;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.*;
+
+/**
+ * Home timeline management service, keeps the following user articles, following tag articles and following user
+ * breezemoons of users.
+ * <p>
+ * New articles and breezemoons are fanned out to the loaded timelines of followers, authors and tags with more than
+ * {@code homeTimeline.hotFollowerCnt} followers are merged on read instead. See {@link HomeTimeline} for details.
+ * </p>
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.1.0, Oct 25, 2018
+ * @since 3.4.3
+ */
+@Service
+public class HomeTimelineMgmtService {
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOGGER = Logger.getLogger(HomeTimelineMgmtService.class);
+
+    /**
+     * Follower count threshold of hot sources.
+     */
+    private static final int HOT_FOLLOWER_CNT = Symphonys.getInt("homeTimeline.hotFollowerCnt");
+
+    /**
+     * Following user articles.
+     */
+    private final HomeTimeline userArticles = newTimeline(new UserArticleLoader());
+
+    /**
+     * Following tag articles.
+     */
+    private final HomeTimeline tagArticles = newTimeline(new TagArticleLoader());
+
+    /**
+     * Following user breezemoons.
+     */
+    private final HomeTimeline userBreezemoons = newTimeline(new UserBreezemoonLoader());
+
+    /**
+     * Follow repository.
+     */
+    @Inject
+    private FollowRepository followRepository;
+
+    /**
+     * Article repository.
+     */
+    @Inject
+    private ArticleRepository articleRepository;
+
+    /**
+     * Tag-Article repository.
+     */
+    @Inject
+    private TagArticleRepository tagArticleRepository;
+
+    /**
+     * Tag repository.
+     */
+    @Inject
+    private TagRepository tagRepository;
+
+    /**
+     * Breezemoon repository.
+     */
+    @Inject
+    private BreezemoonRepository breezemoonRepository;
+
+    /**
+     * Gets a page of following user article ids of the specified user.
+     *
+     * @param userId   the specified user id
+     * @param beforeId the specified keyset cursor, gets articles older than it, {@code null} for the first page
+     * @param size     the specified page size
+     * @return article ids, newest first
+     * @throws ServiceException service exception
+     */
+    public List<String> getFollowingUserArticleIds(final String userId, final String beforeId, final int size) throws ServiceException {
+        return get(userArticles, userId, beforeId, size);
+    }
+
+    /**
+     * Gets a page of following tag article ids of the specified user.
+     *
+     * @param userId   the specified user id
+     * @param beforeId the specified keyset cursor, gets articles older than it, {@code null} for the first page
+     * @param size     the specified page size
+     * @return article ids, newest first
+     * @throws ServiceException service exception
+     */
+    public List<String> getFollowingTagArticleIds(final String userId, final String beforeId, final int size) throws ServiceException {
+        return get(tagArticles, userId, beforeId, size);
+    }
+
+    /**
+     * Gets a page of following user breezemoon ids of the specified user.
+     *
+     * @param userId   the specified user id
+     * @param beforeId the specified keyset cursor, gets breezemoons older than it, {@code null} for the first page
+     * @param size     the specified page size
+     * @return breezemoon ids, newest first
+     * @throws ServiceException service exception
+     */
+    public List<String> getFollowingUserBreezemoonIds(final String userId, final String beforeId, final int size) throws ServiceException {
+        return get(userBreezemoons, userId, beforeId, size);
+    }
+
+    /**
+     * Fans out the specified article to the timelines of the followers of its author and tags.
+     *
+     * @param article the specified article
+     */
+    public void publishArticle(final JSONObject article) {
+        if (Article.ARTICLE_TYPE_C_DISCUSSION == article.optInt(Article.ARTICLE_TYPE)) {
+            return;
+        }
+
+        final String articleId = article.optString(Keys.OBJECT_ID);
+        userArticles.publish(articleId, Collections.singleton(article.optString(Article.ARTICLE_AUTHOR_ID)));
+
+        try {
+            final List<String> tagIds = new ArrayList<>();
+            for (final JSONObject tagArticleRel : tagArticleRepository.getByArticleId(articleId)) {
+                tagIds.add(tagArticleRel.optString(Tag.TAG + '_' + Keys.OBJECT_ID));
+            }
+            tagArticles.publish(articleId, tagIds);
+        } catch (final RepositoryException e) {
+            LOGGER.log(Level.ERROR, "Publishes article [id=" + articleId + "] to tag timelines failed", e);
+        }
+    }
+
+    /**
+     * Fans out the specified breezemoon to the timelines of the followers of its author.
+     *
+     * @param breezemoon the specified breezemoon
+     */
+    public void publishBreezemoon(final JSONObject breezemoon) {
+        userBreezemoons.publish(breezemoon.optString(Keys.OBJECT_ID),
+                Collections.singleton(breezemoon.optString(Breezemoon.BREEZEMOON_AUTHOR_ID)));
+    }
+
+    /**
+     * The specified follower follows the specified entity, backfills the timelines of the follower.
+     *
+     * @param followerId    the specified follower id
+     * @param followingId   the specified following entity id
+     * @param followingType the specified following type
+     */
+    public void follow(final String followerId, final String followingId, final int followingType) {
+        try {
+            if (Follow.FOLLOWING_TYPE_C_USER == followingType) {
+                userArticles.follow(followerId, followingId);
+                userBreezemoons.follow(followerId, followingId);
+            } else if (Follow.FOLLOWING_TYPE_C_TAG == followingType) {
+                tagArticles.follow(followerId, followingId);
+            }
+        } catch (final Exception e) {
+            LOGGER.log(Level.ERROR, "Backfills timelines of user [id=" + followerId + "] failed", e);
+        }
+    }
+
+    /**
+     * The specified follower unfollows the specified entity, cleans the timelines of the follower.
+     *
+     * @param followerId    the specified follower id
+     * @param followingId   the specified following entity id
+     * @param followingType the specified following type
+     */
+    public void unfollow(final String followerId, final String followingId, final int followingType) {
+        if (Follow.FOLLOWING_TYPE_C_USER == followingType) {
+            userArticles.unfollow(followerId, followingId);
+            userBreezemoons.unfollow(followerId, followingId);
+        } else if (Follow.FOLLOWING_TYPE_C_TAG == followingType) {
+            tagArticles.unfollow(followerId, followingId);
+        }
+    }
+
+    /**
+     * Gets a page of the specified timeline.
+     *
+     * @param timeline the specified timeline
+     * @param userId   the specified user id
+     * @param beforeId the specified keyset cursor
+     * @param size     the specified page size
+     * @return item ids
+     * @throws ServiceException service exception
+     */
+    private List<String> get(final HomeTimeline timeline, final String userId, final String beforeId, final int size)
+            throws ServiceException {
+        try {
+            return timeline.get(userId, StringUtils.isBlank(beforeId) ? null : beforeId, size);
+        } catch (final Exception e) {
+            LOGGER.log(Level.ERROR, "Gets timeline of user [id=" + userId + "] failed", e);
+
+            throw new ServiceException(e);
+        }
+    }
+
+    /**
+     * Gets the ids of the entities of the specified type the specified user follows.
+     *
+     * @param userId        the specified user id
+     * @param followingType the specified following type
+     * @return following entity ids
+     * @throws RepositoryException repository exception
+     */
+    private List<String> getFollowingIds(final String userId, final int followingType) throws RepositoryException {
+        final Query query = new Query().setFilter(CompositeFilterOperator.and(
+                new PropertyFilter(Follow.FOLLOWER_ID, FilterOperator.EQUAL, userId),
+                new PropertyFilter(Follow.FOLLOWING_TYPE, FilterOperator.EQUAL, followingType))).
+                addProjection(Follow.FOLLOWING_ID, String.class).setPageCount(1);
+        final JSONArray follows = followRepository.get(query).optJSONArray(Keys.RESULTS);
+        final List<String> ret = new ArrayList<>();
+        for (int i = 0; i < follows.length(); i++) {
+            ret.add(follows.optJSONObject(i).optString(Follow.FOLLOWING_ID));
+        }
+
+        return ret;
+    }
+
+    /**
+     * Gets the users of the specified users who have too many followers to fan out, in one grouped query.
+     *
+     * @param userIds the specified user ids
+     * @return hot user ids
+     * @throws RepositoryException repository exception
+     */
+    private Set<String> getHotUsers(final List<String> userIds) throws RepositoryException {
+        return followRepository.getFollowedAtLeast(userIds, Follow.FOLLOWING_TYPE_C_USER, HOT_FOLLOWER_CNT);
+    }
+
+    /**
+     * Gets the latest items of the specified repository, each item belongs to the source in its source property.
+     *
+     * @param repository     the specified repository
+     * @param filters        the specified filters besides sources and the keyset cursor
+     * @param itemIdProperty the specified item id property
+     * @param sourceProperty the specified source id property
+     * @param sourceIds      the specified source ids
+     * @param beforeId       the specified keyset cursor, {@code null} for the latest
+     * @param rows           the specified max count of rows to query
+     * @param size           the specified max count of distinct items
+     * @return &lt;itemId, sourceIds&gt;, newest first
+     * @throws RepositoryException repository exception
+     */
+    private static Map<String, Set<String>> getItems(final Repository repository, final List<Filter> filters,
+                                                     final String itemIdProperty, final String sourceProperty,
+                                                     final List<String> sourceIds, final String beforeId,
+                                                     final int rows, final int size) throws RepositoryException {
+        final List<Filter> all = new ArrayList<>(filters);
+        all.add(new PropertyFilter(sourceProperty, FilterOperator.IN, sourceIds));
+        if (null != beforeId) {
+            all.add(new PropertyFilter(itemIdProperty, FilterOperator.LESS_THAN, beforeId));
+        }
+        final Query query = new Query().setFilter(1 == all.size() ? all.get(0) : new CompositeFilter(CompositeFilterOperator.AND, all)).
+                addSort(itemIdProperty, SortDirection.DESCENDING).setPageCount(1).setPageSize(rows).setCurrentPageNum(1).
+                addProjection(itemIdProperty, String.class).addProjection(sourceProperty, String.class);
+
+        final Map<String, Set<String>> ret = new LinkedHashMap<>();
+        final JSONArray data = repository.get(query).optJSONArray(Keys.RESULTS);
+        for (int i = 0; i < data.length(); i++) {
+            final JSONObject row = data.optJSONObject(i);
+            final String itemId = row.optString(itemIdProperty);
+            if (!ret.containsKey(itemId) && ret.size() >= size) { // Rows of the last kept item are complete now
+                break;
+            }
+
+            ret.computeIfAbsent(itemId, key -> new HashSet<>()).add(row.optString(sourceProperty));
+        }
+
+        return ret;
+    }
+
+    /**
+     * Constructs a home timeline with the specified loader.
+     *
+     * @param loader the specified loader
+     * @return home timeline
+     */
+    private static HomeTimeline newTimeline(final HomeTimeline.Loader loader) {
+        return new HomeTimeline(loader, Symphonys.getInt("homeTimeline.capacity"),
+                Symphonys.getInt("homeTimeline.maxUsers"), Symphonys.getLong("homeTimeline.expire"));
+    }
+
+    /**
+     * Loader of following user articles.
+     */
+    private final class UserArticleLoader implements HomeTimeline.Loader {
+
+        @Override
+        public List<String> getSources(final String userId) throws Exception {
+            return getFollowingIds(userId, Follow.FOLLOWING_TYPE_C_USER);
+        }
+
+        @Override
+        public Set<String> getHotSources(final List<String> sourceIds) throws Exception {
+            return getHotUsers(sourceIds);
+        }
+
+        @Override
+        public Map<String, Set<String>> getItems(final List<String> sourceIds, final String beforeId, final int size) throws Exception {
+            final List<Filter> filters = Arrays.asList(
+                    new PropertyFilter(Article.ARTICLE_STATUS, FilterOperator.NOT_EQUAL, Article.ARTICLE_STATUS_C_INVALID),
+                    new PropertyFilter(Article.ARTICLE_TYPE, FilterOperator.NOT_EQUAL, Article.ARTICLE_TYPE_C_DISCUSSION));
+
+            return HomeTimelineMgmtService.getItems(articleRepository, filters, Keys.OBJECT_ID, Article.ARTICLE_AUTHOR_ID,
+                    sourceIds, beforeId, size, size);
+        }
+    }
+
+    /**
+     * Loader of following tag articles.
+     */
+    private final class TagArticleLoader implements HomeTimeline.Loader {
+
+        @Override
+        public List<String> getSources(final String userId) throws Exception {
+            return getFollowingIds(userId, Follow.FOLLOWING_TYPE_C_TAG);
+        }
+
+        @Override
+        public Set<String> getHotSources(final List<String> sourceIds) throws Exception {
+            final Set<String> ret = new HashSet<>();
+            if (sourceIds.isEmpty()) {
+                return ret;
+            }
+
+            final Query query = new Query().setFilter(CompositeFilterOperator.and(
+                    new PropertyFilter(Keys.OBJECT_ID, FilterOperator.IN, sourceIds),
+                    new PropertyFilter(Tag.TAG_FOLLOWER_CNT, FilterOperator.GREATER_THAN_OR_EQUAL, HOT_FOLLOWER_CNT))).
+                    addProjection(Keys.OBJECT_ID, String.class).setPageCount(1);
+            final JSONArray tags = tagRepository.get(query).optJSONArray(Keys.RESULTS);
+            for (int i = 0; i < tags.length(); i++) {
+                ret.add(tags.optJSONObject(i).optString(Keys.OBJECT_ID));
+            }
+
+            return ret;
+        }
+
+        @Override
+        public Map<String, Set<String>> getItems(final List<String> sourceIds, final String beforeId, final int size) throws Exception {
+            // An article has at most MAX_TAG_COUNT relation rows, so size * MAX_TAG_COUNT rows hold size distinct articles
+            return HomeTimelineMgmtService.getItems(tagArticleRepository, Collections.emptyList(),
+                    Article.ARTICLE + '_' + Keys.OBJECT_ID, Tag.TAG + '_' + Keys.OBJECT_ID,
+                    sourceIds, beforeId, size * Tag.MAX_TAG_COUNT, size);
+        }
+    }
+
+    /**
+     * Loader of following user breezemoons.
+     */
+    private final class UserBreezemoonLoader implements HomeTimeline.Loader {
+
+        @Override
+        public List<String> getSources(final String userId) throws Exception {
+            return getFollowingIds(userId, Follow.FOLLOWING_TYPE_C_USER);
+        }
+
+        @Override
+        public Set<String> getHotSources(final List<String> sourceIds) throws Exception {
+            return getHotUsers(sourceIds);
+        }
+
+        @Override
+        public Map<String, Set<String>> getItems(final List<String> sourceIds, final String beforeId, final int size) throws Exception {
+            final List<Filter> filters = Collections.singletonList(
+                    new PropertyFilter(Breezemoon.BREEZEMOON_STATUS, FilterOperator.EQUAL, Breezemoon.BREEZEMOON_STATUS_C_VALID));
+
+            return HomeTimelineMgmtService.getItems(breezemoonRepository, filters, Keys.OBJECT_ID, Breezemoon.BREEZEMOON_AUTHOR_ID,
+                    sourceIds, beforeId, size, size);
+        }
+    }
+}
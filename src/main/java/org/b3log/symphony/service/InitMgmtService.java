@@ -43,7 +43,7 @@ import java.util.Set;
  * Initialization management service.
  *
  * @author <a href="http://88250.b3log.org">Liang Ding</a>
- * @version 1.2.1.16, Sep 28, 2018
+ * @version 1.2.2.0, Oct 25, 2018
  * @since 1.8.0
  */
 @Service
@@ -215,12 +215,17 @@ public class InitMgmtService {
     private UserQueryService userQueryService;
 
     /**
-     * Initializes Sym if first time setup.
+     * Initializes Sym if first time setup, creates tables added by upgrades otherwise.
      */
     public void initSym() {
         try {
             final List<JSONObject> admins = userQueryService.getAdmins();
             if (null != admins && !admins.isEmpty()) { // Initialized already
+                for (final JdbcRepositories.CreateTableResult createTableResult : JdbcRepositories.initAllTables()) {
+                    LOGGER.log(Level.TRACE, "Creates table result [tableName={0}, isSuccess={1}]",
+                            createTableResult.getName(), createTableResult.isSuccess());
+                }
+
                 return;
             }
         } catch (final ServiceException e) {
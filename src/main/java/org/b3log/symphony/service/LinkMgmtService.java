@@ -26,22 +26,32 @@ import org.b3log.latke.logging.Level;
 import org.b3log.latke.logging.Logger;
 import org.b3log.latke.repository.RepositoryException;
 import org.b3log.latke.repository.Transaction;
+import org.b3log.latke.repository.jdbc.JdbcRepository;
 import org.b3log.latke.service.annotation.Service;
 import org.b3log.symphony.model.Link;
 import org.b3log.symphony.repository.LinkRepository;
+import org.b3log.symphony.util.LinkCrawler;
 import org.b3log.symphony.util.Links;
+import org.b3log.symphony.util.StripedLocks;
 import org.b3log.symphony.util.Symphonys;
 import org.json.JSONObject;
 
 import javax.servlet.http.HttpServletResponse;
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.TimeUnit;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.Lock;
 
 /**
  * Link management service.
+ * <p>
+ * Links are crawled and pinged by a dedicated {@link LinkCrawler}, clicks are counted in memory and written behind
+ * periodically. Clicks of at most {@value #MAX_CLICK_URL_CNT} URLs are held between two flushes, read-modify-writes of
+ * a link are serialized per link address.
+ * </p>
  *
  * @author <a href="http://88250.b3log.org">Liang Ding</a>
- * @version 1.0.0.2, Oct 4, 2018
+ * @version 1.2.0.0, Oct 25, 2018
  * @since 3.2.0
  */
 @Service
@@ -52,6 +62,26 @@ public class LinkMgmtService {
      */
     private static final Logger LOGGER = Logger.getLogger(LinkMgmtService.class);
 
+    /**
+     * Min interval in milliseconds between two pings of a link.
+     */
+    private static final long PING_INTERVAL = 1000 * 60 * 5;
+
+    /**
+     * Max flush attempts of the clicks of a link which has not been added yet.
+     */
+    private static final int CLICK_FLUSH_MAX_MISSES = 3;
+
+    /**
+     * Max count of URLs with unflushed clicks, clicks of other URLs are not counted until the next flush.
+     */
+    private static final int MAX_CLICK_URL_CNT = 10000;
+
+    /**
+     * Per-link locks of link read-modify-write, &lt;link address, lock&gt;.
+     */
+    private static final StripedLocks LINK_LOCKS = new StripedLocks(64);
+
     /**
      * Link repository.
      */
@@ -59,89 +89,81 @@ public class LinkMgmtService {
     private LinkRepository linkRepository;
 
     /**
-     * Adds a link with the specified URL.
-     *
-     * @param url the specified URL
+     * Unflushed click counts, &lt;link address, count&gt;.
      */
-    public void addLink(final String url) {
-        JSONObject link = linkRepository.getLink(url);
-        final int clickCnt = null != link ? link.optInt(Link.LINK_CLICK_CNT) + 1 : 0;
-        if (null != link) {
-            link.put(Link.LINK_CLICK_CNT, clickCnt);
-            final Transaction transaction = linkRepository.beginTransaction();
-            try {
-                linkRepository.update(link.optString(Keys.OBJECT_ID), link);
+    private final Map<String, Integer> clicks = new ConcurrentHashMap<>();
 
-                transaction.commit();
-            } catch (final Exception e) {
-                if (transaction.isActive()) {
-                    transaction.rollback();
-                }
+    /**
+     * Flush misses of the links which have not been added yet, &lt;link address, misses&gt;, accessed by the flusher only.
+     */
+    private final Map<String, Integer> clickMisses = new HashMap<>();
 
-                LOGGER.log(Level.ERROR, "Updates link clicks [addr=" + url + "] failed", e);
-            }
-        }
+    /**
+     * Link crawler.
+     */
+    private LinkCrawler crawler;
+
+    /**
+     * Click flusher.
+     */
+    private ScheduledExecutorService clickFlusher;
 
-        if (null != link && 1000 * 60 * 5 > System.currentTimeMillis() - link.optLong(Link.LINK_PING_TIME)) {
+    /**
+     * Starts the link crawler and the click flusher.
+     */
+    public synchronized void start() {
+        if (null != crawler) {
             return;
         }
 
-        JSONObject lnk = Links.getLink(url);
-        if (null == lnk) {
-            lnk = new JSONObject();
-            lnk.put(Link.LINK_ADDR, url);
-            lnk.put(Link.LINK_TITLE, "");
-        }
+        crawler = new LinkCrawler(this::crawl, Symphonys.getInt("crawl.workers"), Symphonys.getInt("crawl.queueSize"),
+                Symphonys.getInt("crawl.perHostConcurrency"), Symphonys.getLong("crawl.perHostInterval"), PING_INTERVAL);
+        crawler.start();
 
-        link = new JSONObject();
-        final String addr = lnk.optString(Link.LINK_ADDR);
-        link.put(Link.LINK_ADDR_HASH, DigestUtils.sha1Hex(addr));
-        link.put(Link.LINK_ADDR, addr);
-        link.put(Link.LINK_BAD_CNT, 0);
-        link.put(Link.LINK_BAIDU_REF_CNT, 0);
-        link.put(Link.LINK_CLICK_CNT, clickCnt);
-        link.put(Link.LINK_GOOD_CNT, 0);
-        link.put(Link.LINK_SCORE, 0);
-        link.put(Link.LINK_SUBMIT_CNT, 0);
-        link.put(Link.LINK_TITLE, lnk.optString(Link.LINK_TITLE));
-        link.put(Link.LINK_PING_CNT, 0);
-        link.put(Link.LINK_PING_ERR_CNT, 0);
-        link.put(Link.LINK_PING_TIME, 0);
-        link.put(Link.LINK_CARD_HTML, "");
-
-        addLink(link);
+        final long flushInterval = Symphonys.getLong("link.clickFlushInterval");
+        clickFlusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            final Thread ret = new Thread(r, "LinkClickFlusher");
+            ret.setDaemon(true);
+
+            return ret;
+        });
+        clickFlusher.scheduleWithFixedDelay(this::flushClicks, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
     }
 
     /**
-     * Adds the specified link.
-     *
-     * @param link the specified link
+     * Stops the link crawler and the click flusher, unflushed clicks are flushed.
      */
-    private void addLink(final JSONObject link) {
-        final String linkAddr = link.optString(Link.LINK_ADDR);
-        final JSONObject old = linkRepository.getLink(linkAddr);
-        if (null != old) {
-            old.put(Link.LINK_CLICK_CNT, link.optInt(Link.LINK_CLICK_CNT));
-
-            singlePing(old);
-
+    public synchronized void stop() {
+        if (null == crawler) {
             return;
         }
 
-        final Transaction transaction = linkRepository.beginTransaction();
+        crawler.stop();
+        crawler = null;
+        clickFlusher.shutdown();
         try {
-            linkRepository.add(link);
-
-            transaction.commit();
-        } catch (final Exception e) {
-            if (transaction.isActive()) {
-                transaction.rollback();
-            }
+            clickFlusher.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flushClicks();
+    }
 
-            LOGGER.log(Level.ERROR, "Adds link [addr=" + linkAddr + "] failed", e);
+    /**
+     * Adds a click of the link with the specified URL, and schedules a crawl of the link if it has not been crawled
+     * recently.
+     *
+     * @param url the specified URL
+     */
+    public void addLink(final String url) {
+        if (MAX_CLICK_URL_CNT > clicks.size() || clicks.containsKey(url)) {
+            clicks.merge(url, 1, Integer::sum);
         }
 
-        singlePing(link);
+        final LinkCrawler c = crawler;
+        if (null != c) {
+            c.submit(url);
+        }
     }
 
     /**
@@ -154,11 +176,153 @@ public class LinkMgmtService {
         Symphonys.EXECUTOR_SERVICE.submit(new CheckTask(link, countDownLatch));
     }
 
+    /**
+     * Crawls the link with the specified URL, runs in a crawler worker. Adds the link if not exists, and pings it if
+     * it has not been pinged recently.
+     *
+     * @param url the specified URL
+     * @return link, returns {@code null} if failed
+     */
+    private JSONObject crawl(final String url) {
+        try {
+            JSONObject link = linkRepository.getLink(url);
+            if (null != link && PING_INTERVAL > System.currentTimeMillis() - link.optLong(Link.LINK_PING_TIME)) {
+                return link;
+            }
+
+            if (null == link) {
+                JSONObject lnk = Links.getLink(url);
+                if (null == lnk) {
+                    lnk = new JSONObject();
+                    lnk.put(Link.LINK_ADDR, url);
+                    lnk.put(Link.LINK_TITLE, "");
+                }
+
+                link = new JSONObject();
+                final String addr = lnk.optString(Link.LINK_ADDR);
+                link.put(Link.LINK_ADDR_HASH, DigestUtils.sha1Hex(addr));
+                link.put(Link.LINK_ADDR, addr);
+                link.put(Link.LINK_BAD_CNT, 0);
+                link.put(Link.LINK_BAIDU_REF_CNT, 0);
+                link.put(Link.LINK_CLICK_CNT, 0);
+                link.put(Link.LINK_GOOD_CNT, 0);
+                link.put(Link.LINK_SCORE, 0);
+                link.put(Link.LINK_SUBMIT_CNT, 0);
+                link.put(Link.LINK_TITLE, lnk.optString(Link.LINK_TITLE));
+                link.put(Link.LINK_PING_CNT, 0);
+                link.put(Link.LINK_PING_ERR_CNT, 0);
+                link.put(Link.LINK_PING_TIME, 0);
+                link.put(Link.LINK_CARD_HTML, "");
+
+                link = addLink(link);
+                if (null == link) {
+                    return null;
+                }
+            }
+
+            new CheckTask(link, new CountDownLatch(1)).run();
+
+            return link;
+        } finally {
+            JdbcRepository.dispose();
+        }
+    }
+
+    /**
+     * Adds the specified link if not exists.
+     *
+     * @param link the specified link
+     * @return the added or existing link, returns {@code null} if failed
+     */
+    private JSONObject addLink(final JSONObject link) {
+        final String linkAddr = link.optString(Link.LINK_ADDR);
+        final Lock lock = LINK_LOCKS.get(linkAddr);
+        lock.lock();
+        try {
+            final JSONObject old = linkRepository.getLink(linkAddr);
+            if (null != old) {
+                return old;
+            }
+
+            final Transaction transaction = linkRepository.beginTransaction();
+            try {
+                linkRepository.add(link);
+
+                transaction.commit();
+
+                return link;
+            } catch (final Exception e) {
+                if (transaction.isActive()) {
+                    transaction.rollback();
+                }
+
+                LOGGER.log(Level.ERROR, "Adds link [addr=" + linkAddr + "] failed", e);
+
+                return null;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Flushes the unflushed click counts. Clicks of a link which has not been added by the crawler yet are kept for
+     * the next flush, and dropped after {@value #CLICK_FLUSH_MAX_MISSES} misses.
+     */
+    private void flushClicks() {
+        try {
+            for (final String url : clicks.keySet()) {
+                final Integer cnt = clicks.remove(url);
+                if (null == cnt) {
+                    continue;
+                }
+
+                final Lock lock = LINK_LOCKS.get(url);
+                lock.lock();
+                try {
+                    final JSONObject link = linkRepository.getLink(url);
+                    if (null == link) {
+                        final int misses = clickMisses.getOrDefault(url, 0) + 1;
+                        if (CLICK_FLUSH_MAX_MISSES > misses) {
+                            clickMisses.put(url, misses);
+                            clicks.merge(url, cnt, Integer::sum);
+                        } else {
+                            clickMisses.remove(url);
+                        }
+
+                        continue;
+                    }
+                    clickMisses.remove(url);
+
+                    link.put(Link.LINK_CLICK_CNT, link.optInt(Link.LINK_CLICK_CNT) + cnt);
+                    final Transaction transaction = linkRepository.beginTransaction();
+                    try {
+                        linkRepository.update(link.optString(Keys.OBJECT_ID), link);
+
+                        transaction.commit();
+                    } catch (final Exception e) {
+                        if (transaction.isActive()) {
+                            transaction.rollback();
+                        }
+
+                        LOGGER.log(Level.ERROR, "Updates link clicks [addr=" + url + "] failed", e);
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            }
+        } catch (final Exception e) {
+            LOGGER.log(Level.ERROR, "Flushes link clicks failed", e);
+        } finally {
+            JdbcRepository.dispose();
+        }
+    }
+
     /**
      * Link accessibility check task.
      *
      * @author <a href="http://88250.b3log.org">Liang Ding</a>
-     * @version 2.0.0.0, Jan 1, 2018
+     * @version 2.1.1.0, Oct 25, 2018
      * @since 2.2.0
      */
     private class CheckTask implements Runnable {
@@ -202,35 +366,36 @@ public class LinkMgmtService {
                 LOGGER.log(Level.TRACE, "Accesses link [url=" + linkAddr + "] response [code=" + responseCode + "], "
                         + "elapsed [" + elapsed + ']');
 
-                link.put(Link.LINK_PING_CNT, link.optInt(Link.LINK_PING_CNT) + 1);
-                if (HttpServletResponse.SC_OK != responseCode) {
-                    link.put(Link.LINK_PING_ERR_CNT, link.optInt(Link.LINK_PING_ERR_CNT) + 1);
-                }
-                link.put(Link.LINK_PING_TIME, System.currentTimeMillis());
-
-                final Transaction transaction = linkRepository.beginTransaction();
+                final Lock lock = LINK_LOCKS.get(linkAddr);
+                lock.lock();
                 try {
-                    linkRepository.update(link.optString(Keys.OBJECT_ID), link);
+                    final JSONObject current = linkRepository.getLink(linkAddr); // Keeps clicks flushed meanwhile
+                    if (null != current) {
+                        link.put(Link.LINK_CLICK_CNT, current.optInt(Link.LINK_CLICK_CNT));
+                    }
 
-                    transaction.commit();
-                } catch (final RepositoryException e) {
-                    if (null != transaction && transaction.isActive()) {
-                        transaction.rollback();
+                    link.put(Link.LINK_PING_CNT, link.optInt(Link.LINK_PING_CNT) + 1);
+                    if (HttpServletResponse.SC_OK != responseCode) {
+                        link.put(Link.LINK_PING_ERR_CNT, link.optInt(Link.LINK_PING_ERR_CNT) + 1);
                     }
+                    link.put(Link.LINK_PING_TIME, System.currentTimeMillis());
+
+                    final Transaction transaction = linkRepository.beginTransaction();
+                    try {
+                        linkRepository.update(link.optString(Keys.OBJECT_ID), link);
 
-                    LOGGER.log(Level.ERROR, "Updates link failed", e);
+                        transaction.commit();
+                    } catch (final RepositoryException e) {
+                        if (null != transaction && transaction.isActive()) {
+                            transaction.rollback();
+                        }
+
+                        LOGGER.log(Level.ERROR, "Updates link failed", e);
+                    }
+                } finally {
+                    lock.unlock();
                 }
             }
         }
     }
-
-    private void singlePing(final JSONObject link) {
-        try {
-            final CountDownLatch countDownLatch = new CountDownLatch(1);
-            pingLink(link, countDownLatch);
-            countDownLatch.await(10, TimeUnit.SECONDS);
-        } catch (final Exception e) {
-            LOGGER.log(Level.ERROR, "Pings link [addr=" + link.optString(Link.LINK_ADDR) + "] failed", e);
-        }
-    }
 }
@@ -26,6 +26,7 @@ import org.b3log.latke.repository.RepositoryException;
 import org.b3log.latke.repository.annotation.Transactional;
 import org.b3log.latke.service.annotation.Service;
 import org.b3log.latke.util.Stopwatchs;
+import org.b3log.symphony.cache.NavSummaryCache;
 import org.b3log.symphony.model.Liveness;
 import org.b3log.symphony.repository.LivenessRepository;
 import org.json.JSONObject;
@@ -34,7 +35,7 @@ import org.json.JSONObject;
  * Liveness management service.
  *
  * @author <a href="http://88250.b3log.org">Liang Ding</a>
- * @version 1.0.0.1, Jun 12, 2018
+ * @version 1.1.0.0, Oct 25, 2018
  * @since 1.4.0
  */
 @Service
@@ -51,6 +52,12 @@ public class LivenessMgmtService {
     @Inject
     private LivenessRepository livenessRepository;
 
+    /**
+     * Navigation summary cache.
+     */
+    @Inject
+    private NavSummaryCache navSummaryCache;
+
     /**
      * Increments a field of the specified liveness.
      *
@@ -86,6 +93,7 @@ public class LivenessMgmtService {
             liveness.put(field, liveness.optInt(field) + 1);
 
             livenessRepository.update(liveness.optString(Keys.OBJECT_ID), liveness);
+            navSummaryCache.putLivenessPoint(userId, Liveness.calcPoint(liveness));
         } catch (final RepositoryException e) {
             LOGGER.log(Level.ERROR, "Updates a liveness [" + date + "] field [" + field + "] failed", e);
         } finally {
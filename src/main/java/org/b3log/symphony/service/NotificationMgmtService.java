@@ -31,7 +31,6 @@ import org.b3log.symphony.model.Notification;
 import org.b3log.symphony.model.UserExt;
 import org.b3log.symphony.processor.channel.UserChannel;
 import org.b3log.symphony.repository.NotificationRepository;
-import org.b3log.symphony.util.Symphonys;
 import org.json.JSONObject;
 
 import java.util.ArrayList;
@@ -43,7 +42,7 @@ import java.util.Set;
  * Notification management service.
  *
  * @author <a href="http://88250.b3log.org">Liang Ding</a>
- * @version 1.20.0.0, Jul 15, 2018
+ * @version 1.20.1.0, Oct 25, 2018
  * @since 0.2.5
  */
 @Service
@@ -921,12 +920,9 @@ public class NotificationMgmtService {
 
         notificationRepository.add(notification);
 
-        Symphonys.EXECUTOR_SERVICE.submit(() -> {
-            final JSONObject cmd = new JSONObject();
-            cmd.put(UserExt.USER_T_ID, requestJSONObject.optString(Notification.NOTIFICATION_USER_ID));
-            cmd.put(Common.COMMAND, "refreshNotification");
-
-            UserChannel.sendCmd(cmd);
-        });
+        final JSONObject cmd = new JSONObject();
+        cmd.put(UserExt.USER_T_ID, requestJSONObject.optString(Notification.NOTIFICATION_USER_ID));
+        cmd.put(Common.COMMAND, "refreshNotification");
+        UserChannel.sendCmd(cmd);
     }
 }
@@ -31,20 +31,17 @@ import org.b3log.symphony.model.Option;
 import org.b3log.symphony.processor.channel.ArticleChannel;
 import org.b3log.symphony.processor.channel.ArticleListChannel;
 import org.b3log.symphony.processor.channel.ChatRoomChannel;
-import org.b3log.symphony.processor.channel.UserChannel;
 import org.b3log.symphony.repository.OptionRepository;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
-import javax.websocket.Session;
 import java.util.List;
-import java.util.Set;
 
 /**
  * Option query service.
  *
  * @author <a href="http://88250.b3log.org">Liang Ding</a>
- * @version 1.4.0.12, Jan 30, 2018
+ * @version 1.4.3.0, Oct 25, 2018
  * @since 0.2.0
  */
 @Service
@@ -67,18 +64,19 @@ public class OptionQueryService {
     @Inject
     private LangPropsService langPropsService;
 
+    /**
+     * Presence management service.
+     */
+    @Inject
+    private PresenceMgmtService presenceMgmtService;
+
     /**
      * Gets the online member count.
      *
      * @return online member count
      */
     public int getOnlineMemberCount() {
-        int ret = 0;
-        for (final Set<Session> value : UserChannel.SESSIONS.values()) {
-            ret += value.size();
-        }
-
-        return ret;
+        return presenceMgmtService.getOnlineCount();
     }
 
     /**
@@ -88,32 +86,7 @@ public class OptionQueryService {
      */
     public int getOnlineVisitorCount() {
         final int ret = ArticleChannel.SESSIONS.size() + ArticleListChannel.SESSIONS.size() + ChatRoomChannel.SESSIONS.size() + getOnlineMemberCount();
-
-        try {
-            final JSONObject maxOnlineMemberCntRecord = optionRepository.get(Option.ID_C_STATISTIC_MAX_ONLINE_VISITOR_COUNT);
-            final int maxOnlineVisitorCnt = maxOnlineMemberCntRecord.optInt(Option.OPTION_VALUE);
-
-            if (maxOnlineVisitorCnt < ret) {
-                // Updates the max online visitor count
-
-                final Transaction transaction = optionRepository.beginTransaction();
-
-                try {
-                    maxOnlineMemberCntRecord.put(Option.OPTION_VALUE, String.valueOf(ret));
-                    optionRepository.update(maxOnlineMemberCntRecord.optString(Keys.OBJECT_ID), maxOnlineMemberCntRecord);
-
-                    transaction.commit();
-                } catch (final RepositoryException e) {
-                    if (transaction.isActive()) {
-                        transaction.rollback();
-                    }
-
-                    LOGGER.log(Level.ERROR, "Updates the max online visitor count failed", e);
-                }
-            }
-        } catch (final RepositoryException ex) {
-            LOGGER.log(Level.ERROR, "Gets online visitor count failed", ex);
-        }
+        presenceMgmtService.updateMaxOnlineVisitorCount(ret);
 
         return ret;
     }
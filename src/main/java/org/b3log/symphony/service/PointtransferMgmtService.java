@@ -23,6 +23,7 @@ import org.b3log.latke.logging.Level;
 import org.b3log.latke.logging.Logger;
 import org.b3log.latke.repository.Transaction;
 import org.b3log.latke.service.annotation.Service;
+import org.b3log.symphony.cache.LeaderboardCache;
 import org.b3log.symphony.model.Pointtransfer;
 import org.b3log.symphony.model.UserExt;
 import org.b3log.symphony.repository.PointtransferRepository;
@@ -33,7 +34,7 @@ import org.json.JSONObject;
  * Pointtransfer management service.
  *
  * @author <a href="http://88250.b3log.org">Liang Ding</a>
- * @version 1.2.1.6, Oct 1, 2018
+ * @version 1.3.0.0, Oct 25, 2018
  * @since 1.3.0
  */
 @Service
@@ -56,6 +57,12 @@ public class PointtransferMgmtService {
     @Inject
     private UserRepository userRepository;
 
+    /**
+     * Leaderboard cache.
+     */
+    @Inject
+    private LeaderboardCache leaderboardCache;
+
     /**
      * Transfers point from the specified from id to the specified to id with type, sum, data id and time.
      *
@@ -79,8 +86,9 @@ public class PointtransferMgmtService {
         final Transaction transaction = pointtransferRepository.beginTransaction();
         try {
             int fromBalance = 0;
+            JSONObject fromUser = null;
             if (!Pointtransfer.ID_C_SYS.equals(fromId)) {
-                final JSONObject fromUser = userRepository.get(fromId);
+                fromUser = userRepository.get(fromId);
                 fromBalance = fromUser.optInt(UserExt.USER_POINT) - sum;
                 if (fromBalance < 0) {
                     throw new Exception("Insufficient balance");
@@ -92,8 +100,9 @@ public class PointtransferMgmtService {
             }
 
             int toBalance = 0;
+            JSONObject toUser = null;
             if (!Pointtransfer.ID_C_SYS.equals(toId)) {
-                final JSONObject toUser = userRepository.get(toId);
+                toUser = userRepository.get(toId);
                 toBalance = toUser.optInt(UserExt.USER_POINT) + sum;
                 toUser.put(UserExt.USER_POINT, toBalance);
 
@@ -115,6 +124,14 @@ public class PointtransferMgmtService {
 
             transaction.commit();
 
+            if (null != fromUser) {
+                leaderboardCache.putUser(fromId, fromUser);
+            }
+            if (null != toUser) {
+                leaderboardCache.putUser(toId, toUser);
+            }
+            leaderboardCache.putTransfer(type, toId, sum);
+
             return ret;
         } catch (final Exception e) {
             if (transaction.isActive()) {
@@ -28,23 +28,23 @@ import org.b3log.latke.service.LangPropsService;
 import org.b3log.latke.service.ServiceException;
 import org.b3log.latke.service.annotation.Service;
 import org.b3log.latke.util.CollectionUtils;
+import org.b3log.symphony.cache.LeaderboardCache;
 import org.b3log.symphony.model.*;
 import org.b3log.symphony.repository.*;
 import org.b3log.symphony.util.Emotions;
+import org.b3log.symphony.util.PointtransferReferences;
 import org.b3log.symphony.util.Symphonys;
 import org.json.JSONArray;
 import org.json.JSONObject;
 import org.owasp.encoder.Encode;
 
-import java.util.ArrayList;
-import java.util.Date;
-import java.util.List;
+import java.util.*;
 
 /**
  * Pointtransfer query service.
  *
  * @author <a href="http://88250.b3log.org">Liang Ding</a>
- * @version 1.21.4.1, Oct 1, 2018
+ * @version 1.23.0.0, Oct 25, 2018
  * @since 1.3.0
  */
 @Service
@@ -85,6 +85,18 @@ public class PointtransferQueryService {
     @Inject
     private RewardRepository rewardRepository;
 
+    /**
+     * User query service.
+     */
+    @Inject
+    private UserQueryService userQueryService;
+
+    /**
+     * Leaderboard cache.
+     */
+    @Inject
+    private LeaderboardCache leaderboardCache;
+
     /**
      * Language service.
      */
@@ -140,15 +152,19 @@ public class PointtransferQueryService {
     public List<JSONObject> getTopBalanceUsers(final int avatarViewMode, final int fetchSize) {
         final List<JSONObject> ret = new ArrayList<>();
 
-        final Query query = new Query().addSort(UserExt.USER_POINT, SortDirection.DESCENDING).setCurrentPageNum(1)
-                .setPageSize(fetchSize).
-                        setFilter(new PropertyFilter(UserExt.USER_JOIN_POINT_RANK,
-                                FilterOperator.EQUAL, UserExt.USER_JOIN_POINT_RANK_C_JOIN));
-
         final int moneyUnit = Symphonys.getInt("pointExchangeUnit");
         try {
-            final JSONObject result = userRepository.get(query);
-            final List<JSONObject> users = CollectionUtils.jsonArrayToList(result.optJSONArray(Keys.RESULTS));
+            List<JSONObject> users;
+            if (leaderboardCache.isLoaded()) {
+                users = userQueryService.getUsersByIds(leaderboardCache.getTop(LeaderboardCache.BOARD_BALANCE, fetchSize));
+            } else {
+                final Query query = new Query().addSort(UserExt.USER_POINT, SortDirection.DESCENDING).setCurrentPageNum(1)
+                        .setPageSize(fetchSize).
+                                setFilter(new PropertyFilter(UserExt.USER_JOIN_POINT_RANK,
+                                        FilterOperator.EQUAL, UserExt.USER_JOIN_POINT_RANK_C_JOIN));
+                final JSONObject result = userRepository.get(query);
+                users = CollectionUtils.jsonArrayToList(result.optJSONArray(Keys.RESULTS));
+            }
 
             for (final JSONObject user : users) {
                 if (UserExt.USER_APP_ROLE_C_HACKER == user.optInt(UserExt.USER_APP_ROLE)) {
@@ -180,15 +196,19 @@ public class PointtransferQueryService {
     public List<JSONObject> getTopConsumptionUsers(final int avatarViewMode, final int fetchSize) {
         final List<JSONObject> ret = new ArrayList<>();
 
-        final Query query = new Query().addSort(UserExt.USER_USED_POINT, SortDirection.DESCENDING).setCurrentPageNum(1)
-                .setPageSize(fetchSize).
-                        setFilter(new PropertyFilter(UserExt.USER_JOIN_USED_POINT_RANK,
-                                FilterOperator.EQUAL, UserExt.USER_JOIN_USED_POINT_RANK_C_JOIN));
-
         final int moneyUnit = Symphonys.getInt("pointExchangeUnit");
         try {
-            final JSONObject result = userRepository.get(query);
-            final List<JSONObject> users = CollectionUtils.jsonArrayToList(result.optJSONArray(Keys.RESULTS));
+            List<JSONObject> users;
+            if (leaderboardCache.isLoaded()) {
+                users = userQueryService.getUsersByIds(leaderboardCache.getTop(LeaderboardCache.BOARD_CONSUMPTION, fetchSize));
+            } else {
+                final Query query = new Query().addSort(UserExt.USER_USED_POINT, SortDirection.DESCENDING).setCurrentPageNum(1)
+                        .setPageSize(fetchSize).
+                                setFilter(new PropertyFilter(UserExt.USER_JOIN_USED_POINT_RANK,
+                                        FilterOperator.EQUAL, UserExt.USER_JOIN_USED_POINT_RANK_C_JOIN));
+                final JSONObject result = userRepository.get(query);
+                users = CollectionUtils.jsonArrayToList(result.optJSONArray(Keys.RESULTS));
+            }
 
             for (final JSONObject user : users) {
                 if (UserExt.USER_APP_ROLE_C_HACKER == user.optInt(UserExt.USER_APP_ROLE)) {
@@ -227,33 +247,18 @@ public class PointtransferQueryService {
      * @throws ServiceException service exception
      */
     public JSONObject getUserPoints(final String userId, final int currentPageNum, final int pageSize) throws ServiceException {
-        final Query query = new Query().addSort(Keys.OBJECT_ID, SortDirection.DESCENDING)
-                .setCurrentPageNum(currentPageNum).setPageSize(pageSize);
-        final List<Filter> filters = new ArrayList<>();
-        filters.add(new PropertyFilter(Pointtransfer.FROM_ID, FilterOperator.EQUAL, userId));
-        filters.add(new PropertyFilter(Pointtransfer.TO_ID, FilterOperator.EQUAL, userId));
-        query.setFilter(new CompositeFilter(CompositeFilterOperator.OR, filters));
-
         try {
-            final JSONObject ret = pointtransferRepository.get(query);
-            final JSONArray records = ret.optJSONArray(Keys.RESULTS);
-            for (int i = 0; i < records.length(); i++) {
-                final JSONObject record = records.optJSONObject(i);
+            final List<JSONObject> records = pointtransferRepository.getByUserId(userId, currentPageNum, pageSize);
+            final PointtransferReferences refs = new PointtransferReferences(records, userId);
+            refs.load(ids -> getByIds(commentRepository, ids), ids -> getByIds(rewardRepository, ids),
+                    ids -> getByIds(articleRepository, ids), ids -> getByIds(userRepository, ids));
 
+            for (final JSONObject record : records) {
                 record.put(Common.CREATE_TIME, new Date(record.optLong(Pointtransfer.TIME)));
 
                 final String toId = record.optString(Pointtransfer.TO_ID);
                 final String fromId = record.optString(Pointtransfer.FROM_ID);
-
-                String typeStr = record.optString(Pointtransfer.TYPE);
-                if (("3".equals(typeStr) && userId.equals(toId))
-                        || ("5".equals(typeStr) && userId.equals(fromId))
-                        || ("9".equals(typeStr) && userId.equals(toId))
-                        || ("14".equals(typeStr) && userId.equals(toId))
-                        || ("22".equals(typeStr) && userId.equals(toId))
-                        || ("34".equals(typeStr) && userId.equals(toId))) {
-                    typeStr += "In";
-                }
+                final String typeStr = PointtransferReferences.getTypeStr(record, userId);
 
                 if (fromId.equals(userId)) {
                     record.put(Common.BALANCE, record.optInt(Pointtransfer.FROM_BALANCE));
@@ -275,183 +280,69 @@ public class PointtransferQueryService {
 
                         break;
                     case Pointtransfer.TRANSFER_TYPE_C_INIT:
+                    case Pointtransfer.TRANSFER_TYPE_C_ACTIVITY_CHECKIN_STREAK:
                         desTemplate = desTemplate.replace("{point}", record.optString(Pointtransfer.SUM));
 
                         break;
                     case Pointtransfer.TRANSFER_TYPE_C_ADD_ARTICLE:
-                        final JSONObject addArticle = articleRepository.get(dataId);
-                        if (null == addArticle) {
-                            desTemplate = langPropsService.get("removedLabel");
-
-                            break;
-                        }
-
-                        final String addArticleLink = "<a href=\""
-                                + addArticle.optString(Article.ARTICLE_PERMALINK) + "\">"
-                                + Encode.forHtml(addArticle.optString(Article.ARTICLE_TITLE)) + "</a>";
-                        desTemplate = desTemplate.replace("{article}", addArticleLink);
-
-                        break;
                     case Pointtransfer.TRANSFER_TYPE_C_UPDATE_ARTICLE:
-                        final JSONObject updateArticle = articleRepository.get(dataId);
-                        if (null == updateArticle) {
+                    case Pointtransfer.TRANSFER_TYPE_C_ADD_ARTICLE_REWARD:
+                    case Pointtransfer.TRANSFER_TYPE_C_STICK_ARTICLE:
+                    case Pointtransfer.TRANSFER_TYPE_C_ADD_ARTICLE_BROADCAST:
+                    case Pointtransfer.TRANSFER_TYPE_C_PERFECT_ARTICLE:
+                        final JSONObject article = refs.getArticle(dataId);
+                        if (null == article) {
                             desTemplate = langPropsService.get("removedLabel");
 
                             break;
                         }
 
-                        final String updateArticleLink = "<a href=\""
-                                + updateArticle.optString(Article.ARTICLE_PERMALINK) + "\">"
-                                + Encode.forHtml(updateArticle.optString(Article.ARTICLE_TITLE)) + "</a>";
-                        desTemplate = desTemplate.replace("{article}", updateArticleLink);
+                        desTemplate = desTemplate.replace("{article}", getArticleLink(article));
 
                         break;
                     case Pointtransfer.TRANSFER_TYPE_C_ADD_COMMENT:
-                        final JSONObject comment = commentRepository.get(dataId);
-
-                        if (null == comment) {
-                            desTemplate = langPropsService.get("removedLabel");
-
-                            break;
-                        }
-
-                        final String articleId = comment.optString(Comment.COMMENT_ON_ARTICLE_ID);
-                        final JSONObject commentArticle = articleRepository.get(articleId);
-
-                        final String commentArticleLink = "<a href=\""
-                                + commentArticle.optString(Article.ARTICLE_PERMALINK) + "\">"
-                                + Encode.forHtml(commentArticle.optString(Article.ARTICLE_TITLE)) + "</a>";
-                        desTemplate = desTemplate.replace("{article}", commentArticleLink);
-
-                        if ("3In".equals(typeStr)) {
-                            final JSONObject commenter = userRepository.get(fromId);
-                            final String commenterLink = UserExt.getUserLink(commenter);
-
-                            desTemplate = desTemplate.replace("{user}", commenterLink);
-                        }
-
-                        break;
                     case Pointtransfer.TRANSFER_TYPE_C_UPDATE_COMMENT:
-                        final JSONObject comment32 = commentRepository.get(dataId);
-
-                        if (null == comment32) {
+                    case Pointtransfer.TRANSFER_TYPE_C_AT_PARTICIPANTS:
+                        final JSONObject comment = refs.getComment(dataId);
+                        final JSONObject commentArticle = null == comment ? null : refs.getArticle(comment.optString(Comment.COMMENT_ON_ARTICLE_ID));
+                        if (null == commentArticle) {
                             desTemplate = langPropsService.get("removedLabel");
 
                             break;
                         }
 
-                        final String articleId32 = comment32.optString(Comment.COMMENT_ON_ARTICLE_ID);
-                        final JSONObject commentArticle32 = articleRepository.get(articleId32);
-
-                        final String commentArticleLink32 = "<a href=\""
-                                + commentArticle32.optString(Article.ARTICLE_PERMALINK) + "\">"
-                                + Encode.forHtml(commentArticle32.optString(Article.ARTICLE_TITLE)) + "</a>";
-                        desTemplate = desTemplate.replace("{article}", commentArticleLink32);
-
-                        break;
-                    case Pointtransfer.TRANSFER_TYPE_C_ADD_ARTICLE_REWARD:
-                        final JSONObject addArticleReword = articleRepository.get(dataId);
-                        if (null == addArticleReword) {
-                            desTemplate = langPropsService.get("removedLabel");
+                        desTemplate = desTemplate.replace("{article}", getArticleLink(commentArticle));
 
-                            break;
+                        if ("3In".equals(typeStr)) {
+                            desTemplate = desTemplate.replace("{user}", getUserLink(refs.getUser(fromId)));
                         }
 
-                        final String addArticleRewordLink = "<a href=\""
-                                + addArticleReword.optString(Article.ARTICLE_PERMALINK) + "\">"
-                                + Encode.forHtml(addArticleReword.optString(Article.ARTICLE_TITLE)) + "</a>";
-                        desTemplate = desTemplate.replace("{article}", addArticleRewordLink);
-
                         break;
                     case Pointtransfer.TRANSFER_TYPE_C_ARTICLE_REWARD:
-                        final JSONObject reward = rewardRepository.get(dataId);
-                        String senderId = reward.optString(Reward.SENDER_ID);
-                        if ("5In".equals(typeStr)) {
-                            senderId = toId;
-                        }
-                        final String rewardArticleId = reward.optString(Reward.DATA_ID);
-
-                        final JSONObject sender = userRepository.get(senderId);
-                        final String senderLink = UserExt.getUserLink(sender);
-                        desTemplate = desTemplate.replace("{user}", senderLink);
-
-                        final JSONObject articleReward = articleRepository.get(rewardArticleId);
-                        if (null == articleReward) {
-                            desTemplate = langPropsService.get("removedLabel");
-
-                            break;
-                        }
-
-                        final String articleRewardLink = "<a href=\""
-                                + articleReward.optString(Article.ARTICLE_PERMALINK) + "\">"
-                                + Encode.forHtml(articleReward.optString(Article.ARTICLE_TITLE)) + "</a>";
-                        desTemplate = desTemplate.replace("{article}", articleRewardLink);
-
-                        break;
                     case Pointtransfer.TRANSFER_TYPE_C_COMMENT_REWARD:
-                        final JSONObject reward14 = rewardRepository.get(dataId);
-                        JSONObject user14;
-                        if ("14In".equals(typeStr)) {
-                            user14 = userRepository.get(fromId);
-                        } else {
-                            user14 = userRepository.get(toId);
-                        }
-                        final String userLink14 = UserExt.getUserLink(user14);
-                        desTemplate = desTemplate.replace("{user}", userLink14);
-                        final String articleId14 = reward14.optString(Reward.DATA_ID);
-                        final JSONObject article14 = articleRepository.get(articleId14);
-                        if (null == article14) {
-                            desTemplate = langPropsService.get("removedLabel");
-
-                            break;
-                        }
-                        final String articleLink14 = "<a href=\""
-                                + article14.optString(Article.ARTICLE_PERMALINK) + "\">"
-                                + Encode.forHtml(article14.optString(Article.ARTICLE_TITLE)) + "</a>";
-                        desTemplate = desTemplate.replace("{article}", articleLink14);
-
-                        break;
                     case Pointtransfer.TRANSFER_TYPE_C_ARTICLE_THANK:
-                        final JSONObject thank22 = rewardRepository.get(dataId);
-                        JSONObject user22;
-                        if ("22In".equals(typeStr)) {
-                            user22 = userRepository.get(fromId);
-                        } else {
-                            user22 = userRepository.get(toId);
-                        }
-                        final String articleId22 = thank22.optString(Reward.DATA_ID);
-                        final JSONObject article22 = articleRepository.get(articleId22);
-                        if (null == article22) {
+                    case Pointtransfer.TRANSFER_TYPE_C_QNA_OFFER:
+                        final JSONObject reward = refs.getReward(dataId);
+                        final JSONObject rewardArticle = null == reward ? null : refs.getArticle(reward.optString(Reward.DATA_ID));
+                        if (null == rewardArticle) {
                             desTemplate = langPropsService.get("removedLabel");
 
                             break;
                         }
 
-                        final String userLink22 = UserExt.getUserLink(user22);
-                        desTemplate = desTemplate.replace("{user}", userLink22);
+                        String rewardUserId = PointtransferReferences.getPeerId(record, userId);
+                        if (Pointtransfer.TRANSFER_TYPE_C_ARTICLE_REWARD == type) {
+                            rewardUserId = "5In".equals(typeStr) ? toId : reward.optString(Reward.SENDER_ID);
+                        }
 
-                        final String articleLink22 = "<a href=\""
-                                + article22.optString(Article.ARTICLE_PERMALINK) + "\">"
-                                + Encode.forHtml(article22.optString(Article.ARTICLE_TITLE)) + "</a>";
-                        desTemplate = desTemplate.replace("{article}", articleLink22);
+                        desTemplate = desTemplate.replace("{user}", getUserLink(refs.getUser(rewardUserId)));
+                        desTemplate = desTemplate.replace("{article}", getArticleLink(rewardArticle));
 
                         break;
                     case Pointtransfer.TRANSFER_TYPE_C_INVITE_REGISTER:
-                        final JSONObject newUser = userRepository.get(dataId);
-                        final String newUserLink = UserExt.getUserLink(newUser);
-                        desTemplate = desTemplate.replace("{user}", newUserLink);
-
-                        break;
                     case Pointtransfer.TRANSFER_TYPE_C_INVITED_REGISTER:
-                        final JSONObject referralUser = userRepository.get(dataId);
-                        final String referralUserLink = UserExt.getUserLink(referralUser);
-                        desTemplate = desTemplate.replace("{user}", referralUserLink);
-
-                        break;
                     case Pointtransfer.TRANSFER_TYPE_C_INVITECODE_USED:
-                        final JSONObject newUser1 = userRepository.get(dataId);
-                        final String newUserLink1 = UserExt.getUserLink(newUser1);
-                        desTemplate = desTemplate.replace("{user}", newUserLink1);
+                        desTemplate = desTemplate.replace("{user}", getUserLink(refs.getUser(dataId)));
 
                         break;
                     case Pointtransfer.TRANSFER_TYPE_C_ACTIVITY_CHECKIN:
@@ -465,53 +356,10 @@ public class PointtransferQueryService {
                     case Pointtransfer.TRANSFER_TYPE_C_ACTIVITY_GOBANG:
                     case Pointtransfer.TRANSFER_TYPE_C_ACTIVITY_GOBANG_COLLECT:
                     case Pointtransfer.TRANSFER_TYPE_C_REPORT_HANDLED:
-                        break;
-                    case Pointtransfer.TRANSFER_TYPE_C_AT_PARTICIPANTS:
-                        final JSONObject comment20 = commentRepository.get(dataId);
-                        if (null == comment20) {
-                            desTemplate = langPropsService.get("removedLabel");
-
-                            break;
-                        }
-
-                        final String articleId20 = comment20.optString(Comment.COMMENT_ON_ARTICLE_ID);
-                        final JSONObject atParticipantsArticle = articleRepository.get(articleId20);
-                        if (null == atParticipantsArticle) {
-                            desTemplate = langPropsService.get("removedLabel");
-
-                            break;
-                        }
-
-                        final String ArticleLink20 = "<a href=\""
-                                + atParticipantsArticle.optString(Article.ARTICLE_PERMALINK) + "\">"
-                                + Encode.forHtml(atParticipantsArticle.optString(Article.ARTICLE_TITLE)) + "</a>";
-                        desTemplate = desTemplate.replace("{article}", ArticleLink20);
-
-                        break;
-                    case Pointtransfer.TRANSFER_TYPE_C_STICK_ARTICLE:
-                        final JSONObject stickArticle = articleRepository.get(dataId);
-                        if (null == stickArticle) {
-                            desTemplate = langPropsService.get("removedLabel");
-
-                            break;
-                        }
-
-                        final String stickArticleLink = "<a href=\""
-                                + stickArticle.optString(Article.ARTICLE_PERMALINK) + "\">"
-                                + Encode.forHtml(stickArticle.optString(Article.ARTICLE_TITLE)) + "</a>";
-                        desTemplate = desTemplate.replace("{article}", stickArticleLink);
-
                         break;
                     case Pointtransfer.TRANSFER_TYPE_C_ACCOUNT2ACCOUNT:
-                        JSONObject user9;
-                        if ("9In".equals(typeStr)) {
-                            user9 = userRepository.get(fromId);
-                        } else {
-                            user9 = userRepository.get(toId);
-                        }
-
-                        final String userLink = UserExt.getUserLink(user9);
-                        desTemplate = desTemplate.replace("{user}", userLink);
+                        final JSONObject user9 = refs.getUser(PointtransferReferences.getPeerId(record, userId));
+                        desTemplate = desTemplate.replace("{user}", getUserLink(user9));
                         final String memo = record.optString(Pointtransfer.MEMO);
                         if (StringUtils.isNotBlank(memo)) {
                             desTemplate = desTemplate.replace("{memo}", memo);
@@ -519,10 +367,6 @@ public class PointtransferQueryService {
                             desTemplate = desTemplate.replace("{memo}", langPropsService.get("noMemoLabel"));
                         }
 
-                        break;
-                    case Pointtransfer.TRANSFER_TYPE_C_ACTIVITY_CHECKIN_STREAK:
-                        desTemplate = desTemplate.replace("{point}", record.optString(Pointtransfer.SUM));
-
                         break;
                     case Pointtransfer.TRANSFER_TYPE_C_CHARGE:
                         final String yuan = dataId.split("-")[0];
@@ -538,57 +382,6 @@ public class PointtransferQueryService {
                         desTemplate = desTemplate.replace("{action}", dataId);
                         desTemplate = desTemplate.replace("{point}", record.optString(Pointtransfer.SUM));
 
-                        break;
-                    case Pointtransfer.TRANSFER_TYPE_C_ADD_ARTICLE_BROADCAST:
-                        final JSONObject addArticleBroadcast = articleRepository.get(dataId);
-                        if (null == addArticleBroadcast) {
-                            desTemplate = langPropsService.get("removedLabel");
-
-                            break;
-                        }
-
-                        final String addArticleBroadcastLink = "<a href=\""
-                                + addArticleBroadcast.optString(Article.ARTICLE_PERMALINK) + "\">"
-                                + Encode.forHtml(addArticleBroadcast.optString(Article.ARTICLE_TITLE)) + "</a>";
-                        desTemplate = desTemplate.replace("{article}", addArticleBroadcastLink);
-
-                        break;
-                    case Pointtransfer.TRANSFER_TYPE_C_PERFECT_ARTICLE:
-                        final JSONObject perfectArticle = articleRepository.get(dataId);
-                        if (null == perfectArticle) {
-                            desTemplate = langPropsService.get("removedLabel");
-
-                            break;
-                        }
-
-                        final String perfectArticleLink = "<a href=\""
-                                + perfectArticle.optString(Article.ARTICLE_PERMALINK) + "\">"
-                                + Encode.forHtml(perfectArticle.optString(Article.ARTICLE_TITLE)) + "</a>";
-                        desTemplate = desTemplate.replace("{article}", perfectArticleLink);
-
-                        break;
-                    case Pointtransfer.TRANSFER_TYPE_C_QNA_OFFER:
-                        final JSONObject reward34 = rewardRepository.get(dataId);
-                        JSONObject user34;
-                        if ("34In".equals(typeStr)) {
-                            user34 = userRepository.get(fromId);
-                        } else {
-                            user34 = userRepository.get(toId);
-                        }
-                        final String userLink34 = UserExt.getUserLink(user34);
-                        desTemplate = desTemplate.replace("{user}", userLink34);
-                        final String articleId34 = reward34.optString(Reward.DATA_ID);
-                        final JSONObject article34 = articleRepository.get(articleId34);
-                        if (null == article34) {
-                            desTemplate = langPropsService.get("removedLabel");
-
-                            break;
-                        }
-                        final String articleLink34 = "<a href=\""
-                                + article34.optString(Article.ARTICLE_PERMALINK) + "\">"
-                                + Encode.forHtml(article34.optString(Article.ARTICLE_TITLE)) + "</a>";
-                        desTemplate = desTemplate.replace("{article}", articleLink34);
-
                         break;
                     case Pointtransfer.TRANSFER_TYPE_C_CHANGE_USERNAME:
                         final String oldName = dataId.split("-")[0];
@@ -605,14 +398,54 @@ public class PointtransferQueryService {
                 record.put(Common.DESCRIPTION, desTemplate);
             }
 
-            final int recordCnt = ret.optJSONObject(Pagination.PAGINATION).optInt(Pagination.PAGINATION_RECORD_COUNT);
-            ret.remove(Pagination.PAGINATION);
-            ret.put(Pagination.PAGINATION_RECORD_COUNT, recordCnt);
+            final JSONObject ret = new JSONObject();
+            ret.put(Keys.RESULTS, new JSONArray(records));
+            ret.put(Pagination.PAGINATION_RECORD_COUNT, pointtransferRepository.countByUserId(userId));
 
             return ret;
-        } catch (final RepositoryException e) {
+        } catch (final Exception e) {
             LOGGER.log(Level.ERROR, "Gets user points failed", e);
             throw new ServiceException(e);
         }
     }
+
+    /**
+     * Gets entities by the specified ids with one IN query.
+     *
+     * @param repository the specified repository
+     * @param ids        the specified ids
+     * @return entities, &lt;id, entity&gt;
+     * @throws RepositoryException repository exception
+     */
+    private static Map<String, JSONObject> getByIds(final Repository repository, final Set<String> ids) throws RepositoryException {
+        final Query query = new Query().setFilter(new PropertyFilter(Keys.OBJECT_ID, FilterOperator.IN, ids)).
+                setPageCount(1).setPageSize(ids.size());
+        final Map<String, JSONObject> ret = new HashMap<>();
+        for (final JSONObject entity : repository.getList(query)) {
+            ret.put(entity.optString(Keys.OBJECT_ID), entity);
+        }
+
+        return ret;
+    }
+
+    /**
+     * Gets the HTML link of the specified article.
+     *
+     * @param article the specified article
+     * @return article link
+     */
+    private static String getArticleLink(final JSONObject article) {
+        return "<a href=\"" + article.optString(Article.ARTICLE_PERMALINK) + "\">"
+                + Encode.forHtml(article.optString(Article.ARTICLE_TITLE)) + "</a>";
+    }
+
+    /**
+     * Gets the HTML link of the specified user.
+     *
+     * @param user the specified user, may be {@code null}
+     * @return user link, returns an empty string if the user is {@code null}
+     */
+    private static String getUserLink(final JSONObject user) {
+        return null == user ? "" : UserExt.getUserLink(user);
+    }
 }
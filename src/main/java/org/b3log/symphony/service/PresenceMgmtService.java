@@ -0,0 +1,340 @@
+/*
+ * Symphony - A modern community (forum/BBS/SNS/blog) platform written in Java.
+ * Copyright (C) 2012-2018, b3log.org & hacpai.com
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.b3log.symphony.service;
+
+import org.apache.commons.lang.StringUtils;
+import org.b3log.latke.Keys;
+import org.b3log.latke.ioc.Inject;
+import org.b3log.latke.logging.Level;
+import org.b3log.latke.logging.Logger;
+import org.b3log.latke.repository.*;
+import org.b3log.latke.repository.jdbc.JdbcRepository;
+import org.b3log.latke.service.annotation.Service;
+import org.b3log.symphony.model.Common;
+import org.b3log.symphony.model.Option;
+import org.b3log.symphony.model.UserExt;
+import org.b3log.symphony.repository.OptionRepository;
+import org.b3log.symphony.repository.UserRepository;
+import org.b3log.symphony.util.Geos;
+import org.b3log.symphony.util.PresenceRegistry;
+import org.b3log.symphony.util.PresenceRegistry.Presence;
+import org.b3log.symphony.util.Symphonys;
+import org.json.JSONObject;
+
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Presence management service.
+ * <p>
+ * The {@link PresenceRegistry} is authoritative for the online state of users connected to the user channel.
+ * {@value UserExt#USER_ONLINE_FLAG}, {@value UserExt#USER_LATEST_LOGIN_TIME} and
+ * {@value UserExt#USER_LATEST_LOGIN_IP} are persisted in batches by a flusher, on real state transitions or at
+ * {@code presence.persistInterval}. Readers take the online state from {@link #isOnline(String)} and
+ * {@link #fillOnlineFlag(JSONObject)}, not from the persisted flag which lags behind by {@code presence.flushInterval}.
+ * The max online visitor count is tracked in memory and flushed the same way.
+ * </p>
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.1.0.0, Oct 25, 2018
+ * @since 3.4.3
+ */
+@Service
+public class PresenceMgmtService {
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOGGER = Logger.getLogger(PresenceMgmtService.class);
+
+    /**
+     * Max count of users persisted in a transaction.
+     */
+    private static final int FLUSH_BATCH_SIZE = 100;
+
+    /**
+     * Presence registry.
+     */
+    private final PresenceRegistry registry = new PresenceRegistry(Symphonys.getLong("presence.persistInterval"));
+
+    /**
+     * Max online visitor count.
+     */
+    private final AtomicInteger maxOnlineVisitorCnt = new AtomicInteger();
+
+    /**
+     * Persisted max online visitor count, {@code -1} if not loaded.
+     */
+    private volatile int persistedMaxOnlineVisitorCnt = -1;
+
+    /**
+     * User repository.
+     */
+    @Inject
+    private UserRepository userRepository;
+
+    /**
+     * Option repository.
+     */
+    @Inject
+    private OptionRepository optionRepository;
+
+    /**
+     * Presence flusher.
+     */
+    private ScheduledExecutorService flusher;
+
+    /**
+     * Loads the max online visitor count and starts the presence flusher.
+     */
+    public synchronized void start() {
+        if (null != flusher) {
+            return;
+        }
+
+        try {
+            final JSONObject maxOnlineVisitorCntOption = optionRepository.get(Option.ID_C_STATISTIC_MAX_ONLINE_VISITOR_COUNT);
+            if (null != maxOnlineVisitorCntOption) {
+                final int cnt = maxOnlineVisitorCntOption.optInt(Option.OPTION_VALUE);
+                maxOnlineVisitorCnt.accumulateAndGet(cnt, Math::max);
+                persistedMaxOnlineVisitorCnt = cnt;
+            }
+        } catch (final RepositoryException e) {
+            LOGGER.log(Level.ERROR, "Loads the max online visitor count failed", e);
+        }
+
+        final long flushInterval = Symphonys.getLong("presence.flushInterval");
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            final Thread ret = new Thread(r, "PresenceFlusher");
+            ret.setDaemon(true);
+
+            return ret;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the presence flusher, unflushed presences are flushed.
+     */
+    public synchronized void stop() {
+        if (null == flusher) {
+            return;
+        }
+
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flusher = null;
+        flush();
+    }
+
+    /**
+     * Adds a user channel connection of the specified user.
+     *
+     * @param userId the specified user id
+     * @param ip     the specified IP, could be {@code null}
+     */
+    public void connect(final String userId, final String ip) {
+        registry.connect(userId, ip, System.currentTimeMillis());
+    }
+
+    /**
+     * Records a user channel heartbeat of the specified user.
+     *
+     * @param userId the specified user id
+     * @param ip     the specified IP, could be {@code null}
+     */
+    public void heartbeat(final String userId, final String ip) {
+        registry.heartbeat(userId, ip, System.currentTimeMillis());
+    }
+
+    /**
+     * Removes a user channel connection of the specified user.
+     *
+     * @param userId the specified user id
+     */
+    public void disconnect(final String userId) {
+        registry.disconnect(userId, System.currentTimeMillis());
+    }
+
+    /**
+     * Checks whether the specified user is online.
+     *
+     * @param userId the specified user id
+     * @return {@code true} if online, returns {@code false} otherwise
+     */
+    public boolean isOnline(final String userId) {
+        return registry.isOnline(userId);
+    }
+
+    /**
+     * Sets {@value UserExt#USER_ONLINE_FLAG} of the specified user to its current online state.
+     *
+     * @param user the specified user
+     */
+    public void fillOnlineFlag(final JSONObject user) {
+        user.put(UserExt.USER_ONLINE_FLAG, registry.isOnline(user.optString(Keys.OBJECT_ID)));
+    }
+
+    /**
+     * Gets the count of online users.
+     *
+     * @return count of online users
+     */
+    public int getOnlineCount() {
+        return registry.getOnlineCount();
+    }
+
+    /**
+     * Updates the max online visitor count with the specified current online visitor count.
+     *
+     * @param onlineVisitorCnt the specified current online visitor count
+     */
+    public void updateMaxOnlineVisitorCount(final int onlineVisitorCnt) {
+        maxOnlineVisitorCnt.accumulateAndGet(onlineVisitorCnt, Math::max);
+    }
+
+    /**
+     * Flushes the due presences and the max online visitor count.
+     */
+    private void flush() {
+        try {
+            final List<Presence> presences = registry.drain(System.currentTimeMillis());
+            for (int i = 0; i < presences.size(); i += FLUSH_BATCH_SIZE) {
+                persist(presences.subList(i, Math.min(i + FLUSH_BATCH_SIZE, presences.size())));
+            }
+
+            flushMaxOnlineVisitorCount();
+        } catch (final Exception e) {
+            LOGGER.log(Level.ERROR, "Flushes presences failed", e);
+        } finally {
+            JdbcRepository.dispose();
+        }
+    }
+
+    /**
+     * Persists the specified presences in a transaction.
+     * <p>
+     * Addresses of changed IPs are looked up before the transaction, then each user is read again in the transaction
+     * and only the presence columns are updated, so concurrent profile updates are not overwritten.
+     * </p>
+     *
+     * @param presences the specified presences
+     */
+    private void persist(final List<Presence> presences) {
+        final Map<String, JSONObject> addresses = new HashMap<>();
+        try {
+            final Set<String> userIds = new HashSet<>();
+            for (final Presence presence : presences) {
+                userIds.add(presence.getUserId());
+            }
+            final Query query = new Query().setFilter(new PropertyFilter(Keys.OBJECT_ID, FilterOperator.IN, userIds)).
+                    setPageCount(1).setPageSize(userIds.size()).
+                    addProjection(Keys.OBJECT_ID, String.class).addProjection(UserExt.USER_LATEST_LOGIN_IP, String.class);
+            final Map<String, String> latestIps = new HashMap<>();
+            for (final JSONObject user : userRepository.getList(query)) {
+                latestIps.put(user.optString(Keys.OBJECT_ID), user.optString(UserExt.USER_LATEST_LOGIN_IP));
+            }
+
+            for (final Presence presence : presences) {
+                final String ip = presence.getIp();
+                if (StringUtils.isBlank(ip) || ip.equals(latestIps.get(presence.getUserId())) || addresses.containsKey(ip)) {
+                    continue;
+                }
+
+                addresses.put(ip, Geos.getAddress(ip));
+            }
+        } catch (final RepositoryException e) {
+            LOGGER.log(Level.ERROR, "Gets users of presences failed", e);
+            presences.forEach(registry::invalidate);
+
+            return;
+        }
+
+        final long now = System.currentTimeMillis();
+        final Transaction transaction = userRepository.beginTransaction();
+        try {
+            for (final Presence presence : presences) {
+                final String userId = presence.getUserId();
+                final JSONObject user = userRepository.get(userId);
+                if (null == user) {
+                    continue;
+                }
+
+                final String ip = presence.getIp();
+                if (StringUtils.isNotBlank(ip) && !ip.equals(user.optString(UserExt.USER_LATEST_LOGIN_IP))) {
+                    final JSONObject address = addresses.get(ip);
+                    if (null != address) {
+                        user.put(UserExt.USER_COUNTRY, address.optString(Common.COUNTRY));
+                        user.put(UserExt.USER_PROVINCE, address.optString(Common.PROVINCE));
+                        user.put(UserExt.USER_CITY, address.optString(Common.CITY));
+                    }
+                    user.put(UserExt.USER_LATEST_LOGIN_IP, ip);
+                }
+                user.put(UserExt.USER_ONLINE_FLAG, presence.isOnline());
+                user.put(UserExt.USER_LATEST_LOGIN_TIME, presence.getLastSeen());
+                user.put(UserExt.USER_UPDATE_TIME, now);
+
+                userRepository.update(userId, user);
+            }
+
+            transaction.commit();
+        } catch (final RepositoryException e) {
+            if (transaction.isActive()) {
+                transaction.rollback();
+            }
+
+            LOGGER.log(Level.ERROR, "Persists presences failed", e);
+            presences.forEach(registry::invalidate);
+        }
+    }
+
+    /**
+     * Flushes the max online visitor count if it exceeds the persisted one.
+     */
+    private void flushMaxOnlineVisitorCount() {
+        final int cnt = maxOnlineVisitorCnt.get();
+        if (cnt <= persistedMaxOnlineVisitorCnt) {
+            return;
+        }
+
+        final Transaction transaction = optionRepository.beginTransaction();
+        try {
+            final JSONObject maxOnlineVisitorCntOption = optionRepository.get(Option.ID_C_STATISTIC_MAX_ONLINE_VISITOR_COUNT);
+            if (cnt > maxOnlineVisitorCntOption.optInt(Option.OPTION_VALUE)) {
+                maxOnlineVisitorCntOption.put(Option.OPTION_VALUE, String.valueOf(cnt));
+                optionRepository.update(Option.ID_C_STATISTIC_MAX_ONLINE_VISITOR_COUNT, maxOnlineVisitorCntOption);
+            }
+
+            transaction.commit();
+            persistedMaxOnlineVisitorCnt = cnt;
+        } catch (final Exception e) {
+            if (transaction.isActive()) {
+                transaction.rollback();
+            }
+
+            LOGGER.log(Level.ERROR, "Updates the max online visitor count failed", e);
+        }
+    }
+}
@@ -0,0 +1,218 @@
+/*
+ * Symphony - A modern community (forum/BBS/SNS/blog) platform written in Java.
+ * Copyright (C) 2012-2018, b3log.org & hacpai.com
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.b3log.symphony.service;
+
+import org.b3log.latke.Keys;
+import org.b3log.latke.ioc.Inject;
+import org.b3log.latke.logging.Level;
+import org.b3log.latke.logging.Logger;
+import org.b3log.latke.repository.RepositoryException;
+import org.b3log.latke.repository.Transaction;
+import org.b3log.latke.repository.jdbc.JdbcRepository;
+import org.b3log.latke.service.annotation.Service;
+import org.b3log.symphony.model.Article;
+import org.b3log.symphony.model.Rendered;
+import org.b3log.symphony.repository.ArticleRepository;
+import org.b3log.symphony.repository.CommentRepository;
+import org.b3log.symphony.repository.RenderedRepository;
+import org.b3log.symphony.util.ContentRenderer;
+import org.b3log.symphony.util.Images;
+import org.b3log.symphony.util.Symphonys;
+import org.json.JSONObject;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Render management service.
+ * <p>
+ * Renders articles and comments in background and persists the rendered HTML, on create, on update, on reading a
+ * missing or stale rendered and on startup for rendereds of other renderer versions.
+ * </p>
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.1.1, Oct 25, 2018
+ * @since 3.4.3
+ */
+@Service
+public class RenderMgmtService {
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOGGER = Logger.getLogger(RenderMgmtService.class);
+
+    /**
+     * Max count of pending renders.
+     */
+    private static final int MAX_PENDING_CNT = 1000;
+
+    /**
+     * Page size of loading stale rendereds.
+     */
+    private static final int STALE_PAGE_SIZE = 100;
+
+    /**
+     * Ids of pending renders.
+     */
+    private final Set<String> pendingIds = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Rendered repository.
+     */
+    @Inject
+    private RenderedRepository renderedRepository;
+
+    /**
+     * Article repository.
+     */
+    @Inject
+    private ArticleRepository articleRepository;
+
+    /**
+     * Comment repository.
+     */
+    @Inject
+    private CommentRepository commentRepository;
+
+    /**
+     * Short link query service.
+     */
+    @Inject
+    private ShortLinkQueryService shortLinkQueryService;
+
+    /**
+     * Starts rendering rendereds of other renderer versions in background. The rendered table is created by
+     * {@link InitMgmtService#initSym()} before.
+     */
+    public void start() {
+        new Thread(() -> {
+            try {
+                int cnt = 0;
+                String lastId = "0";
+                List<JSONObject> rendereds;
+                do {
+                    rendereds = renderedRepository.getStale(ContentRenderer.VERSION, lastId, STALE_PAGE_SIZE);
+                    for (final JSONObject rendered : rendereds) {
+                        lastId = rendered.optString(Keys.OBJECT_ID);
+                        render(lastId, rendered.optInt(Rendered.RENDERED_TYPE));
+                        cnt++;
+                    }
+                } while (STALE_PAGE_SIZE == rendereds.size());
+
+                if (0 < cnt) {
+                    LOGGER.log(Level.INFO, "Rendered [" + cnt + "] stale rendereds with renderer version ["
+                            + ContentRenderer.VERSION + "]");
+                }
+            } catch (final Exception e) {
+                LOGGER.log(Level.ERROR, "Renders stale rendereds failed", e);
+            } finally {
+                JdbcRepository.dispose();
+            }
+        }).start();
+    }
+
+    /**
+     * Renders the specified article or comment and persists the rendered in background.
+     *
+     * @param id   the specified id of the article or comment
+     * @param type the specified type, {@link Rendered#RENDERED_TYPE_C_ARTICLE} or
+     *             {@link Rendered#RENDERED_TYPE_C_COMMENT}
+     */
+    public void renderAsync(final String id, final int type) {
+        if (MAX_PENDING_CNT <= pendingIds.size() || !pendingIds.add(id)) {
+            return;
+        }
+
+        Symphonys.EXECUTOR_SERVICE.submit(() -> {
+            try {
+                render(id, type);
+            } finally {
+                pendingIds.remove(id);
+                JdbcRepository.dispose();
+            }
+        });
+    }
+
+    /**
+     * Renders the specified article or comment and persists the rendered if the persisted one is not fresh, removes
+     * the rendered if the article or comment is not found.
+     *
+     * @param id   the specified id of the article or comment
+     * @param type the specified type
+     */
+    private void render(final String id, final int type) {
+        final Transaction transaction = renderedRepository.beginTransaction();
+        try {
+            final JSONObject old = renderedRepository.get(id);
+            final boolean isArticle = Rendered.RENDERED_TYPE_C_ARTICLE == type;
+            final JSONObject found = isArticle ? getArticle(id) : commentRepository.get(id);
+            final JSONObject source = null == found ? null : isArticle
+                    ? ContentRenderer.linkArticle(found, shortLinkQueryService::link)
+                    : ContentRenderer.linkComment(found, shortLinkQueryService::link);
+            if (null == source) {
+                if (null != old) {
+                    renderedRepository.remove(id);
+                }
+            } else if (!ContentRenderer.isFresh(old, isArticle
+                    ? ContentRenderer.hashArticle(source) : ContentRenderer.hashComment(source))) {
+                final JSONObject rendered = isArticle ? ContentRenderer.renderArticle(source)
+                        : ContentRenderer.renderComment(source);
+                rendered.put(Rendered.RENDERED_TYPE, type);
+                rendered.put(Rendered.RENDERED_TIME, System.currentTimeMillis());
+                if (!isArticle) {
+                    rendered.put(Rendered.RENDERED_REWARD_CONTENT, "");
+                    rendered.put(Rendered.RENDERED_TOC, "");
+                }
+
+                if (null == old) {
+                    rendered.put(Keys.OBJECT_ID, id);
+                    renderedRepository.add(rendered);
+                } else {
+                    renderedRepository.update(id, rendered);
+                }
+            }
+
+            transaction.commit();
+        } catch (final Exception e) {
+            if (transaction.isActive()) {
+                transaction.rollback();
+            }
+
+            LOGGER.log(Level.ERROR, "Renders [id=" + id + ", type=" + type + "] failed", e);
+        }
+    }
+
+    /**
+     * Gets the article specified by the given article id, its content is prepared the same as
+     * {@link ArticleQueryService#organizeArticle(int, JSONObject)} does before rendering.
+     *
+     * @param articleId the given article id
+     * @return article, returns {@code null} if not found
+     * @throws RepositoryException repository exception
+     */
+    private JSONObject getArticle(final String articleId) throws RepositoryException {
+        final JSONObject ret = articleRepository.get(articleId);
+        if (null != ret && Article.ARTICLE_TYPE_C_THOUGHT != ret.optInt(Article.ARTICLE_TYPE)) {
+            ret.put(Article.ARTICLE_CONTENT, Images.qiniuImgProcessing(ret.optString(Article.ARTICLE_CONTENT)));
+        }
+
+        return ret;
+    }
+}
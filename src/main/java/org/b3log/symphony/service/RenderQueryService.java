@@ -0,0 +1,130 @@
+/*
+ * Symphony - A modern community (forum/BBS/SNS/blog) platform written in Java.
+ * Copyright (C) 2012-2018, b3log.org & hacpai.com
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.b3log.symphony.service;
+
+import org.b3log.latke.Keys;
+import org.b3log.latke.ioc.Inject;
+import org.b3log.latke.logging.Level;
+import org.b3log.latke.logging.Logger;
+import org.b3log.latke.repository.RepositoryException;
+import org.b3log.latke.service.annotation.Service;
+import org.b3log.symphony.model.Rendered;
+import org.b3log.symphony.repository.RenderedRepository;
+import org.b3log.symphony.util.ContentRenderer;
+import org.json.JSONObject;
+
+import java.util.*;
+
+/**
+ * Render query service.
+ * <p>
+ * Serves the persisted rendered HTML of articles and comments if it is fresh, renders on the fly and requests
+ * {@link RenderMgmtService} to persist it otherwise. Short links are expanded on each read before the freshness check,
+ * see {@link ContentRenderer}.
+ * </p>
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.1.0.0, Oct 25, 2018
+ * @since 3.4.3
+ */
+@Service
+public class RenderQueryService {
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOGGER = Logger.getLogger(RenderQueryService.class);
+
+    /**
+     * Rendered repository.
+     */
+    @Inject
+    private RenderedRepository renderedRepository;
+
+    /**
+     * Render management service.
+     */
+    @Inject
+    private RenderMgmtService renderMgmtService;
+
+    /**
+     * Short link query service.
+     */
+    @Inject
+    private ShortLinkQueryService shortLinkQueryService;
+
+    /**
+     * Gets the rendered of the specified article.
+     *
+     * @param article the specified article
+     * @return rendered, see {@link ContentRenderer#renderArticle(JSONObject)} for details
+     */
+    public JSONObject getArticle(final JSONObject article) {
+        final String articleId = article.optString(Keys.OBJECT_ID);
+        final JSONObject linked = ContentRenderer.linkArticle(article, shortLinkQueryService::link);
+        try {
+            final JSONObject ret = renderedRepository.get(articleId);
+            if (ContentRenderer.isFresh(ret, ContentRenderer.hashArticle(linked))) {
+                return ret;
+            }
+        } catch (final RepositoryException e) {
+            LOGGER.log(Level.ERROR, "Gets rendered article [id=" + articleId + "] failed", e);
+        }
+
+        renderMgmtService.renderAsync(articleId, Rendered.RENDERED_TYPE_C_ARTICLE);
+
+        return ContentRenderer.renderArticle(linked);
+    }
+
+    /**
+     * Gets the rendered content of the specified comments.
+     *
+     * @param comments the specified comments
+     * @return rendered content, &lt;commentId, HTML&gt;
+     */
+    public Map<String, String> getComments(final List<JSONObject> comments) {
+        final Map<String, String> ret = new HashMap<>();
+        final Set<String> commentIds = new HashSet<>();
+        for (final JSONObject comment : comments) {
+            commentIds.add(comment.optString(Keys.OBJECT_ID));
+        }
+
+        Map<String, JSONObject> rendereds = Collections.emptyMap();
+        try {
+            rendereds = renderedRepository.getByIds(commentIds);
+        } catch (final RepositoryException e) {
+            LOGGER.log(Level.ERROR, "Gets rendered comments failed", e);
+        }
+
+        for (final JSONObject comment : comments) {
+            final String commentId = comment.optString(Keys.OBJECT_ID);
+            final JSONObject rendered = rendereds.get(commentId);
+            final JSONObject linked = ContentRenderer.linkComment(comment, shortLinkQueryService::link);
+            if (ContentRenderer.isFresh(rendered, ContentRenderer.hashComment(linked))) {
+                ret.put(commentId, rendered.optString(Rendered.RENDERED_CONTENT));
+
+                continue;
+            }
+
+            renderMgmtService.renderAsync(commentId, Rendered.RENDERED_TYPE_C_COMMENT);
+            ret.put(commentId, ContentRenderer.renderComment(linked).optString(Rendered.RENDERED_CONTENT));
+        }
+
+        return ret;
+    }
+}
@@ -21,26 +21,39 @@ import jodd.http.HttpRequest;
 import jodd.http.HttpResponse;
 import jodd.net.MimeTypes;
 import okio.Utf8;
+import org.apache.commons.io.FileUtils;
 import org.b3log.latke.Keys;
+import org.b3log.latke.ioc.Inject;
 import org.b3log.latke.logging.Level;
 import org.b3log.latke.logging.Logger;
+import org.b3log.latke.repository.*;
+import org.b3log.latke.repository.jdbc.JdbcRepository;
 import org.b3log.latke.service.annotation.Service;
+import org.b3log.latke.util.CollectionUtils;
 import org.b3log.symphony.model.Article;
+import org.b3log.symphony.repository.ArticleRepository;
+import org.b3log.symphony.util.JSONs;
 import org.b3log.symphony.util.Markdowns;
+import org.b3log.symphony.util.SearchIndexQueue;
 import org.b3log.symphony.util.Symphonys;
+import org.json.JSONArray;
 import org.json.JSONObject;
 import org.jsoup.Jsoup;
 
+import java.io.File;
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.*;
 
 /**
  * Search management service.
  * <p>
  * Uses <a href="https://www.elastic.co/products/elasticsearch">Elasticsearch</a> or
- * <a href="https://www.algolia.com">Algolia</a> as the underlying engine.
+ * <a href="https://www.algolia.com">Algolia</a> as the underlying engine. Document changes are queued in a durable
+ * {@link SearchIndexQueue} and submitted in batches via the bulk APIs.
  *
  * @author <a href="http://88250.b3log.org">Liang Ding</a>
- * @version 1.3.2.9, Aug 31, 2018
+ * @version 1.4.1.0, Oct 25, 2018
  * @since 1.4.0
  */
 @Service
@@ -61,6 +74,72 @@ public class SearchMgmtService {
      */
     public static final String ES_SERVER = Symphonys.get("es.server");
 
+    /**
+     * Algolia object id key.
+     */
+    private static final String ALGOLIA_OBJECT_ID = "objectID";
+
+    /**
+     * Reindex checkpoint file name.
+     */
+    private static final String REINDEX_PROGRESS_FILE = "reindex.json";
+
+    /**
+     * Key of reindex last article id.
+     */
+    private static final String REINDEX_LAST_ID = "lastId";
+
+    /**
+     * Key of reindex indexed count.
+     */
+    private static final String REINDEX_INDEXED = "indexed";
+
+    /**
+     * Key of reindex total count.
+     */
+    private static final String REINDEX_TOTAL = "total";
+
+    /**
+     * Key of reindex finished flag.
+     */
+    private static final String REINDEX_FINISHED = "finished";
+
+    /**
+     * Key of reindex running flag.
+     */
+    private static final String REINDEX_RUNNING = "running";
+
+    /**
+     * Key of pending operation count.
+     */
+    private static final String REINDEX_PENDING = "pending";
+
+    /**
+     * Key of queue overflowed flag.
+     */
+    private static final String REINDEX_OVERFLOWED = "overflowed";
+
+    /**
+     * Article repository.
+     */
+    @Inject
+    private ArticleRepository articleRepository;
+
+    /**
+     * ES index queue.
+     */
+    private SearchIndexQueue esQueue;
+
+    /**
+     * Algolia index queue.
+     */
+    private SearchIndexQueue algoliaQueue;
+
+    /**
+     * Whether a reindex is running.
+     */
+    private volatile boolean reindexing;
+
     /**
      * Rebuilds ES index.
      */
@@ -85,7 +164,7 @@ public class SearchMgmtService {
             content.put("analyzer", "ik_smart");
             content.put("search_analyzer", "ik_smart");
 
-            HttpRequest.post(ES_SERVER + "/" + ES_INDEX_NAME + "/" + Article.ARTICLE + "/_mapping").bodyText(mapping.toString()).timeout(3000).contentTypeJson();
+            HttpRequest.post(ES_SERVER + "/" + ES_INDEX_NAME + "/" + Article.ARTICLE + "/_mapping").bodyText(mapping.toString()).timeout(3000).contentTypeJson().send();
         } catch (final Exception e) {
             LOGGER.log(Level.ERROR, "Removes index failed", e);
         }
@@ -125,6 +204,34 @@ public class SearchMgmtService {
         }
     }
 
+    /**
+     * Starts the enabled search index queues, pending operations left by the last run will be submitted.
+     */
+    public void startIndexQueues() {
+        if (Symphonys.getBoolean("es.enabled")) {
+            getESQueue();
+        }
+
+        if (Symphonys.getBoolean("algolia.enabled")) {
+            getAlgoliaQueue();
+        }
+    }
+
+    /**
+     * Stops the search index queues.
+     */
+    public synchronized void stopIndexQueues() {
+        if (null != esQueue) {
+            esQueue.stop();
+            esQueue = null;
+        }
+
+        if (null != algoliaQueue) {
+            algoliaQueue.stop();
+            algoliaQueue = null;
+        }
+    }
+
     /**
      * Updates/Adds indexing the specified document in ES.
      *
@@ -132,16 +239,7 @@ public class SearchMgmtService {
      * @param type the specified document type
      */
     public void updateESDocument(final JSONObject doc, final String type) {
-        try {
-            final JSONObject payload = new JSONObject();
-            payload.put("doc", doc);
-            payload.put("upsert", doc);
-
-            HttpRequest.post(ES_SERVER + "/" + ES_INDEX_NAME + "/" + type + "/" + doc.optString(Keys.OBJECT_ID) + "/_update").
-                    bodyText(payload.toString()).contentTypeJson().timeout(5000).sendAsync();
-        } catch (final Exception e) {
-            LOGGER.log(Level.ERROR, "Updates doc failed", e);
-        }
+        getESQueue().update(doc.optString(Keys.OBJECT_ID), type, doc);
     }
 
     /**
@@ -151,11 +249,7 @@ public class SearchMgmtService {
      * @param type the specified document type
      */
     public void removeESDocument(final JSONObject doc, final String type) {
-        try {
-            HttpRequest.delete(ES_SERVER + "/" + ES_INDEX_NAME + "/" + type + "/" + doc.optString(Keys.OBJECT_ID)).timeout(5000).sendAsync();
-        } catch (final Exception e) {
-            LOGGER.log(Level.ERROR, "Updates doc failed", e);
-        }
+        getESQueue().remove(doc.optString(Keys.OBJECT_ID), type);
     }
 
     /**
@@ -164,109 +258,415 @@ public class SearchMgmtService {
      * @param doc the specified document
      */
     public void updateAlgoliaDocument(final JSONObject doc) {
-        final int maxRetries = 3;
-        int retries = 1;
+        final String id = doc.optString(Keys.OBJECT_ID);
+
+        String content = doc.optString(Article.ARTICLE_CONTENT);
+        content = Markdowns.toHTML(content);
+        content = Jsoup.parse(content).text();
+        doc.put(Article.ARTICLE_CONTENT, content);
+
+        final long dataLength = Utf8.size(doc.toString());
+        final int maxLength = 9000; // Essential plan is 20000, Community plan is 10000
+        if (dataLength >= maxLength) {
+            LOGGER.log(Level.INFO, "This article [id=" + id + "] is too big [length=" + dataLength + "], so cuts it");
+
+            final int length = content.length();
+            int idx = length;
+            int continueCnt = 0;
+            while (idx > 0) {
+                idx -= 128;
+                content = content.substring(0, idx);
+                if (Utf8.size(content) < maxLength) {
+                    continueCnt++;
+                }
 
-        final String appId = Symphonys.get("algolia.appId");
-        final String index = Symphonys.get("algolia.index");
-        final String key = Symphonys.get("algolia.adminKey");
+                if (3 < continueCnt) {
+                    break;
+                }
+            }
 
-        while (retries <= maxRetries) {
-            String host = appId + "-" + retries + ".algolianet.com";
+            doc.put(Article.ARTICLE_CONTENT, content);
+        }
+
+        doc.put(ALGOLIA_OBJECT_ID, id);
+        getAlgoliaQueue().update(id, Article.ARTICLE, doc);
+    }
+
+    /**
+     * Removes the specified document in Algolia.
+     *
+     * @param doc the specified document
+     */
+    public void removeAlgoliaDocument(final JSONObject doc) {
+        getAlgoliaQueue().remove(doc.optString(Keys.OBJECT_ID), Article.ARTICLE);
+    }
+
+    /**
+     * Rebuilds the article search index in background. Resumes from the last checkpoint if the previous reindex
+     * has not finished, otherwise clears the index and starts over.
+     *
+     * @return {@code true} if started, returns {@code false} if a reindex is already running
+     */
+    public synchronized boolean reindexArticles() {
+        if (reindexing) {
+            return false;
+        }
+        reindexing = true;
 
+        final JSONObject checkpoint = readReindexProgress();
+        final boolean resume = checkpoint.has(REINDEX_LAST_ID) && !checkpoint.optBoolean(REINDEX_FINISHED);
+        final boolean esEnabled = Symphonys.getBoolean("es.enabled");
+        final boolean algoliaEnabled = Symphonys.getBoolean("algolia.enabled");
+
+        new Thread(() -> {
             try {
-                final String id = doc.optString(Keys.OBJECT_ID);
-
-                String content = doc.optString(Article.ARTICLE_CONTENT);
-                content = Markdowns.toHTML(content);
-                content = Jsoup.parse(content).text();
-                doc.put(Article.ARTICLE_CONTENT, content);
-
-                final long dataLength = Utf8.size(doc.toString());
-                final int maxLength = 9000; // Essential plan is 20000, Community plan is 10000
-                if (dataLength >= maxLength) {
-                    LOGGER.log(Level.INFO, "This article [id=" + id + "] is too big [length=" + dataLength + "], so cuts it");
-
-                    final int length = content.length();
-                    int idx = length;
-                    int continueCnt = 0;
-                    while (idx > 0) {
-                        idx -= 128;
-                        content = content.substring(0, idx);
-                        if (Utf8.size(content) < maxLength) {
-                            continueCnt++;
+                JSONObject progress = checkpoint;
+                if (resume) {
+                    LOGGER.info("Resumes search index from [" + progress.optString(REINDEX_LAST_ID) + "]");
+                } else {
+                    if (esEnabled) {
+                        rebuildESIndex();
+                    }
+
+                    if (algoliaEnabled) {
+                        rebuildAlgoliaIndex();
+                    }
+
+                    // operations dropped before are covered by this rebuild
+                    if (esEnabled) {
+                        getESQueue().clearOverflowed();
+                    }
+
+                    if (algoliaEnabled) {
+                        getAlgoliaQueue().clearOverflowed();
+                    }
+
+                    progress = new JSONObject();
+                    progress.put(REINDEX_LAST_ID, "0");
+                    progress.put(REINDEX_INDEXED, 0);
+                    progress.put(REINDEX_TOTAL, articleRepository.count(new Query().setFilter(getReindexFilter("0"))));
+                    progress.put(REINDEX_FINISHED, false);
+                    writeReindexProgress(progress);
+                }
+
+                String lastId = progress.optString(REINDEX_LAST_ID);
+                while (true) {
+                    final Query query = new Query().setFilter(getReindexFilter(lastId)).
+                            addSort(Keys.OBJECT_ID, SortDirection.ASCENDING).setCurrentPageNum(1).setPageSize(50).setPageCount(1);
+                    final List<JSONObject> articles = CollectionUtils.jsonArrayToList(articleRepository.get(query).optJSONArray(Keys.RESULTS));
+                    if (articles.isEmpty()) {
+                        break;
+                    }
+
+                    for (final JSONObject article : articles) {
+                        if (esEnabled) {
+                            updateESDocument(JSONs.clone(article), Article.ARTICLE);
                         }
 
-                        if (3 < continueCnt) {
-                            break;
+                        if (algoliaEnabled) {
+                            updateAlgoliaDocument(JSONs.clone(article));
                         }
                     }
 
-                    doc.put(Article.ARTICLE_CONTENT, content);
-                }
+                    awaitIndexQueues();
 
-                final byte[] data = doc.toString().getBytes(StandardCharsets.UTF_8);
-                final HttpResponse response = HttpRequest.put("https://" + host + "/1/indexes/" + index + "/" + id).
-                        header("X-Algolia-API-Key", key).
-                        header("X-Algolia-Application-Id", appId).body(data, MimeTypes.MIME_APPLICATION_JSON).
-                        connectionTimeout(5000).timeout(5000).send();
-                response.charset("UTF-8");
-                if (200 != response.statusCode()) {
-                    LOGGER.warn(response.bodyText());
+                    lastId = articles.get(articles.size() - 1).optString(Keys.OBJECT_ID);
+                    progress.put(REINDEX_LAST_ID, lastId);
+                    progress.put(REINDEX_INDEXED, progress.optInt(REINDEX_INDEXED) + articles.size());
+                    writeReindexProgress(progress);
+
+                    LOGGER.info("Indexed [" + progress.optInt(REINDEX_INDEXED) + "/" + progress.optInt(REINDEX_TOTAL) + "]");
                 }
 
-                break;
+                progress.put(REINDEX_FINISHED, true);
+                writeReindexProgress(progress);
+
+                LOGGER.info("Index finished");
             } catch (final Exception e) {
-                LOGGER.log(Level.WARN, "Index failed", e);
+                LOGGER.log(Level.ERROR, "Search index failed", e);
+            } finally {
+                reindexing = false;
+                JdbcRepository.dispose();
+            }
+        }).start();
 
-                retries++;
-                if (retries > maxRetries) {
-                    LOGGER.log(Level.ERROR, "Index failed [doc=" + doc + "]", e);
-                }
+        return true;
+    }
+
+    /**
+     * Gets the article reindex progress.
+     *
+     * @return progress, for example,
+     * <pre>
+     * {
+     *     "lastId": "",
+     *     "indexed": int,
+     *     "total": int,
+     *     "finished": boolean,
+     *     "running": boolean,
+     *     "pending": int,
+     *     "overflowed": boolean
+     * }
+     * </pre>
+     */
+    public JSONObject getReindexProgress() {
+        final JSONObject ret = readReindexProgress();
+        ret.put(REINDEX_RUNNING, reindexing);
+
+        int pending = 0;
+        boolean overflowed = false;
+        synchronized (this) {
+            if (null != esQueue) {
+                pending += esQueue.size();
+                overflowed = esQueue.isOverflowed();
             }
 
-            try {
-                Thread.sleep(100);
-            } catch (final Exception e) {
-                LOGGER.log(Level.ERROR, "Sleep error", e);
+            if (null != algoliaQueue) {
+                pending += algoliaQueue.size();
+                overflowed |= algoliaQueue.isOverflowed();
             }
         }
+        ret.put(REINDEX_PENDING, pending);
+        ret.put(REINDEX_OVERFLOWED, overflowed);
+
+        return ret;
     }
 
     /**
-     * Removes the specified document in Algolia.
+     * Submits the specified operations via ES bulk API.
      *
-     * @param doc the specified document
+     * @param server the specified ES server
+     * @param ops    the specified operations
+     * @return ids of the operations which should be retried
+     * @throws Exception if the bulk request failed
      */
-    public void removeAlgoliaDocument(final JSONObject doc) {
-        final int maxRetries = 3;
-        int retries = 1;
+    static Set<String> bulkES(final String server, final List<JSONObject> ops) throws Exception {
+        final StringBuilder bodyBuilder = new StringBuilder();
+        for (final JSONObject op : ops) {
+            final JSONObject meta = new JSONObject();
+            meta.put("_index", ES_INDEX_NAME);
+            meta.put("_type", op.optString(SearchIndexQueue.OP_TYPE));
+            meta.put("_id", op.optString(SearchIndexQueue.OP_ID));
+
+            final JSONObject action = new JSONObject();
+            if (SearchIndexQueue.ACTION_REMOVE.equals(op.optString(SearchIndexQueue.OP_ACTION))) {
+                action.put("delete", meta);
+                bodyBuilder.append(action.toString()).append('\n');
+            } else {
+                action.put("update", meta);
+                final JSONObject payload = new JSONObject();
+                payload.put("doc", op.optJSONObject(SearchIndexQueue.OP_DOC));
+                payload.put("doc_as_upsert", true);
+                bodyBuilder.append(action.toString()).append('\n').append(payload.toString()).append('\n');
+            }
+        }
+
+        final HttpResponse response = HttpRequest.post(server + "/_bulk").
+                bodyText(bodyBuilder.toString(), MimeTypes.MIME_APPLICATION_JSON, "UTF-8").
+                connectionTimeout(5000).timeout(30000).send();
+        response.charset("UTF-8");
+        if (200 != response.statusCode()) {
+            throw new IllegalStateException("ES bulk response [status=" + response.statusCode() + "]");
+        }
+
+        final Set<String> ret = new HashSet<>();
+        final JSONObject result = new JSONObject(response.bodyText());
+        if (!result.optBoolean("errors")) {
+            return ret;
+        }
+
+        final JSONArray items = result.optJSONArray("items");
+        for (int i = 0; i < items.length(); i++) {
+            final JSONObject item = items.optJSONObject(i);
+            final String action = item.keys().next();
+            final JSONObject itemResult = item.optJSONObject(action);
+            final int status = itemResult.optInt("status");
+            if (300 > status || ("delete".equals(action) && 404 == status)) {
+                continue;
+            }
 
+            final String id = itemResult.optString("_id");
+            if (429 == status || 500 <= status) {
+                ret.add(id);
+            } else {
+                LOGGER.warn("Drops ES bulk item [id=" + id + ", status=" + status + ", error=" + itemResult.opt("error") + "]");
+            }
+        }
+
+        return ret;
+    }
+
+    /**
+     * Submits the specified operations via Algolia batch API.
+     *
+     * @param ops the specified operations
+     * @return ids of the operations which should be retried
+     * @throws Exception if the batch request failed on all hosts
+     */
+    private static Set<String> bulkAlgolia(final List<JSONObject> ops) throws Exception {
         final String appId = Symphonys.get("algolia.appId");
         final String index = Symphonys.get("algolia.index");
         final String key = Symphonys.get("algolia.adminKey");
 
-        while (retries <= maxRetries) {
-            String host = appId + "-" + retries + ".algolianet.com";
+        final JSONArray requests = new JSONArray();
+        for (final JSONObject op : ops) {
+            final JSONObject request = new JSONObject();
+            if (SearchIndexQueue.ACTION_REMOVE.equals(op.optString(SearchIndexQueue.OP_ACTION))) {
+                request.put("action", "deleteObject");
+                request.put("body", new JSONObject().put(ALGOLIA_OBJECT_ID, op.optString(SearchIndexQueue.OP_ID)));
+            } else {
+                request.put("action", "updateObject");
+                request.put("body", op.optJSONObject(SearchIndexQueue.OP_DOC));
+            }
+            requests.put(request);
+        }
+        final byte[] data = new JSONObject().put("requests", requests).toString().getBytes(StandardCharsets.UTF_8);
 
+        Exception lastException = null;
+        for (int retries = 1; retries <= 3; retries++) {
+            final String host = appId + "-" + retries + ".algolianet.com";
             try {
-                final String id = doc.optString(Keys.OBJECT_ID);
-                final HttpResponse response = HttpRequest.delete("https://" + host + "/1/indexes/" + index + "/" + id).
+                final HttpResponse response = HttpRequest.post("https://" + host + "/1/indexes/" + index + "/batch").
                         header("X-Algolia-API-Key", key).
-                        header("X-Algolia-Application-Id", appId).bodyText(doc.toString()).contentTypeJson().timeout(5000).send();
-                if (200 != response.statusCode()) {
-                    LOGGER.warn(response.toString());
+                        header("X-Algolia-Application-Id", appId).body(data, MimeTypes.MIME_APPLICATION_JSON).
+                        connectionTimeout(5000).timeout(30000).send();
+                response.charset("UTF-8");
+                final int status = response.statusCode();
+                if (200 == status) {
+                    return Collections.emptySet();
                 }
 
-                break;
+                if (400 <= status && 500 > status && 429 != status) {
+                    LOGGER.warn("Drops Algolia batch [status=" + status + ", size=" + ops.size() + ", body=" + response.bodyText() + "]");
+
+                    return Collections.emptySet();
+                }
+
+                lastException = new IllegalStateException("Algolia batch response [status=" + status + "]");
             } catch (final Exception e) {
-                LOGGER.log(Level.WARN, "Remove object failed", e);
+                lastException = e;
+            }
+        }
 
-                retries++;
-                if (retries > maxRetries) {
-                    LOGGER.log(Level.ERROR, "Remove object failed", e);
+        throw lastException;
+    }
+
+    /**
+     * Waits until the search index queues are drained to a bounded size.
+     *
+     * @throws InterruptedException if interrupted
+     */
+    private void awaitIndexQueues() throws InterruptedException {
+        final int limit = Symphonys.getInt("search.queue.batchSize") * 2;
+        while (true) {
+            synchronized (this) {
+                if ((null == esQueue || esQueue.size() < limit) && (null == algoliaQueue || algoliaQueue.size() < limit)) {
+                    return;
                 }
             }
+
+            Thread.sleep(500);
+        }
+    }
+
+    /**
+     * Gets the reindex filter of valid articles with ids greater than the specified id.
+     *
+     * @param lastId the specified id
+     * @return filter
+     */
+    private static Filter getReindexFilter(final String lastId) {
+        final List<Filter> filters = new ArrayList<>();
+        filters.add(new PropertyFilter(Keys.OBJECT_ID, FilterOperator.GREATER_THAN, lastId));
+        filters.add(new PropertyFilter(Article.ARTICLE_STATUS, FilterOperator.NOT_EQUAL, Article.ARTICLE_STATUS_C_INVALID));
+        filters.add(new CompositeFilter(CompositeFilterOperator.OR, Arrays.<Filter>asList(
+                new PropertyFilter(Article.ARTICLE_TYPE, FilterOperator.EQUAL, Article.ARTICLE_TYPE_C_NORMAL),
+                new PropertyFilter(Article.ARTICLE_TYPE, FilterOperator.EQUAL, Article.ARTICLE_TYPE_C_CITY_BROADCAST))));
+
+        return new CompositeFilter(CompositeFilterOperator.AND, filters);
+    }
+
+    /**
+     * Reads the reindex checkpoint.
+     *
+     * @return checkpoint, returns an empty object if not found
+     */
+    private static JSONObject readReindexProgress() {
+        final File file = new File(getQueueDir(), REINDEX_PROGRESS_FILE);
+        if (!file.exists()) {
+            return new JSONObject();
+        }
+
+        try {
+            return new JSONObject(FileUtils.readFileToString(file, StandardCharsets.UTF_8));
+        } catch (final Exception e) {
+            LOGGER.log(Level.ERROR, "Reads reindex progress failed", e);
+
+            return new JSONObject();
+        }
+    }
+
+    /**
+     * Writes the specified reindex checkpoint.
+     *
+     * @param progress the specified checkpoint
+     */
+    private static void writeReindexProgress(final JSONObject progress) {
+        try {
+            FileUtils.writeStringToFile(new File(getQueueDir(), REINDEX_PROGRESS_FILE), progress.toString(), StandardCharsets.UTF_8);
+        } catch (final IOException e) {
+            LOGGER.log(Level.ERROR, "Writes reindex progress failed", e);
+        }
+    }
+
+    /**
+     * Gets the ES index queue, creates and starts it if not exists.
+     *
+     * @return ES index queue
+     */
+    private synchronized SearchIndexQueue getESQueue() {
+        if (null == esQueue) {
+            esQueue = newQueue("es", ops -> bulkES(ES_SERVER, ops));
+        }
+
+        return esQueue;
+    }
+
+    /**
+     * Gets the Algolia index queue, creates and starts it if not exists.
+     *
+     * @return Algolia index queue
+     */
+    private synchronized SearchIndexQueue getAlgoliaQueue() {
+        if (null == algoliaQueue) {
+            algoliaQueue = newQueue("algolia", SearchMgmtService::bulkAlgolia);
         }
+
+        return algoliaQueue;
+    }
+
+    /**
+     * Creates and starts a search index queue with the specified name and sink.
+     *
+     * @param name the specified name
+     * @param sink the specified sink
+     * @return search index queue
+     */
+    private static SearchIndexQueue newQueue(final String name, final SearchIndexQueue.Sink sink) {
+        final SearchIndexQueue ret = new SearchIndexQueue(name, getQueueDir(), sink,
+                Symphonys.getInt("search.queue.batchSize"), Symphonys.getLong("search.queue.flushInterval"),
+                1000, Symphonys.getLong("search.queue.maxBackoff"), Symphonys.getInt("search.queue.maxPending"));
+        ret.start();
+
+        return ret;
+    }
+
+    /**
+     * Gets the search index queue directory.
+     *
+     * @return queue directory
+     */
+    private static File getQueueDir() {
+        return new File(Symphonys.get("search.queue.dir"));
     }
 }
@@ -44,7 +44,7 @@ import java.util.regex.Pattern;
  *
  * @author <a href="http://88250.b3log.org">Liang Ding</a>
  * @author <a href="http://vanessa.b3log.org">Liyuan Li</a>
- * @version 1.2.3.0, Sep 30, 2018
+ * @version 1.2.4.0, Oct 25, 2018
  * @since 1.3.0
  */
 @Service
@@ -82,6 +82,18 @@ public class ShortLinkQueryService {
     @Inject
     private TagRepository tagRepository;
 
+    /**
+     * Processes article short links and then tag short links.
+     *
+     * @param content the specified content
+     * @return processed content
+     * @see #linkArticle(String)
+     * @see #linkTag(String)
+     */
+    public String link(final String content) {
+        return linkTag(linkArticle(content));
+    }
+
     /**
      * Processes article short link (article id).
      *
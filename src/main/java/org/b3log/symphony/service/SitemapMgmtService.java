@@ -0,0 +1,437 @@
+/*
+ * Symphony - A modern community (forum/BBS/SNS/blog) platform written in Java.
+ * Copyright (C) 2012-2018, b3log.org & hacpai.com
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.b3log.symphony.service;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang.time.DateFormatUtils;
+import org.b3log.latke.Keys;
+import org.b3log.latke.Latkes;
+import org.b3log.latke.ioc.Inject;
+import org.b3log.latke.logging.Level;
+import org.b3log.latke.logging.Logger;
+import org.b3log.latke.repository.*;
+import org.b3log.latke.repository.jdbc.JdbcRepository;
+import org.b3log.latke.service.annotation.Service;
+import org.b3log.latke.util.CollectionUtils;
+import org.b3log.symphony.model.Article;
+import org.b3log.symphony.model.sitemap.Sitemap;
+import org.b3log.symphony.model.sitemap.SitemapIndex;
+import org.b3log.symphony.repository.ArticleRepository;
+import org.b3log.symphony.util.Symphonys;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Sitemap management service.
+ * <p>
+ * Articles are split by id into shards of at most {@link SitemapIndex#MAX_URL_CNT} URLs, each shard is streamed to a
+ * gzipped file under {@code sitemap.dir} and listed by the sitemap index {@code sitemap.xml}. The max update time read
+ * by a refresh, held back by {@link #SAFETY_LAG}, is persisted as a high-water mark, so a refresh only regenerates the
+ * shards containing articles updated since then, including ones committed late with an earlier update time.
+ * </p>
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.1.0.0, Oct 25, 2018
+ * @since 3.4.3
+ */
+@Service
+public class SitemapMgmtService {
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOGGER = Logger.getLogger(SitemapMgmtService.class);
+
+    /**
+     * Sitemap index file name.
+     */
+    public static final String INDEX_FILE = "sitemap.xml";
+
+    /**
+     * Main (index and domains) sitemap file name.
+     */
+    public static final String MAIN_FILE = "main.xml.gz";
+
+    /**
+     * Article shard file name prefix.
+     */
+    public static final String ARTICLES_FILE_PREFIX = "articles-";
+
+    /**
+     * Article shard file name suffix.
+     */
+    public static final String ARTICLES_FILE_SUFFIX = ".xml.gz";
+
+    /**
+     * State file name.
+     */
+    private static final String STATE_FILE = "sitemap.json";
+
+    /**
+     * Key of high-water mark.
+     */
+    private static final String STATE_HIGH_WATER_MARK = "highWaterMark";
+
+    /**
+     * Key of shards.
+     */
+    private static final String STATE_SHARDS = "shards";
+
+    /**
+     * Key of shard start id (inclusive).
+     */
+    private static final String SHARD_FROM = "from";
+
+    /**
+     * Key of shard URL count.
+     */
+    private static final String SHARD_COUNT = "count";
+
+    /**
+     * Key of shard last modified time.
+     */
+    private static final String SHARD_LAST_MODIFIED = "lastModified";
+
+    /**
+     * Page size of article queries.
+     */
+    private static final int PAGE_SIZE = 1000;
+
+    /**
+     * Max time in milliseconds between the update time of an article and the commit of its transaction.
+     */
+    static final long SAFETY_LAG = 60 * 1000;
+
+    /**
+     * Sitemap directory.
+     */
+    private static final File SITEMAP_DIR = new File(Symphonys.get("sitemap.dir"));
+
+    /**
+     * Article repository.
+     */
+    @Inject
+    private ArticleRepository articleRepository;
+
+    /**
+     * Sitemap query service.
+     */
+    @Inject
+    private SitemapQueryService sitemapQueryService;
+
+    /**
+     * Whether a background refresh is submitted.
+     */
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+
+    /**
+     * Gets the sitemap file with the specified name.
+     *
+     * @param name the specified name
+     * @return sitemap file
+     */
+    public static File getSitemapFile(final String name) {
+        return new File(SITEMAP_DIR, name);
+    }
+
+    /**
+     * Refreshes the sitemap in background if no background refresh is submitted.
+     */
+    public void refreshSitemapAsync() {
+        if (!refreshing.compareAndSet(false, true)) {
+            return;
+        }
+
+        Symphonys.EXECUTOR_SERVICE.submit(() -> {
+            try {
+                refreshSitemap();
+            } finally {
+                refreshing.set(false);
+                JdbcRepository.dispose();
+            }
+        });
+    }
+
+    /**
+     * Refreshes the sitemap. Regenerates the main sitemap and the sitemap index, and the article shards containing
+     * articles updated since the last refresh.
+     */
+    public synchronized void refreshSitemap() {
+        try {
+            SITEMAP_DIR.mkdirs();
+            final JSONObject state = readState();
+            final long highWaterMark = state.optLong(STATE_HIGH_WATER_MARK);
+            final List<JSONObject> shards = CollectionUtils.jsonArrayToList(state.optJSONArray(STATE_SHARDS));
+            final long now = System.currentTimeMillis();
+            long maxRead = 0;
+            final Set<String> dirty = new HashSet<>();
+            if (shards.isEmpty()) {
+                final JSONObject shard = new JSONObject();
+                shard.put(SHARD_FROM, 0L);
+                shards.add(shard);
+                dirty.add("0");
+            }
+
+            final long[] froms = new long[shards.size()];
+            for (int i = 0; i < froms.length; i++) {
+                froms[i] = shards.get(i).optLong(SHARD_FROM);
+            }
+
+            int pageNum = 1;
+            while (true) {
+                final Query query = new Query().setCurrentPageNum(pageNum).setPageSize(PAGE_SIZE).setPageCount(1).
+                        addProjection(Keys.OBJECT_ID, String.class).
+                        addProjection(Article.ARTICLE_UPDATE_TIME, Long.class).
+                        setFilter(new PropertyFilter(Article.ARTICLE_UPDATE_TIME, FilterOperator.GREATER_THAN, highWaterMark)).
+                        addSort(Keys.OBJECT_ID, SortDirection.ASCENDING);
+                final JSONArray articles = articleRepository.get(query).optJSONArray(Keys.RESULTS);
+                for (int i = 0; i < articles.length(); i++) {
+                    final JSONObject article = articles.optJSONObject(i);
+                    dirty.add(String.valueOf(froms[findShard(froms, article.optLong(Keys.OBJECT_ID))]));
+                    maxRead = Math.max(maxRead, article.optLong(Article.ARTICLE_UPDATE_TIME));
+                }
+
+                if (articles.length() < PAGE_SIZE) {
+                    break;
+                }
+                pageNum++;
+            }
+
+            for (int i = 0; i < shards.size(); i++) {
+                final JSONObject shard = shards.get(i);
+                if (!dirty.contains(shard.optString(SHARD_FROM))) {
+                    continue;
+                }
+
+                final long to = i + 1 < shards.size() ? shards.get(i + 1).optLong(SHARD_FROM) : Long.MAX_VALUE;
+                final long next = genArticles(i, shard, to);
+                if (0 < next) {
+                    final JSONObject split = new JSONObject();
+                    split.put(SHARD_FROM, next);
+                    shards.add(i + 1, split);
+                    for (int j = i + 1; j < shards.size(); j++) { // Files are named by index, shifts the following shards
+                        dirty.add(shards.get(j).optString(SHARD_FROM));
+                    }
+                }
+            }
+
+            genMain();
+            genIndex(shards);
+
+            state.put(STATE_HIGH_WATER_MARK, nextHighWaterMark(highWaterMark, maxRead, now));
+            state.put(STATE_SHARDS, new JSONArray(shards));
+            writeState(state);
+
+            LOGGER.log(Level.INFO, "Refreshed sitemap [shards=" + shards.size() + ", regenerated=" + dirty.size() + "]");
+        } catch (final Exception e) {
+            LOGGER.log(Level.ERROR, "Refreshes sitemap failed", e);
+        }
+    }
+
+    /**
+     * Gets the next high-water mark. It is the max update time read but not later than {@link #SAFETY_LAG} before
+     * now, so articles whose transactions are still in flight are scanned again by the next refresh.
+     *
+     * @param highWaterMark the current high-water mark
+     * @param maxRead       the max update time read, {@code 0} if nothing read
+     * @param now           the start time of the refresh
+     * @return next high-water mark, never less than the current one
+     */
+    static long nextHighWaterMark(final long highWaterMark, final long maxRead, final long now) {
+        final long limit = now - SAFETY_LAG;
+        final long ret = 0 < maxRead ? Math.min(maxRead, limit) : limit;
+
+        return Math.max(highWaterMark, ret);
+    }
+
+    /**
+     * Finds the index of the shard containing the specified article id.
+     *
+     * @param froms the start ids of shards, ascending
+     * @param id    the specified article id
+     * @return shard index
+     */
+    static int findShard(final long[] froms, final long id) {
+        int low = 0;
+        int high = froms.length - 1;
+        while (low < high) {
+            final int mid = (low + high + 1) >>> 1;
+            if (froms[mid] <= id) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+
+        return low;
+    }
+
+    /**
+     * Generates the article shard with the specified index.
+     *
+     * @param index the specified index
+     * @param shard the specified shard, its count and last modified time will be updated
+     * @param to    the end id (exclusive) of the shard
+     * @return the start id of the overflowed articles which should be moved into a new shard, returns {@code 0} if
+     * not overflowed
+     * @throws Exception exception
+     */
+    private long genArticles(final int index, final JSONObject shard, final long to) throws Exception {
+        final File file = getSitemapFile(ARTICLES_FILE_PREFIX + index + ARTICLES_FILE_SUFFIX);
+        final File tmp = new File(SITEMAP_DIR, file.getName() + ".tmp");
+        int count = 0;
+        long lastModified = 0;
+        long next = 0;
+        String lastId = String.valueOf(shard.optLong(SHARD_FROM) - 1);
+        try (final Writer writer = new BufferedWriter(new OutputStreamWriter(new GZIPOutputStream(new FileOutputStream(tmp)), StandardCharsets.UTF_8))) {
+            Sitemap.writeStart(writer);
+
+            outer:
+            while (true) {
+                final List<Filter> filters = new ArrayList<>();
+                filters.add(new PropertyFilter(Keys.OBJECT_ID, FilterOperator.GREATER_THAN, lastId));
+                if (Long.MAX_VALUE != to) {
+                    filters.add(new PropertyFilter(Keys.OBJECT_ID, FilterOperator.LESS_THAN, String.valueOf(to)));
+                }
+                filters.add(new PropertyFilter(Article.ARTICLE_STATUS, FilterOperator.NOT_EQUAL, Article.ARTICLE_STATUS_C_INVALID));
+                final Query query = new Query().setCurrentPageNum(1).setPageSize(PAGE_SIZE).setPageCount(1).
+                        addProjection(Keys.OBJECT_ID, String.class).
+                        addProjection(Article.ARTICLE_UPDATE_TIME, Long.class).
+                        setFilter(new CompositeFilter(CompositeFilterOperator.AND, filters)).
+                        addSort(Keys.OBJECT_ID, SortDirection.ASCENDING);
+                final JSONArray articles = articleRepository.get(query).optJSONArray(Keys.RESULTS);
+                for (int i = 0; i < articles.length(); i++) {
+                    final JSONObject article = articles.optJSONObject(i);
+                    final String id = article.optString(Keys.OBJECT_ID);
+                    if (SitemapIndex.MAX_URL_CNT <= count) {
+                        next = Long.parseLong(id);
+
+                        break outer;
+                    }
+
+                    final long updateTime = article.optLong(Article.ARTICLE_UPDATE_TIME);
+                    final Sitemap.URL url = new Sitemap.URL();
+                    url.setLoc(Latkes.getServePath() + "/article/" + id);
+                    url.setLastMod(DateFormatUtils.ISO_DATETIME_TIME_ZONE_FORMAT.format(updateTime));
+                    writer.write(url.toString());
+
+                    count++;
+                    lastModified = Math.max(lastModified, updateTime);
+                    lastId = id;
+                }
+
+                if (articles.length() < PAGE_SIZE) {
+                    break;
+                }
+            }
+
+            Sitemap.writeEnd(writer);
+        } catch (final Exception e) {
+            tmp.delete();
+
+            throw e;
+        }
+
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        shard.put(SHARD_COUNT, count);
+        shard.put(SHARD_LAST_MODIFIED, lastModified);
+
+        return next;
+    }
+
+    /**
+     * Generates the main sitemap.
+     *
+     * @throws IOException io exception
+     */
+    private void genMain() throws IOException {
+        final Sitemap sitemap = new Sitemap();
+        sitemapQueryService.genIndex(sitemap);
+        sitemapQueryService.genDomains(sitemap);
+
+        final File file = getSitemapFile(MAIN_FILE);
+        final File tmp = new File(SITEMAP_DIR, file.getName() + ".tmp");
+        try (final Writer writer = new OutputStreamWriter(new GZIPOutputStream(new FileOutputStream(tmp)), StandardCharsets.UTF_8)) {
+            writer.write(sitemap.toString());
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Generates the sitemap index with the specified shards.
+     *
+     * @param shards the specified shards
+     * @throws IOException io exception
+     */
+    private void genIndex(final List<JSONObject> shards) throws IOException {
+        final String sitemapPath = Latkes.getServePath() + "/sitemap/";
+        final SitemapIndex sitemapIndex = new SitemapIndex();
+        sitemapIndex.addSitemap(sitemapPath + MAIN_FILE, null);
+        for (int i = 0; i < shards.size(); i++) {
+            final long lastModified = shards.get(i).optLong(SHARD_LAST_MODIFIED);
+            sitemapIndex.addSitemap(sitemapPath + ARTICLES_FILE_PREFIX + i + ARTICLES_FILE_SUFFIX,
+                    0 < lastModified ? DateFormatUtils.ISO_DATETIME_TIME_ZONE_FORMAT.format(lastModified) : null);
+        }
+
+        final File file = getSitemapFile(INDEX_FILE);
+        final File tmp = new File(SITEMAP_DIR, file.getName() + ".tmp");
+        FileUtils.writeStringToFile(tmp, sitemapIndex.toString(), StandardCharsets.UTF_8);
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads the state.
+     *
+     * @return state, returns an empty object if not found
+     */
+    private static JSONObject readState() {
+        final File file = getSitemapFile(STATE_FILE);
+        if (!file.exists()) {
+            return new JSONObject();
+        }
+
+        try {
+            return new JSONObject(FileUtils.readFileToString(file, StandardCharsets.UTF_8));
+        } catch (final Exception e) {
+            LOGGER.log(Level.ERROR, "Reads sitemap state failed, regenerates all shards", e);
+
+            return new JSONObject();
+        }
+    }
+
+    /**
+     * Writes the specified state.
+     *
+     * @param state the specified state
+     * @throws IOException io exception
+     */
+    private static void writeState(final JSONObject state) throws IOException {
+        final File file = getSitemapFile(STATE_FILE);
+        final File tmp = new File(SITEMAP_DIR, file.getName() + ".tmp");
+        FileUtils.writeStringToFile(tmp, state.toString(), StandardCharsets.UTF_8);
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
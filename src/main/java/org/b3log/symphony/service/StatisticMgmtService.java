@@ -0,0 +1,222 @@
+/*
+ * Symphony - A modern community (forum/BBS/SNS/blog) platform written in Java.
+ * Copyright (C) 2012-2018, b3log.org & hacpai.com
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.b3log.symphony.service;
+
+import org.apache.commons.lang.time.DateFormatUtils;
+import org.apache.commons.lang.time.DateUtils;
+import org.b3log.latke.Keys;
+import org.b3log.latke.ioc.Inject;
+import org.b3log.latke.logging.Level;
+import org.b3log.latke.logging.Logger;
+import org.b3log.latke.repository.Transaction;
+import org.b3log.latke.repository.jdbc.JdbcRepository;
+import org.b3log.latke.service.ServiceException;
+import org.b3log.latke.service.annotation.Service;
+import org.b3log.latke.util.Times;
+import org.b3log.symphony.model.StatisticDaily;
+import org.b3log.symphony.repository.StatisticDailyRepository;
+import org.json.JSONObject;
+
+import java.util.Date;
+
+/**
+ * Daily statistic management service.
+ * <p>
+ * Counters of the daily statistic rollup are bumped atomically in the database as users, articles and comments are
+ * created, and the counts of a past day are reconciled against the source tables once the day is over.
+ * </p>
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.1.0.0, Oct 25, 2018
+ * @since 3.4.3
+ */
+@Service
+public class StatisticMgmtService {
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOGGER = Logger.getLogger(StatisticMgmtService.class);
+
+    /**
+     * Daily statistic repository.
+     */
+    @Inject
+    private StatisticDailyRepository statisticDailyRepository;
+
+    /**
+     * User query service.
+     */
+    @Inject
+    private UserQueryService userQueryService;
+
+    /**
+     * Article query service.
+     */
+    @Inject
+    private ArticleQueryService articleQueryService;
+
+    /**
+     * Comment query service.
+     */
+    @Inject
+    private CommentQueryService commentQueryService;
+
+    /**
+     * The last reconciled day, formatted as {@code yyyyMMdd}.
+     */
+    private volatile String reconciledDay;
+
+    /**
+     * Whether a backfill is running.
+     */
+    private volatile boolean backfilling;
+
+    /**
+     * Increments a counter of the daily statistic of the specified time.
+     *
+     * @param field the specified counter field, for example {@value StatisticDaily#STATISTIC_DAILY_ARTICLE_CNT}
+     * @param time  the specified time, for example the creation time of an article
+     */
+    public void incDaily(final String field, final long time) {
+        final String date = DateFormatUtils.format(time, StatisticDaily.DATE_FORMAT);
+        try {
+            statisticDailyRepository.inc(date, field);
+        } catch (final Exception e) {
+            LOGGER.log(Level.ERROR, "Increments daily statistic [" + date + "] field [" + field + "] failed", e);
+        }
+    }
+
+    /**
+     * Reconciles the daily statistic of yesterday if it has not been reconciled yet.
+     */
+    public void reconcileYesterday() {
+        final Date yesterday = DateUtils.addDays(new Date(), -1);
+        final String date = DateFormatUtils.format(yesterday, StatisticDaily.DATE_FORMAT);
+        if (date.equals(reconciledDay)) {
+            return;
+        }
+
+        if (reconcile(yesterday)) {
+            reconciledDay = date;
+        }
+    }
+
+    /**
+     * Backfills the daily statistics from the creation day of the first admin to yesterday in background, used to
+     * build the rollup for an existing installation. Days failed to count are skipped.
+     *
+     * @return {@code true} if started, returns {@code false} if a backfill is already running
+     */
+    public synchronized boolean backfill() {
+        if (backfilling) {
+            return false;
+        }
+        backfilling = true;
+
+        new Thread(() -> {
+            try {
+                final JSONObject firstAdmin = userQueryService.getAdmins().get(0);
+                final long today = Times.getDayStartTime(System.currentTimeMillis());
+                Date day = new Date(Times.getDayStartTime(firstAdmin.optLong(Keys.OBJECT_ID)));
+                int cnt = 0;
+                int failedCnt = 0;
+                while (day.getTime() < today) {
+                    if (!reconcile(day)) {
+                        failedCnt++;
+                    }
+                    day = DateUtils.addDays(day, 1);
+                    cnt++;
+                }
+
+                LOGGER.info("Backfilled daily statistics [days=" + cnt + ", failed=" + failedCnt + "]");
+            } catch (final Exception e) {
+                LOGGER.log(Level.ERROR, "Backfills daily statistics failed", e);
+            } finally {
+                backfilling = false;
+                JdbcRepository.dispose();
+            }
+        }).start();
+
+        return true;
+    }
+
+    /**
+     * Recounts the daily statistic of the specified day from the source tables. Keeps the daily statistic unchanged
+     * if counting failed.
+     *
+     * @param day the specified day
+     * @return {@code true} if succeeded, returns {@code false} otherwise
+     */
+    private synchronized boolean reconcile(final Date day) {
+        final String date = DateFormatUtils.format(day, StatisticDaily.DATE_FORMAT);
+        final int userCnt;
+        final int articleCnt;
+        final int commentCnt;
+        try {
+            userCnt = userQueryService.getUserCntInDay(day);
+            articleCnt = articleQueryService.getArticleCntInDay(day);
+            commentCnt = commentQueryService.getCommentCntInDay(day);
+        } catch (final ServiceException e) {
+            LOGGER.log(Level.ERROR, "Counts daily statistic [" + date + "] failed, skips it", e);
+
+            return false;
+        }
+
+        final Transaction transaction = statisticDailyRepository.beginTransaction();
+        try {
+            final JSONObject daily = newDaily(date);
+            daily.put(StatisticDaily.STATISTIC_DAILY_USER_CNT, userCnt);
+            daily.put(StatisticDaily.STATISTIC_DAILY_ARTICLE_CNT, articleCnt);
+            daily.put(StatisticDaily.STATISTIC_DAILY_COMMENT_CNT, commentCnt);
+            if (null == statisticDailyRepository.get(date)) {
+                statisticDailyRepository.add(daily);
+            } else {
+                statisticDailyRepository.update(date, daily);
+            }
+
+            transaction.commit();
+
+            return true;
+        } catch (final Exception e) {
+            if (transaction.isActive()) {
+                transaction.rollback();
+            }
+
+            LOGGER.log(Level.ERROR, "Reconciles daily statistic [" + date + "] failed", e);
+
+            return false;
+        }
+    }
+
+    /**
+     * Creates a daily statistic with zero counts.
+     *
+     * @param date the specified date, formatted as {@code yyyyMMdd}
+     * @return daily statistic
+     */
+    private static JSONObject newDaily(final String date) {
+        final JSONObject ret = new JSONObject();
+        ret.put(Keys.OBJECT_ID, date);
+        ret.put(StatisticDaily.STATISTIC_DAILY_USER_CNT, 0);
+        ret.put(StatisticDaily.STATISTIC_DAILY_ARTICLE_CNT, 0);
+        ret.put(StatisticDaily.STATISTIC_DAILY_COMMENT_CNT, 0);
+
+        return ret;
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Symphony - A modern community (forum/BBS/SNS/blog) platform written in Java.
+ * Copyright (C) 2012-2018, b3log.org & hacpai.com
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.b3log.symphony.service;
+
+import org.apache.commons.lang.time.DateFormatUtils;
+import org.apache.commons.lang.time.DateUtils;
+import org.b3log.latke.Keys;
+import org.b3log.latke.ioc.Inject;
+import org.b3log.latke.logging.Level;
+import org.b3log.latke.logging.Logger;
+import org.b3log.latke.repository.RepositoryException;
+import org.b3log.latke.service.annotation.Service;
+import org.b3log.symphony.model.StatisticDaily;
+import org.b3log.symphony.repository.StatisticDailyRepository;
+import org.json.JSONObject;
+
+import java.util.*;
+
+/**
+ * Daily statistic query service.
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.0.0, Oct 25, 2018
+ * @since 3.4.3
+ */
+@Service
+public class StatisticQueryService {
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOGGER = Logger.getLogger(StatisticQueryService.class);
+
+    /**
+     * Daily statistic repository.
+     */
+    @Inject
+    private StatisticDailyRepository statisticDailyRepository;
+
+    /**
+     * Gets the daily statistics between the specified days, days without statistic are filled with zero counts.
+     *
+     * @param start the specified start day (inclusive)
+     * @param end   the specified end day (inclusive)
+     * @return daily statistics ordered by date, the id of each is formatted as {@code yyyy-MM-dd}
+     */
+    public List<JSONObject> getDailyStatistics(final Date start, final Date end) {
+        final Map<String, JSONObject> dailies = getDailies(start, end);
+        final List<JSONObject> ret = new ArrayList<>();
+        for (Date day = start; !DateUtils.truncate(day, Calendar.DATE).after(end); day = DateUtils.addDays(day, 1)) {
+            final JSONObject daily = dailies.get(DateFormatUtils.format(day, StatisticDaily.DATE_FORMAT));
+            ret.add(newStatistic(DateFormatUtils.format(day, "yyyy-MM-dd"), daily));
+        }
+
+        return ret;
+    }
+
+    /**
+     * Gets the monthly statistics between the specified months, summed up from the daily statistics.
+     *
+     * @param start the specified start month (inclusive)
+     * @param end   the specified end month (inclusive)
+     * @return monthly statistics ordered by month, the id of each is formatted as {@code yyyy-MM}
+     */
+    public List<JSONObject> getMonthlyStatistics(final Date start, final Date end) {
+        final Date monthStart = DateUtils.truncate(start, Calendar.MONTH);
+        final Date monthEnd = DateUtils.addDays(DateUtils.addMonths(DateUtils.truncate(end, Calendar.MONTH), 1), -1);
+        final Map<String, JSONObject> dailies = getDailies(monthStart, monthEnd);
+
+        final Map<String, JSONObject> months = new LinkedHashMap<>();
+        for (Date month = monthStart; !month.after(monthEnd); month = DateUtils.addMonths(month, 1)) {
+            final String id = DateFormatUtils.format(month, "yyyy-MM");
+            months.put(id, newStatistic(id, null));
+        }
+
+        for (final JSONObject daily : dailies.values()) {
+            final String date = daily.optString(Keys.OBJECT_ID);
+            final JSONObject month = months.get(date.substring(0, 4) + "-" + date.substring(4, 6));
+            if (null == month) {
+                continue;
+            }
+
+            add(month, daily, StatisticDaily.STATISTIC_DAILY_USER_CNT);
+            add(month, daily, StatisticDaily.STATISTIC_DAILY_ARTICLE_CNT);
+            add(month, daily, StatisticDaily.STATISTIC_DAILY_COMMENT_CNT);
+        }
+
+        return new ArrayList<>(months.values());
+    }
+
+    /**
+     * Gets the daily statistics between the specified days.
+     *
+     * @param start the specified start day (inclusive)
+     * @param end   the specified end day (inclusive)
+     * @return daily statistics, &lt;yyyyMMdd, daily statistic&gt;
+     */
+    private Map<String, JSONObject> getDailies(final Date start, final Date end) {
+        final Map<String, JSONObject> ret = new HashMap<>();
+        try {
+            final List<JSONObject> dailies = statisticDailyRepository.getRange(
+                    DateFormatUtils.format(start, StatisticDaily.DATE_FORMAT), DateFormatUtils.format(end, StatisticDaily.DATE_FORMAT));
+            for (final JSONObject daily : dailies) {
+                ret.put(daily.optString(Keys.OBJECT_ID), daily);
+            }
+        } catch (final RepositoryException e) {
+            LOGGER.log(Level.ERROR, "Gets daily statistics failed", e);
+        }
+
+        return ret;
+    }
+
+    /**
+     * Creates a statistic with the specified id and counts.
+     *
+     * @param id     the specified id
+     * @param counts the specified counts, {@code null} for zero counts
+     * @return statistic
+     */
+    private static JSONObject newStatistic(final String id, final JSONObject counts) {
+        final JSONObject ret = new JSONObject();
+        ret.put(Keys.OBJECT_ID, id);
+        ret.put(StatisticDaily.STATISTIC_DAILY_USER_CNT, null == counts ? 0 : counts.optInt(StatisticDaily.STATISTIC_DAILY_USER_CNT));
+        ret.put(StatisticDaily.STATISTIC_DAILY_ARTICLE_CNT, null == counts ? 0 : counts.optInt(StatisticDaily.STATISTIC_DAILY_ARTICLE_CNT));
+        ret.put(StatisticDaily.STATISTIC_DAILY_COMMENT_CNT, null == counts ? 0 : counts.optInt(StatisticDaily.STATISTIC_DAILY_COMMENT_CNT));
+
+        return ret;
+    }
+
+    /**
+     * Adds the specified field of the specified daily statistic to the specified statistic.
+     *
+     * @param statistic the specified statistic
+     * @param daily     the specified daily statistic
+     * @param field     the specified field
+     */
+    private static void add(final JSONObject statistic, final JSONObject daily, final String field) {
+        statistic.put(field, statistic.optInt(field) + daily.optInt(field));
+    }
+}
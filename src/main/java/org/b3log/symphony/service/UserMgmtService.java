@@ -37,6 +37,8 @@ import org.b3log.latke.service.ServiceException;
 import org.b3log.latke.service.annotation.Service;
 import org.b3log.latke.util.Ids;
 import org.b3log.latke.util.URLs;
+import org.b3log.symphony.cache.LeaderboardCache;
+import org.b3log.symphony.cache.NavSummaryCache;
 import org.b3log.symphony.model.*;
 import org.b3log.symphony.processor.advice.validate.UserRegisterValidation;
 import org.b3log.symphony.repository.*;
@@ -60,7 +62,7 @@ import java.util.regex.Pattern;
  *
  * @author <a href="http://88250.b3log.org">Liang Ding</a>
  * @author Bill Ho
- * @version 1.16.0.5, Sep 26, 2018
+ * @version 1.16.4.0, Oct 25, 2018
  * @since 0.2.0
  */
 @Service
@@ -113,6 +115,24 @@ public class UserMgmtService {
     @Inject
     private LangPropsService langPropsService;
 
+    /**
+     * Daily statistic management service.
+     */
+    @Inject
+    private StatisticMgmtService statisticMgmtService;
+
+    /**
+     * Leaderboard cache.
+     */
+    @Inject
+    private LeaderboardCache leaderboardCache;
+
+    /**
+     * Navigation summary cache.
+     */
+    @Inject
+    private NavSummaryCache navSummaryCache;
+
     /**
      * Pointtransfer management service.
      */
@@ -522,6 +542,8 @@ public class UserMgmtService {
             transaction.commit();
 
             if (UserExt.USER_STATUS_C_VALID == status) {
+                statisticMgmtService.incDaily(StatisticDaily.STATISTIC_DAILY_USER_CNT, Long.parseLong(ret));
+
                 // Point
                 pointtransferMgmtService.transfer(Pointtransfer.ID_C_SYS, ret,
                         Pointtransfer.TRANSFER_TYPE_C_INIT, Pointtransfer.TRANSFER_SUM_C_INIT, ret, System.currentTimeMillis(), "");
@@ -604,6 +626,9 @@ public class UserMgmtService {
             userRepository.remove(userId);
 
             transaction.commit();
+
+            leaderboardCache.removeUser(userId);
+            navSummaryCache.invalidate(userId);
         } catch (final RepositoryException e) {
             if (transaction.isActive()) {
                 transaction.rollback();
@@ -633,6 +658,9 @@ public class UserMgmtService {
 
             transaction.commit();
 
+            leaderboardCache.putUser(userId, user);
+            navSummaryCache.invalidate(userId);
+
             if (!oldRoleId.equals(newRoleId)) {
                 final JSONObject notification = new JSONObject();
                 notification.put(Notification.NOTIFICATION_USER_ID, userId);
@@ -49,7 +49,7 @@ import java.util.*;
  *
  * @author <a href="http://88250.b3log.org">Liang Ding</a>
  * @author <a href="http://zephyr.b3log.org">Zephyr</a>
- * @version 1.8.7.1, Jal 28, 2018
+ * @version 1.8.8.1, Oct 25, 2018
  * @since 0.2.0
  */
 @Service
@@ -226,8 +226,9 @@ public class UserQueryService {
      *
      * @param day the specified day
      * @return user count
+     * @throws ServiceException service exception
      */
-    public int getUserCntInDay(final Date day) {
+    public int getUserCntInDay(final Date day) throws ServiceException {
         final long time = day.getTime();
         final long start = Times.getDayStartTime(time);
         final long end = Times.getDayEndTime(time);
@@ -243,7 +244,7 @@ public class UserQueryService {
         } catch (final RepositoryException e) {
             LOGGER.log(Level.ERROR, "Count day user failed", e);
 
-            return 1;
+            throw new ServiceException(e);
         }
     }
 
@@ -714,6 +715,39 @@ public class UserQueryService {
         }
     }
 
+    /**
+     * Gets users by the specified user ids with one query.
+     *
+     * @param userIds the specified user ids
+     * @return users in the order of the specified user ids, users not found are skipped
+     */
+    public List<JSONObject> getUsersByIds(final List<String> userIds) {
+        final List<JSONObject> ret = new ArrayList<>();
+        if (userIds.isEmpty()) {
+            return ret;
+        }
+
+        final Query query = new Query().setFilter(new PropertyFilter(Keys.OBJECT_ID, FilterOperator.IN, userIds)).
+                setPageCount(1).setPageSize(userIds.size());
+        try {
+            final Map<String, JSONObject> users = new HashMap<>();
+            for (final JSONObject user : userRepository.getList(query)) {
+                users.put(user.optString(Keys.OBJECT_ID), user);
+            }
+
+            for (final String userId : userIds) {
+                final JSONObject user = users.get(userId);
+                if (null != user) {
+                    ret.add(user);
+                }
+            }
+        } catch (final RepositoryException e) {
+            LOGGER.log(Level.ERROR, "Gets users failed", e);
+        }
+
+        return ret;
+    }
+
     /**
      * Gets the URL of user logout.
      *
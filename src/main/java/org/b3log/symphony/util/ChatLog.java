@@ -0,0 +1,419 @@
+/*
+ * Symphony - A modern community (forum/BBS/SNS/blog) platform written in Java.
+ * Copyright (C) 2012-2018, b3log.org & hacpai.com
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.b3log.symphony.util;
+
+import org.b3log.latke.Keys;
+import org.b3log.latke.logging.Level;
+import org.b3log.latke.logging.Logger;
+import org.json.JSONObject;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.zip.CRC32;
+
+/**
+ * Chat log, an append-only log of chat messages stored in segment files.
+ * <p>
+ * Each message is assigned an increasing sequence number (starts from {@code 1}) which is put into the message as
+ * {@value Keys#OBJECT_ID}. A segment file is named by the sequence number of its first message and holds records of
+ * {@code [length][CRC32][UTF-8 JSON]}. Each append is forced to the disk before it returns. On open, the tail of the
+ * last segment is scanned and truncated at the first torn or corrupted record, so a crash while appending loses at
+ * most the message being written.
+ * </p>
+ * <p>
+ * The latest messages are kept in a fixed-size ring. Appends are serialized, reads of the ring are lock-free: a reader
+ * validates the sequence number of each slot and stops at a slot overwritten by a concurrent append. Older messages
+ * are read from the segment files. Segments are deleted from the oldest when the log exceeds the retention size or a
+ * segment is older than the retention age, the active segment is never deleted.
+ * </p>
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.1.0, Oct 25, 2018
+ * @since 3.4.3
+ */
+public class ChatLog implements Closeable {
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOGGER = Logger.getLogger(ChatLog.class);
+
+    /**
+     * Segment file suffix.
+     */
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    /**
+     * Record header size, length and CRC32.
+     */
+    private static final int HEADER_SIZE = 8;
+
+    /**
+     * Max record payload size.
+     */
+    private static final int MAX_RECORD_SIZE = 1024 * 1024;
+
+    /**
+     * Log directory.
+     */
+    private final File dir;
+
+    /**
+     * Max size in bytes of a segment.
+     */
+    private final long segmentSize;
+
+    /**
+     * Max size in bytes of all segments.
+     */
+    private final long retentionSize;
+
+    /**
+     * Max age in milliseconds of a segment.
+     */
+    private final long retentionAge;
+
+    /**
+     * Ring of the latest messages, slot is [sequence number, message].
+     */
+    private final AtomicReferenceArray<Object[]> ring;
+
+    /**
+     * Segment files by the sequence number of their first message.
+     */
+    private final ConcurrentNavigableMap<Long, File> segments = new ConcurrentSkipListMap<>();
+
+    /**
+     * Sequence number of the latest message, {@code 0} if empty.
+     */
+    private volatile long lastSeq;
+
+    /**
+     * Active segment channel.
+     */
+    private FileChannel active;
+
+    /**
+     * Size in bytes of the active segment.
+     */
+    private long activeSize;
+
+    /**
+     * Opens a chat log in the specified directory, recovers the tail and loads the latest messages.
+     *
+     * @param dir           the specified directory
+     * @param ringSize      the specified count of the latest messages kept in memory, should be positive
+     * @param segmentSize   the specified max size in bytes of a segment
+     * @param retentionSize the specified max size in bytes of all segments
+     * @param retentionAge  the specified max age in milliseconds of a segment
+     * @throws IOException io exception
+     */
+    public ChatLog(final File dir, final int ringSize, final long segmentSize, final long retentionSize,
+                   final long retentionAge) throws IOException {
+        if (1 > ringSize) {
+            throw new IllegalArgumentException("Chat log ring size should be positive [" + ringSize + "]");
+        }
+
+        this.dir = dir;
+        this.segmentSize = segmentSize;
+        this.retentionSize = retentionSize;
+        this.retentionAge = retentionAge;
+        ring = new AtomicReferenceArray<>(ringSize);
+
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Creates chat log dir [" + dir + "] failed");
+        }
+
+        final File[] files = dir.listFiles((d, name) -> name.endsWith(SEGMENT_SUFFIX));
+        if (null != files) {
+            for (final File file : files) {
+                try {
+                    segments.put(Long.parseLong(file.getName().substring(0, file.getName().length() - SEGMENT_SUFFIX.length())), file);
+                } catch (final NumberFormatException e) {
+                    LOGGER.warn("Skips unknown file [" + file + "] in chat log dir");
+                }
+            }
+        }
+
+        if (segments.isEmpty()) {
+            segments.put(1L, segmentFile(1));
+        }
+
+        final Map.Entry<Long, File> last = segments.lastEntry();
+        final long validSize = recover(last.getValue());
+        active = FileChannel.open(last.getValue().toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        active.truncate(validSize);
+        active.position(validSize);
+        activeSize = validSize;
+
+        for (final JSONObject msg : read(Math.max(1, lastSeq - ringSize + 1), lastSeq)) {
+            final long seq = msg.optLong(Keys.OBJECT_ID);
+            ring.set(slot(seq), new Object[]{seq, msg});
+        }
+    }
+
+    /**
+     * Appends the specified message, puts the assigned sequence number into it.
+     *
+     * @param msg the specified message, should not be modified after appended
+     * @return sequence number
+     * @throws IOException io exception
+     */
+    public synchronized long append(final JSONObject msg) throws IOException {
+        final long seq = lastSeq + 1;
+        msg.put(Keys.OBJECT_ID, String.valueOf(seq));
+        final byte[] payload = msg.toString().getBytes(StandardCharsets.UTF_8);
+        if (payload.length > MAX_RECORD_SIZE) {
+            throw new IOException("Chat message is too large [" + payload.length + "]");
+        }
+
+        if (0 < activeSize && activeSize + HEADER_SIZE + payload.length > segmentSize) {
+            roll(seq);
+        }
+
+        final CRC32 crc = new CRC32();
+        crc.update(payload);
+        final ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + payload.length);
+        buffer.putInt(payload.length).putInt((int) crc.getValue()).put(payload).flip();
+        while (buffer.hasRemaining()) {
+            active.write(buffer);
+        }
+        active.force(false);
+        activeSize += HEADER_SIZE + payload.length;
+
+        ring.set(slot(seq), new Object[]{seq, msg});
+        lastSeq = seq;
+
+        return seq;
+    }
+
+    /**
+     * Gets the latest messages.
+     *
+     * @param fetchSize the specified fetch size
+     * @return messages, newest first
+     */
+    public List<JSONObject> getLatest(final int fetchSize) {
+        return getBefore(lastSeq + 1, fetchSize);
+    }
+
+    /**
+     * Gets the messages before the specified sequence number, used for loading older messages.
+     *
+     * @param seq       the specified sequence number (exclusive)
+     * @param fetchSize the specified fetch size
+     * @return messages, newest first
+     */
+    public List<JSONObject> getBefore(final long seq, final int fetchSize) {
+        final List<JSONObject> ret = new ArrayList<>();
+        long s = Math.min(seq - 1, lastSeq);
+        final long from = Math.max(1, s - fetchSize + 1);
+        for (; s >= from; s--) {
+            final Object[] entry = ring.get(slot(s));
+            if (null == entry || s != (Long) entry[0]) {
+                break;
+            }
+
+            ret.add((JSONObject) entry[1]);
+        }
+
+        if (s >= from) {
+            final List<JSONObject> older = read(from, s);
+            Collections.reverse(older);
+            ret.addAll(older);
+        }
+
+        return ret;
+    }
+
+    /**
+     * Gets the sequence number of the latest message.
+     *
+     * @return sequence number, returns {@code 0} if empty
+     */
+    public long getLastSeq() {
+        return lastSeq;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        active.force(false);
+        active.close();
+    }
+
+    /**
+     * Reads messages in the specified sequence number range from the segment files.
+     *
+     * @param from the specified start sequence number (inclusive)
+     * @param to   the specified end sequence number (inclusive)
+     * @return messages, oldest first, messages of deleted segments are skipped
+     */
+    private List<JSONObject> read(final long from, final long to) {
+        final List<JSONObject> ret = new ArrayList<>();
+        if (from > to) {
+            return ret;
+        }
+
+        final Long start = segments.floorKey(from);
+        for (final Map.Entry<Long, File> segment : segments.subMap(null == start ? from : start, true, to, true).entrySet()) {
+            long seq = segment.getKey();
+            try (final DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(segment.getValue())))) {
+                while (seq <= to) {
+                    final byte[] payload = readRecord(input);
+                    if (null == payload) {
+                        break;
+                    }
+
+                    if (seq >= from) {
+                        ret.add(new JSONObject(new String(payload, StandardCharsets.UTF_8)));
+                    }
+                    seq++;
+                }
+            } catch (final Exception e) {
+                LOGGER.log(Level.WARN, "Reads chat log segment [" + segment.getValue() + "] failed", e);
+            }
+        }
+
+        return ret;
+    }
+
+    /**
+     * Scans the specified segment, sets the latest sequence number.
+     *
+     * @param segment the specified segment
+     * @return size in bytes of the valid records
+     * @throws IOException io exception
+     */
+    private long recover(final File segment) throws IOException {
+        final long base = segments.lastKey();
+        long seq = base - 1;
+        long size = 0;
+        if (segment.exists()) {
+            try (final DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(segment)))) {
+                byte[] payload;
+                while (null != (payload = readRecord(input))) {
+                    size += HEADER_SIZE + payload.length;
+                    seq++;
+                }
+            }
+
+            if (size < segment.length()) {
+                LOGGER.warn("Truncates chat log segment [" + segment + "] from [" + segment.length() + "] to [" + size + "] bytes");
+            }
+        }
+
+        lastSeq = seq;
+
+        return size;
+    }
+
+    /**
+     * Reads a record.
+     *
+     * @param input the specified input
+     * @return payload, returns {@code null} if reached the end or the record is torn or corrupted
+     * @throws IOException io exception
+     */
+    private static byte[] readRecord(final DataInputStream input) throws IOException {
+        final int length;
+        final int checksum;
+        try {
+            length = input.readInt();
+            checksum = input.readInt();
+        } catch (final EOFException e) {
+            return null;
+        }
+
+        if (length < 0 || length > MAX_RECORD_SIZE) {
+            return null;
+        }
+
+        final byte[] ret = new byte[length];
+        try {
+            input.readFully(ret);
+        } catch (final EOFException e) {
+            return null;
+        }
+
+        final CRC32 crc = new CRC32();
+        crc.update(ret);
+
+        return checksum == (int) crc.getValue() ? ret : null;
+    }
+
+    /**
+     * Starts a new segment with the specified first sequence number and applies retention.
+     *
+     * @param seq the specified first sequence number
+     * @throws IOException io exception
+     */
+    private void roll(final long seq) throws IOException {
+        active.close();
+        final File file = segmentFile(seq);
+        active = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        activeSize = 0;
+        segments.put(seq, file);
+
+        long totalSize = 0;
+        for (final File segment : segments.values()) {
+            totalSize += segment.length();
+        }
+
+        final long expired = System.currentTimeMillis() - retentionAge;
+        while (1 < segments.size()) {
+            final Map.Entry<Long, File> oldest = segments.firstEntry();
+            final File segment = oldest.getValue();
+            if (totalSize <= retentionSize && segment.lastModified() >= expired) {
+                break;
+            }
+
+            totalSize -= segment.length();
+            segments.remove(oldest.getKey());
+            if (!segment.delete()) {
+                LOGGER.warn("Deletes chat log segment [" + segment + "] failed");
+            }
+        }
+    }
+
+    /**
+     * Gets the segment file of the specified first sequence number.
+     *
+     * @param seq the specified first sequence number
+     * @return segment file
+     */
+    private File segmentFile(final long seq) {
+        return new File(dir, String.format("%020d", seq) + SEGMENT_SUFFIX);
+    }
+
+    /**
+     * Gets the ring slot of the specified sequence number.
+     *
+     * @param seq the specified sequence number
+     * @return slot index
+     */
+    private int slot(final long seq) {
+        return (int) (seq % ring.length());
+    }
+}
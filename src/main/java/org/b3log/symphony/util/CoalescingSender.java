@@ -0,0 +1,141 @@
+/*
+ * Symphony - A modern community (forum/BBS/SNS/blog) platform written in Java.
+ * Copyright (C) 2012-2018, b3log.org & hacpai.com
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.b3log.symphony.util;
+
+import org.b3log.latke.logging.Level;
+import org.b3log.latke.logging.Logger;
+
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Coalescing sender, buffers messages by key for a short window and sends them in one task.
+ * <p>
+ * Identical messages pending for the same key are sent once, messages of a key keep their order. However many keys
+ * and messages are offered within a window, a single flush task is scheduled.
+ * </p>
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.0.0, Oct 25, 2018
+ * @since 3.4.3
+ */
+public class CoalescingSender {
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOGGER = Logger.getLogger(CoalescingSender.class);
+
+    /**
+     * Scheduler.
+     */
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * Coalescing window in milliseconds.
+     */
+    private final long window;
+
+    /**
+     * Sink.
+     */
+    private final Sink sink;
+
+    /**
+     * Pending messages, &lt;key, messages&gt;.
+     */
+    private final Map<String, Set<String>> pending = new ConcurrentHashMap<>();
+
+    /**
+     * Whether a flush is scheduled.
+     */
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    /**
+     * Constructs a coalescing sender.
+     *
+     * @param scheduler the specified scheduler which runs flushes
+     * @param window    the specified coalescing window in milliseconds
+     * @param sink      the specified sink
+     */
+    public CoalescingSender(final ScheduledExecutorService scheduler, final long window, final Sink sink) {
+        this.scheduler = scheduler;
+        this.window = window;
+        this.sink = sink;
+    }
+
+    /**
+     * Sends the specified message to the specified key in the next flush.
+     *
+     * @param key     the specified key
+     * @param message the specified message
+     */
+    public void send(final String key, final String message) {
+        pending.compute(key, (k, messages) -> {
+            final Set<String> ret = null == messages ? new LinkedHashSet<>() : messages;
+            ret.add(message);
+
+            return ret;
+        });
+
+        if (scheduled.compareAndSet(false, true)) {
+            scheduler.schedule(this::flush, window, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Sends the pending messages.
+     */
+    public void flush() {
+        scheduled.set(false);
+
+        for (final String key : pending.keySet()) {
+            final Set<String> messages = pending.remove(key);
+            if (null == messages) {
+                continue;
+            }
+
+            for (final String message : messages) {
+                try {
+                    sink.send(key, message);
+                } catch (final Exception e) {
+                    LOGGER.log(Level.WARN, "Sends message to [" + key + "] failed", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Sink, delivers a message to a key.
+     */
+    public interface Sink {
+
+        /**
+         * Sends the specified message to the specified key.
+         *
+         * @param key     the specified key
+         * @param message the specified message
+         */
+        void send(final String key, final String message);
+    }
+}
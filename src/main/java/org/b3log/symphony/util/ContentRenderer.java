@@ -0,0 +1,273 @@
+/*
+ * Symphony - A modern community (forum/BBS/SNS/blog) platform written in Java.
+ * Copyright (C) 2012-2018, b3log.org & hacpai.com
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.b3log.symphony.util;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.lang.StringUtils;
+import org.b3log.latke.Latkes;
+import org.b3log.latke.util.Stopwatchs;
+import org.b3log.symphony.model.Article;
+import org.b3log.symphony.model.Comment;
+import org.b3log.symphony.model.Rendered;
+import org.json.JSONObject;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.parser.Parser;
+import org.jsoup.safety.Whitelist;
+import org.jsoup.select.Elements;
+
+import java.util.function.UnaryOperator;
+
+/**
+ * Content renderer, renders article and comment content into HTML independently of viewers.
+ * <p>
+ * Rendered HTML is persisted with the hash of its source and {@link #VERSION}, a rendered is fresh only if both of them
+ * match, so it is safe to serve a rendered whatever way its source was changed.
+ * </p>
+ * <p>
+ * Short links are expanded on the read path by {@link #linkArticle(JSONObject, UnaryOperator)} and
+ * {@link #linkComment(JSONObject, UnaryOperator)} before hashing, so a rendered goes stale if a linked article is
+ * retitled or a linked tag is added, removed or renamed, not only if its own source changes.
+ * </p>
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.1.0.0, Oct 25, 2018
+ * @since 3.4.3
+ */
+public final class ContentRenderer {
+
+    /**
+     * Renderer version, increases it if the output of the rendering changes, rendereds of other versions will be
+     * rendered again in background.
+     */
+    public static final int VERSION = 2;
+
+    /**
+     * Gets a copy of the specified article with short links in its content and reward content expanded.
+     *
+     * @param article the specified article
+     * @param linker  the specified function to expand article and tag short links
+     * @return linked article, pass it to {@link #hashArticle(JSONObject)} and {@link #renderArticle(JSONObject)}
+     */
+    public static JSONObject linkArticle(final JSONObject article, final UnaryOperator<String> linker) {
+        final JSONObject ret = new JSONObject(article, JSONObject.getNames(article));
+        if (Article.ARTICLE_TYPE_C_THOUGHT != article.optInt(Article.ARTICLE_TYPE)) {
+            ret.put(Article.ARTICLE_CONTENT, linker.apply(article.optString(Article.ARTICLE_CONTENT)));
+        }
+        if (article.optInt(Article.ARTICLE_REWARD_POINT) > 0) {
+            ret.put(Article.ARTICLE_REWARD_CONTENT, linker.apply(article.optString(Article.ARTICLE_REWARD_CONTENT)));
+        }
+
+        return ret;
+    }
+
+    /**
+     * Gets a copy of the specified comment with short links in its content expanded.
+     *
+     * @param comment the specified comment
+     * @param linker  the specified function to expand article and tag short links
+     * @return linked comment, pass it to {@link #hashComment(JSONObject)} and {@link #renderComment(JSONObject)}
+     */
+    public static JSONObject linkComment(final JSONObject comment, final UnaryOperator<String> linker) {
+        final JSONObject ret = new JSONObject(comment, JSONObject.getNames(comment));
+        ret.put(Comment.COMMENT_CONTENT, linker.apply(comment.optString(Comment.COMMENT_CONTENT)));
+
+        return ret;
+    }
+
+    /**
+     * Renders the specified linked article.
+     * <ul>
+     * <li>Generates emotion images</li>
+     * <li>Markdowns and cleans</li>
+     * <li>Generates audio and video players</li>
+     * <li>Generates ToC</li>
+     * </ul>
+     *
+     * @param article the specified article, linked by {@link #linkArticle(JSONObject, UnaryOperator)}
+     * @return rendered, for example,
+     * {
+     *     "renderedContent": "",
+     *     "renderedRewardContent": "",
+     *     "renderedToC": "",
+     *     "renderedSourceHash": "",
+     *     "renderedVersion": 1
+     * }
+     */
+    public static JSONObject renderArticle(final JSONObject article) {
+        Stopwatchs.start("Render article");
+
+        try {
+            final int articleType = article.optInt(Article.ARTICLE_TYPE);
+            final String baseURI = Latkes.getServePath() + article.optString(Article.ARTICLE_PERMALINK);
+
+            String content = article.optString(Article.ARTICLE_CONTENT);
+            if (Article.ARTICLE_TYPE_C_THOUGHT != articleType) {
+                content = Emotions.convert(content);
+                content = Markdowns.toHTML(content);
+                content = Markdowns.clean(content, baseURI);
+                content = MP3Players.render(content);
+                content = VideoPlayers.render(content);
+            } else {
+                final Document.OutputSettings outputSettings = new Document.OutputSettings();
+                outputSettings.prettyPrint(false);
+
+                content = Jsoup.clean(content, baseURI,
+                        Whitelist.relaxed().addAttributes(":all", "id", "target", "class").
+                                addTags("span", "hr").addAttributes("iframe", "src", "width", "height")
+                                .addAttributes("audio", "controls", "src"), outputSettings);
+
+                content = content.replace("\n", "\\n").replace("'", "\\'")
+                        .replace("\"", "\\\"");
+            }
+
+            String rewardContent = article.optString(Article.ARTICLE_REWARD_CONTENT);
+            if (article.optInt(Article.ARTICLE_REWARD_POINT) > 0) {
+                rewardContent = Emotions.convert(rewardContent);
+                rewardContent = Markdowns.toHTML(rewardContent);
+                rewardContent = Markdowns.clean(rewardContent, baseURI);
+            }
+
+            final JSONObject ret = new JSONObject();
+            ret.put(Rendered.RENDERED_CONTENT, content);
+            ret.put(Rendered.RENDERED_REWARD_CONTENT, rewardContent);
+            ret.put(Rendered.RENDERED_TOC, "");
+            if (Article.ARTICLE_TYPE_C_THOUGHT != articleType) {
+                genToC(ret);
+            }
+            ret.put(Rendered.RENDERED_SOURCE_HASH, hashArticle(article));
+            ret.put(Rendered.RENDERED_VERSION, VERSION);
+
+            return ret;
+        } finally {
+            Stopwatchs.end();
+        }
+    }
+
+    /**
+     * Renders the specified linked comment.
+     * <ul>
+     * <li>Generates emotion images</li>
+     * <li>Markdowns and cleans</li>
+     * <li>Generates audio and video players</li>
+     * </ul>
+     *
+     * @param comment the specified comment, linked by {@link #linkComment(JSONObject, UnaryOperator)}
+     * @return rendered, for example,
+     * {
+     *     "renderedContent": "",
+     *     "renderedSourceHash": "",
+     *     "renderedVersion": 1
+     * }
+     */
+    public static JSONObject renderComment(final JSONObject comment) {
+        String content = comment.optString(Comment.COMMENT_CONTENT);
+        content = Emotions.convert(content);
+        content = Markdowns.toHTML(content);
+        content = Markdowns.clean(content, "");
+        content = MP3Players.render(content);
+        content = VideoPlayers.render(content);
+
+        final JSONObject ret = new JSONObject();
+        ret.put(Rendered.RENDERED_CONTENT, content);
+        ret.put(Rendered.RENDERED_SOURCE_HASH, hashComment(comment));
+        ret.put(Rendered.RENDERED_VERSION, VERSION);
+
+        return ret;
+    }
+
+    /**
+     * Checks whether the specified rendered is fresh for the specified source hash.
+     *
+     * @param rendered   the specified rendered, may be {@code null}
+     * @param sourceHash the specified source hash
+     * @return {@code true} if it is fresh, returns {@code false} otherwise
+     */
+    public static boolean isFresh(final JSONObject rendered, final String sourceHash) {
+        return null != rendered && VERSION == rendered.optInt(Rendered.RENDERED_VERSION)
+                && sourceHash.equals(rendered.optString(Rendered.RENDERED_SOURCE_HASH));
+    }
+
+    /**
+     * Gets the source hash of the specified linked article.
+     *
+     * @param article the specified article, linked by {@link #linkArticle(JSONObject, UnaryOperator)}
+     * @return source hash
+     */
+    public static String hashArticle(final JSONObject article) {
+        return DigestUtils.md5Hex(Latkes.getServePath() + '\n' + Latkes.getStaticServePath() + '\n'
+                + article.optInt(Article.ARTICLE_TYPE) + '\n' + article.optString(Article.ARTICLE_PERMALINK) + '\n'
+                + (article.optInt(Article.ARTICLE_REWARD_POINT) > 0) + '\n'
+                + article.optString(Article.ARTICLE_CONTENT) + '\n' + article.optString(Article.ARTICLE_REWARD_CONTENT));
+    }
+
+    /**
+     * Gets the source hash of the specified linked comment.
+     *
+     * @param comment the specified comment, linked by {@link #linkComment(JSONObject, UnaryOperator)}
+     * @return source hash
+     */
+    public static String hashComment(final JSONObject comment) {
+        return DigestUtils.md5Hex(Latkes.getServePath() + '\n' + Latkes.getStaticServePath() + '\n'
+                + comment.optString(Comment.COMMENT_CONTENT));
+    }
+
+    /**
+     * Generates ToC of the specified rendered, sets ids of headings in its content if there are at least 3 headings.
+     *
+     * @param rendered the specified rendered
+     */
+    private static void genToC(final JSONObject rendered) {
+        Stopwatchs.start("ToC");
+
+        try {
+            final String content = rendered.optString(Rendered.RENDERED_CONTENT);
+            final Document doc = Jsoup.parse(content, StringUtils.EMPTY, Parser.htmlParser());
+            doc.outputSettings().prettyPrint(false);
+            final Elements hs = doc.select("h1, h2, h3, h4, h5");
+            if (hs.size() < 3) {
+                return;
+            }
+
+            final StringBuilder listBuilder = new StringBuilder();
+            listBuilder.append("<ul class=\"article-toc\">");
+            for (int i = 0; i < hs.size(); i++) {
+                final Element element = hs.get(i);
+                final String tagName = element.tagName().toLowerCase();
+                final String text = element.text();
+                final String id = "toc_" + tagName + "_" + i;
+                element.attr("id", id);
+                listBuilder.append("<li class='toc-").append(tagName).append("'><a data-id=\"").append(id).append("\" href=\"javascript:Comment._bgFade($('#").append(id).append("'))\">").append(text).append(
+                        "</a></li>");
+            }
+            listBuilder.append("</ul>");
+
+            rendered.put(Rendered.RENDERED_CONTENT, doc.select("body").html());
+            rendered.put(Rendered.RENDERED_TOC, listBuilder.toString());
+        } finally {
+            Stopwatchs.end();
+        }
+    }
+
+    /**
+     * Private constructor.
+     */
+    private ContentRenderer() {
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Symphony - A modern community (forum/BBS/SNS/blog) platform written in Java.
+ * Copyright (C) 2012-2018, b3log.org & hacpai.com
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.b3log.symphony.util;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Feed merger, merges several sorted feeds into one page of distinct items with a k-way merge.
+ * <p>
+ * Each feed must be sorted by the specified comparator and an item must compare equally in every feed it appears in,
+ * for example an article of several tags has the same sort key in each per-tag feed. To get page n of size s, each
+ * feed needs at most its first n * s items.
+ * </p>
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.0.0, Oct 25, 2018
+ * @since 3.4.3
+ */
+public final class FeedMerger {
+
+    /**
+     * Merges the specified feeds and gets a page of distinct items.
+     *
+     * @param feeds      the specified feeds, each sorted by the specified comparator
+     * @param comparator the specified comparator
+     * @param idFunc     the specified function to get the id of an item, items with the same id are merged
+     * @param offset     the specified count of distinct items to skip
+     * @param size       the specified page size
+     * @param <T>        the type of items
+     * @return distinct items of the page, sorted by the specified comparator
+     */
+    public static <T> List<T> merge(final List<List<T>> feeds, final Comparator<? super T> comparator,
+                                    final Function<T, String> idFunc, final int offset, final int size) {
+        final List<T> ret = new ArrayList<>(Math.max(0, size));
+        if (0 >= size) {
+            return ret;
+        }
+
+        final PriorityQueue<Cursor<T>> heap = new PriorityQueue<>(Math.max(1, feeds.size()),
+                (c1, c2) -> comparator.compare(c1.current(), c2.current()));
+        for (final List<T> feed : feeds) {
+            if (!feed.isEmpty()) {
+                heap.add(new Cursor<>(feed));
+            }
+        }
+
+        final Set<String> seen = new HashSet<>();
+        int skipped = 0;
+        while (!heap.isEmpty() && ret.size() < size) {
+            final Cursor<T> cursor = heap.poll();
+            final T item = cursor.current();
+            if (cursor.advance()) {
+                heap.add(cursor);
+            }
+
+            if (!seen.add(idFunc.apply(item))) {
+                continue;
+            }
+
+            if (skipped < offset) {
+                skipped++;
+
+                continue;
+            }
+
+            ret.add(item);
+        }
+
+        return ret;
+    }
+
+    /**
+     * Private constructor.
+     */
+    private FeedMerger() {
+    }
+
+    /**
+     * Cursor of a feed.
+     *
+     * @param <T> the type of items
+     */
+    private static final class Cursor<T> {
+
+        /**
+         * Feed.
+         */
+        private final List<T> feed;
+
+        /**
+         * Position.
+         */
+        private int position;
+
+        /**
+         * Constructs a cursor of the specified feed.
+         *
+         * @param feed the specified feed
+         */
+        private Cursor(final List<T> feed) {
+            this.feed = feed;
+        }
+
+        /**
+         * Gets the current item.
+         *
+         * @return current item
+         */
+        private T current() {
+            return feed.get(position);
+        }
+
+        /**
+         * Moves to the next item.
+         *
+         * @return {@code true} if there is a next item, returns {@code false} otherwise
+         */
+        private boolean advance() {
+            return ++position < feed.size();
+        }
+    }
+}
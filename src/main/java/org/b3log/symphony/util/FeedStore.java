@@ -0,0 +1,280 @@
+/*
+ * Symphony - A modern community (forum/BBS/SNS/blog) platform written in Java.
+ * Copyright (C) 2012-2018, b3log.org & hacpai.com
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.b3log.symphony.util;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.b3log.latke.logging.Level;
+import org.b3log.latke.logging.Logger;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Feed store, keeps generated feeds until an article of them changes.
+ * <p>
+ * A feed is generated on its first request, concurrent first requests wait for a single generation. Changing an
+ * article marks the feeds of its tags stale, a stale feed is still served while it is regenerated in background. A
+ * regenerated feed with the same body keeps its ETag and last modified time.
+ * </p>
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.0.0, Oct 25, 2018
+ * @since 3.4.3
+ */
+public class FeedStore {
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOGGER = Logger.getLogger(FeedStore.class);
+
+    /**
+     * Executor of background regenerations.
+     */
+    private final Executor executor;
+
+    /**
+     * Entries, &lt;key, entry&gt;.
+     */
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Constructs a feed store.
+     *
+     * @param executor the specified executor of background regenerations
+     */
+    public FeedStore(final Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Gets a feed by the specified key, generates it with the specified generator if missing, regenerates it in
+     * background if stale.
+     *
+     * @param key       the specified key
+     * @param generator the specified generator
+     * @return feed, returns {@code null} if the generator returns {@code null}
+     * @throws Exception exception of the generator
+     */
+    public Feed get(final String key, final Generator generator) throws Exception {
+        final Entry entry = entries.computeIfAbsent(key, k -> new Entry());
+        Feed ret = entry.feed;
+        if (null == ret) {
+            synchronized (entry) {
+                if (null == entry.feed) {
+                    entry.stale = false;
+                    entry.feed = generator.generate();
+                }
+                ret = entry.feed;
+            }
+
+            if (null == ret) {
+                entries.remove(key, entry);
+            }
+
+            return ret;
+        }
+
+        if (entry.stale && entry.regenerating.compareAndSet(false, true)) {
+            executor.execute(() -> {
+                try {
+                    entry.stale = false;
+                    final Feed feed = generator.generate();
+                    if (null == feed) {
+                        entries.remove(key, entry);
+                    } else if (!feed.etag.equals(entry.feed.etag)) {
+                        entry.feed = feed;
+                    }
+                } catch (final Exception e) {
+                    entry.stale = true;
+                    LOGGER.log(Level.ERROR, "Regenerates feed [" + key + "] failed", e);
+                } finally {
+                    entry.regenerating.set(false);
+                }
+            });
+        }
+
+        return ret;
+    }
+
+    /**
+     * Marks feeds of any of the specified tags stale.
+     *
+     * @param tagTitles the specified tag titles
+     */
+    public void invalidate(final Collection<String> tagTitles) {
+        final Set<String> tags = new HashSet<>();
+        for (final String tagTitle : tagTitles) {
+            tags.add(tagTitle.trim().toLowerCase());
+        }
+
+        for (final Entry entry : entries.values()) {
+            final Feed feed = entry.feed;
+            if (null == feed || null == feed.tags || !Collections.disjoint(feed.tags, tags)) {
+                entry.stale = true;
+            }
+        }
+    }
+
+    /**
+     * Marks all feeds stale.
+     */
+    public void invalidateAll() {
+        for (final Entry entry : entries.values()) {
+            entry.stale = true;
+        }
+    }
+
+    /**
+     * Feed generator.
+     */
+    @FunctionalInterface
+    public interface Generator {
+
+        /**
+         * Generates a feed.
+         *
+         * @return feed, returns {@code null} if not found
+         * @throws Exception exception
+         */
+        Feed generate() throws Exception;
+    }
+
+    /**
+     * Entry of a feed.
+     */
+    private static final class Entry {
+
+        /**
+         * Feed, {@code null} before generated.
+         */
+        private volatile Feed feed;
+
+        /**
+         * Whether the feed is stale.
+         */
+        private volatile boolean stale;
+
+        /**
+         * Whether the feed is regenerating.
+         */
+        private final AtomicBoolean regenerating = new AtomicBoolean();
+    }
+
+    /**
+     * Feed, a serialized body with its gzipped body, ETag and last modified time.
+     */
+    public static final class Feed {
+
+        /**
+         * Body.
+         */
+        private final byte[] body;
+
+        /**
+         * Gzipped body.
+         */
+        private final byte[] gzipBody;
+
+        /**
+         * ETag.
+         */
+        private final String etag;
+
+        /**
+         * Last modified time, in seconds precision.
+         */
+        private final long lastModified = System.currentTimeMillis() / 1000 * 1000;
+
+        /**
+         * Tag titles in lower case of the articles the feed selects, {@code null} for all articles.
+         */
+        private final Set<String> tags;
+
+        /**
+         * Constructs a feed.
+         *
+         * @param content   the specified content
+         * @param tagTitles the specified titles of tags of the articles the feed selects, {@code null} for all
+         *                  articles
+         */
+        public Feed(final String content, final Collection<String> tagTitles) {
+            body = content.getBytes(StandardCharsets.UTF_8);
+            etag = "\"" + DigestUtils.md5Hex(body) + "\"";
+
+            final ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 4 + 64);
+            try (final GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+                gzip.write(body);
+            } catch (final IOException e) {
+                throw new IllegalStateException(e);
+            }
+            gzipBody = out.toByteArray();
+
+            if (null == tagTitles) {
+                tags = null;
+            } else {
+                tags = new HashSet<>();
+                for (final String tagTitle : tagTitles) {
+                    tags.add(tagTitle.trim().toLowerCase());
+                }
+            }
+        }
+
+        /**
+         * Gets the body.
+         *
+         * @return body
+         */
+        public byte[] getBody() {
+            return body;
+        }
+
+        /**
+         * Gets the gzipped body.
+         *
+         * @return gzipped body
+         */
+        public byte[] getGzipBody() {
+            return gzipBody;
+        }
+
+        /**
+         * Gets the ETag.
+         *
+         * @return ETag
+         */
+        public String getETag() {
+            return etag;
+        }
+
+        /**
+         * Gets the last modified time.
+         *
+         * @return last modified time
+         */
+        public long getLastModified() {
+            return lastModified;
+        }
+    }
+}
@@ -0,0 +1,528 @@
+/*
+ * Symphony - A modern community (forum/BBS/SNS/blog) platform written in Java.
+ * Copyright (C) 2012-2018, b3log.org & hacpai.com
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.b3log.symphony.util;
+
+import java.util.*;
+
+/**
+ * Home timeline, keeps the latest item ids of the sources (followed users or tags) of each user.
+ * <p>
+ * Items of normal sources are fanned out on write into the loaded timelines of their followers, each timeline keeps
+ * at most capacity items. Items of hot sources, which have too many followers to fan out, are merged on read. A
+ * timeline is loaded on its first read, backfilled on follow, cleaned on unfollow and reloaded after it expires. A
+ * timeline is unregistered from the fan-out index of its sources when it is evicted or reloaded.
+ * Reads are keyset paginated by item id, item ids must sort by time as strings.
+ * </p>
+ * <p>
+ * Lock order: a timeline, then this home timeline.
+ * </p>
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.2.0, Oct 25, 2018
+ * @since 3.4.3
+ */
+public class HomeTimeline {
+
+    /**
+     * Max count of sources passed to the loader at once.
+     */
+    private static final int SOURCE_BATCH_SIZE = 100;
+
+    /**
+     * Loader.
+     */
+    private final Loader loader;
+
+    /**
+     * Max count of items of a timeline.
+     */
+    private final int capacity;
+
+    /**
+     * Expiration time in milliseconds of a loaded timeline.
+     */
+    private final long expire;
+
+    /**
+     * Loaded timelines, &lt;userId, timeline&gt;, least recently read ones are evicted.
+     */
+    private final Map<String, Timeline> timelines;
+
+    /**
+     * Fan-out index of normal sources, &lt;sourceId, &lt;userId, timeline&gt;&gt;.
+     */
+    private final Map<String, Map<String, Timeline>> followers = new HashMap<>();
+
+    /**
+     * Constructs a home timeline.
+     *
+     * @param loader   the specified loader
+     * @param capacity the specified max count of items of a timeline
+     * @param maxUsers the specified max count of loaded timelines
+     * @param expire   the specified expiration time in milliseconds of a loaded timeline
+     */
+    public HomeTimeline(final Loader loader, final int capacity, final int maxUsers, final long expire) {
+        this.loader = loader;
+        this.capacity = capacity;
+        this.expire = expire;
+        timelines = new LinkedHashMap<String, Timeline>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, Timeline> eldest) {
+                if (size() <= maxUsers) {
+                    return false;
+                }
+
+                final Timeline timeline = eldest.getValue();
+                timeline.evicted = true;
+                unregister(eldest.getKey(), timeline, new ArrayList<>(timeline.registered));
+
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Gets a page of item ids of the specified user.
+     *
+     * @param userId   the specified user id
+     * @param beforeId the specified keyset cursor, gets items older than it, {@code null} for the first page
+     * @param size     the specified page size
+     * @return item ids, newest first
+     * @throws Exception exception
+     */
+    public List<String> get(final String userId, final String beforeId, final int size) throws Exception {
+        final Timeline timeline = getTimeline(userId);
+        List<String> normal = new ArrayList<>();
+        final List<String> normalSources;
+        final List<String> hotSources;
+        synchronized (timeline) {
+            load(userId, timeline);
+
+            final SortedMap<String, Set<String>> older = null == beforeId ? timeline.items : timeline.items.tailMap(beforeId, false);
+            for (final String itemId : older.keySet()) {
+                if (normal.size() >= size) {
+                    break;
+                }
+
+                normal.add(itemId);
+            }
+
+            // Beyond the kept window, merges on read
+            normalSources = normal.size() < size && null != timeline.floor ? new ArrayList<>(timeline.sources) : null;
+            hotSources = new ArrayList<>(timeline.hotSources);
+        }
+
+        if (null != normalSources) {
+            normal = new ArrayList<>(fetch(normalSources, beforeId, size).keySet());
+        }
+        if (hotSources.isEmpty()) {
+            return normal;
+        }
+
+        final List<String> hot = new ArrayList<>(fetch(hotSources, beforeId, size).keySet());
+
+        return FeedMerger.merge(Arrays.asList(normal, hot), Comparator.<String>reverseOrder(), itemId -> itemId, 0, size);
+    }
+
+    /**
+     * Fans out the specified item of the specified sources to the loaded timelines.
+     *
+     * @param itemId    the specified item id
+     * @param sourceIds the specified source ids
+     */
+    public void publish(final String itemId, final Collection<String> sourceIds) {
+        final Map<Timeline, List<String>> targets = new IdentityHashMap<>();
+        synchronized (this) {
+            for (final String sourceId : sourceIds) {
+                final Map<String, Timeline> sourceFollowers = followers.get(sourceId);
+                if (null == sourceFollowers) {
+                    continue;
+                }
+
+                for (final Timeline follower : sourceFollowers.values()) {
+                    targets.computeIfAbsent(follower, timeline -> new ArrayList<>()).add(sourceId);
+                }
+            }
+        }
+
+        for (final Map.Entry<Timeline, List<String>> target : targets.entrySet()) {
+            final Timeline timeline = target.getKey();
+            synchronized (timeline) {
+                for (final String sourceId : target.getValue()) {
+                    if (timeline.sources.contains(sourceId)) {
+                        timeline.add(itemId, Collections.singleton(sourceId), capacity);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * The specified user follows the specified source, backfills the loaded timeline of the user.
+     *
+     * @param userId   the specified user id
+     * @param sourceId the specified source id
+     * @throws Exception exception
+     */
+    public void follow(final String userId, final String sourceId) throws Exception {
+        final Timeline timeline = getLoadedTimeline(userId);
+        if (null == timeline) {
+            return;
+        }
+
+        synchronized (timeline) {
+            if (!timeline.isLoaded()) {
+                return;
+            }
+
+            if (loader.getHotSources(Collections.singletonList(sourceId)).contains(sourceId)) {
+                timeline.hotSources.add(sourceId);
+
+                return;
+            }
+
+            timeline.sources.add(sourceId);
+            register(userId, timeline, Collections.singleton(sourceId));
+            backfill(timeline, Collections.singletonList(sourceId));
+        }
+    }
+
+    /**
+     * The specified user unfollows the specified source, removes items of the source from the loaded timeline of the
+     * user.
+     *
+     * @param userId   the specified user id
+     * @param sourceId the specified source id
+     */
+    public void unfollow(final String userId, final String sourceId) {
+        final Timeline timeline = getLoadedTimeline(userId);
+        if (null == timeline) {
+            return;
+        }
+
+        synchronized (timeline) {
+            timeline.hotSources.remove(sourceId);
+            timeline.sources.remove(sourceId);
+            final Iterator<Set<String>> iterator = timeline.items.values().iterator();
+            while (iterator.hasNext()) {
+                final Set<String> itemSources = iterator.next();
+                itemSources.remove(sourceId);
+                if (itemSources.isEmpty()) {
+                    iterator.remove();
+                }
+            }
+
+            unregister(userId, timeline, Collections.singleton(sourceId));
+        }
+    }
+
+    /**
+     * Gets the count of loaded timelines.
+     *
+     * @return count of loaded timelines
+     */
+    public synchronized int getLoadedCount() {
+        return timelines.size();
+    }
+
+    /**
+     * Gets the count of entries of the fan-out index.
+     *
+     * @return count of &lt;sourceId, userId&gt; entries
+     */
+    public synchronized int getRegisteredCount() {
+        int ret = 0;
+        for (final Map<String, Timeline> sourceFollowers : followers.values()) {
+            ret += sourceFollowers.size();
+        }
+
+        return ret;
+    }
+
+    /**
+     * Gets the timeline of the specified user, creates an unloaded one if not found.
+     *
+     * @param userId the specified user id
+     * @return timeline
+     */
+    private synchronized Timeline getTimeline(final String userId) {
+        return timelines.computeIfAbsent(userId, key -> new Timeline());
+    }
+
+    /**
+     * Gets the timeline of the specified user.
+     *
+     * @param userId the specified user id
+     * @return timeline, returns {@code null} if not found
+     */
+    private synchronized Timeline getLoadedTimeline(final String userId) {
+        return timelines.get(userId);
+    }
+
+    /**
+     * Loads the specified timeline of the specified user if it is not loaded or expired, the caller must hold the
+     * lock of the timeline.
+     * <p>
+     * The user is registered in the fan-out index before items are loaded, so an item published meanwhile is either
+     * loaded or fanned out.
+     * </p>
+     *
+     * @param userId   the specified user id
+     * @param timeline the specified timeline
+     * @throws Exception exception
+     */
+    private void load(final String userId, final Timeline timeline) throws Exception {
+        final long now = System.currentTimeMillis();
+        if (timeline.isLoaded() && now - timeline.loadedAt < expire) {
+            return;
+        }
+
+        unregister(userId, timeline, new ArrayList<>(timeline.registered));
+        timeline.reset();
+        final List<String> sourceIds = loader.getSources(userId);
+        for (int i = 0; i < sourceIds.size(); i += SOURCE_BATCH_SIZE) {
+            final List<String> batch = sourceIds.subList(i, Math.min(i + SOURCE_BATCH_SIZE, sourceIds.size()));
+            final Set<String> hotSourceIds = loader.getHotSources(batch);
+            for (final String sourceId : batch) {
+                if (hotSourceIds.contains(sourceId)) {
+                    timeline.hotSources.add(sourceId);
+                } else {
+                    timeline.sources.add(sourceId);
+                }
+            }
+        }
+
+        register(userId, timeline, timeline.sources);
+        backfill(timeline, new ArrayList<>(timeline.sources));
+        timeline.loadedAt = now;
+    }
+
+    /**
+     * Backfills the specified timeline with the latest items of the specified sources, the caller must hold the
+     * lock of the timeline.
+     *
+     * @param timeline  the specified timeline
+     * @param sourceIds the specified source ids
+     * @throws Exception exception
+     */
+    private void backfill(final Timeline timeline, final List<String> sourceIds) throws Exception {
+        final NavigableMap<String, Set<String>> items = fetch(sourceIds, null, capacity);
+        for (final Map.Entry<String, Set<String>> item : items.entrySet()) {
+            timeline.add(item.getKey(), item.getValue(), capacity);
+        }
+
+        if (items.size() >= capacity) { // Older items of the sources are not loaded
+            timeline.raiseFloor(items.lastKey());
+        }
+    }
+
+    /**
+     * Registers the specified timeline of the specified user as a follower of the specified sources, skips it if it
+     * has been evicted.
+     *
+     * @param userId    the specified user id
+     * @param timeline  the specified timeline
+     * @param sourceIds the specified source ids
+     */
+    private synchronized void register(final String userId, final Timeline timeline, final Collection<String> sourceIds) {
+        if (timeline.evicted) {
+            return;
+        }
+
+        for (final String sourceId : sourceIds) {
+            followers.computeIfAbsent(sourceId, key -> new HashMap<>()).put(userId, timeline);
+            timeline.registered.add(sourceId);
+        }
+    }
+
+    /**
+     * Unregisters the specified timeline of the specified user from the specified sources.
+     *
+     * @param userId    the specified user id
+     * @param timeline  the specified timeline
+     * @param sourceIds the specified source ids
+     */
+    private synchronized void unregister(final String userId, final Timeline timeline, final Collection<String> sourceIds) {
+        for (final String sourceId : sourceIds) {
+            timeline.registered.remove(sourceId);
+            final Map<String, Timeline> sourceFollowers = followers.get(sourceId);
+            if (null == sourceFollowers || timeline != sourceFollowers.get(userId)) {
+                continue;
+            }
+
+            sourceFollowers.remove(userId);
+            if (sourceFollowers.isEmpty()) {
+                followers.remove(sourceId);
+            }
+        }
+    }
+
+    /**
+     * Fetches the latest items of the specified sources with the loader in batches.
+     *
+     * @param sourceIds the specified source ids
+     * @param beforeId  the specified keyset cursor, {@code null} for the latest
+     * @param size      the specified max count of items
+     * @return &lt;itemId, sourceIds&gt;, newest first
+     * @throws Exception exception
+     */
+    private NavigableMap<String, Set<String>> fetch(final List<String> sourceIds, final String beforeId, final int size) throws Exception {
+        final TreeMap<String, Set<String>> ret = new TreeMap<>(Comparator.reverseOrder());
+        for (int i = 0; i < sourceIds.size(); i += SOURCE_BATCH_SIZE) {
+            final List<String> batch = sourceIds.subList(i, Math.min(sourceIds.size(), i + SOURCE_BATCH_SIZE));
+            for (final Map.Entry<String, Set<String>> item : loader.getItems(batch, beforeId, size).entrySet()) {
+                ret.computeIfAbsent(item.getKey(), key -> new HashSet<>()).addAll(item.getValue());
+            }
+
+            while (ret.size() > size) {
+                ret.pollLastEntry();
+            }
+        }
+
+        return ret;
+    }
+
+    /**
+     * Loader of sources and items.
+     */
+    public interface Loader {
+
+        /**
+         * Gets the source ids the specified user follows.
+         *
+         * @param userId the specified user id
+         * @return source ids
+         * @throws Exception exception
+         */
+        List<String> getSources(String userId) throws Exception;
+
+        /**
+         * Gets the sources of the specified sources which have too many followers to fan out.
+         *
+         * @param sourceIds the specified source ids
+         * @return hot source ids
+         * @throws Exception exception
+         */
+        Set<String> getHotSources(List<String> sourceIds) throws Exception;
+
+        /**
+         * Gets the latest items of the specified sources.
+         *
+         * @param sourceIds the specified source ids
+         * @param beforeId  the specified keyset cursor, gets items older than it, {@code null} for the latest
+         * @param size      the specified max count of distinct items
+         * @return &lt;itemId, ids of the specified sources it belongs to&gt;, each returned item with all its sources
+         * @throws Exception exception
+         */
+        Map<String, Set<String>> getItems(List<String> sourceIds, String beforeId, int size) throws Exception;
+    }
+
+    /**
+     * Timeline of a user.
+     */
+    private static final class Timeline {
+
+        /**
+         * Items, &lt;itemId, sourceIds&gt;, newest first.
+         */
+        private final TreeMap<String, Set<String>> items = new TreeMap<>(Comparator.reverseOrder());
+
+        /**
+         * Normal source ids.
+         */
+        private final Set<String> sources = new HashSet<>();
+
+        /**
+         * Hot source ids.
+         */
+        private final Set<String> hotSources = new HashSet<>();
+
+        /**
+         * Source ids this timeline is registered in the fan-out index with, guarded by the home timeline.
+         */
+        private final Set<String> registered = new HashSet<>();
+
+        /**
+         * Whether this timeline has been evicted, guarded by the home timeline.
+         */
+        private boolean evicted;
+
+        /**
+         * Items older than the floor may be missing, {@code null} if the timeline is complete.
+         */
+        private String floor;
+
+        /**
+         * Load time, {@code 0} if not loaded.
+         */
+        private long loadedAt;
+
+        /**
+         * Checks whether this timeline is loaded.
+         *
+         * @return {@code true} if it is loaded, returns {@code false} otherwise
+         */
+        private boolean isLoaded() {
+            return 0 < loadedAt;
+        }
+
+        /**
+         * Adds the specified item of the specified sources, evicts the oldest items beyond the specified capacity.
+         *
+         * @param itemId    the specified item id
+         * @param sourceIds the specified source ids
+         * @param capacity  the specified capacity
+         */
+        private void add(final String itemId, final Collection<String> sourceIds, final int capacity) {
+            if (null != floor && itemId.compareTo(floor) < 0) {
+                return;
+            }
+
+            items.computeIfAbsent(itemId, key -> new HashSet<>()).addAll(sourceIds);
+            while (items.size() > capacity) {
+                items.pollLastEntry();
+                raiseFloor(items.lastKey());
+            }
+        }
+
+        /**
+         * Raises the floor to the specified item id, drops items older than it.
+         *
+         * @param itemId the specified item id
+         */
+        private void raiseFloor(final String itemId) {
+            if (null == floor || itemId.compareTo(floor) > 0) {
+                floor = itemId;
+                items.tailMap(floor, false).clear();
+            }
+        }
+
+        /**
+         * Clears this timeline for a reload.
+         */
+        private void reset() {
+            items.clear();
+            sources.clear();
+            hotSources.clear();
+            floor = null;
+            loadedAt = 0;
+        }
+    }
+}
@@ -0,0 +1,247 @@
+/*
+ * Symphony - A modern community (forum/BBS/SNS/blog) platform written in Java.
+ * Copyright (C) 2012-2018, b3log.org & hacpai.com
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.b3log.symphony.util;
+
+import freemarker.template.SimpleScalar;
+import freemarker.template.TemplateHashModel;
+import freemarker.template.TemplateModel;
+import org.b3log.latke.ioc.BeanManager;
+import org.b3log.latke.service.LangPropsService;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Label bundle, an immutable snapshot of the language labels of a locale.
+ * <p>
+ * A bundle is exposed to templates as a hash model looked up by key, see {@link Skins#process}, so the labels are no
+ * longer copied into each data model. Labels with placeholders like {@code {point}} or {@code ${point}} are split
+ * into segments once, {@link #format(String, Object...)} fills them without scanning the label again.
+ * </p>
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.0.0, Oct 25, 2018
+ * @since 3.4.3
+ */
+public final class LabelBundle implements TemplateHashModel {
+
+    /**
+     * Max count of cached bundles, locales come from clients.
+     */
+    private static final int MAX_BUNDLES = 32;
+
+    /**
+     * Cached bundles, &lt;locale, bundle&gt;.
+     */
+    private static final Map<Locale, LabelBundle> BUNDLES = new ConcurrentHashMap<>();
+
+    /**
+     * Placeholder pattern.
+     */
+    private static final Pattern PLACEHOLDER = Pattern.compile("\\$?\\{(\\w+)\\}");
+
+    /**
+     * Labels, &lt;key, label&gt;.
+     */
+    private final Map<String, Label> labels;
+
+    /**
+     * Values of labels by key prefix, &lt;prefix, values&gt;.
+     */
+    private final Map<String, List<String>> prefixed = new ConcurrentHashMap<>();
+
+    /**
+     * Gets the bundle of the specified locale.
+     *
+     * @param locale the specified locale
+     * @return bundle
+     */
+    public static LabelBundle get(final Locale locale) {
+        LabelBundle ret = BUNDLES.get(locale);
+        if (null != ret) {
+            return ret;
+        }
+
+        final LangPropsService langPropsService = BeanManager.getInstance().getReference(LangPropsService.class);
+        ret = new LabelBundle(langPropsService.getAll(locale));
+        if (BUNDLES.size() < MAX_BUNDLES) {
+            BUNDLES.put(locale, ret);
+        }
+
+        return ret;
+    }
+
+    /**
+     * Constructs a bundle of the specified labels.
+     *
+     * @param labels the specified labels, &lt;key, label&gt;
+     */
+    public LabelBundle(final Map<String, String> labels) {
+        this.labels = new HashMap<>(labels.size() * 4 / 3 + 1);
+        for (final Map.Entry<String, String> entry : labels.entrySet()) {
+            this.labels.put(entry.getKey(), new Label(entry.getValue()));
+        }
+    }
+
+    /**
+     * Gets a label by the specified key.
+     *
+     * @param key the specified key
+     * @return label, returns {@code null} if not found
+     */
+    public String getLabel(final String key) {
+        final Label label = labels.get(key);
+
+        return null == label ? null : label.text;
+    }
+
+    /**
+     * Gets values of labels whose key starts with the specified prefix.
+     *
+     * @param prefix the specified prefix
+     * @return values, unmodifiable
+     */
+    public List<String> getLabels(final String prefix) {
+        return prefixed.computeIfAbsent(prefix, p -> {
+            final List<String> ret = new ArrayList<>();
+            for (final Map.Entry<String, Label> entry : labels.entrySet()) {
+                if (entry.getKey().startsWith(p)) {
+                    ret.add(entry.getValue().text);
+                }
+            }
+
+            return Collections.unmodifiableList(ret);
+        });
+    }
+
+    /**
+     * Formats a label by the specified key with the specified variables. A placeholder without a variable is kept.
+     *
+     * @param key  the specified key
+     * @param vars the specified variables, name and value pairs, for example, {@code "point", 20, "point2", 30}
+     * @return formatted label, returns {@code null} if not found
+     */
+    public String format(final String key, final Object... vars) {
+        final Label label = labels.get(key);
+        if (null == label) {
+            return null;
+        }
+
+        if (null == label.names) {
+            return label.text;
+        }
+
+        final StringBuilder ret = new StringBuilder(label.text.length() + 16);
+        for (int i = 0; i < label.names.length; i++) {
+            ret.append(label.literals[i]);
+            final Object value = getVar(vars, label.names[i]);
+            ret.append(null == value ? label.placeholders[i] : value);
+        }
+        ret.append(label.literals[label.names.length]);
+
+        return ret.toString();
+    }
+
+    @Override
+    public TemplateModel get(final String key) {
+        final Label label = labels.get(key);
+
+        return null == label ? null : label.model;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return labels.isEmpty();
+    }
+
+    private static Object getVar(final Object[] vars, final String name) {
+        for (int i = 0; i < vars.length - 1; i += 2) {
+            if (name.equals(vars[i])) {
+                return vars[i + 1];
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Label, the text with its template model and placeholder segments.
+     */
+    private static final class Label {
+
+        /**
+         * Text.
+         */
+        private final String text;
+
+        /**
+         * Template model.
+         */
+        private final TemplateModel model;
+
+        /**
+         * Literals around placeholders, one more than the placeholders.
+         */
+        private final String[] literals;
+
+        /**
+         * Placeholder names, {@code null} if the text has no placeholders.
+         */
+        private final String[] names;
+
+        /**
+         * Placeholders as in the text.
+         */
+        private final String[] placeholders;
+
+        /**
+         * Constructs a label of the specified text.
+         *
+         * @param text the specified text
+         */
+        private Label(final String text) {
+            this.text = text;
+            model = new SimpleScalar(text);
+
+            final List<String> literalList = new ArrayList<>();
+            final List<String> nameList = new ArrayList<>();
+            final List<String> placeholderList = new ArrayList<>();
+            final Matcher matcher = PLACEHOLDER.matcher(text);
+            int start = 0;
+            while (matcher.find()) {
+                literalList.add(text.substring(start, matcher.start()));
+                nameList.add(matcher.group(1));
+                placeholderList.add(matcher.group());
+                start = matcher.end();
+            }
+            literalList.add(text.substring(start));
+
+            if (nameList.isEmpty()) {
+                literals = null;
+                names = null;
+                placeholders = null;
+            } else {
+                literals = literalList.toArray(new String[0]);
+                names = nameList.toArray(new String[0]);
+                placeholders = placeholderList.toArray(new String[0]);
+            }
+        }
+    }
+}
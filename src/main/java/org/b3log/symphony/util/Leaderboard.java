@@ -0,0 +1,399 @@
+/*
+ * Symphony - A modern community (forum/BBS/SNS/blog) platform written in Java.
+ * Copyright (C) 2012-2018, b3log.org & hacpai.com
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.b3log.symphony.util;
+
+import java.util.*;
+
+/**
+ * Leaderboard, a bounded set of members sorted by score descending (ties by member ascending).
+ * <p>
+ * When the board is full the lowest member is evicted and the highest evicted score is remembered as the floor.
+ * Members below the floor may be missing, so they are not tracked and have no rank. A relative update
+ * ({@link #increment(String, long)}) of an untracked member is applied only if nothing has been evicted yet, since
+ * the base score is unknown otherwise.
+ * </p>
+ * <p>
+ * Entries are kept in a treap whose nodes carry their subtree sizes, so updates and rank lookups take O(log n).
+ * </p>
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.1.0.0, Oct 25, 2018
+ * @since 3.4.3
+ */
+public class Leaderboard {
+
+    /**
+     * Entry order, score descending then member ascending.
+     */
+    private static final Comparator<Entry> ORDER = (e1, e2) -> {
+        final int ret = Long.compare(e2.score, e1.score);
+
+        return 0 != ret ? ret : e1.member.compareTo(e2.member);
+    };
+
+    /**
+     * Max count of members.
+     */
+    private final int capacity;
+
+    /**
+     * Node priority generator.
+     */
+    private final Random random = new Random();
+
+    /**
+     * Root of the treap of sorted entries, {@code null} if empty.
+     */
+    private Node root;
+
+    /**
+     * Entries by member.
+     */
+    private final Map<String, Entry> members = new HashMap<>();
+
+    /**
+     * The highest evicted score, {@link Long#MIN_VALUE} if nothing has been evicted.
+     */
+    private long floor = Long.MIN_VALUE;
+
+    /**
+     * Constructs a leaderboard with the specified capacity.
+     *
+     * @param capacity the specified max count of members
+     */
+    public Leaderboard(final int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Sets the score of the specified member.
+     *
+     * @param member the specified member
+     * @param score  the specified score
+     */
+    public synchronized void set(final String member, final long score) {
+        remove0(member);
+        if (score < floor) {
+            return;
+        }
+
+        final Entry entry = new Entry(member, score);
+        final Node[] parts = split(root, entry);
+        root = merge(merge(parts[0], new Node(entry, random.nextInt())), parts[1]);
+        members.put(member, entry);
+
+        while (size(root) > capacity) {
+            Node last = root;
+            while (null != last.right) {
+                last = last.right;
+            }
+
+            final Entry evicted = last.entry;
+            root = remove(root, evicted);
+            members.remove(evicted.member);
+            floor = Math.max(floor, evicted.score);
+        }
+    }
+
+    /**
+     * Adds the specified delta to the score of the specified member.
+     *
+     * @param member the specified member
+     * @param delta  the specified delta
+     */
+    public synchronized void increment(final String member, final long delta) {
+        final Entry entry = members.get(member);
+        if (null != entry) {
+            set(member, entry.score + delta);
+        } else if (Long.MIN_VALUE == floor) {
+            set(member, delta);
+        }
+    }
+
+    /**
+     * Sets the score of the specified member to the specified score if it is greater than the current one.
+     *
+     * @param member the specified member
+     * @param score  the specified score
+     */
+    public synchronized void max(final String member, final long score) {
+        final Entry entry = members.get(member);
+        if (null == entry || entry.score < score) {
+            set(member, score);
+        }
+    }
+
+    /**
+     * Removes the specified member.
+     *
+     * @param member the specified member
+     */
+    public synchronized void remove(final String member) {
+        remove0(member);
+    }
+
+    /**
+     * Removes all members.
+     */
+    public synchronized void clear() {
+        root = null;
+        members.clear();
+        floor = Long.MIN_VALUE;
+    }
+
+    /**
+     * Gets the top members.
+     *
+     * @param fetchSize the specified fetch size
+     * @return top members, ordered by rank
+     */
+    public synchronized List<String> getTop(final int fetchSize) {
+        final List<String> ret = new ArrayList<>(Math.max(0, Math.min(fetchSize, size(root))));
+        final Deque<Node> path = new ArrayDeque<>();
+        Node node = root;
+        while (ret.size() < fetchSize && (null != node || !path.isEmpty())) {
+            if (null != node) {
+                path.push(node);
+                node = node.left;
+            } else {
+                node = path.pop();
+                ret.add(node.entry.member);
+                node = node.right;
+            }
+        }
+
+        return ret;
+    }
+
+    /**
+     * Gets the score of the specified member.
+     *
+     * @param member the specified member
+     * @return score, returns {@code null} if the member is not tracked
+     */
+    public synchronized Long getScore(final String member) {
+        final Entry entry = members.get(member);
+
+        return null == entry ? null : entry.score;
+    }
+
+    /**
+     * Gets the rank of the specified member.
+     *
+     * @param member the specified member
+     * @return rank starts from {@code 1}, returns {@code -1} if the member is not tracked
+     */
+    public synchronized int getRank(final String member) {
+        final Entry entry = members.get(member);
+        if (null == entry) {
+            return -1;
+        }
+
+        int ret = 1;
+        Node node = root;
+        while (true) {
+            final int cmp = ORDER.compare(entry, node.entry);
+            if (0 == cmp) {
+                return ret + size(node.left);
+            }
+
+            if (0 < cmp) {
+                ret += size(node.left) + 1;
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+    }
+
+    /**
+     * Gets the count of tracked members.
+     *
+     * @return count of tracked members
+     */
+    public synchronized int size() {
+        return size(root);
+    }
+
+    /**
+     * Removes the specified member.
+     *
+     * @param member the specified member
+     */
+    private void remove0(final String member) {
+        final Entry entry = members.remove(member);
+        if (null != entry) {
+            root = remove(root, entry);
+        }
+    }
+
+    /**
+     * Splits the specified treap into the entries ordered before the specified entry and the others.
+     *
+     * @param node  the specified treap
+     * @param entry the specified entry
+     * @return the two treaps
+     */
+    private static Node[] split(final Node node, final Entry entry) {
+        if (null == node) {
+            return new Node[2];
+        }
+
+        if (0 > ORDER.compare(node.entry, entry)) {
+            final Node[] ret = split(node.right, entry);
+            node.right = ret[0];
+            ret[0] = resize(node);
+
+            return ret;
+        }
+
+        final Node[] ret = split(node.left, entry);
+        node.left = ret[1];
+        ret[1] = resize(node);
+
+        return ret;
+    }
+
+    /**
+     * Merges the specified treaps, the entries of the left one are ordered before the ones of the right one.
+     *
+     * @param left  the specified left treap
+     * @param right the specified right treap
+     * @return merged treap
+     */
+    private static Node merge(final Node left, final Node right) {
+        if (null == left) {
+            return right;
+        }
+
+        if (null == right) {
+            return left;
+        }
+
+        if (left.priority > right.priority) {
+            left.right = merge(left.right, right);
+
+            return resize(left);
+        }
+
+        right.left = merge(left, right.left);
+
+        return resize(right);
+    }
+
+    /**
+     * Removes the specified entry from the specified treap.
+     *
+     * @param node  the specified treap containing the entry
+     * @param entry the specified entry
+     * @return the treap without the entry
+     */
+    private static Node remove(final Node node, final Entry entry) {
+        final int cmp = ORDER.compare(entry, node.entry);
+        if (0 == cmp) {
+            return merge(node.left, node.right);
+        }
+
+        if (0 > cmp) {
+            node.left = remove(node.left, entry);
+        } else {
+            node.right = remove(node.right, entry);
+        }
+
+        return resize(node);
+    }
+
+    private static Node resize(final Node node) {
+        node.size = 1 + size(node.left) + size(node.right);
+
+        return node;
+    }
+
+    private static int size(final Node node) {
+        return null == node ? 0 : node.size;
+    }
+
+    /**
+     * Treap node.
+     */
+    private static final class Node {
+
+        /**
+         * Entry.
+         */
+        private final Entry entry;
+
+        /**
+         * Heap priority.
+         */
+        private final int priority;
+
+        /**
+         * Count of entries in the subtree.
+         */
+        private int size = 1;
+
+        /**
+         * Left child, entries ordered before.
+         */
+        private Node left;
+
+        /**
+         * Right child, entries ordered after.
+         */
+        private Node right;
+
+        /**
+         * Constructs a node.
+         *
+         * @param entry    the specified entry
+         * @param priority the specified heap priority
+         */
+        private Node(final Entry entry, final int priority) {
+            this.entry = entry;
+            this.priority = priority;
+        }
+    }
+
+    /**
+     * Leaderboard entry.
+     */
+    private static final class Entry {
+
+        /**
+         * Member.
+         */
+        private final String member;
+
+        /**
+         * Score.
+         */
+        private final long score;
+
+        /**
+         * Constructs an entry.
+         *
+         * @param member the specified member
+         * @param score  the specified score
+         */
+        private Entry(final String member, final long score) {
+            this.member = member;
+            this.score = score;
+        }
+    }
+}
@@ -0,0 +1,397 @@
+/*
+ * Symphony - A modern community (forum/BBS/SNS/blog) platform written in Java.
+ * Copyright (C) 2012-2018, b3log.org & hacpai.com
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.b3log.symphony.util;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.lang.StringUtils;
+import org.b3log.latke.logging.Level;
+import org.b3log.latke.logging.Logger;
+import org.json.JSONObject;
+
+import java.net.URL;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Link crawler.
+ * <p>
+ * Crawls run on a dedicated bounded worker pool. Pending URLs are de-duplicated by link address hash (SHA-1 of the
+ * URL), queued per host, and dispatched only while the host is under its concurrency limit and its politeness
+ * interval has elapsed since its last crawl finished. Crawl results (including failures) are cached for a TTL, a URL
+ * crawled within the TTL is not crawled again.
+ * </p>
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.0.0, Oct 25, 2018
+ * @since 3.4.3
+ */
+public class LinkCrawler {
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOGGER = Logger.getLogger(LinkCrawler.class);
+
+    /**
+     * Max count of cached crawl results.
+     */
+    private static final int CACHE_MAX_CNT = 4096;
+
+    /**
+     * Crawl function.
+     */
+    private final Fetcher fetcher;
+
+    /**
+     * Worker count.
+     */
+    private final int workers;
+
+    /**
+     * Max count of pending URLs.
+     */
+    private final int queueCapacity;
+
+    /**
+     * Max concurrent crawls of a host.
+     */
+    private final int perHostConcurrency;
+
+    /**
+     * Min interval in milliseconds between two crawls of a host.
+     */
+    private final long perHostInterval;
+
+    /**
+     * Crawl result TTL in milliseconds.
+     */
+    private final long cacheTTL;
+
+    /**
+     * Pending URLs by host, &lt;host, URLs&gt;.
+     */
+    private final Map<String, Deque<String>> pending = new LinkedHashMap<>();
+
+    /**
+     * Hashes of pending and running URLs.
+     */
+    private final Set<String> queued = new HashSet<>();
+
+    /**
+     * Host states, &lt;host, [running count, next allowed time]&gt;.
+     */
+    private final Map<String, long[]> hosts = new HashMap<>();
+
+    /**
+     * Crawl result cache, &lt;hash, [crawled time, result]&gt;.
+     */
+    private final Map<String, Object[]> cache = new LinkedHashMap<String, Object[]>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, Object[]> eldest) {
+            return size() > CACHE_MAX_CNT;
+        }
+    };
+
+    /**
+     * Count of pending URLs.
+     */
+    private int pendingCnt;
+
+    /**
+     * Count of running crawls.
+     */
+    private int runningCnt;
+
+    /**
+     * Count of finished crawls.
+     */
+    private final AtomicInteger crawledCnt = new AtomicInteger();
+
+    /**
+     * Worker pool.
+     */
+    private ExecutorService pool;
+
+    /**
+     * Dispatcher thread.
+     */
+    private Thread dispatcher;
+
+    /**
+     * Whether this crawler is running.
+     */
+    private volatile boolean running;
+
+    /**
+     * Constructs a link crawler.
+     *
+     * @param fetcher            the specified crawl function
+     * @param workers            the specified worker count
+     * @param queueCapacity      the specified max count of pending URLs
+     * @param perHostConcurrency the specified max concurrent crawls of a host
+     * @param perHostInterval    the specified min interval in milliseconds between two crawls of a host
+     * @param cacheTTL           the specified crawl result TTL in milliseconds
+     */
+    public LinkCrawler(final Fetcher fetcher, final int workers, final int queueCapacity,
+                       final int perHostConcurrency, final long perHostInterval, final long cacheTTL) {
+        this.fetcher = fetcher;
+        this.workers = workers;
+        this.queueCapacity = queueCapacity;
+        this.perHostConcurrency = perHostConcurrency;
+        this.perHostInterval = perHostInterval;
+        this.cacheTTL = cacheTTL;
+    }
+
+    /**
+     * Starts this crawler.
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+
+        final AtomicInteger threadNum = new AtomicInteger();
+        pool = Executors.newFixedThreadPool(workers, r -> {
+            final Thread ret = new Thread(r, "LinkCrawler-" + threadNum.incrementAndGet());
+            ret.setDaemon(true);
+
+            return ret;
+        });
+        dispatcher = new Thread(this::dispatch, "LinkCrawler-Dispatcher");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    /**
+     * Stops this crawler, pending URLs are discarded and running crawls are waited for a while.
+     */
+    public void stop() {
+        synchronized (this) {
+            if (!running) {
+                return;
+            }
+            running = false;
+            pending.clear();
+            pendingCnt = 0;
+            notifyAll();
+        }
+
+        pool.shutdown();
+        try {
+            pool.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Submits the specified URL to crawl. Does nothing if the URL is queued, is crawled within the TTL or the queue
+     * is full.
+     *
+     * @param url the specified URL
+     * @return {@code true} if queued, returns {@code false} otherwise
+     */
+    public synchronized boolean submit(final String url) {
+        final String host = getHost(url);
+        if (!running || null == host) {
+            return false;
+        }
+
+        final String hash = DigestUtils.sha1Hex(url);
+        if (queued.contains(hash) || null != getCached(hash)) {
+            return false;
+        }
+
+        if (pendingCnt >= queueCapacity) {
+            LOGGER.log(Level.DEBUG, "Crawl queue is full, drops [" + url + "]");
+
+            return false;
+        }
+
+        queued.add(hash);
+        pending.computeIfAbsent(host, k -> new ArrayDeque<>()).add(url);
+        pendingCnt++;
+        notifyAll();
+
+        return true;
+    }
+
+    /**
+     * Gets the cached crawl result of the specified URL.
+     *
+     * @param url the specified URL
+     * @return crawl result, returns {@code null} if not found, expired or the crawl failed
+     */
+    public synchronized JSONObject getResult(final String url) {
+        final Object[] cached = getCached(DigestUtils.sha1Hex(url));
+
+        return null == cached ? null : (JSONObject) cached[1];
+    }
+
+    /**
+     * Gets the count of pending and running URLs.
+     *
+     * @return count of pending and running URLs
+     */
+    public synchronized int size() {
+        return queued.size();
+    }
+
+    /**
+     * Gets the count of finished crawls.
+     *
+     * @return count of finished crawls
+     */
+    public int getCrawledCount() {
+        return crawledCnt.get();
+    }
+
+    /**
+     * Dispatches pending URLs to the worker pool.
+     */
+    private void dispatch() {
+        synchronized (this) {
+            while (running) {
+                long wait = Long.MAX_VALUE;
+                final long now = System.currentTimeMillis();
+                final Iterator<Map.Entry<String, Deque<String>>> iterator = pending.entrySet().iterator();
+                while (runningCnt < workers && iterator.hasNext()) {
+                    final Map.Entry<String, Deque<String>> entry = iterator.next();
+                    final String host = entry.getKey();
+                    final long[] state = hosts.computeIfAbsent(host, k -> new long[2]);
+                    if (state[0] >= perHostConcurrency) {
+                        continue;
+                    }
+
+                    if (state[1] > now) {
+                        wait = Math.min(wait, state[1] - now);
+
+                        continue;
+                    }
+
+                    final String url = entry.getValue().poll();
+                    if (entry.getValue().isEmpty()) {
+                        iterator.remove();
+                    }
+                    pendingCnt--;
+                    state[0]++;
+                    runningCnt++;
+                    pool.submit(() -> crawl(host, url));
+                }
+
+                hosts.entrySet().removeIf(e -> 0 == e.getValue()[0] && e.getValue()[1] <= now && !pending.containsKey(e.getKey()));
+
+                try {
+                    if (Long.MAX_VALUE == wait) {
+                        wait();
+                    } else {
+                        wait(wait);
+                    }
+                } catch (final InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Crawls the specified URL.
+     *
+     * @param host the specified host
+     * @param url  the specified URL
+     */
+    private void crawl(final String host, final String url) {
+        JSONObject result = null;
+        try {
+            result = fetcher.fetch(url);
+        } catch (final Exception e) {
+            LOGGER.log(Level.DEBUG, "Crawls [" + url + "] failed", e);
+        } finally {
+            crawledCnt.incrementAndGet();
+            synchronized (this) {
+                final String hash = DigestUtils.sha1Hex(url);
+                cache.put(hash, new Object[]{System.currentTimeMillis(), result});
+                queued.remove(hash);
+                final long[] state = hosts.get(host);
+                state[0]--;
+                state[1] = System.currentTimeMillis() + perHostInterval;
+                runningCnt--;
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Gets the cached entry of the specified hash, removes it if expired.
+     *
+     * @param hash the specified hash
+     * @return cached entry, returns {@code null} if not found or expired
+     */
+    private Object[] getCached(final String hash) {
+        final Object[] ret = cache.get(hash);
+        if (null == ret) {
+            return null;
+        }
+
+        if (System.currentTimeMillis() - (Long) ret[0] > cacheTTL) {
+            cache.remove(hash);
+
+            return null;
+        }
+
+        return ret;
+    }
+
+    /**
+     * Gets the host of the specified URL.
+     *
+     * @param url the specified URL
+     * @return host, returns {@code null} if the URL is not a valid HTTP(S) URL
+     */
+    private static String getHost(final String url) {
+        try {
+            final URL u = new URL(url);
+            if (!StringUtils.equalsIgnoreCase(u.getProtocol(), "http") && !StringUtils.equalsIgnoreCase(u.getProtocol(), "https")) {
+                return null;
+            }
+
+            return StringUtils.lowerCase(u.getHost());
+        } catch (final Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * Crawl function.
+     */
+    public interface Fetcher {
+
+        /**
+         * Crawls the specified URL.
+         *
+         * @param url the specified URL
+         * @return crawl result, may be {@code null}
+         * @throws Exception exception
+         */
+        JSONObject fetch(final String url) throws Exception;
+    }
+}
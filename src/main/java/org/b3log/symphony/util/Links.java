@@ -42,7 +42,7 @@ import java.util.regex.Pattern;
  * Link utilities.
  *
  * @author <a href="http://88250.b3log.org">Liang Ding</a>
- * @version 1.0.1.1, Apr 5, 2018
+ * @version 1.0.2.0, Oct 25, 2018
  * @since 1.6.0
  */
 public final class Links {
@@ -53,7 +53,8 @@ public final class Links {
     private static final Logger LOGGER = Logger.getLogger(Links.class);
 
     /**
-     * Gets link from the specified URL.
+     * Gets link from the specified URL. Runs in the caller thread, callers should crawl in a dedicated pool such as
+     * {@link LinkCrawler}.
      *
      * @param url the specified URL
      * @return link like this: <pre>
@@ -68,13 +69,7 @@ public final class Links {
      * </pre>
      */
     public static JSONObject getLink(final String url) {
-        try {
-            return Symphonys.EXECUTOR_SERVICE.submit(new Spider(url)).get();
-        } catch (final Exception e) {
-            LOGGER.log(Level.ERROR, "Parses URL [" + url + "] failed", e);
-
-            return null;
-        }
+        return new Spider(url).call();
     }
 
     private static boolean containsChinese(final String str) {
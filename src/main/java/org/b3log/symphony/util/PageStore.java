@@ -0,0 +1,413 @@
+/*
+ * Symphony - A modern community (forum/BBS/SNS/blog) platform written in Java.
+ * Copyright (C) 2012-2018, b3log.org & hacpai.com
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.b3log.symphony.util;
+
+import org.apache.commons.codec.digest.DigestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Page store, keeps gzipped pages by key within a byte budget.
+ * <p>
+ * Each page has dependency tags, invalidating a tag removes all pages depending on it. Pages expire after a fixed
+ * time, least recently served pages are evicted if the byte budget is exceeded. Concurrent loads of a missing key are
+ * collapsed into a single load, the other callers wait for its result. A page loaded across an invalidation is served
+ * to its caller but not stored, it may be rendered from data older than the invalidation.
+ * </p>
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.0.0, Oct 25, 2018
+ * @since 3.4.3
+ */
+public class PageStore {
+
+    /**
+     * Max time in milliseconds of waiting for a collapsed load.
+     */
+    private static final long LOAD_WAIT = 10000;
+
+    /**
+     * Max bytes of stored pages.
+     */
+    private final long maxBytes;
+
+    /**
+     * Expiration time in milliseconds of a page.
+     */
+    private final long expire;
+
+    /**
+     * Stored pages, &lt;key, page&gt;, in access order.
+     */
+    private final LinkedHashMap<String, Page> pages = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * Dependency index, &lt;tag, keys&gt;.
+     */
+    private final Map<String, Set<String>> keysByTag = new HashMap<>();
+
+    /**
+     * Pending loads, &lt;key, future page&gt;.
+     */
+    private final Map<String, CompletableFuture<Page>> loads = new ConcurrentHashMap<>();
+
+    /**
+     * Bytes of stored pages.
+     */
+    private long bytes;
+
+    /**
+     * Invalidation generation, increases on each invalidation.
+     */
+    private long generation;
+
+    /**
+     * Hit count.
+     */
+    private final AtomicLong hitCnt = new AtomicLong();
+
+    /**
+     * Miss count.
+     */
+    private final AtomicLong missCnt = new AtomicLong();
+
+    /**
+     * Count of misses served by a collapsed load.
+     */
+    private final AtomicLong collapsedCnt = new AtomicLong();
+
+    /**
+     * Constructs a page store.
+     *
+     * @param maxBytes the specified max bytes of stored pages
+     * @param expire   the specified expiration time in milliseconds of a page
+     */
+    public PageStore(final long maxBytes, final long expire) {
+        this.maxBytes = maxBytes;
+        this.expire = expire;
+    }
+
+    /**
+     * Gets a page by the specified key, loads it with the specified loader if missing. Only one load of a key runs at
+     * a time, concurrent callers of the same key wait for it.
+     *
+     * @param key    the specified key
+     * @param loader the specified loader
+     * @return page, returns {@code null} if the loader returns {@code null}, or fails or times out in another caller
+     * @throws Exception exception of the loader
+     */
+    public Page get(final String key, final Loader loader) throws Exception {
+        final Page cached = get(key);
+        if (null != cached) {
+            hitCnt.incrementAndGet();
+
+            return cached;
+        }
+
+        missCnt.incrementAndGet();
+
+        final CompletableFuture<Page> load = new CompletableFuture<>();
+        final CompletableFuture<Page> pending = loads.putIfAbsent(key, load);
+        if (null != pending) {
+            collapsedCnt.incrementAndGet();
+            try {
+                return pending.get(LOAD_WAIT, TimeUnit.MILLISECONDS);
+            } catch (final ExecutionException | TimeoutException e) {
+                return null;
+            }
+        }
+
+        Page ret = null;
+        try {
+            final long gen = getGeneration();
+            ret = loader.load();
+            if (null != ret) {
+                put(key, ret, gen);
+            }
+
+            return ret;
+        } catch (final Exception e) {
+            load.completeExceptionally(e);
+
+            throw e;
+        } finally {
+            loads.remove(key);
+            load.complete(ret);
+        }
+    }
+
+    /**
+     * Invalidates the specified tags, removes pages depending on any of them.
+     *
+     * @param tags the specified tags
+     */
+    public synchronized void invalidate(final Collection<String> tags) {
+        generation++;
+        for (final String tag : tags) {
+            final Set<String> keys = keysByTag.remove(tag);
+            if (null == keys) {
+                continue;
+            }
+
+            for (final String key : keys) {
+                remove(key);
+            }
+        }
+    }
+
+    /**
+     * Removes all pages.
+     */
+    public synchronized void clear() {
+        generation++;
+        pages.clear();
+        keysByTag.clear();
+        bytes = 0;
+    }
+
+    /**
+     * Gets the hit count.
+     *
+     * @return hit count
+     */
+    public long getHitCount() {
+        return hitCnt.get();
+    }
+
+    /**
+     * Gets the miss count.
+     *
+     * @return miss count
+     */
+    public long getMissCount() {
+        return missCnt.get();
+    }
+
+    /**
+     * Gets the count of misses served by a collapsed load.
+     *
+     * @return collapsed count
+     */
+    public long getCollapsedCount() {
+        return collapsedCnt.get();
+    }
+
+    /**
+     * Gets the bytes of stored pages.
+     *
+     * @return bytes
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Gets the count of stored pages.
+     *
+     * @return count of stored pages
+     */
+    public synchronized int size() {
+        return pages.size();
+    }
+
+    private synchronized long getGeneration() {
+        return generation;
+    }
+
+    private synchronized Page get(final String key) {
+        final Page ret = pages.get(key);
+        if (null == ret) {
+            return null;
+        }
+
+        if (System.currentTimeMillis() - ret.time > expire) {
+            remove(key);
+
+            return null;
+        }
+
+        return ret;
+    }
+
+    private synchronized void put(final String key, final Page page, final long gen) {
+        if (gen != generation || page.body.length > maxBytes) {
+            return;
+        }
+
+        remove(key);
+        pages.put(key, page);
+        bytes += page.body.length;
+        for (final String tag : page.tags) {
+            keysByTag.computeIfAbsent(tag, k -> new HashSet<>()).add(key);
+        }
+
+        final Iterator<Map.Entry<String, Page>> eldest = pages.entrySet().iterator();
+        while (bytes > maxBytes) {
+            final Map.Entry<String, Page> entry = eldest.next();
+            eldest.remove();
+            unindex(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private void remove(final String key) {
+        unindex(key, pages.remove(key));
+    }
+
+    private void unindex(final String key, final Page page) {
+        if (null == page) {
+            return;
+        }
+
+        bytes -= page.body.length;
+        for (final String tag : page.tags) {
+            final Set<String> keys = keysByTag.get(tag);
+            if (null != keys) {
+                keys.remove(key);
+                if (keys.isEmpty()) {
+                    keysByTag.remove(tag);
+                }
+            }
+        }
+    }
+
+    /**
+     * Page loader.
+     */
+    @FunctionalInterface
+    public interface Loader {
+
+        /**
+         * Loads a page.
+         *
+         * @return page, returns {@code null} if it should not be stored
+         * @throws Exception exception
+         */
+        Page load() throws Exception;
+    }
+
+    /**
+     * Page, a gzipped body with its content type, ETag and dependency tags.
+     */
+    public static final class Page {
+
+        /**
+         * Gzipped body.
+         */
+        private final byte[] body;
+
+        /**
+         * Content type.
+         */
+        private final String contentType;
+
+        /**
+         * ETag.
+         */
+        private final String etag;
+
+        /**
+         * Dependency tags.
+         */
+        private final Set<String> tags;
+
+        /**
+         * Creation time.
+         */
+        private final long time = System.currentTimeMillis();
+
+        /**
+         * Constructs a page.
+         *
+         * @param content     the specified content, not gzipped
+         * @param contentType the specified content type
+         * @param tags        the specified dependency tags
+         */
+        public Page(final byte[] content, final String contentType, final Collection<String> tags) {
+            this.contentType = contentType;
+            this.tags = new HashSet<>(tags);
+            etag = "\"" + DigestUtils.md5Hex(content) + "\"";
+
+            final ByteArrayOutputStream out = new ByteArrayOutputStream(content.length / 4 + 64);
+            try (final GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+                gzip.write(content);
+            } catch (final IOException e) {
+                throw new IllegalStateException(e);
+            }
+            body = out.toByteArray();
+        }
+
+        /**
+         * Gets the gzipped body.
+         *
+         * @return gzipped body
+         */
+        public byte[] getGzipBody() {
+            return body;
+        }
+
+        /**
+         * Gets the body, not gzipped.
+         *
+         * @return body
+         */
+        public byte[] getBody() {
+            try (final InputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+                final ByteArrayOutputStream out = new ByteArrayOutputStream(body.length * 4);
+                final byte[] buf = new byte[8192];
+                int len;
+                while (-1 != (len = in.read(buf))) {
+                    out.write(buf, 0, len);
+                }
+
+                return out.toByteArray();
+            } catch (final IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        /**
+         * Gets the content type.
+         *
+         * @return content type
+         */
+        public String getContentType() {
+            return contentType;
+        }
+
+        /**
+         * Gets the ETag.
+         *
+         * @return ETag
+         */
+        public String getETag() {
+            return etag;
+        }
+    }
+}
@@ -0,0 +1,305 @@
+/*
+ * Symphony - A modern community (forum/BBS/SNS/blog) platform written in Java.
+ * Copyright (C) 2012-2018, b3log.org & hacpai.com
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.b3log.symphony.util;
+
+import org.apache.commons.lang.StringUtils;
+import org.b3log.symphony.model.Comment;
+import org.b3log.symphony.model.Pointtransfer;
+import org.b3log.symphony.model.Reward;
+import org.json.JSONObject;
+
+import java.util.*;
+
+/**
+ * Articles, comments, rewards and users referenced by a page of pointtransfers.
+ * <p>
+ * Referenced ids of the whole page are gathered first, then each entity type is loaded once. Comments and rewards
+ * are loaded before articles and users since they reference articles and reward senders.
+ * </p>
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.0.0, Oct 25, 2018
+ * @since 3.4.3
+ */
+public class PointtransferReferences {
+
+    /**
+     * The specified user id.
+     */
+    private final String userId;
+
+    /**
+     * The specified pointtransfers.
+     */
+    private final List<JSONObject> records;
+
+    /**
+     * Referenced article ids.
+     */
+    private final Set<String> articleIds = new HashSet<>();
+
+    /**
+     * Referenced comment ids.
+     */
+    private final Set<String> commentIds = new HashSet<>();
+
+    /**
+     * Referenced reward ids.
+     */
+    private final Set<String> rewardIds = new HashSet<>();
+
+    /**
+     * Referenced user ids.
+     */
+    private final Set<String> userIds = new HashSet<>();
+
+    /**
+     * Loaded articles, &lt;id, article&gt;.
+     */
+    private Map<String, JSONObject> articles = Collections.emptyMap();
+
+    /**
+     * Loaded comments, &lt;id, comment&gt;.
+     */
+    private Map<String, JSONObject> comments = Collections.emptyMap();
+
+    /**
+     * Loaded rewards, &lt;id, reward&gt;.
+     */
+    private Map<String, JSONObject> rewards = Collections.emptyMap();
+
+    /**
+     * Loaded users, &lt;id, user&gt;.
+     */
+    private Map<String, JSONObject> users = Collections.emptyMap();
+
+    /**
+     * Gathers the references of the specified pointtransfers.
+     *
+     * @param records the specified pointtransfers
+     * @param userId  the specified id of the user who views the pointtransfers
+     */
+    public PointtransferReferences(final List<JSONObject> records, final String userId) {
+        this.records = records;
+        this.userId = userId;
+
+        for (final JSONObject record : records) {
+            final String dataId = record.optString(Pointtransfer.DATA_ID);
+            switch (record.optInt(Pointtransfer.TYPE)) {
+                case Pointtransfer.TRANSFER_TYPE_C_ADD_ARTICLE:
+                case Pointtransfer.TRANSFER_TYPE_C_UPDATE_ARTICLE:
+                case Pointtransfer.TRANSFER_TYPE_C_ADD_ARTICLE_REWARD:
+                case Pointtransfer.TRANSFER_TYPE_C_STICK_ARTICLE:
+                case Pointtransfer.TRANSFER_TYPE_C_ADD_ARTICLE_BROADCAST:
+                case Pointtransfer.TRANSFER_TYPE_C_PERFECT_ARTICLE:
+                    articleIds.add(dataId);
+
+                    break;
+                case Pointtransfer.TRANSFER_TYPE_C_ADD_COMMENT:
+                case Pointtransfer.TRANSFER_TYPE_C_UPDATE_COMMENT:
+                case Pointtransfer.TRANSFER_TYPE_C_AT_PARTICIPANTS:
+                    commentIds.add(dataId);
+                    if (Pointtransfer.TRANSFER_TYPE_C_ADD_COMMENT == record.optInt(Pointtransfer.TYPE) && isIn(record, userId)) {
+                        userIds.add(record.optString(Pointtransfer.FROM_ID));
+                    }
+
+                    break;
+                case Pointtransfer.TRANSFER_TYPE_C_ARTICLE_REWARD:
+                    rewardIds.add(dataId);
+                    if (isIn(record, userId)) {
+                        userIds.add(record.optString(Pointtransfer.TO_ID));
+                    }
+
+                    break;
+                case Pointtransfer.TRANSFER_TYPE_C_COMMENT_REWARD:
+                case Pointtransfer.TRANSFER_TYPE_C_ARTICLE_THANK:
+                case Pointtransfer.TRANSFER_TYPE_C_QNA_OFFER:
+                    rewardIds.add(dataId);
+                    userIds.add(getPeerId(record, userId));
+
+                    break;
+                case Pointtransfer.TRANSFER_TYPE_C_ACCOUNT2ACCOUNT:
+                    userIds.add(getPeerId(record, userId));
+
+                    break;
+                case Pointtransfer.TRANSFER_TYPE_C_INVITE_REGISTER:
+                case Pointtransfer.TRANSFER_TYPE_C_INVITED_REGISTER:
+                case Pointtransfer.TRANSFER_TYPE_C_INVITECODE_USED:
+                    userIds.add(dataId);
+
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Loads the referenced entities, each loader is invoked at most once.
+     *
+     * @param commentLoader the specified comment loader
+     * @param rewardLoader  the specified reward loader
+     * @param articleLoader the specified article loader
+     * @param userLoader    the specified user loader
+     * @throws Exception exception
+     */
+    public void load(final Loader commentLoader, final Loader rewardLoader,
+                     final Loader articleLoader, final Loader userLoader) throws Exception {
+        comments = load(commentLoader, commentIds);
+        for (final JSONObject comment : comments.values()) {
+            articleIds.add(comment.optString(Comment.COMMENT_ON_ARTICLE_ID));
+        }
+
+        rewards = load(rewardLoader, rewardIds);
+        for (final JSONObject reward : rewards.values()) {
+            articleIds.add(reward.optString(Reward.DATA_ID));
+        }
+
+        for (final JSONObject record : records) {
+            if (Pointtransfer.TRANSFER_TYPE_C_ARTICLE_REWARD == record.optInt(Pointtransfer.TYPE) && !isIn(record, userId)) {
+                final JSONObject reward = rewards.get(record.optString(Pointtransfer.DATA_ID));
+                if (null != reward) {
+                    userIds.add(reward.optString(Reward.SENDER_ID));
+                }
+            }
+        }
+
+        articles = load(articleLoader, articleIds);
+        users = load(userLoader, userIds);
+    }
+
+    /**
+     * Gets a loaded article by the specified id.
+     *
+     * @param id the specified id
+     * @return article, returns {@code null} if not found
+     */
+    public JSONObject getArticle(final String id) {
+        return articles.get(id);
+    }
+
+    /**
+     * Gets a loaded comment by the specified id.
+     *
+     * @param id the specified id
+     * @return comment, returns {@code null} if not found
+     */
+    public JSONObject getComment(final String id) {
+        return comments.get(id);
+    }
+
+    /**
+     * Gets a loaded reward by the specified id.
+     *
+     * @param id the specified id
+     * @return reward, returns {@code null} if not found
+     */
+    public JSONObject getReward(final String id) {
+        return rewards.get(id);
+    }
+
+    /**
+     * Gets a loaded user by the specified id.
+     *
+     * @param id the specified id
+     * @return user, returns {@code null} if not found
+     */
+    public JSONObject getUser(final String id) {
+        return users.get(id);
+    }
+
+    /**
+     * Gets the type string of the specified pointtransfer viewed by the specified user, for example {@code 3In} for
+     * a comment received by the user, used to look up the type labels.
+     *
+     * @param record the specified pointtransfer
+     * @param userId the specified user id
+     * @return type string
+     */
+    public static String getTypeStr(final JSONObject record, final String userId) {
+        final String ret = record.optString(Pointtransfer.TYPE);
+
+        return isIn(record, userId) ? ret + "In" : ret;
+    }
+
+    /**
+     * Gets the id of the other side of the specified pointtransfer viewed by the specified user, the sender for an
+     * incoming transfer and the receiver otherwise.
+     *
+     * @param record the specified pointtransfer
+     * @param userId the specified user id
+     * @return peer user id
+     */
+    public static String getPeerId(final JSONObject record, final String userId) {
+        return isIn(record, userId) ? record.optString(Pointtransfer.FROM_ID) : record.optString(Pointtransfer.TO_ID);
+    }
+
+    /**
+     * Checks whether the specified pointtransfer is an incoming one of a two-way type for the specified user.
+     *
+     * @param record the specified pointtransfer
+     * @param userId the specified user id
+     * @return {@code true} if it is, returns {@code false} otherwise
+     */
+    private static boolean isIn(final JSONObject record, final String userId) {
+        switch (record.optInt(Pointtransfer.TYPE)) {
+            case Pointtransfer.TRANSFER_TYPE_C_ARTICLE_REWARD:
+                return userId.equals(record.optString(Pointtransfer.FROM_ID));
+            case Pointtransfer.TRANSFER_TYPE_C_ADD_COMMENT:
+            case Pointtransfer.TRANSFER_TYPE_C_ACCOUNT2ACCOUNT:
+            case Pointtransfer.TRANSFER_TYPE_C_COMMENT_REWARD:
+            case Pointtransfer.TRANSFER_TYPE_C_ARTICLE_THANK:
+            case Pointtransfer.TRANSFER_TYPE_C_QNA_OFFER:
+                return userId.equals(record.optString(Pointtransfer.TO_ID));
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Loads entities by the specified ids with the specified loader.
+     *
+     * @param loader the specified loader
+     * @param ids    the specified ids
+     * @return entities, &lt;id, entity&gt;
+     * @throws Exception exception
+     */
+    private static Map<String, JSONObject> load(final Loader loader, final Set<String> ids) throws Exception {
+        ids.removeIf(StringUtils::isBlank);
+        if (ids.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        return loader.load(ids);
+    }
+
+    /**
+     * Entity loader.
+     */
+    public interface Loader {
+
+        /**
+         * Loads entities by the specified ids.
+         *
+         * @param ids the specified ids
+         * @return entities, &lt;id, entity&gt;
+         * @throws Exception exception
+         */
+        Map<String, JSONObject> load(final Set<String> ids) throws Exception;
+    }
+}
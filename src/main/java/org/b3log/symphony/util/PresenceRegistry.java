@@ -0,0 +1,311 @@
+/*
+ * Symphony - A modern community (forum/BBS/SNS/blog) platform written in Java.
+ * Copyright (C) 2012-2018, b3log.org & hacpai.com
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.b3log.symphony.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Presence registry, the in-memory online state of users (last seen time, IP and connection count).
+ * <p>
+ * A presence is due for persisting when its online state differs from the persisted one (a real transition), or
+ * when it is online and has not been persisted for the persist interval. Heartbeats only touch memory. Offline
+ * presences are dropped once persisted. The registry is the authority for whether a user is online now, the persisted
+ * online flag lags behind by the flush interval.
+ * </p>
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.2.0, Oct 25, 2018
+ * @since 3.4.3
+ */
+public class PresenceRegistry {
+
+    /**
+     * Min interval in milliseconds between two persistings of an online presence without transition.
+     */
+    private final long persistInterval;
+
+    /**
+     * Entries, &lt;user id, entry&gt;.
+     */
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Count of online users.
+     */
+    private final AtomicInteger onlineCnt = new AtomicInteger();
+
+    /**
+     * Constructs a presence registry with the specified persist interval.
+     *
+     * @param persistInterval the specified persist interval in milliseconds
+     */
+    public PresenceRegistry(final long persistInterval) {
+        this.persistInterval = persistInterval;
+    }
+
+    /**
+     * Adds a connection of the specified user.
+     *
+     * @param userId the specified user id
+     * @param ip     the specified IP, could be {@code null}
+     * @param now    the specified current time
+     */
+    public void connect(final String userId, final String ip, final long now) {
+        entries.compute(userId, (id, entry) -> {
+            final Entry ret = null == entry ? new Entry() : entry;
+            if (0 == ret.connections++) {
+                onlineCnt.incrementAndGet();
+            }
+            ret.seen(ip, now);
+
+            return ret;
+        });
+    }
+
+    /**
+     * Records a heartbeat of the specified user. A heartbeat of an unknown user counts as a connection.
+     *
+     * @param userId the specified user id
+     * @param ip     the specified IP, could be {@code null}
+     * @param now    the specified current time
+     */
+    public void heartbeat(final String userId, final String ip, final long now) {
+        entries.compute(userId, (id, entry) -> {
+            final Entry ret = null == entry ? new Entry() : entry;
+            if (0 == ret.connections) {
+                ret.connections = 1;
+                onlineCnt.incrementAndGet();
+            }
+            ret.seen(ip, now);
+
+            return ret;
+        });
+    }
+
+    /**
+     * Removes a connection of the specified user.
+     *
+     * @param userId the specified user id
+     * @param now    the specified current time
+     */
+    public void disconnect(final String userId, final long now) {
+        entries.compute(userId, (id, entry) -> {
+            final Entry ret = null == entry ? new Entry() : entry;
+            if (0 < ret.connections && 0 == --ret.connections) {
+                onlineCnt.decrementAndGet();
+            }
+            ret.lastSeen = now;
+
+            return ret;
+        });
+    }
+
+    /**
+     * Checks whether the specified user is online.
+     *
+     * @param userId the specified user id
+     * @return {@code true} if online, returns {@code false} otherwise
+     */
+    public boolean isOnline(final String userId) {
+        final Entry entry = entries.get(userId);
+
+        return null != entry && 0 < entry.connections;
+    }
+
+    /**
+     * Gets the count of online users.
+     *
+     * @return count of online users
+     */
+    public int getOnlineCount() {
+        return onlineCnt.get();
+    }
+
+    /**
+     * Takes the presences due for persisting and marks them persisted.
+     *
+     * @param now the specified current time
+     * @return due presences
+     */
+    public List<Presence> drain(final long now) {
+        final List<Presence> ret = new ArrayList<>();
+        for (final String userId : entries.keySet()) {
+            entries.computeIfPresent(userId, (id, entry) -> {
+                final boolean online = 0 < entry.connections;
+                final boolean transition = null == entry.persistedOnline || online != entry.persistedOnline;
+                if (!transition && (!online || now - entry.persistedAt < persistInterval)) {
+                    return online ? entry : null;
+                }
+
+                ret.add(new Presence(id, online, entry.lastSeen, entry.ip));
+                entry.persistedOnline = online;
+                entry.persistedAt = now;
+
+                return online ? entry : null;
+            });
+        }
+
+        return ret;
+    }
+
+    /**
+     * Marks the specified presence unpersisted, used when persisting failed.
+     *
+     * @param presence the specified presence
+     */
+    public void invalidate(final Presence presence) {
+        entries.compute(presence.getUserId(), (id, entry) -> {
+            final Entry ret;
+            if (null == entry) {
+                ret = new Entry();
+                ret.lastSeen = presence.getLastSeen();
+                ret.ip = presence.getIp();
+            } else {
+                ret = entry;
+            }
+            ret.persistedOnline = null;
+
+            return ret;
+        });
+    }
+
+    /**
+     * Presence, a snapshot of the online state of a user.
+     */
+    public static final class Presence {
+
+        /**
+         * User id.
+         */
+        private final String userId;
+
+        /**
+         * Online flag.
+         */
+        private final boolean online;
+
+        /**
+         * Last seen time.
+         */
+        private final long lastSeen;
+
+        /**
+         * IP, could be {@code null}.
+         */
+        private final String ip;
+
+        /**
+         * Constructs a presence.
+         *
+         * @param userId   the specified user id
+         * @param online   the specified online flag
+         * @param lastSeen the specified last seen time
+         * @param ip       the specified IP
+         */
+        private Presence(final String userId, final boolean online, final long lastSeen, final String ip) {
+            this.userId = userId;
+            this.online = online;
+            this.lastSeen = lastSeen;
+            this.ip = ip;
+        }
+
+        /**
+         * Gets the user id.
+         *
+         * @return user id
+         */
+        public String getUserId() {
+            return userId;
+        }
+
+        /**
+         * Checks whether online.
+         *
+         * @return {@code true} if online, returns {@code false} otherwise
+         */
+        public boolean isOnline() {
+            return online;
+        }
+
+        /**
+         * Gets the last seen time.
+         *
+         * @return last seen time
+         */
+        public long getLastSeen() {
+            return lastSeen;
+        }
+
+        /**
+         * Gets the IP.
+         *
+         * @return IP, could be {@code null}
+         */
+        public String getIp() {
+            return ip;
+        }
+    }
+
+    /**
+     * Registry entry, guarded by the map bin lock.
+     */
+    private static final class Entry {
+
+        /**
+         * Open connection count.
+         */
+        private int connections;
+
+        /**
+         * Last seen time.
+         */
+        private long lastSeen;
+
+        /**
+         * Latest IP.
+         */
+        private String ip;
+
+        /**
+         * Persisted online flag, {@code null} if not persisted yet.
+         */
+        private Boolean persistedOnline;
+
+        /**
+         * Latest persisting time.
+         */
+        private long persistedAt;
+
+        /**
+         * Updates the last seen time and IP.
+         *
+         * @param ip  the specified IP, {@code null} or blank keeps the current one
+         * @param now the specified current time
+         */
+        private void seen(final String ip, final long now) {
+            lastSeen = now;
+            if (null != ip && !ip.isEmpty()) {
+                this.ip = ip;
+            }
+        }
+    }
+}
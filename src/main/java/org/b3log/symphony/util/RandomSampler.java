@@ -0,0 +1,118 @@
+/*
+ * Symphony - A modern community (forum/BBS/SNS/blog) platform written in Java.
+ * Copyright (C) 2012-2018, b3log.org & hacpai.com
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.b3log.symphony.util;
+
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Random sampler, picks distinct ids uniformly from a periodically refreshed id array.
+ * <p>
+ * Sampling uses Floyd's algorithm, it costs O(k) for a sample of size k regardless of the count of ids, and does
+ * not touch the database.
+ * </p>
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.0.0, Oct 25, 2018
+ * @since 3.4.3
+ */
+public class RandomSampler {
+
+    /**
+     * Ids.
+     */
+    private volatile String[] ids = new String[0];
+
+    /**
+     * Replaces the ids with the specified ids.
+     *
+     * @param ids the specified ids
+     */
+    public void reset(final Collection<String> ids) {
+        this.ids = ids.toArray(new String[0]);
+    }
+
+    /**
+     * Gets the count of ids.
+     *
+     * @return count of ids
+     */
+    public int size() {
+        return ids.length;
+    }
+
+    /**
+     * Samples distinct ids.
+     *
+     * @param size the specified sample size
+     * @return sampled ids in random order, at most the count of ids
+     */
+    public List<String> sample(final int size) {
+        return sample(size, ThreadLocalRandom.current());
+    }
+
+    /**
+     * Samples distinct ids with the specified random.
+     *
+     * @param size   the specified sample size
+     * @param random the specified random
+     * @return sampled ids in random order, at most the count of ids
+     */
+    public List<String> sample(final int size, final Random random) {
+        final String[] snapshot = ids;
+        final int[] indexes = sampleIndexes(snapshot.length, size, random);
+        final List<String> ret = new ArrayList<>(indexes.length);
+        for (final int index : indexes) {
+            ret.add(snapshot[index]);
+        }
+
+        return ret;
+    }
+
+    /**
+     * Samples distinct indexes in [0, n).
+     *
+     * @param n      the specified count of indexes
+     * @param k      the specified sample size
+     * @param random the specified random
+     * @return sampled indexes in random order, at most n
+     */
+    public static int[] sampleIndexes(final int n, final int k, final Random random) {
+        final int size = Math.max(0, Math.min(n, k));
+        final Set<Integer> picked = new HashSet<>(size * 2);
+        final int[] ret = new int[size];
+        int i = 0;
+        for (int j = n - size; j < n; j++) {
+            final int t = random.nextInt(j + 1);
+            final int index = picked.add(t) ? t : j;
+            if (index == j) {
+                picked.add(j);
+            }
+            ret[i++] = index;
+        }
+
+        for (int m = size - 1; m > 0; m--) {
+            final int r = random.nextInt(m + 1);
+            final int tmp = ret[m];
+            ret[m] = ret[r];
+            ret[r] = tmp;
+        }
+
+        return ret;
+    }
+}
@@ -0,0 +1,225 @@
+/*
+ * Symphony - A modern community (forum/BBS/SNS/blog) platform written in Java.
+ * Copyright (C) 2012-2018, b3log.org & hacpai.com
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.b3log.symphony.util;
+
+import org.b3log.latke.logging.Level;
+import org.b3log.latke.logging.Logger;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Refreshable list, an immutable snapshot of a list which is replaced atomically on refresh.
+ * <p>
+ * Readers never see a partially loaded list and never lock. A failed refresh keeps the previous snapshot. Each
+ * snapshot carries a generation number and the time its load took.
+ * </p>
+ *
+ * @param <T> the type of elements
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.1.0, Oct 25, 2018
+ * @since 3.4.3
+ */
+public class RefreshableList<T> {
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOGGER = Logger.getLogger(RefreshableList.class);
+
+    /**
+     * Name, used in logs.
+     */
+    private final String name;
+
+    /**
+     * Current snapshot.
+     */
+    private volatile Snapshot<T> snapshot = new Snapshot<>(Collections.emptyList(), 0, 0, 0);
+
+    /**
+     * Constructs a refreshable list with the specified name.
+     *
+     * @param name the specified name
+     */
+    public RefreshableList(final String name) {
+        this.name = name;
+    }
+
+    /**
+     * Gets the elements of the current snapshot.
+     *
+     * @return elements, unmodifiable
+     */
+    public List<T> get() {
+        return snapshot.getElements();
+    }
+
+    /**
+     * Gets the current snapshot.
+     *
+     * @return snapshot
+     */
+    public Snapshot<T> getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Gets a random sample of the current snapshot, the snapshot is not modified.
+     *
+     * @param size the specified sample size
+     * @return sampled elements in random order
+     */
+    public List<T> sample(final int size) {
+        final List<T> elements = snapshot.getElements();
+        final int[] indexes = RandomSampler.sampleIndexes(elements.size(), size, ThreadLocalRandom.current());
+        if (0 == indexes.length) {
+            return Collections.emptyList();
+        }
+
+        final List<T> ret = new ArrayList<>(indexes.length);
+        for (final int index : indexes) {
+            ret.add(elements.get(index));
+        }
+
+        return ret;
+    }
+
+    /**
+     * Loads the elements with the specified loader and swaps them in as a new snapshot.
+     *
+     * @param loader the specified loader
+     * @return {@code true} if refreshed, returns {@code false} if the loader failed
+     */
+    public synchronized boolean refresh(final Loader<T> loader) {
+        final long start = System.currentTimeMillis();
+        final List<T> elements;
+        try {
+            elements = loader.load();
+        } catch (final Exception e) {
+            LOGGER.log(Level.ERROR, "Refreshes [" + name + "] failed, keeps generation [" + snapshot.getGeneration() + "]", e);
+
+            return false;
+        }
+
+        final long now = System.currentTimeMillis();
+        snapshot = new Snapshot<>(Collections.unmodifiableList(new ArrayList<>(elements)), snapshot.getGeneration() + 1,
+                now, now - start);
+        LOGGER.log(Level.DEBUG, "Refreshed [{0}] to generation [{1}] with [{2}] elements in [{3}]ms",
+                name, snapshot.getGeneration(), elements.size(), snapshot.getElapsed());
+
+        return true;
+    }
+
+    /**
+     * Loader of elements.
+     *
+     * @param <T> the type of elements
+     */
+    public interface Loader<T> {
+
+        /**
+         * Loads elements.
+         *
+         * @return elements
+         * @throws Exception exception
+         */
+        List<T> load() throws Exception;
+    }
+
+    /**
+     * Snapshot.
+     *
+     * @param <T> the type of elements
+     */
+    public static final class Snapshot<T> {
+
+        /**
+         * Elements, unmodifiable.
+         */
+        private final List<T> elements;
+
+        /**
+         * Generation number, {@code 0} before the first refresh.
+         */
+        private final long generation;
+
+        /**
+         * Refresh time.
+         */
+        private final long refreshedAt;
+
+        /**
+         * Elapsed time in milliseconds of loading.
+         */
+        private final long elapsed;
+
+        /**
+         * Constructs a snapshot.
+         *
+         * @param elements    the specified elements
+         * @param generation  the specified generation number
+         * @param refreshedAt the specified refresh time
+         * @param elapsed     the specified elapsed time of loading
+         */
+        private Snapshot(final List<T> elements, final long generation, final long refreshedAt, final long elapsed) {
+            this.elements = elements;
+            this.generation = generation;
+            this.refreshedAt = refreshedAt;
+            this.elapsed = elapsed;
+        }
+
+        /**
+         * Gets the elements.
+         *
+         * @return elements, unmodifiable
+         */
+        public List<T> getElements() {
+            return elements;
+        }
+
+        /**
+         * Gets the generation number.
+         *
+         * @return generation number
+         */
+        public long getGeneration() {
+            return generation;
+        }
+
+        /**
+         * Gets the refresh time.
+         *
+         * @return refresh time
+         */
+        public long getRefreshedAt() {
+            return refreshedAt;
+        }
+
+        /**
+         * Gets the elapsed time in milliseconds of loading.
+         *
+         * @return elapsed time
+         */
+        public long getElapsed() {
+            return elapsed;
+        }
+    }
+}
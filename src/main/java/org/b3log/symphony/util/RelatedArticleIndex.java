@@ -0,0 +1,451 @@
+/*
+ * Symphony - A modern community (forum/BBS/SNS/blog) platform written in Java.
+ * Copyright (C) 2012-2018, b3log.org & hacpai.com
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.b3log.symphony.util;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Related article index, finds the nearest articles of an article by TF-IDF cosine similarity over its tags and title
+ * terms.
+ * <p>
+ * Tags weigh more than title terms. Latin titles are split into words and CJK titles into bigrams. The top neighbors
+ * of an article are computed on its first read and kept until the article or one of its neighbors changes, a changed
+ * article also invalidates the neighbors of the latest articles sharing its tags.
+ * </p>
+ *
+ * @param <T> the type of payloads returned for neighbors
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.0.0, Oct 25, 2018
+ * @since 3.4.3
+ */
+public class RelatedArticleIndex<T> {
+
+    /**
+     * Term prefix of tags.
+     */
+    private static final String TAG_PREFIX = "#";
+
+    /**
+     * Weight of a tag term.
+     */
+    private static final double TAG_WEIGHT = 3;
+
+    /**
+     * Max count of the latest postings of a term scanned for candidates or invalidation.
+     */
+    private static final int MAX_POSTINGS_SCAN = 2000;
+
+    /**
+     * Count of neighbors kept for an article.
+     */
+    private final int neighborCnt;
+
+    /**
+     * Lock.
+     */
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Documents, &lt;articleId, document&gt;.
+     */
+    private final Map<String, Doc<T>> docs = new HashMap<>();
+
+    /**
+     * Postings, &lt;term, articleIds newest first&gt;.
+     */
+    private final Map<String, NavigableSet<String>> postings = new HashMap<>();
+
+    /**
+     * Computed neighbors, &lt;articleId, neighbor articleIds&gt;.
+     */
+    private final Map<String, String[]> neighbors = new HashMap<>();
+
+    /**
+     * Referrers of computed neighbors, &lt;articleId, ids of articles whose computed neighbors contain it&gt;.
+     */
+    private final Map<String, Set<String>> referrers = new HashMap<>();
+
+    /**
+     * Constructs a related article index.
+     *
+     * @param neighborCnt the specified count of neighbors kept for an article
+     */
+    public RelatedArticleIndex(final int neighborCnt) {
+        this.neighborCnt = neighborCnt;
+    }
+
+    /**
+     * Puts the specified article.
+     *
+     * @param articleId the specified article id
+     * @param tags      the specified tags
+     * @param title     the specified title
+     * @param payload   the specified payload returned when the article is a neighbor
+     */
+    public void put(final String articleId, final Collection<String> tags, final String title, final T payload) {
+        final Map<String, Double> terms = new HashMap<>();
+        for (final String tag : tags) {
+            final String t = tag.trim().toLowerCase();
+            if (!t.isEmpty()) {
+                terms.put(TAG_PREFIX + t, TAG_WEIGHT);
+            }
+        }
+        for (final String token : tokenize(title)) {
+            terms.merge(token, 1D, Double::sum);
+        }
+
+        lock.writeLock().lock();
+        try {
+            final Doc<T> old = docs.get(articleId);
+            if (null != old && old.terms.equals(terms)) {
+                old.payload = payload;
+
+                return;
+            }
+
+            if (null != old) {
+                invalidate(articleId, old);
+                removePostings(articleId, old);
+            }
+            final Doc<T> doc = new Doc<>(terms, payload);
+            docs.put(articleId, doc);
+            for (final String term : terms.keySet()) {
+                postings.computeIfAbsent(term, key -> new TreeSet<>(Comparator.reverseOrder())).add(articleId);
+            }
+
+            invalidate(articleId, doc);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes the specified article.
+     *
+     * @param articleId the specified article id
+     */
+    public void remove(final String articleId) {
+        lock.writeLock().lock();
+        try {
+            final Doc<T> doc = docs.remove(articleId);
+            if (null == doc) {
+                return;
+            }
+
+            invalidate(articleId, doc);
+            removePostings(articleId, doc);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the neighbors of the specified article.
+     *
+     * @param articleId the specified article id
+     * @param size      the specified max count of neighbors
+     * @return payloads of neighbors, most related first, returns an empty list if not found
+     */
+    public List<T> get(final String articleId, final int size) {
+        lock.readLock().lock();
+        try {
+            final String[] ids = neighbors.get(articleId);
+            if (null != ids) {
+                return getPayloads(ids, size);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        lock.writeLock().lock();
+        try {
+            String[] ids = neighbors.get(articleId);
+            if (null == ids) {
+                if (!docs.containsKey(articleId)) {
+                    return Collections.emptyList();
+                }
+
+                ids = compute(articleId);
+                neighbors.put(articleId, ids);
+                for (final String id : ids) {
+                    referrers.computeIfAbsent(id, key -> new HashSet<>()).add(articleId);
+                }
+            }
+
+            return getPayloads(ids, size);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Checks whether the specified article is indexed.
+     *
+     * @param articleId the specified article id
+     * @return {@code true} if it is indexed, returns {@code false} otherwise
+     */
+    public boolean contains(final String articleId) {
+        lock.readLock().lock();
+        try {
+            return docs.containsKey(articleId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the count of articles.
+     *
+     * @return count of articles
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return docs.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Splits the specified title into terms, latin words of at least two letters and CJK bigrams.
+     *
+     * @param title the specified title
+     * @return terms
+     */
+    public static List<String> tokenize(final String title) {
+        final List<String> ret = new ArrayList<>();
+        if (null == title) {
+            return ret;
+        }
+
+        final String text = title.toLowerCase();
+        final StringBuilder word = new StringBuilder();
+        final StringBuilder cjk = new StringBuilder();
+        for (int i = 0; i < text.length(); i++) {
+            final char c = text.charAt(i);
+            if (Character.isIdeographic(c)) {
+                flushWord(word, ret);
+                cjk.append(c);
+            } else if (Character.isLetterOrDigit(c)) {
+                flushCJK(cjk, ret);
+                word.append(c);
+            } else {
+                flushWord(word, ret);
+                flushCJK(cjk, ret);
+            }
+        }
+        flushWord(word, ret);
+        flushCJK(cjk, ret);
+
+        return ret;
+    }
+
+    private static void flushWord(final StringBuilder word, final List<String> terms) {
+        if (1 < word.length()) {
+            terms.add(word.toString());
+        }
+        word.setLength(0);
+    }
+
+    private static void flushCJK(final StringBuilder cjk, final List<String> terms) {
+        if (1 == cjk.length()) {
+            terms.add(cjk.toString());
+        }
+        for (int i = 0; i + 1 < cjk.length(); i++) {
+            terms.add(cjk.substring(i, i + 2));
+        }
+        cjk.setLength(0);
+    }
+
+    /**
+     * Computes the neighbors of the specified article, the caller must hold the write lock.
+     *
+     * @param articleId the specified article id
+     * @return neighbor article ids, most related first
+     */
+    private String[] compute(final String articleId) {
+        final Doc<T> doc = docs.get(articleId);
+        final Map<String, Double> dots = new HashMap<>();
+        for (final Map.Entry<String, Double> term : doc.terms.entrySet()) {
+            final NavigableSet<String> termPostings = postings.get(term.getKey());
+            final double idf = idf(termPostings.size());
+            final double weight = term.getValue() * idf * idf;
+            int scanned = 0;
+            for (final String id : termPostings) {
+                if (MAX_POSTINGS_SCAN < ++scanned) {
+                    break;
+                }
+                if (id.equals(articleId)) {
+                    continue;
+                }
+
+                dots.merge(id, weight * docs.get(id).terms.get(term.getKey()), Double::sum);
+            }
+        }
+
+        final double norm = norm(doc);
+        final PriorityQueue<Map.Entry<String, Double>> top = new PriorityQueue<>((e1, e2) -> {
+            final int ret = Double.compare(e1.getValue(), e2.getValue());
+
+            return 0 != ret ? ret : e1.getKey().compareTo(e2.getKey());
+        });
+        for (final Map.Entry<String, Double> dot : dots.entrySet()) {
+            dot.setValue(dot.getValue() / (norm * norm(docs.get(dot.getKey()))));
+            top.add(dot);
+            if (top.size() > neighborCnt) {
+                top.poll();
+            }
+        }
+
+        final String[] ret = new String[top.size()];
+        for (int i = ret.length - 1; i >= 0; i--) {
+            ret[i] = top.poll().getKey();
+        }
+
+        return ret;
+    }
+
+    /**
+     * Gets the payloads of the specified articles, the caller must hold a lock.
+     *
+     * @param ids  the specified article ids
+     * @param size the specified max count
+     * @return payloads
+     */
+    private List<T> getPayloads(final String[] ids, final int size) {
+        final List<T> ret = new ArrayList<>(Math.min(size, ids.length));
+        for (final String id : ids) {
+            if (ret.size() >= size) {
+                break;
+            }
+
+            final Doc<T> doc = docs.get(id);
+            if (null != doc) {
+                ret.add(doc.payload);
+            }
+        }
+
+        return ret;
+    }
+
+    /**
+     * Invalidates computed neighbors affected by a change of the specified article, the caller must hold the write
+     * lock.
+     *
+     * @param articleId the specified article id
+     * @param doc       the specified document of the article
+     */
+    private void invalidate(final String articleId, final Doc<T> doc) {
+        neighbors.remove(articleId);
+        final Set<String> articleReferrers = referrers.remove(articleId);
+        if (null != articleReferrers) {
+            for (final String referrer : articleReferrers) {
+                neighbors.remove(referrer);
+            }
+        }
+
+        for (final String term : doc.terms.keySet()) {
+            if (!term.startsWith(TAG_PREFIX)) {
+                continue;
+            }
+
+            int scanned = 0;
+            for (final String id : postings.get(term)) {
+                if (MAX_POSTINGS_SCAN < ++scanned) {
+                    break;
+                }
+
+                neighbors.remove(id);
+            }
+        }
+    }
+
+    /**
+     * Removes the postings of the specified article, the caller must hold the write lock.
+     *
+     * @param articleId the specified article id
+     * @param doc       the specified document of the article
+     */
+    private void removePostings(final String articleId, final Doc<T> doc) {
+        for (final String term : doc.terms.keySet()) {
+            final NavigableSet<String> termPostings = postings.get(term);
+            termPostings.remove(articleId);
+            if (termPostings.isEmpty()) {
+                postings.remove(term);
+            }
+        }
+    }
+
+    /**
+     * Gets the inverse document frequency of a term with the specified document frequency.
+     *
+     * @param df the specified document frequency
+     * @return inverse document frequency
+     */
+    private double idf(final int df) {
+        return Math.log((1D + docs.size()) / (1D + df)) + 1;
+    }
+
+    /**
+     * Gets the norm of the TF-IDF vector of the specified document.
+     *
+     * @param doc the specified document
+     * @return norm
+     */
+    private double norm(final Doc<T> doc) {
+        double ret = 0;
+        for (final Map.Entry<String, Double> term : doc.terms.entrySet()) {
+            final double weight = term.getValue() * idf(postings.get(term.getKey()).size());
+            ret += weight * weight;
+        }
+
+        return Math.sqrt(ret);
+    }
+
+    /**
+     * Document of an article.
+     *
+     * @param <T> the type of payloads
+     */
+    private static final class Doc<T> {
+
+        /**
+         * Term frequencies, tags weighted.
+         */
+        private final Map<String, Double> terms;
+
+        /**
+         * Payload.
+         */
+        private T payload;
+
+        /**
+         * Constructs a document.
+         *
+         * @param terms   the specified term frequencies
+         * @param payload the specified payload
+         */
+        private Doc(final Map<String, Double> terms, final T payload) {
+            this.terms = terms;
+            this.payload = payload;
+        }
+    }
+}
@@ -0,0 +1,581 @@
+/*
+ * Symphony - A modern community (forum/BBS/SNS/blog) platform written in Java.
+ * Copyright (C) 2012-2018, b3log.org & hacpai.com
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.b3log.symphony.util;
+
+import org.b3log.latke.logging.Level;
+import org.b3log.latke.logging.Logger;
+import org.json.JSONObject;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Durable search index operation queue.
+ * <p>
+ * Pending document operations are appended to a local journal file so they survive backend outages and restarts.
+ * Operations on the same document are coalesced (the latest one wins), and are submitted to a {@link Sink} in
+ * batches once either the batch size or the flush interval is reached. Failed batches are retried with exponential
+ * backoff.
+ * </p>
+ * <p>
+ * The journal is rewritten only once its acknowledged lines outnumber the pending ones and a threshold, and it is
+ * truncated whenever the queue drains. Operations of new documents are dropped once the max pending count is reached,
+ * the queue is then marked overflowed (persistently) until {@link #clearOverflowed()}, the index should be rebuilt.
+ * </p>
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.1.0.0, Oct 25, 2018
+ * @since 3.4.3
+ */
+public class SearchIndexQueue {
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOGGER = Logger.getLogger(SearchIndexQueue.class);
+
+    /**
+     * Key of operation id.
+     */
+    public static final String OP_ID = "id";
+
+    /**
+     * Key of operation action.
+     */
+    public static final String OP_ACTION = "action";
+
+    /**
+     * Key of operation document.
+     */
+    public static final String OP_DOC = "doc";
+
+    /**
+     * Key of operation document type.
+     */
+    public static final String OP_TYPE = "type";
+
+    /**
+     * Action - update (upsert).
+     */
+    public static final String ACTION_UPDATE = "update";
+
+    /**
+     * Action - remove.
+     */
+    public static final String ACTION_REMOVE = "remove";
+
+    /**
+     * Min count of acknowledged journal lines to compact the journal.
+     */
+    private static final int COMPACT_THRESHOLD = 1000;
+
+    /**
+     * Pending operations, &lt;id, operation&gt;.
+     */
+    private final LinkedHashMap<String, JSONObject> pending = new LinkedHashMap<>();
+
+    /**
+     * Flush lock, at most one batch is in flight.
+     */
+    private final Object flushLock = new Object();
+
+    /**
+     * Queue name.
+     */
+    private final String name;
+
+    /**
+     * Journal file.
+     */
+    private final File journal;
+
+    /**
+     * Overflow marker file.
+     */
+    private final File overflowMarker;
+
+    /**
+     * Sink.
+     */
+    private final Sink sink;
+
+    /**
+     * Batch size.
+     */
+    private final int batchSize;
+
+    /**
+     * Flush interval in milliseconds.
+     */
+    private final long flushInterval;
+
+    /**
+     * Base retry backoff in milliseconds.
+     */
+    private final long baseBackoff;
+
+    /**
+     * Max retry backoff in milliseconds.
+     */
+    private final long maxBackoff;
+
+    /**
+     * Max count of pending operations.
+     */
+    private final int maxPending;
+
+    /**
+     * Journal writer.
+     */
+    private Writer journalWriter;
+
+    /**
+     * Count of lines in the journal, pending and acknowledged.
+     */
+    private int journalLines;
+
+    /**
+     * Whether operations have been dropped for overflow.
+     */
+    private boolean overflowed;
+
+    /**
+     * Time of the oldest pending operation.
+     */
+    private long oldestTime;
+
+    /**
+     * Consecutive failure count.
+     */
+    private int failures;
+
+    /**
+     * Next attempt time.
+     */
+    private long nextAttemptTime;
+
+    /**
+     * Flush scheduler.
+     */
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Constructs a queue with the specified arguments, replays the journal if it exists.
+     *
+     * @param name          the specified queue name, used as the journal file name
+     * @param dir           the specified journal directory
+     * @param sink          the specified sink
+     * @param batchSize     the specified batch size
+     * @param flushInterval the specified flush interval in milliseconds
+     * @param baseBackoff   the specified base retry backoff in milliseconds
+     * @param maxBackoff    the specified max retry backoff in milliseconds
+     * @param maxPending    the specified max count of pending operations
+     */
+    public SearchIndexQueue(final String name, final File dir, final Sink sink, final int batchSize,
+                            final long flushInterval, final long baseBackoff, final long maxBackoff,
+                            final int maxPending) {
+        this.name = name;
+        this.sink = sink;
+        this.batchSize = batchSize;
+        this.flushInterval = flushInterval;
+        this.baseBackoff = baseBackoff;
+        this.maxBackoff = maxBackoff;
+        this.maxPending = maxPending;
+
+        dir.mkdirs();
+        journal = new File(dir, name + ".journal");
+        overflowMarker = new File(dir, name + ".overflow");
+        overflowed = overflowMarker.exists();
+        replay();
+    }
+
+    /**
+     * Starts the background flusher.
+     */
+    public synchronized void start() {
+        if (null != scheduler) {
+            return;
+        }
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            final Thread ret = new Thread(r, "SearchIndexQueue-" + name);
+            ret.setDaemon(true);
+
+            return ret;
+        });
+        final long tick = Math.max(50, Math.min(flushInterval, 1000));
+        scheduler.scheduleWithFixedDelay(this::tick, tick, tick, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the background flusher, tries to flush the pending operations and closes the journal.
+     */
+    public void stop() {
+        synchronized (this) {
+            if (null != scheduler) {
+                scheduler.shutdownNow();
+                scheduler = null;
+            }
+        }
+
+        flush();
+
+        synchronized (this) {
+            closeJournal();
+        }
+    }
+
+    /**
+     * Enqueues an update of the specified document.
+     *
+     * @param id   the specified document id
+     * @param type the specified document type
+     * @param doc  the specified document, the queue takes the ownership of it
+     */
+    public void update(final String id, final String type, final JSONObject doc) {
+        final JSONObject op = new JSONObject();
+        op.put(OP_ID, id);
+        op.put(OP_ACTION, ACTION_UPDATE);
+        op.put(OP_TYPE, type);
+        op.put(OP_DOC, doc);
+
+        enqueue(op);
+    }
+
+    /**
+     * Enqueues a removal of the specified document.
+     *
+     * @param id   the specified document id
+     * @param type the specified document type
+     */
+    public void remove(final String id, final String type) {
+        final JSONObject op = new JSONObject();
+        op.put(OP_ID, id);
+        op.put(OP_ACTION, ACTION_REMOVE);
+        op.put(OP_TYPE, type);
+
+        enqueue(op);
+    }
+
+    /**
+     * Gets the count of pending operations.
+     *
+     * @return pending count
+     */
+    public synchronized int size() {
+        return pending.size();
+    }
+
+    /**
+     * Checks whether operations have been dropped since the last {@link #clearOverflowed()} because the max pending
+     * count was reached.
+     *
+     * @return {@code true} if overflowed, returns {@code false} otherwise
+     */
+    public synchronized boolean isOverflowed() {
+        return overflowed;
+    }
+
+    /**
+     * Clears the overflowed mark, call it once the index has been rebuilt.
+     */
+    public synchronized void clearOverflowed() {
+        overflowed = false;
+        if (overflowMarker.exists() && !overflowMarker.delete()) {
+            LOGGER.log(Level.ERROR, "Removes search index overflow marker [" + overflowMarker + "] failed");
+        }
+    }
+
+    /**
+     * Gets the count of consecutive failed submissions.
+     *
+     * @return failure count
+     */
+    public synchronized int getFailures() {
+        return failures;
+    }
+
+    /**
+     * Submits all pending operations batch by batch, ignores the thresholds and the retry backoff.
+     *
+     * @return {@code true} if the queue has been drained, returns {@code false} otherwise
+     */
+    public boolean flush() {
+        synchronized (flushLock) {
+            while (0 < size()) {
+                if (!submitBatch()) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+    }
+
+    /**
+     * Scheduled flush, respects the thresholds and the retry backoff.
+     */
+    private void tick() {
+        try {
+            synchronized (flushLock) {
+                while (true) {
+                    synchronized (this) {
+                        final long now = System.currentTimeMillis();
+                        if (pending.isEmpty() || now < nextAttemptTime) {
+                            return;
+                        }
+
+                        if (pending.size() < batchSize && now - oldestTime < flushInterval) {
+                            return;
+                        }
+                    }
+
+                    if (!submitBatch()) {
+                        return;
+                    }
+                }
+            }
+        } catch (final Exception e) {
+            LOGGER.log(Level.ERROR, "Flushes search index queue [" + name + "] failed", e);
+        }
+    }
+
+    /**
+     * Submits one batch of pending operations.
+     *
+     * @return {@code true} if the batch has been accepted, returns {@code false} otherwise
+     */
+    private boolean submitBatch() {
+        final List<JSONObject> batch = new ArrayList<>();
+        synchronized (this) {
+            for (final JSONObject op : pending.values()) {
+                batch.add(op);
+                if (batch.size() >= batchSize) {
+                    break;
+                }
+            }
+        }
+
+        if (batch.isEmpty()) {
+            return true;
+        }
+
+        Set<String> retries;
+        try {
+            retries = sink.bulk(batch);
+        } catch (final Exception e) {
+            LOGGER.log(Level.WARN, "Submits search index batch [queue=" + name + ", size=" + batch.size() + "] failed: " + e.getMessage());
+            retries = null;
+        }
+
+        synchronized (this) {
+            for (final JSONObject op : batch) {
+                final String id = op.optString(OP_ID);
+                if (null != retries && !retries.contains(id) && pending.get(id) == op) {
+                    pending.remove(id);
+                }
+            }
+
+            if (null == retries || !retries.isEmpty()) {
+                failures++;
+                final long backoff = baseBackoff << Math.min(failures - 1, 20);
+                nextAttemptTime = System.currentTimeMillis() + Math.min(backoff, maxBackoff);
+            } else {
+                failures = 0;
+                nextAttemptTime = 0;
+            }
+
+            if (null != retries) {
+                oldestTime = System.currentTimeMillis();
+                if (pending.isEmpty()) {
+                    truncate();
+                } else if (journalLines - pending.size() >= Math.max(COMPACT_THRESHOLD, pending.size())) {
+                    compact();
+                }
+            }
+
+            return 0 == failures;
+        }
+    }
+
+    /**
+     * Puts the specified operation into the pending map and appends it to the journal.
+     *
+     * @param op the specified operation
+     */
+    private synchronized void enqueue(final JSONObject op) {
+        final String id = op.optString(OP_ID);
+        if (pending.size() >= maxPending && !pending.containsKey(id)) {
+            overflow(id);
+
+            return;
+        }
+
+        if (pending.isEmpty()) {
+            oldestTime = System.currentTimeMillis();
+        }
+        pending.put(id, op);
+
+        try {
+            if (null == journalWriter) {
+                journalWriter = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(journal, true), StandardCharsets.UTF_8));
+            }
+            journalWriter.write(op.toString());
+            journalWriter.write('\n');
+            journalWriter.flush();
+            journalLines++;
+        } catch (final IOException e) {
+            LOGGER.log(Level.ERROR, "Writes search index journal [" + journal + "] failed", e);
+        }
+    }
+
+    /**
+     * Drops an operation of the specified document id for overflow, marks the queue overflowed.
+     *
+     * @param id the specified document id
+     */
+    private void overflow(final String id) {
+        if (overflowed) {
+            return;
+        }
+
+        overflowed = true;
+        LOGGER.log(Level.ERROR, "Search index queue [" + name + "] is full [" + maxPending + "], drops operations from ["
+                + id + "] on, rebuild the search index to recover");
+        try {
+            overflowMarker.createNewFile();
+        } catch (final IOException e) {
+            LOGGER.log(Level.ERROR, "Writes search index overflow marker [" + overflowMarker + "] failed", e);
+        }
+    }
+
+    /**
+     * Empties the journal, all operations have been acknowledged.
+     */
+    private void truncate() {
+        closeJournal();
+        if (journal.exists() && !journal.delete()) {
+            LOGGER.log(Level.ERROR, "Truncates search index journal [" + journal + "] failed");
+
+            return;
+        }
+        journalLines = 0;
+    }
+
+    /**
+     * Rewrites the journal with the current pending operations.
+     */
+    private void compact() {
+        closeJournal();
+
+        final File tmp = new File(journal.getPath() + ".tmp");
+        try (final Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tmp), StandardCharsets.UTF_8))) {
+            for (final JSONObject op : pending.values()) {
+                writer.write(op.toString());
+                writer.write('\n');
+            }
+        } catch (final IOException e) {
+            LOGGER.log(Level.ERROR, "Compacts search index journal [" + journal + "] failed", e);
+
+            return;
+        }
+
+        try {
+            Files.move(tmp.toPath(), journal.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            journalLines = pending.size();
+        } catch (final IOException e) {
+            LOGGER.log(Level.ERROR, "Replaces search index journal [" + journal + "] failed", e);
+        }
+    }
+
+    /**
+     * Loads pending operations from the journal, a torn last line is skipped.
+     */
+    private void replay() {
+        if (!journal.exists()) {
+            return;
+        }
+
+        boolean broken = false;
+        try (final BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(journal), StandardCharsets.UTF_8))) {
+            String line;
+            while (null != (line = reader.readLine())) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+
+                journalLines++;
+                try {
+                    final JSONObject op = new JSONObject(line);
+                    pending.put(op.optString(OP_ID), op);
+                } catch (final Exception e) {
+                    LOGGER.log(Level.WARN, "Skips a broken search index journal line [" + line + "]");
+                    broken = true;
+                }
+            }
+        } catch (final IOException e) {
+            LOGGER.log(Level.ERROR, "Reads search index journal [" + journal + "] failed", e);
+        }
+
+        if (broken) {
+            compact();
+        }
+
+        oldestTime = System.currentTimeMillis() - flushInterval;
+        if (!pending.isEmpty()) {
+            LOGGER.info("Replayed [" + pending.size() + "] pending search index operations from [" + journal + "]");
+        }
+    }
+
+    /**
+     * Closes the journal writer.
+     */
+    private void closeJournal() {
+        if (null == journalWriter) {
+            return;
+        }
+
+        try {
+            journalWriter.close();
+        } catch (final IOException e) {
+            LOGGER.log(Level.ERROR, "Closes search index journal [" + journal + "] failed", e);
+        }
+        journalWriter = null;
+    }
+
+    /**
+     * Search index operation sink.
+     */
+    public interface Sink {
+
+        /**
+         * Submits the specified operations in one request.
+         *
+         * @param ops the specified operations
+         * @return ids of the operations which should be retried, returns an empty set if all operations are accepted
+         * @throws Exception if the request failed, all operations will be retried
+         */
+        Set<String> bulk(final List<JSONObject> ops) throws Exception;
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Symphony - A modern community (forum/BBS/SNS/blog) platform written in Java.
+ * Copyright (C) 2012-2018, b3log.org & hacpai.com
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.b3log.symphony.util;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Session registry, an index of sessions by key (for example user id).
+ * <p>
+ * Lookups by key are direct, adding and removing a session are atomic per key and empty keys are dropped.
+ * </p>
+ *
+ * @param <S> the type of sessions
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.1.0, Oct 25, 2018
+ * @since 3.4.3
+ */
+public class SessionRegistry<S> {
+
+    /**
+     * Sessions, &lt;key, sessions&gt;.
+     */
+    private final Map<String, Set<S>> sessions = new ConcurrentHashMap<>();
+
+    /**
+     * Adds the specified session of the specified key.
+     *
+     * @param key     the specified key
+     * @param session the specified session
+     */
+    public void add(final String key, final S session) {
+        sessions.compute(key, (k, set) -> {
+            final Set<S> ret = null == set ? Collections.newSetFromMap(new ConcurrentHashMap<>()) : set;
+            ret.add(session);
+
+            return ret;
+        });
+    }
+
+    /**
+     * Removes the specified session of the specified key.
+     *
+     * @param key     the specified key
+     * @param session the specified session
+     * @return {@code true} if removed, returns {@code false} if not found
+     */
+    public boolean remove(final String key, final S session) {
+        final boolean[] ret = {false};
+        sessions.computeIfPresent(key, (k, set) -> {
+            if (set.remove(session)) {
+                ret[0] = true;
+            }
+
+            return set.isEmpty() ? null : set;
+        });
+
+        return ret[0];
+    }
+
+    /**
+     * Gets the sessions of the specified key.
+     *
+     * @param key the specified key
+     * @return sessions, returns an empty set if not found
+     */
+    public Set<S> get(final String key) {
+        final Set<S> ret = sessions.get(key);
+
+        return null == ret ? Collections.emptySet() : Collections.unmodifiableSet(ret);
+    }
+}
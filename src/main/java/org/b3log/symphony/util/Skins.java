@@ -17,20 +17,29 @@
  */
 package org.b3log.symphony.util;
 
-import freemarker.template.Configuration;
-import freemarker.template.TemplateExceptionHandler;
-import freemarker.template.Version;
+import freemarker.core.Environment;
+import freemarker.template.*;
+import freemarker.template.utility.NullWriter;
+import org.apache.commons.lang.StringUtils;
+import org.b3log.latke.Keys;
+import org.b3log.latke.Latkes;
 import org.b3log.latke.logging.Logger;
 import org.b3log.latke.servlet.AbstractServletListener;
 
 import javax.servlet.ServletContext;
-import java.util.TimeZone;
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * Skin utilities.
  *
  * @author <a href="http://88250.b3log.org">Liang Ding</a>
- * @version 1.1.0.2, Sep 27, 2018
+ * @version 1.5.1.0, Oct 25, 2018
  * @since 1.3.0
  */
 public final class Skins {
@@ -50,6 +59,31 @@ public final class Skins {
      */
     public static final Version FREEMARKER_VER = Configuration.VERSION_2_3_28;
 
+    /**
+     * Resolved templates in production mode, &lt;skinDirName/templateName, template&gt;.
+     */
+    private static final Map<String, Template> TEMPLATES = new ConcurrentHashMap<>();
+
+    /**
+     * Name of the fragment directive, templates declare a fragment by {@code <@fragment name="#comments">...</@fragment>}.
+     */
+    private static final String FRAGMENT = "fragment";
+
+    /**
+     * Pattern of fragment declarations in the canonical form of a template.
+     */
+    private static final Pattern FRAGMENT_DECLARATION = Pattern.compile("<@" + FRAGMENT + "\\s+name=\"([^\"]+)\"");
+
+    /**
+     * Fragments declared by templates, &lt;template, fragmentNames&gt;, entries are dropped with their templates.
+     */
+    private static final Map<Template, Set<String>> DECLARED_FRAGMENTS = Collections.synchronizedMap(new WeakHashMap<>());
+
+    /**
+     * Name of the flush directive, templates flush the output rendered so far by {@code <@flush/>}.
+     */
+    private static final String FLUSH = "flush";
+
     static {
         final ServletContext servletContext = AbstractServletListener.getServletContext();
         SKIN = new Configuration(FREEMARKER_VER);
@@ -58,6 +92,154 @@ public final class Skins {
         SKIN.setServletContextForTemplateLoading(servletContext, "skins");
         SKIN.setTemplateExceptionHandler(TemplateExceptionHandler.RETHROW_HANDLER);
         SKIN.setLogTemplateExceptions(false);
+        SKIN.setSharedVariable(FRAGMENT, new FragmentDirective());
+        SKIN.setSharedVariable(FLUSH, (TemplateDirectiveModel) (env, params, loopVars, body) -> env.getOut().flush());
+    }
+
+    /**
+     * Gets the name of the fragment requested by the specified pjax request.
+     *
+     * @param request the specified request
+     * @return fragment name, for example "#comments", returns {@code null} if the request is not a pjax request
+     */
+    public static String getFragment(final HttpServletRequest request) {
+        final boolean pjax = Boolean.valueOf(request.getHeader("X-PJAX"));
+        final String pjaxContainer = request.getHeader("X-PJAX-Container");
+
+        return pjax && StringUtils.isNotBlank(pjaxContainer) ? pjaxContainer : null;
+    }
+
+    /**
+     * Determines whether the specified request requests a fragment declared by the template specified by the given
+     * template name. Processors may skip filling data used out of fragments, side panels for example. Skins without
+     * the fragment directive are rendered in full, so their requests are not fragment requests.
+     *
+     * @param request      the specified request
+     * @param templateName the given template name
+     * @return {@code true} if it requests a declared fragment only, returns {@code false} otherwise
+     */
+    public static boolean isFragmentRequest(final HttpServletRequest request, final String templateName) {
+        final String fragment = getFragment(request);
+        if (null == fragment) {
+            return false;
+        }
+
+        try {
+            return declaresFragment(getTemplate((String) request.getAttribute(Keys.TEMAPLTE_DIR_NAME), templateName), fragment);
+        } catch (final IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Determines whether the specified template declares the specified fragment by the fragment directive.
+     *
+     * @param template the specified template
+     * @param fragment the specified fragment name
+     * @return {@code true} if it declares the fragment, returns {@code false} otherwise
+     */
+    public static boolean declaresFragment(final Template template, final String fragment) {
+        final Set<String> fragments = DECLARED_FRAGMENTS.computeIfAbsent(template, key -> {
+            final Set<String> ret = new HashSet<>();
+            final Matcher matcher = FRAGMENT_DECLARATION.matcher(key.toString());
+            while (matcher.find()) {
+                ret.add(matcher.group(1));
+            }
+
+            return ret;
+        });
+
+        return fragments.contains(fragment);
+    }
+
+    /**
+     * Gets a template with the specified skin dir name and template name, falls back to the default skin if the skin
+     * does not have the template. Resolved templates are kept in production mode, templates are shared between
+     * requests so they must not be modified, see {@link #process(Template, Map, Locale, TimeZone, Writer)}.
+     *
+     * @param skinDirName  the specified skin dir name
+     * @param templateName the specified template name
+     * @return template
+     * @throws IOException if the template not found in both the skin and the default skin
+     */
+    public static Template getTemplate(final String skinDirName, final String templateName) throws IOException {
+        final boolean production = Latkes.RuntimeMode.PRODUCTION == Latkes.getRuntimeMode();
+        final String key = skinDirName + "/" + templateName;
+        Template ret = production ? TEMPLATES.get(key) : null;
+        if (null != ret) {
+            return ret;
+        }
+
+        try {
+            ret = SKIN.getTemplate(key);
+        } catch (final IOException e) {
+            if (Symphonys.get("skinDirName").equals(skinDirName) ||
+                    Symphonys.get("mobileSkinDirName").equals(skinDirName)) {
+                throw e;
+            }
+
+            // Try to load default template
+            ret = SKIN.getTemplate(Symphonys.get("skinDirName") + "/" + templateName);
+        }
+
+        if (production) {
+            TEMPLATES.put(key, ret);
+        }
+
+        return ret;
+    }
+
+    /**
+     * Processes the specified template with the specified data model, locale and time zone. The locale and time zone
+     * are set on the processing environment of this call, the template is not modified. Variables missing in the data
+     * model are looked up in the {@link LabelBundle label bundle} of the locale.
+     *
+     * @param template  the specified template
+     * @param dataModel the specified data model
+     * @param locale    the specified locale
+     * @param timeZone  the specified time zone
+     * @param writer    the specified writer
+     * @throws IOException       io exception
+     * @throws TemplateException template exception
+     */
+    public static void process(final Template template, final Map<String, Object> dataModel, final Locale locale,
+                               final TimeZone timeZone, final Writer writer) throws IOException, TemplateException {
+        final Environment env = template.createProcessingEnvironment(new LabeledDataModel(template, dataModel, locale), writer);
+        env.setLocale(locale);
+        env.setTimeZone(timeZone);
+        env.setOutputEncoding("UTF-8");
+        env.process();
+    }
+
+    /**
+     * Processes only the specified fragment of the specified template. The template before the fragment is processed
+     * without output, the template after the fragment is not processed.
+     *
+     * @param template  the specified template
+     * @param dataModel the specified data model
+     * @param locale    the specified locale
+     * @param timeZone  the specified time zone
+     * @param fragment  the specified fragment name
+     * @param writer    the specified writer
+     * @return {@code true} if the fragment is rendered, returns {@code false} if the template does not declare it
+     * @throws IOException       io exception
+     * @throws TemplateException template exception
+     */
+    public static boolean processFragment(final Template template, final Map<String, Object> dataModel, final Locale locale,
+                                          final TimeZone timeZone, final String fragment, final Writer writer)
+            throws IOException, TemplateException {
+        final Environment env = template.createProcessingEnvironment(new LabeledDataModel(template, dataModel, locale), NullWriter.INSTANCE);
+        env.setLocale(locale);
+        env.setTimeZone(timeZone);
+        env.setOutputEncoding("UTF-8");
+        env.setCustomAttribute(FRAGMENT, new RequestedFragment(fragment, writer));
+        try {
+            env.process();
+        } catch (final FragmentRenderedException e) {
+            return true;
+        }
+
+        return false;
     }
 
     /**
@@ -65,4 +247,134 @@ public final class Skins {
      */
     private Skins() {
     }
+
+    /**
+     * Root data model of a processing, the data model backed by the label bundle of a locale.
+     */
+    private static final class LabeledDataModel implements TemplateHashModel {
+
+        /**
+         * Object wrapper of the data model.
+         */
+        private final ObjectWrapper wrapper;
+
+        /**
+         * Data model.
+         */
+        private final Map<String, Object> dataModel;
+
+        /**
+         * Locale of the label bundle.
+         */
+        private final Locale locale;
+
+        /**
+         * Label bundle, {@code null} before the first lookup missing in the data model.
+         */
+        private LabelBundle labelBundle;
+
+        /**
+         * Constructs a root data model.
+         *
+         * @param template  the specified template to process
+         * @param dataModel the specified data model
+         * @param locale    the specified locale of the label bundle
+         */
+        private LabeledDataModel(final Template template, final Map<String, Object> dataModel, final Locale locale) {
+            wrapper = template.getObjectWrapper();
+            this.dataModel = dataModel;
+            this.locale = locale;
+        }
+
+        @Override
+        public TemplateModel get(final String key) throws TemplateModelException {
+            final Object value = dataModel.get(key);
+            if (null != value) {
+                return value instanceof TemplateModel ? (TemplateModel) value : wrapper.wrap(value);
+            }
+
+            if (null == labelBundle) {
+                labelBundle = LabelBundle.get(locale);
+            }
+
+            return labelBundle.get(key);
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return false;
+        }
+    }
+
+    /**
+     * Fragment directive, renders its body, or only its body if it is the requested fragment.
+     */
+    private static final class FragmentDirective implements TemplateDirectiveModel {
+
+        @Override
+        @SuppressWarnings({"rawtypes", "unchecked"})
+        public void execute(final Environment env, final Map params, final TemplateModel[] loopVars,
+                            final TemplateDirectiveBody body) throws TemplateException, IOException {
+            if (null == body) {
+                return;
+            }
+
+            final Map<String, TemplateModel> namedParams = params;
+            final RequestedFragment requested = (RequestedFragment) env.getCustomAttribute(FRAGMENT);
+            final TemplateModel name = namedParams.get("name");
+            if (null == requested || !(name instanceof TemplateScalarModel)
+                    || !requested.name.equals(((TemplateScalarModel) name).getAsString())) {
+                body.render(env.getOut());
+
+                return;
+            }
+
+            body.render(requested.writer);
+
+            throw new FragmentRenderedException();
+        }
+    }
+
+    /**
+     * Requested fragment of a processing.
+     */
+    private static final class RequestedFragment {
+
+        /**
+         * Fragment name.
+         */
+        private final String name;
+
+        /**
+         * Writer of the fragment.
+         */
+        private final Writer writer;
+
+        /**
+         * Constructs a requested fragment.
+         *
+         * @param name   the specified fragment name
+         * @param writer the specified writer of the fragment
+         */
+        private RequestedFragment(final String name, final Writer writer) {
+            this.name = name;
+            this.writer = writer;
+        }
+    }
+
+    /**
+     * Stops processing the rest of a template after the requested fragment is rendered.
+     */
+    private static final class FragmentRenderedException extends RuntimeException {
+
+        /**
+         * Serial version UID.
+         */
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    }
 }
@@ -0,0 +1,395 @@
+/*
+ * Symphony - A modern community (forum/BBS/SNS/blog) platform written in Java.
+ * Copyright (C) 2012-2018, b3log.org & hacpai.com
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.b3log.symphony.util;
+
+import jodd.io.upload.FileUpload;
+import jodd.io.upload.FileUploadFactory;
+import jodd.io.upload.MultipartRequestInputStream;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * File upload factory which keeps small parts in memory and spools larger parts to a temporary directory.
+ * <p>
+ * The MD5 and SHA-256 digests of each part are computed while streaming, and the max file size is enforced as the
+ * bytes arrive, so an oversized part is never buffered entirely.
+ * </p>
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.2.0.0, Oct 25, 2018
+ * @since 3.4.3
+ */
+public class SpoolFileUploadFactory implements FileUploadFactory {
+
+    /**
+     * Spool directory.
+     */
+    private final File spoolDir;
+
+    /**
+     * Memory threshold in bytes.
+     */
+    private final int memoryThreshold;
+
+    /**
+     * Max file size in bytes.
+     */
+    private final int maxFileSize;
+
+    /**
+     * Created uploads, a factory serves one request.
+     */
+    private final List<SpoolFileUpload> uploads = new ArrayList<>();
+
+    /**
+     * Constructs a factory with the specified spool directory, memory threshold and max file size.
+     *
+     * @param spoolDir        the specified spool directory
+     * @param memoryThreshold the specified memory threshold in bytes
+     * @param maxFileSize     the specified max file size in bytes
+     */
+    public SpoolFileUploadFactory(final File spoolDir, final int memoryThreshold, final int maxFileSize) {
+        this.spoolDir = spoolDir;
+        this.memoryThreshold = memoryThreshold;
+        this.maxFileSize = maxFileSize;
+    }
+
+    @Override
+    public FileUpload create(final MultipartRequestInputStream input) {
+        final SpoolFileUpload ret = new SpoolFileUpload(input, spoolDir, memoryThreshold, maxFileSize);
+        uploads.add(ret);
+
+        return ret;
+    }
+
+    /**
+     * Gets the first created upload of the specified form field.
+     *
+     * @param fieldName the specified form field name
+     * @return upload, returns {@code null} if not found
+     */
+    public SpoolFileUpload getUpload(final String fieldName) {
+        for (final SpoolFileUpload upload : uploads) {
+            if (fieldName.equals(upload.getHeader().getFormFieldName())) {
+                return upload;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Deletes the content of all created uploads, including the ones of a failed parsing. Uploads moved to their
+     * target are not affected.
+     */
+    public void deleteAll() {
+        for (final SpoolFileUpload upload : uploads) {
+            upload.delete();
+        }
+    }
+
+    /**
+     * Spooled file upload.
+     */
+    public static class SpoolFileUpload extends FileUpload {
+
+        /**
+         * Spool directory.
+         */
+        private final File spoolDir;
+
+        /**
+         * Memory threshold in bytes.
+         */
+        private final int memoryThreshold;
+
+        /**
+         * Content in memory, {@code null} if spooled.
+         */
+        private byte[] data;
+
+        /**
+         * Spooled temporary file, {@code null} if in memory.
+         */
+        private File tempFile;
+
+        /**
+         * MD5 hex digest.
+         */
+        private String md5;
+
+        /**
+         * SHA-256 hex digest.
+         */
+        private String sha256;
+
+        /**
+         * Constructs a file upload.
+         *
+         * @param input           the specified multipart input
+         * @param spoolDir        the specified spool directory
+         * @param memoryThreshold the specified memory threshold
+         * @param maxFileSize     the specified max file size
+         */
+        SpoolFileUpload(final MultipartRequestInputStream input, final File spoolDir, final int memoryThreshold, final int maxFileSize) {
+            super(input, maxFileSize);
+            this.spoolDir = spoolDir;
+            this.memoryThreshold = memoryThreshold;
+        }
+
+        @Override
+        protected void processStream() throws IOException {
+            final MessageDigest md5Digest = DigestUtils.getMd5Digest();
+            final MessageDigest sha256Digest = DigestUtils.getSha256Digest();
+            final SpoolOutputStream output = new SpoolOutputStream(md5Digest, sha256Digest);
+            try {
+                final int limit = 0 < maxFileSize ? maxFileSize + 1 : Integer.MAX_VALUE;
+                final OutputStream buffered = new BufferedOutputStream(output); // Multipart input copies byte by byte
+                size = input.copyMax(buffered, limit);
+                buffered.flush();
+                if (0 < maxFileSize && size > maxFileSize) {
+                    fileTooBig = true;
+                    valid = false;
+                    output.close();
+                    output.discard();
+                    input.skipToBoundary();
+
+                    return;
+                }
+
+                output.close();
+            } catch (final IOException e) {
+                output.discard();
+
+                throw e;
+            }
+
+            data = output.getData();
+            tempFile = output.getFile();
+            md5 = Hex.encodeHexString(md5Digest.digest());
+            sha256 = Hex.encodeHexString(sha256Digest.digest());
+            valid = true;
+        }
+
+        /**
+         * Moves the content to the specified target file. Does nothing but discards the content if the target file
+         * already exists with the same size, namely it is a duplicate of a content-addressed file.
+         *
+         * @param target the specified target file
+         * @return {@code true} if the target file has been written, returns {@code false} if it already exists
+         * @throws IOException io exception
+         */
+        public boolean moveTo(final File target) throws IOException {
+            if (target.isFile() && target.length() == size) {
+                delete();
+
+                return false;
+            }
+
+            target.getParentFile().mkdirs();
+            if (null != data) {
+                final File tmp = File.createTempFile("upload-", ".tmp", target.getParentFile());
+                try (final OutputStream output = new FileOutputStream(tmp)) {
+                    output.write(data);
+                }
+                Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                data = null;
+
+                return true;
+            }
+
+            try {
+                Files.move(tempFile.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            } catch (final IOException e) {
+                Files.move(tempFile.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            tempFile = null;
+
+            return true;
+        }
+
+        /**
+         * Discards the content.
+         */
+        public void delete() {
+            data = null;
+            if (null != tempFile) {
+                tempFile.delete();
+                tempFile = null;
+            }
+        }
+
+        /**
+         * Gets the MD5 hex digest of the content.
+         *
+         * @return MD5 hex digest, returns {@code null} if the upload is invalid
+         */
+        public String getMd5() {
+            return md5;
+        }
+
+        /**
+         * Gets the SHA-256 hex digest of the content.
+         *
+         * @return SHA-256 hex digest, returns {@code null} if the upload is invalid
+         */
+        public String getSha256() {
+            return sha256;
+        }
+
+        @Override
+        public byte[] getFileContent() throws IOException {
+            if (null != data) {
+                return data;
+            }
+
+            if (null != tempFile) {
+                return Files.readAllBytes(tempFile.toPath());
+            }
+
+            return null;
+        }
+
+        @Override
+        public InputStream getFileInputStream() throws IOException {
+            if (null != data) {
+                return new ByteArrayInputStream(data);
+            }
+
+            if (null != tempFile) {
+                return new BufferedInputStream(new FileInputStream(tempFile));
+            }
+
+            return null;
+        }
+
+        @Override
+        public boolean isInMemory() {
+            return null != data;
+        }
+
+        /**
+         * Output stream which digests the written bytes and switches from memory to a temporary file once the
+         * memory threshold is exceeded.
+         */
+        private class SpoolOutputStream extends OutputStream {
+
+            /**
+             * Digests.
+             */
+            private final MessageDigest[] digests;
+
+            /**
+             * Memory buffer.
+             */
+            private ByteArrayOutputStream memory = new ByteArrayOutputStream();
+
+            /**
+             * Temporary file.
+             */
+            private File file;
+
+            /**
+             * Temporary file output.
+             */
+            private OutputStream fileOutput;
+
+            /**
+             * Constructs a spool output stream with the specified digests.
+             *
+             * @param digests the specified digests
+             */
+            SpoolOutputStream(final MessageDigest... digests) {
+                this.digests = digests;
+            }
+
+            @Override
+            public void write(final int b) throws IOException {
+                write(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(final byte[] b, final int off, final int len) throws IOException {
+                for (final MessageDigest digest : digests) {
+                    digest.update(b, off, len);
+                }
+
+                if (null != memory && memory.size() + len > memoryThreshold) {
+                    spoolDir.mkdirs();
+                    file = File.createTempFile("upload-", ".spool", spoolDir);
+                    fileOutput = new BufferedOutputStream(new FileOutputStream(file));
+                    memory.writeTo(fileOutput);
+                    memory = null;
+                }
+
+                if (null != memory) {
+                    memory.write(b, off, len);
+                } else {
+                    fileOutput.write(b, off, len);
+                }
+            }
+
+            @Override
+            public void close() throws IOException {
+                if (null != fileOutput) {
+                    fileOutput.close();
+                }
+            }
+
+            /**
+             * Discards the content.
+             */
+            void discard() {
+                try {
+                    close();
+                } catch (final IOException e) {
+                    // ignore
+                }
+                memory = null;
+                if (null != file) {
+                    file.delete();
+                }
+            }
+
+            /**
+             * Gets the in-memory content.
+             *
+             * @return in-memory content, returns {@code null} if spooled
+             */
+            byte[] getData() {
+                return null == memory ? null : memory.toByteArray();
+            }
+
+            /**
+             * Gets the temporary file.
+             *
+             * @return temporary file, returns {@code null} if in memory
+             */
+            File getFile() {
+                return file;
+            }
+        }
+    }
+}
@@ -0,0 +1,314 @@
+/*
+ * Symphony - A modern community (forum/BBS/SNS/blog) platform written in Java.
+ * Copyright (C) 2012-2018, b3log.org & hacpai.com
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.b3log.symphony.util;
+
+import jodd.net.MimeTypes;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.lang.StringUtils;
+import org.b3log.latke.logging.Level;
+import org.b3log.latke.logging.Logger;
+import org.b3log.symphony.SymphonyServletListener;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Static file serving utilities.
+ * <p>
+ * Streams a file to the response via {@link FileChannel#transferTo(long, long, WritableByteChannel)} without loading
+ * it into heap, supports single byte range requests ({@code Range}/{@code If-Range}) and conditional requests
+ * ({@code If-None-Match}/{@code If-Modified-Since}). ETags are content MD5 digests, cached by path, modified time and
+ * size, and may be primed at upload time via {@link #putETag(File, String)}.
+ * </p>
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.2.0, Oct 25, 2018
+ * @since 3.4.3
+ */
+public final class StaticFiles {
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOGGER = Logger.getLogger(StaticFiles.class);
+
+    /**
+     * Max count of cached ETags.
+     */
+    private static final int ETAG_CACHE_MAX_CNT = 4096;
+
+    /**
+     * ETag cache, &lt;path, [modified time, size, ETag]&gt;.
+     */
+    private static final Map<String, Object[]> ETAG_CACHE = new LinkedHashMap<String, Object[]>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, Object[]> eldest) {
+            return size() > ETAG_CACHE_MAX_CNT;
+        }
+    };
+
+    /**
+     * Sends the specified file.
+     *
+     * @param file     the specified file, must be an existing file
+     * @param request  the specified request
+     * @param response the specified response
+     * @throws IOException io exception
+     */
+    public static void send(final File file, final HttpServletRequest request, final HttpServletResponse response) throws IOException {
+        send(file, request, response, "public, max-age=31536000");
+    }
+
+    /**
+     * Sends the specified file with the specified cache control.
+     *
+     * @param file         the specified file, must be an existing file
+     * @param request      the specified request
+     * @param response     the specified response
+     * @param cacheControl the specified cache control
+     * @throws IOException io exception
+     */
+    public static void send(final File file, final HttpServletRequest request, final HttpServletResponse response,
+                            final String cacheControl) throws IOException {
+        final long length = file.length();
+        final long lastModified = file.lastModified() / 1000 * 1000;
+        final String etag = getETag(file);
+
+        response.setHeader("Cache-Control", cacheControl);
+        response.setHeader("ETag", etag);
+        response.setDateHeader("Last-Modified", lastModified);
+        response.setHeader("Accept-Ranges", "bytes");
+        response.setHeader("Server", "Sym File Server (v" + SymphonyServletListener.VERSION + ")");
+        response.setHeader("Access-Control-Allow-Origin", "*");
+        final String ext = StringUtils.substringAfterLast(file.getName(), ".");
+        final String mimeType = MimeTypes.getMimeType(ext);
+        response.setContentType(mimeType);
+
+        if (isNotModified(request, etag, lastModified)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+
+            return;
+        }
+
+        long start = 0;
+        long end = length - 1;
+        final String range = request.getHeader("Range");
+        if (StringUtils.isNotBlank(range) && isIfRangeMatched(request, etag, lastModified)) {
+            final long[] bounds = parseRange(range, length);
+            if (null != bounds) {
+                if (0 > bounds[0]) {
+                    response.setHeader("Content-Range", "bytes */" + length);
+                    response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+
+                    return;
+                }
+
+                start = bounds[0];
+                end = bounds[1];
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader("Content-Range", "bytes " + start + "-" + end + "/" + length);
+            }
+        }
+
+        final long count = end - start + 1;
+        response.setHeader("Content-Length", String.valueOf(count));
+        if ("HEAD".equalsIgnoreCase(request.getMethod())) {
+            return;
+        }
+
+        try (final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            final OutputStream output = response.getOutputStream();
+            final WritableByteChannel target = Channels.newChannel(output);
+            long position = start;
+            long remaining = count;
+            while (0 < remaining) {
+                final long transferred = channel.transferTo(position, remaining, target);
+                if (0 >= transferred) {
+                    break;
+                }
+
+                position += transferred;
+                remaining -= transferred;
+            }
+            output.flush();
+        }
+    }
+
+    /**
+     * Puts the ETag of the specified file, invoked after the file has been written.
+     *
+     * @param file the specified file
+     * @param md5  the MD5 hex digest of the file content
+     */
+    public static void putETag(final File file, final String md5) {
+        synchronized (ETAG_CACHE) {
+            ETAG_CACHE.put(file.getPath(), new Object[]{file.lastModified(), file.length(), "\"" + md5 + "\""});
+        }
+    }
+
+    /**
+     * Gets the ETag of the specified file, the file content is digested only if it is not cached or has been changed.
+     *
+     * @param file the specified file
+     * @return ETag
+     * @throws IOException io exception
+     */
+    public static String getETag(final File file) throws IOException {
+        final String path = file.getPath();
+        final long lastModified = file.lastModified();
+        final long length = file.length();
+        synchronized (ETAG_CACHE) {
+            final Object[] cached = ETAG_CACHE.get(path);
+            if (null != cached && (Long) cached[0] == lastModified && (Long) cached[1] == length) {
+                return (String) cached[2];
+            }
+        }
+
+        final String md5;
+        try (final InputStream input = Files.newInputStream(file.toPath())) {
+            md5 = DigestUtils.md5Hex(input);
+        }
+        final String ret = "\"" + md5 + "\"";
+        synchronized (ETAG_CACHE) {
+            ETAG_CACHE.put(path, new Object[]{lastModified, length, ret});
+        }
+
+        return ret;
+    }
+
+    /**
+     * Parses the specified range header value. Only a single byte range is supported, requests with multiple ranges
+     * are served with the full content.
+     *
+     * @param range  the specified range header value
+     * @param length the file length
+     * @return {@code [start, end]} (inclusive), {@code [-1, -1]} if not satisfiable, returns {@code null} if the range
+     * should be ignored
+     */
+    static long[] parseRange(final String range, final long length) {
+        if (!StringUtils.startsWith(range, "bytes=")) {
+            return null;
+        }
+
+        final String spec = StringUtils.substringAfter(range, "bytes=").trim();
+        if (StringUtils.contains(spec, ",")) {
+            return null;
+        }
+
+        final String startStr = StringUtils.substringBefore(spec, "-").trim();
+        final String endStr = StringUtils.substringAfter(spec, "-").trim();
+        try {
+            long start;
+            long end;
+            if (startStr.isEmpty()) {
+                final long suffix = Long.parseLong(endStr);
+                if (0 >= suffix) {
+                    return new long[]{-1, -1};
+                }
+
+                start = Math.max(0, length - suffix);
+                end = length - 1;
+            } else {
+                start = Long.parseLong(startStr);
+                end = endStr.isEmpty() ? length - 1 : Math.min(Long.parseLong(endStr), length - 1);
+            }
+
+            if (start >= length || start > end) {
+                return new long[]{-1, -1};
+            }
+
+            return new long[]{start, end};
+        } catch (final NumberFormatException e) {
+            LOGGER.log(Level.DEBUG, "Ignores an invalid range [" + range + "]");
+
+            return null;
+        }
+    }
+
+    /**
+     * Checks whether the specified request's conditional headers match the current representation.
+     *
+     * @param request      the specified request
+     * @param etag         the current ETag
+     * @param lastModified the current last modified time
+     * @return {@code true} if not modified, returns {@code false} otherwise
+     */
+    public static boolean isNotModified(final HttpServletRequest request, final String etag, final long lastModified) {
+        final String ifNoneMatch = request.getHeader("If-None-Match");
+        if (null != ifNoneMatch) {
+            for (String tag : ifNoneMatch.split(",")) {
+                tag = StringUtils.removeStart(tag.trim(), "W/");
+                if ("*".equals(tag) || etag.equals(tag)) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        try {
+            final long ifModifiedSince = request.getDateHeader("If-Modified-Since");
+
+            return -1 != ifModifiedSince && lastModified <= ifModifiedSince;
+        } catch (final IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Checks whether the specified request's {@code If-Range} header (if present) matches the current representation.
+     *
+     * @param request      the specified request
+     * @param etag         the current ETag
+     * @param lastModified the current last modified time
+     * @return {@code true} if the range should be honored, returns {@code false} otherwise
+     */
+    private static boolean isIfRangeMatched(final HttpServletRequest request, final String etag, final long lastModified) {
+        final String ifRange = request.getHeader("If-Range");
+        if (StringUtils.isBlank(ifRange)) {
+            return true;
+        }
+
+        if (ifRange.trim().startsWith("\"")) {
+            return etag.equals(ifRange.trim());
+        }
+
+        try {
+            return lastModified == request.getDateHeader("If-Range");
+        } catch (final IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Private constructor.
+     */
+    private StaticFiles() {
+    }
+}
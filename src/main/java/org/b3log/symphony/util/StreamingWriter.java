@@ -0,0 +1,183 @@
+/*
+ * Symphony - A modern community (forum/BBS/SNS/blog) platform written in Java.
+ * Copyright (C) 2012-2018, b3log.org & hacpai.com
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.b3log.symphony.util;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Streaming writer, buffers output in a pooled bounded buffer and writes it through when the buffer is full or on
+ * {@link #flush()}.
+ * <p>
+ * Nothing reaches the underlying writer before the first write through, so output can still be discarded by
+ * {@link #discard()} until {@link #isCommitted()} returns {@code true}.
+ * </p>
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.0.0, Oct 25, 2018
+ * @since 3.4.3
+ */
+public final class StreamingWriter extends Writer {
+
+    /**
+     * Buffer size in chars.
+     */
+    public static final int BUFFER_SIZE = 16 * 1024;
+
+    /**
+     * Pooled buffers.
+     */
+    private static final BlockingQueue<char[]> BUFFERS = new ArrayBlockingQueue<>(64);
+
+    /**
+     * Underlying writer.
+     */
+    private final Writer out;
+
+    /**
+     * Buffer, {@code null} after closed or discarded.
+     */
+    private char[] buf;
+
+    /**
+     * Count of buffered chars.
+     */
+    private int count;
+
+    /**
+     * Whether any output is written through.
+     */
+    private boolean committed;
+
+    /**
+     * Constructs a streaming writer with the specified underlying writer.
+     *
+     * @param out the specified underlying writer
+     */
+    public StreamingWriter(final Writer out) {
+        this.out = out;
+        final char[] pooled = BUFFERS.poll();
+        buf = null != pooled ? pooled : new char[BUFFER_SIZE];
+    }
+
+    /**
+     * Whether any output is written through to the underlying writer.
+     *
+     * @return {@code true} if committed, returns {@code false} otherwise
+     */
+    public boolean isCommitted() {
+        return committed;
+    }
+
+    /**
+     * Discards the buffered output and releases the buffer, the underlying writer is not closed.
+     */
+    public void discard() {
+        count = 0;
+        release();
+    }
+
+    @Override
+    public void write(final char[] cbuf, final int off, final int len) throws IOException {
+        ensureOpen();
+        if (len >= buf.length) {
+            drain();
+            committed = true;
+            out.write(cbuf, off, len);
+
+            return;
+        }
+
+        if (len > buf.length - count) {
+            drain();
+        }
+        System.arraycopy(cbuf, off, buf, count, len);
+        count += len;
+    }
+
+    @Override
+    public void write(final String str, final int off, final int len) throws IOException {
+        ensureOpen();
+        int written = 0;
+        while (written < len) {
+            if (count == buf.length) {
+                drain();
+            }
+
+            final int n = Math.min(buf.length - count, len - written);
+            str.getChars(off + written, off + written + n, buf, count);
+            count += n;
+            written += n;
+        }
+    }
+
+    @Override
+    public void write(final int c) throws IOException {
+        ensureOpen();
+        if (count == buf.length) {
+            drain();
+        }
+        buf[count++] = (char) c;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+        drain();
+        committed = true;
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (null == buf) {
+            return;
+        }
+
+        try {
+            drain();
+            committed = true;
+            out.close();
+        } finally {
+            release();
+        }
+    }
+
+    private void drain() throws IOException {
+        if (0 < count) {
+            committed = true;
+            out.write(buf, 0, count);
+            count = 0;
+        }
+    }
+
+    private void release() {
+        if (null != buf) {
+            BUFFERS.offer(buf);
+            buf = null;
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (null == buf) {
+            throw new IOException("Writer closed");
+        }
+    }
+}
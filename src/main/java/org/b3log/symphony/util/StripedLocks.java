@@ -0,0 +1,79 @@
+/*
+ * Symphony - A modern community (forum/BBS/SNS/blog) platform written in Java.
+ * Copyright (C) 2012-2018, b3log.org & hacpai.com
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.b3log.symphony.util;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Striped locks, a fixed set of locks shared by keys (for example user ids) by hash.
+ * <p>
+ * Operations on the same key are serialized, operations on keys of different stripes run in parallel. The lock
+ * count is fixed so memory does not grow with the key count.
+ * </p>
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.0.0, Oct 25, 2018
+ * @since 3.4.3
+ */
+public class StripedLocks {
+
+    /**
+     * Locks.
+     */
+    private final Lock[] locks;
+
+    /**
+     * Constructs striped locks with the specified stripe count.
+     *
+     * @param stripes the specified stripe count, rounded up to a power of two
+     */
+    public StripedLocks(final int stripes) {
+        int size = 1;
+        while (size < stripes) {
+            size <<= 1;
+        }
+
+        locks = new Lock[size];
+        for (int i = 0; i < size; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Gets the lock of the specified key.
+     *
+     * @param key the specified key
+     * @return lock
+     */
+    public Lock get(final String key) {
+        return locks[getStripe(key)];
+    }
+
+    /**
+     * Gets the stripe index of the specified key.
+     *
+     * @param key the specified key
+     * @return stripe index
+     */
+    public int getStripe(final String key) {
+        final int h = key.hashCode();
+
+        return (h ^ (h >>> 16)) & (locks.length - 1);
+    }
+}
@@ -265,7 +265,7 @@
                 </div>
                 </#if>
 
-                <#if pjax><!---- pjax {#comments} start ----></#if>
+                <@fragment name="#comments">
                 <div class="module comments" id="comments">
                     <div class="comments-header module-header">
                         <span class="article-cmt-cnt">${article.articleCommentCount} ${cmtLabel}</span>
@@ -288,7 +288,7 @@
                     </div>
                     <@pagination url="${servePath}${article.articlePermalink}" query="m=${userCommentViewMode}#comments" pjaxTitle="${article.articleTitle} - ${symphonyLabel}" />
                 </div>
-                <#if pjax><!---- pjax {#comments} end ----></#if>
+                </@fragment>
             </div>
         </div>
         <div class="wrapper article-footer">
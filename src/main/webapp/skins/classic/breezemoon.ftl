@@ -31,7 +31,7 @@
 <div class="main">
     <div class="wrapper">
         <div class="content fn-clear" id="watch-pjax-container">
-            <#if pjax><!---- pjax {#watch-pjax-container} start ----></#if>
+            <@fragment name="#watch-pjax-container">
             <div class="module">
                 <div class="module-header fn-clear">
                     <span class="fn-right ft-fade">
@@ -97,7 +97,7 @@
                         </#list>
                     </ul>
                 </div>
-            </div><#if pjax><!---- pjax {#watch-pjax-container} end ----></#if>
+            </div></@fragment>
         </div>
         <div class="side">
         <#include "side.ftl">
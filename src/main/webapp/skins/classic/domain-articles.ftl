@@ -34,7 +34,7 @@
         <div class="main">
             <div class="wrapper">
                 <div class="content" id="domain-pjax-container">
-                    <#if pjax><!---- pjax {#domain-pjax-container} start ----></#if><div class="module">
+                    <@fragment name="#domain-pjax-container"><div class="module">
                     ${domain.domainCSS}
                     <div class="tabs-sub fn-clear">
                         <#list domains as navDomain>
@@ -60,7 +60,7 @@
                         </#if>
                     </div>
 
-                    <#if pjax><!---- pjax {#domain-pjax-container} end ----></#if>
+                    </@fragment>
                 </div>
                 <div class="side">
                     <#include "side.ftl">
@@ -112,3 +112,4 @@
         </#if>
     </div>
 </div>
+<@flush/>
@@ -81,10 +81,10 @@
 <div class="main">
     <div class="wrapper">
         <div class="content" id="home-pjax-container">
-                    <#if pjax><!---- pjax {#home-pjax-container} start ----></#if>
+                    <@fragment name="#home-pjax-container">
             <div class="module">
                     <#nested>
-            </div><#if pjax><!---- pjax {#home-pjax-container} end ----></#if>
+            </div></@fragment>
         </div>
         <div class="side">
                     <#include "home-side.ftl">
@@ -34,7 +34,7 @@
 <div class="main">
     <div class="wrapper">
         <div class="content fn-clear" id="qna-pjax-container">
-            <#if pjax><!---- pjax {#qna-pjax-container} start ----></#if>
+            <@fragment name="#qna-pjax-container">
             <div class="module">
                 <div class="module-header fn-clear">
                     <span class="fn-right ft-fade">
@@ -64,7 +64,7 @@
                 </div>
                 <@list listData=latestArticles/>
                 <@pagination url="${servePath}/qna${current}" pjaxTitle="${latestLabel} - ${symphonyLabel}"/>
-            </div><#if pjax><!---- pjax {#qna-pjax-container} end ----></#if>
+            </div></@fragment>
         </div>
 
         <div class="side">
@@ -34,7 +34,7 @@
         <div class="main">
             <div class="wrapper">
                 <div class="content fn-clear" id="recent-pjax-container">
-                    <#if pjax><!---- pjax {#recent-pjax-container} start ----></#if><#if 0 < stickArticles?size>
+                    <@fragment name="#recent-pjax-container"><#if 0 < stickArticles?size>
                     <div class="module">
                         <div class="article-list list">
                             <ul class="stick">
@@ -62,7 +62,7 @@
                         </div>
                         <@list listData=latestArticles/>
                         <@pagination url="${servePath}/recent${current}" pjaxTitle="${latestLabel} - ${symphonyLabel}"/>
-                    </div><#if pjax><!---- pjax {#recent-pjax-container} end ----></#if>
+                    </div></@fragment>
 
                 </div>
 
@@ -34,7 +34,7 @@
         <div class="main tag-articles">
             <div class="wrapper">
                 <div class="content" id="tag-pjax-container">
-                    <#if pjax><!---- pjax {#tag-pjax-container} start ----></#if><div class="module">
+                    <@fragment name="#tag-pjax-container"><div class="module">
                         ${tag.tagCSS}
                         <div class="article-info fn-flex">
                             <#if tag.tagIconPath != "">
@@ -107,7 +107,7 @@
                         <@list listData=articles/>
                         <@pagination url="${servePath}/tag/${tag.tagURI}${current}" pjaxTitle="${tag.tagTitle} - ${tagLabel} - ${symphonyLabel}"/>
                     </div>
-                    </#if><#if pjax><!---- pjax {#tag-pjax-container} end ----></#if>
+                    </#if></@fragment>
                 </div> 
                 <div class="side">
                     <#include "side.ftl">
@@ -94,6 +94,10 @@
                 <div class="painter-point" style="background-color: #${user.userPointCC}"></div>
                 </#if>
             </a>
+            <#if (user.userPointRank!-1) gt 0>
+            <span class="ft-gray">${pointRankLabel}</span>
+            <a href="${servePath}/top/balance">#${user.userPointRank?c}</a>
+            </#if>
         </div>
         <#if user.userURL!="">
         <div class="user-info">
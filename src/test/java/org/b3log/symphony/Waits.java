@@ -0,0 +1,57 @@
+/*
+ * Symphony - A modern community (forum/BBS/SNS/blog) platform written in Java.
+ * Copyright (C) 2012-2018, b3log.org & hacpai.com
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.b3log.symphony;
+
+import org.testng.Assert;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * Wait utilities for test cases of background work.
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.0.0, Oct 25, 2018
+ * @since 3.4.3
+ */
+public final class Waits {
+
+    /**
+     * Max wait time in milliseconds.
+     */
+    private static final long TIMEOUT = 10 * 1000;
+
+    /**
+     * Waits until the specified condition holds, fails the test if it does not hold in {@link #TIMEOUT}.
+     *
+     * @param condition the specified condition
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public static void waitFor(final BooleanSupplier condition) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (!condition.getAsBoolean()) {
+            Assert.assertTrue(System.currentTimeMillis() < deadline, "Timed out");
+            Thread.sleep(20);
+        }
+    }
+
+    /**
+     * Private constructor.
+     */
+    private Waits() {
+    }
+}
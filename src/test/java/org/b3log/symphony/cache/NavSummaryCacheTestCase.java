@@ -0,0 +1,88 @@
+/*
+ * Symphony - A modern community (forum/BBS/SNS/blog) platform written in Java.
+ * Copyright (C) 2012-2018, b3log.org & hacpai.com
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.b3log.symphony.cache;
+
+import org.b3log.symphony.model.Common;
+import org.b3log.symphony.model.Liveness;
+import org.json.JSONObject;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link NavSummaryCache} test case.
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.0.0, Oct 25, 2018
+ * @since 3.4.3
+ */
+public class NavSummaryCacheTestCase {
+
+    /**
+     * A warm summary is served without loading, invalidation reloads it, liveness is updated in place.
+     */
+    @Test
+    public void get() {
+        final NavSummaryCache cache = new NavSummaryCache();
+        cache.clear();
+        final AtomicInteger loadCnt = new AtomicInteger();
+
+        for (int i = 0; i < 3; i++) {
+            final JSONObject summary = cache.get("1", () -> summary(loadCnt.incrementAndGet()));
+            Assert.assertEquals(summary.optLong(Common.FOLLOWING_TAG_CNT), 1);
+        }
+        Assert.assertEquals(loadCnt.get(), 1);
+
+        cache.putLivenessPoint("1", 42);
+        final JSONObject summary = cache.get("1", () -> summary(loadCnt.incrementAndGet()));
+        Assert.assertEquals(summary.optInt(Liveness.LIVENESS_POINT), 42);
+        Assert.assertEquals(summary.optLong(Common.FOLLOWING_TAG_CNT), 1);
+        Assert.assertEquals(loadCnt.get(), 1);
+
+        cache.invalidate("1");
+        Assert.assertEquals(cache.get("1", () -> summary(loadCnt.incrementAndGet())).optLong(Common.FOLLOWING_TAG_CNT), 2);
+        Assert.assertEquals(loadCnt.get(), 2);
+    }
+
+    /**
+     * A summary loaded across an invalidation is returned but not cached.
+     */
+    @Test
+    public void invalidateWhileLoading() {
+        final NavSummaryCache cache = new NavSummaryCache();
+        cache.clear();
+
+        final JSONObject stale = cache.get("2", () -> {
+            cache.invalidate("2");
+
+            return summary(1);
+        });
+        Assert.assertEquals(stale.optLong(Common.FOLLOWING_TAG_CNT), 1);
+        Assert.assertEquals(cache.get("2", () -> summary(2)).optLong(Common.FOLLOWING_TAG_CNT), 2);
+        Assert.assertEquals(cache.get("2", () -> summary(3)).optLong(Common.FOLLOWING_TAG_CNT), 2);
+    }
+
+    private static JSONObject summary(final long followingTagCnt) {
+        final JSONObject ret = new JSONObject();
+        ret.put(Common.FOLLOWING_TAG_CNT, followingTagCnt);
+        ret.put(Liveness.LIVENESS_POINT, 0);
+
+        return ret;
+    }
+}
@@ -0,0 +1,322 @@
+/*
+ * Symphony - A modern community (forum/BBS/SNS/blog) platform written in Java.
+ * Copyright (C) 2012-2018, b3log.org & hacpai.com
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.b3log.symphony.service;
+
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.b3log.symphony.Waits;
+import org.b3log.symphony.util.SearchIndexQueue;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link SearchIndexQueue} test case, runs against a local stub ES bulk endpoint.
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.1.0.0, Oct 25, 2018
+ * @since 3.4.3
+ */
+public class SearchIndexQueueTestCase {
+
+    /**
+     * Bulk request bodies received by the stub server.
+     */
+    private final List<String> requests = new CopyOnWriteArrayList<>();
+
+    /**
+     * Count of the next requests the stub server should fail with 503.
+     */
+    private final AtomicInteger failures = new AtomicInteger();
+
+    /**
+     * Document id the stub server should reject with the item status {@link #rejectStatus}.
+     */
+    private volatile String rejectId;
+
+    /**
+     * Item status for {@link #rejectId}.
+     */
+    private volatile int rejectStatus;
+
+    private HttpServer server;
+
+    private String serverURL;
+
+    private File dir;
+
+    @BeforeMethod
+    public void before() throws Exception {
+        requests.clear();
+        failures.set(0);
+        rejectId = null;
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/_bulk", exchange -> {
+            final String body = IOUtils.toString(exchange.getRequestBody(), StandardCharsets.UTF_8);
+            requests.add(body);
+
+            String response;
+            int status = 200;
+            if (0 < failures.getAndDecrement()) {
+                status = 503;
+                response = "{}";
+            } else {
+                boolean errors = false;
+                final JSONArray items = new JSONArray();
+                for (final String line : body.split("\n")) {
+                    final JSONObject json = new JSONObject(line);
+                    final String action = json.keys().next();
+                    if (!"update".equals(action) && !"delete".equals(action)) {
+                        continue;
+                    }
+
+                    final String id = json.optJSONObject(action).optString("_id");
+                    int itemStatus = "delete".equals(action) ? 404 : 200;
+                    if (id.equals(rejectId)) {
+                        itemStatus = rejectStatus;
+                        errors = true;
+                    }
+                    items.put(new JSONObject().put(action, new JSONObject().put("_id", id).put("status", itemStatus)));
+                }
+                response = new JSONObject().put("errors", errors).put("items", items).toString();
+            }
+
+            final byte[] data = response.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(status, data.length);
+            try (final OutputStream outputStream = exchange.getResponseBody()) {
+                outputStream.write(data);
+            }
+        });
+        server.start();
+        serverURL = "http://127.0.0.1:" + server.getAddress().getPort();
+
+        dir = Files.createTempDirectory("search-queue").toFile();
+    }
+
+    @AfterMethod
+    public void after() throws Exception {
+        server.stop(0);
+        FileUtils.deleteDirectory(dir);
+    }
+
+    /**
+     * Repeated updates of the same document are coalesced into one bulk action.
+     */
+    @Test
+    public void coalesce() {
+        final SearchIndexQueue queue = newQueue(100, 60 * 1000);
+        queue.update("1", "article", new JSONObject().put("articleTitle", "v1"));
+        queue.update("1", "article", new JSONObject().put("articleTitle", "v2"));
+        queue.update("2", "article", new JSONObject().put("articleTitle", "a"));
+        queue.remove("2", "article");
+        queue.update("1", "article", new JSONObject().put("articleTitle", "v3"));
+        Assert.assertEquals(queue.size(), 2);
+
+        Assert.assertTrue(queue.flush());
+        Assert.assertEquals(queue.size(), 0);
+        Assert.assertEquals(requests.size(), 1);
+
+        final String[] lines = requests.get(0).split("\n");
+        Assert.assertEquals(lines.length, 3);
+        Assert.assertTrue(lines[1].contains("v3"));
+        Assert.assertTrue(lines[2].contains("\"delete\""));
+        queue.stop();
+    }
+
+    /**
+     * Failed batches stay in the queue and are retried.
+     */
+    @Test
+    public void retry() {
+        final SearchIndexQueue queue = newQueue(100, 60 * 1000);
+        queue.update("1", "article", new JSONObject());
+        queue.update("2", "article", new JSONObject());
+
+        failures.set(2);
+        Assert.assertFalse(queue.flush());
+        Assert.assertFalse(queue.flush());
+        Assert.assertEquals(queue.size(), 2);
+        Assert.assertEquals(queue.getFailures(), 2);
+
+        Assert.assertTrue(queue.flush());
+        Assert.assertEquals(queue.size(), 0);
+        Assert.assertEquals(queue.getFailures(), 0);
+        Assert.assertEquals(requests.size(), 3);
+        queue.stop();
+    }
+
+    /**
+     * Only retryable items of a partially failed bulk are kept, rejected ones are dropped.
+     */
+    @Test
+    public void itemFailures() {
+        final SearchIndexQueue queue = newQueue(100, 60 * 1000);
+        queue.update("1", "article", new JSONObject());
+        queue.update("2", "article", new JSONObject());
+
+        rejectId = "2";
+        rejectStatus = 429;
+        Assert.assertFalse(queue.flush());
+        Assert.assertEquals(queue.size(), 1);
+
+        rejectStatus = 400;
+        Assert.assertTrue(queue.flush());
+        Assert.assertEquals(queue.size(), 0);
+        queue.stop();
+    }
+
+    /**
+     * Pending operations survive a restart, a torn journal tail is skipped.
+     */
+    @Test
+    public void replay() throws Exception {
+        SearchIndexQueue queue = newQueue(100, 60 * 1000);
+        queue.update("1", "article", new JSONObject().put("articleTitle", "v1"));
+        queue.remove("2", "article");
+        failures.set(Integer.MAX_VALUE);
+        queue.stop();
+
+        FileUtils.writeStringToFile(new File(dir, "es.journal"), "{\"id\":\"3\",\"act", StandardCharsets.UTF_8, true);
+
+        failures.set(0);
+        requests.clear();
+        queue = newQueue(100, 60 * 1000);
+        Assert.assertEquals(queue.size(), 2);
+        Assert.assertTrue(queue.flush());
+        Assert.assertTrue(requests.get(0).contains("v1"));
+
+        queue.stop();
+        queue = newQueue(100, 60 * 1000);
+        Assert.assertEquals(queue.size(), 0);
+        queue.stop();
+    }
+
+    /**
+     * The background flusher submits once the batch size is reached and backs off while the backend is down.
+     */
+    @Test
+    public void backgroundFlush() throws Exception {
+        final SearchIndexQueue queue = newQueue(2, 60 * 1000);
+        queue.start();
+        queue.update("1", "article", new JSONObject());
+        Thread.sleep(300);
+        Assert.assertEquals(requests.size(), 0);
+
+        failures.set(1);
+        queue.update("2", "article", new JSONObject());
+        Waits.waitFor(() -> 0 == queue.size());
+        Assert.assertEquals(requests.size(), 2);
+        queue.stop();
+    }
+
+    /**
+     * The journal is kept while acknowledged lines are few, compacted once they pass the threshold, and truncated
+     * once the queue drains.
+     */
+    @Test
+    public void compact() throws Exception {
+        final File journal = new File(dir, "es.journal");
+        final AtomicInteger acks = new AtomicInteger();
+        final SearchIndexQueue queue = new SearchIndexQueue("es", dir, ops -> {
+            if (0 > acks.decrementAndGet()) {
+                throw new IllegalStateException("Unavailable");
+            }
+
+            return Collections.emptySet();
+        }, 1, 60 * 1000, 50, 200, 100000);
+        for (int i = 0; i <= 10; i++) {
+            queue.update(String.valueOf(i), "article", new JSONObject());
+        }
+
+        acks.set(1);
+        Assert.assertFalse(queue.flush());
+        Assert.assertEquals(queue.size(), 10);
+        Assert.assertEquals(journalLines(journal), 11);
+
+        for (int i = 11; i <= 2000; i++) {
+            queue.update(String.valueOf(i), "article", new JSONObject());
+        }
+        acks.set(1000);
+        Assert.assertFalse(queue.flush());
+        Assert.assertEquals(queue.size(), 1000);
+        Assert.assertEquals(journalLines(journal), 1000);
+
+        acks.set(Integer.MAX_VALUE);
+        Assert.assertTrue(queue.flush());
+        Assert.assertFalse(journal.exists());
+        queue.stop();
+    }
+
+    /**
+     * Operations of new documents are dropped once the queue is full, updates of pending ones are still coalesced,
+     * the overflowed mark survives a restart until cleared.
+     */
+    @Test
+    public void overflow() {
+        SearchIndexQueue queue = newQueue(100, 60 * 1000, 2);
+        queue.update("1", "article", new JSONObject().put("articleTitle", "v1"));
+        queue.update("2", "article", new JSONObject());
+        Assert.assertFalse(queue.isOverflowed());
+
+        queue.update("3", "article", new JSONObject());
+        queue.update("1", "article", new JSONObject().put("articleTitle", "v2"));
+        Assert.assertEquals(queue.size(), 2);
+        Assert.assertTrue(queue.isOverflowed());
+        queue.stop();
+
+        queue = newQueue(100, 60 * 1000, 2);
+        Assert.assertTrue(queue.isOverflowed());
+        Assert.assertTrue(queue.flush());
+        Assert.assertTrue(requests.get(0).contains("v2"));
+        Assert.assertFalse(requests.get(0).contains("\"3\""));
+
+        queue.clearOverflowed();
+        queue.stop();
+        queue = newQueue(100, 60 * 1000, 2);
+        Assert.assertFalse(queue.isOverflowed());
+        queue.stop();
+    }
+
+    private static int journalLines(final File journal) throws Exception {
+        return FileUtils.readLines(journal, StandardCharsets.UTF_8).size();
+    }
+
+    private SearchIndexQueue newQueue(final int batchSize, final long flushInterval) {
+        return newQueue(batchSize, flushInterval, 100000);
+    }
+
+    private SearchIndexQueue newQueue(final int batchSize, final long flushInterval, final int maxPending) {
+        return new SearchIndexQueue("es", dir, ops -> SearchMgmtService.bulkES(serverURL, ops), batchSize, flushInterval,
+                50, 200, maxPending);
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Symphony - A modern community (forum/BBS/SNS/blog) platform written in Java.
+ * Copyright (C) 2012-2018, b3log.org & hacpai.com
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.b3log.symphony.service;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * {@link SitemapMgmtService} test case.
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.0.0, Oct 25, 2018
+ * @since 3.4.3
+ */
+public class SitemapMgmtServiceTestCase {
+
+    /**
+     * An id belongs to the last shard starting at or before it.
+     */
+    @Test
+    public void findShard() {
+        Assert.assertEquals(SitemapMgmtService.findShard(new long[]{0}, 42), 0);
+
+        final long[] froms = {0, 100, 200, 300};
+        Assert.assertEquals(SitemapMgmtService.findShard(froms, 0), 0);
+        Assert.assertEquals(SitemapMgmtService.findShard(froms, 99), 0);
+        Assert.assertEquals(SitemapMgmtService.findShard(froms, 100), 1);
+        Assert.assertEquals(SitemapMgmtService.findShard(froms, 250), 2);
+        Assert.assertEquals(SitemapMgmtService.findShard(froms, 300), 3);
+        Assert.assertEquals(SitemapMgmtService.findShard(froms, Long.MAX_VALUE), 3);
+    }
+
+    /**
+     * The high-water mark follows the max update time read, holds back by the safety lag, and never goes back.
+     */
+    @Test
+    public void nextHighWaterMark() {
+        final long lag = SitemapMgmtService.SAFETY_LAG;
+        final long now = 10 * lag;
+
+        // Articles updated long ago, the window ends at the latest one read
+        Assert.assertEquals(SitemapMgmtService.nextHighWaterMark(lag, 3 * lag, now), 3 * lag);
+
+        // Articles updated within the lag are scanned again by the next refresh
+        Assert.assertEquals(SitemapMgmtService.nextHighWaterMark(lag, now - 1, now), now - lag);
+
+        // Nothing read, the window advances to the lag
+        Assert.assertEquals(SitemapMgmtService.nextHighWaterMark(lag, 0, now), now - lag);
+
+        // Never goes back
+        Assert.assertEquals(SitemapMgmtService.nextHighWaterMark(now, 0, now), now);
+        Assert.assertEquals(SitemapMgmtService.nextHighWaterMark(now - 1, now - 1, now), now - 1);
+    }
+}
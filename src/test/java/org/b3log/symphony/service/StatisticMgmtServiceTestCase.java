@@ -0,0 +1,256 @@
+/*
+ * Symphony - A modern community (forum/BBS/SNS/blog) platform written in Java.
+ * Copyright (C) 2012-2018, b3log.org & hacpai.com
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.b3log.symphony.service;
+
+import org.apache.commons.lang.time.DateFormatUtils;
+import org.apache.commons.lang.time.DateUtils;
+import org.b3log.latke.Keys;
+import org.b3log.latke.Latkes;
+import org.b3log.latke.repository.Transaction;
+import org.b3log.latke.service.ServiceException;
+import org.b3log.symphony.Waits;
+import org.b3log.symphony.model.StatisticDaily;
+import org.b3log.symphony.repository.StatisticDailyRepository;
+import org.json.JSONObject;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.lang.reflect.Field;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * {@link StatisticMgmtService} test case, runs against in-memory repository and counts.
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.0.0, Oct 25, 2018
+ * @since 3.4.3
+ */
+public class StatisticMgmtServiceTestCase {
+
+    static {
+        Latkes.init();
+    }
+
+    /**
+     * Concurrent increments are not lost, a missing day is inserted.
+     */
+    @Test
+    public void incDaily() throws Exception {
+        final MemoryDailyRepository repository = new MemoryDailyRepository();
+        final StatisticMgmtService service = newService(repository, new Counts());
+        final long time = System.currentTimeMillis();
+        final String date = DateFormatUtils.format(time, StatisticDaily.DATE_FORMAT);
+
+        final CountDownLatch done = new CountDownLatch(8);
+        for (int i = 0; i < 8; i++) {
+            new Thread(() -> {
+                for (int j = 0; j < 100; j++) {
+                    service.incDaily(StatisticDaily.STATISTIC_DAILY_ARTICLE_CNT, time);
+                }
+                done.countDown();
+            }).start();
+        }
+        service.incDaily(StatisticDaily.STATISTIC_DAILY_USER_CNT, time);
+        done.await();
+
+        final JSONObject daily = repository.get(date);
+        Assert.assertEquals(daily.optInt(StatisticDaily.STATISTIC_DAILY_ARTICLE_CNT), 800);
+        Assert.assertEquals(daily.optInt(StatisticDaily.STATISTIC_DAILY_USER_CNT), 1);
+        Assert.assertEquals(daily.optInt(StatisticDaily.STATISTIC_DAILY_COMMENT_CNT), 0);
+    }
+
+    /**
+     * Only the counter fields can be incremented.
+     */
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void incUnknownField() throws Exception {
+        new StatisticDailyRepository().inc("20181025", "statisticDailyUserCnt = 0, oId");
+    }
+
+    /**
+     * Yesterday is replaced by the recounts, and kept and retried if counting failed.
+     */
+    @Test
+    public void reconcileYesterday() throws Exception {
+        final MemoryDailyRepository repository = new MemoryDailyRepository();
+        final Counts counts = new Counts();
+        final StatisticMgmtService service = newService(repository, counts);
+        final Date yesterday = DateUtils.addDays(new Date(), -1);
+        final String date = DateFormatUtils.format(yesterday, StatisticDaily.DATE_FORMAT);
+        repository.add(daily(date, 1));
+
+        counts.failingDates.add(date);
+        service.reconcileYesterday();
+        Assert.assertEquals(repository.get(date).optInt(StatisticDaily.STATISTIC_DAILY_ARTICLE_CNT), 1);
+
+        counts.failingDates.clear();
+        service.reconcileYesterday();
+        Assert.assertEquals(repository.get(date).optInt(StatisticDaily.STATISTIC_DAILY_USER_CNT), 2);
+        Assert.assertEquals(repository.get(date).optInt(StatisticDaily.STATISTIC_DAILY_ARTICLE_CNT), 3);
+        Assert.assertEquals(repository.get(date).optInt(StatisticDaily.STATISTIC_DAILY_COMMENT_CNT), 5);
+    }
+
+    /**
+     * Every day since the first admin is recounted, a day failed to count is skipped.
+     */
+    @Test
+    public void backfill() throws Exception {
+        final MemoryDailyRepository repository = new MemoryDailyRepository();
+        final Counts counts = new Counts();
+        final StatisticMgmtService service = newService(repository, counts);
+        final Date today = new Date();
+        final String[] dates = new String[3];
+        for (int i = 0; i < dates.length; i++) {
+            dates[i] = DateFormatUtils.format(DateUtils.addDays(today, i - 3), StatisticDaily.DATE_FORMAT);
+        }
+        counts.adminTime = DateUtils.addDays(today, -3).getTime();
+        counts.failingDates.add(dates[1]);
+
+        Assert.assertTrue(service.backfill());
+        Waits.waitFor(() -> repository.dailies.containsKey(dates[2])); // days are reconciled in order
+
+        Assert.assertEquals(repository.get(dates[0]).optInt(StatisticDaily.STATISTIC_DAILY_ARTICLE_CNT), 3);
+        Assert.assertNull(repository.get(dates[1]));
+        Assert.assertEquals(repository.get(dates[2]).optInt(StatisticDaily.STATISTIC_DAILY_COMMENT_CNT), 5);
+        Assert.assertNull(repository.get(DateFormatUtils.format(today, StatisticDaily.DATE_FORMAT)));
+    }
+
+    private static StatisticMgmtService newService(final StatisticDailyRepository repository, final Counts counts) throws Exception {
+        final StatisticMgmtService ret = new StatisticMgmtService();
+        inject(ret, "statisticDailyRepository", repository);
+        inject(ret, "userQueryService", new UserQueryService() {
+            @Override
+            public int getUserCntInDay(final Date day) throws ServiceException {
+                return counts.count(day, 2);
+            }
+
+            @Override
+            public List<JSONObject> getAdmins() {
+                return Collections.singletonList(new JSONObject().put(Keys.OBJECT_ID, String.valueOf(counts.adminTime)));
+            }
+        });
+        inject(ret, "articleQueryService", new ArticleQueryService() {
+            @Override
+            public int getArticleCntInDay(final Date day) throws ServiceException {
+                return counts.count(day, 3);
+            }
+        });
+        inject(ret, "commentQueryService", new CommentQueryService() {
+            @Override
+            public int getCommentCntInDay(final Date day) throws ServiceException {
+                return counts.count(day, 5);
+            }
+        });
+
+        return ret;
+    }
+
+    private static void inject(final Object target, final String name, final Object value) throws Exception {
+        final Field field = target.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+
+    private static JSONObject daily(final String date, final int cnt) {
+        final JSONObject ret = new JSONObject();
+        ret.put(Keys.OBJECT_ID, date);
+        ret.put(StatisticDaily.STATISTIC_DAILY_USER_CNT, cnt);
+        ret.put(StatisticDaily.STATISTIC_DAILY_ARTICLE_CNT, cnt);
+        ret.put(StatisticDaily.STATISTIC_DAILY_COMMENT_CNT, cnt);
+
+        return ret;
+    }
+
+    /**
+     * Source table counts, fails on the specified dates.
+     */
+    private static final class Counts {
+
+        private final Set<String> failingDates = ConcurrentHashMap.newKeySet();
+
+        private volatile long adminTime;
+
+        private int count(final Date day, final int cnt) throws ServiceException {
+            if (failingDates.contains(DateFormatUtils.format(day, StatisticDaily.DATE_FORMAT))) {
+                throw new ServiceException("Count failed");
+            }
+
+            return cnt;
+        }
+    }
+
+    /**
+     * In-memory daily statistic repository.
+     */
+    private static final class MemoryDailyRepository extends StatisticDailyRepository {
+
+        private final Map<String, JSONObject> dailies = new ConcurrentHashMap<>();
+
+        @Override
+        public synchronized void inc(final String date, final String field) {
+            final JSONObject daily = dailies.computeIfAbsent(date, d -> daily(d, 0));
+            daily.put(field, daily.optInt(field) + 1);
+        }
+
+        @Override
+        public JSONObject get(final String id) {
+            return dailies.get(id);
+        }
+
+        @Override
+        public String add(final JSONObject jsonObject) {
+            dailies.put(jsonObject.optString(Keys.OBJECT_ID), jsonObject);
+
+            return jsonObject.optString(Keys.OBJECT_ID);
+        }
+
+        @Override
+        public void update(final String id, final JSONObject jsonObject) {
+            dailies.put(id, jsonObject);
+        }
+
+        @Override
+        public Transaction beginTransaction() {
+            return new Transaction() {
+                private boolean active = true;
+
+                @Override
+                public String getId() {
+                    return "memory";
+                }
+
+                @Override
+                public void commit() {
+                    active = false;
+                }
+
+                @Override
+                public void rollback() {
+                    active = false;
+                }
+
+                @Override
+                public boolean isActive() {
+                    return active;
+                }
+            };
+        }
+    }
+}
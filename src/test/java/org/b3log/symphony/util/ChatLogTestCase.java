@@ -0,0 +1,263 @@
+/*
+ * Symphony - A modern community (forum/BBS/SNS/blog) platform written in Java.
+ * Copyright (C) 2012-2018, b3log.org & hacpai.com
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.b3log.symphony.util;
+
+import org.b3log.latke.Keys;
+import org.b3log.symphony.model.Common;
+import org.json.JSONObject;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * {@link ChatLog} test case.
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.1.0, Oct 25, 2018
+ * @since 3.4.3
+ */
+public class ChatLogTestCase {
+
+    /**
+     * Log directory.
+     */
+    private File dir;
+
+    @BeforeMethod
+    public void before() throws Exception {
+        dir = Files.createTempDirectory("chat-log").toFile();
+    }
+
+    @AfterMethod
+    public void after() {
+        final File[] files = dir.listFiles();
+        if (null != files) {
+            for (final File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    /**
+     * A torn record at the tail is dropped on reopen and appending continues after the last intact message.
+     */
+    @Test
+    public void recoverTornTail() throws Exception {
+        ChatLog log = new ChatLog(dir, 10, 1024 * 1024, Long.MAX_VALUE, Long.MAX_VALUE);
+        for (int i = 1; i <= 5; i++) {
+            log.append(msg("m" + i));
+        }
+        log.close();
+
+        final File segment = dir.listFiles()[0];
+        final long intactSize = segment.length();
+        try (final RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+            file.seek(intactSize);
+            file.writeInt(100);
+            file.writeInt(0);
+            file.write("{\"content\":".getBytes("UTF-8"));
+        }
+
+        log = new ChatLog(dir, 10, 1024 * 1024, Long.MAX_VALUE, Long.MAX_VALUE);
+        Assert.assertEquals(log.getLastSeq(), 5);
+        Assert.assertEquals(segment.length(), intactSize);
+        Assert.assertEquals(log.append(msg("m6")), 6);
+        Assert.assertEquals(contents(log.getLatest(10)), Arrays.asList("m6", "m5", "m4", "m3", "m2", "m1"));
+        log.close();
+
+        log = new ChatLog(dir, 10, 1024 * 1024, Long.MAX_VALUE, Long.MAX_VALUE);
+        Assert.assertEquals(contents(log.getLatest(10)), Arrays.asList("m6", "m5", "m4", "m3", "m2", "m1"));
+        log.close();
+    }
+
+    /**
+     * A record with a bad checksum at the tail is dropped on reopen.
+     */
+    @Test
+    public void recoverCorruptedTail() throws Exception {
+        ChatLog log = new ChatLog(dir, 10, 1024 * 1024, Long.MAX_VALUE, Long.MAX_VALUE);
+        for (int i = 1; i <= 3; i++) {
+            log.append(msg("m" + i));
+        }
+        log.close();
+
+        final File segment = dir.listFiles()[0];
+        try (final RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+            file.seek(file.length() - 2);
+            file.write('x');
+        }
+
+        log = new ChatLog(dir, 10, 1024 * 1024, Long.MAX_VALUE, Long.MAX_VALUE);
+        Assert.assertEquals(log.getLastSeq(), 2);
+        Assert.assertEquals(contents(log.getLatest(10)), Arrays.asList("m2", "m1"));
+        log.close();
+    }
+
+    /**
+     * Concurrent senders get unique contiguous sequence numbers and every message survives a reopen.
+     */
+    @Test
+    public void concurrentSenders() throws Exception {
+        final int senders = 16;
+        final int msgsPerSender = 200;
+        final ChatLog log = new ChatLog(dir, 40, 16 * 1024, Long.MAX_VALUE, Long.MAX_VALUE);
+        final ExecutorService pool = Executors.newFixedThreadPool(senders);
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Future<List<Long>>> futures = new ArrayList<>();
+        for (int i = 0; i < senders; i++) {
+            final int sender = i;
+            futures.add(pool.submit(() -> {
+                start.await();
+                final List<Long> ret = new ArrayList<>();
+                for (int j = 0; j < msgsPerSender; j++) {
+                    ret.add(log.append(msg(sender + "-" + j)));
+                    log.getLatest(40);
+                }
+
+                return ret;
+            }));
+        }
+
+        start.countDown();
+        final Set<Long> seqs = new TreeSet<>();
+        for (final Future<List<Long>> future : futures) {
+            seqs.addAll(future.get(60, TimeUnit.SECONDS));
+        }
+        pool.shutdown();
+        log.close();
+
+        final int total = senders * msgsPerSender;
+        Assert.assertEquals(seqs.size(), total);
+        Assert.assertEquals((long) ((TreeSet<Long>) seqs).first(), 1L);
+        Assert.assertEquals((long) ((TreeSet<Long>) seqs).last(), total);
+
+        final ChatLog reopened = new ChatLog(dir, 40, 16 * 1024, Long.MAX_VALUE, Long.MAX_VALUE);
+        Assert.assertEquals(reopened.getLastSeq(), total);
+        final List<JSONObject> all = reopened.getLatest(total);
+        Assert.assertEquals(all.size(), total);
+        final Set<String> contents = new HashSet<>(contents(all));
+        for (int i = 0; i < senders; i++) {
+            for (int j = 0; j < msgsPerSender; j++) {
+                Assert.assertTrue(contents.contains(i + "-" + j));
+            }
+        }
+        reopened.close();
+    }
+
+    /**
+     * Loading older messages pages through the ring and then the segment files.
+     */
+    @Test
+    public void getBefore() throws Exception {
+        final ChatLog log = new ChatLog(dir, 10, 512, Long.MAX_VALUE, Long.MAX_VALUE);
+        for (int i = 1; i <= 100; i++) {
+            log.append(msg("m" + i));
+        }
+        Assert.assertTrue(1 < dir.listFiles().length);
+
+        long before = Long.MAX_VALUE;
+        int expected = 100;
+        List<JSONObject> page;
+        while (!(page = log.getBefore(before, 7)).isEmpty()) {
+            for (final JSONObject msg : page) {
+                Assert.assertEquals(msg.optString(Common.CONTENT), "m" + expected);
+                Assert.assertEquals(msg.optLong(Keys.OBJECT_ID), expected);
+                expected--;
+            }
+            before = page.get(page.size() - 1).optLong(Keys.OBJECT_ID);
+        }
+        Assert.assertEquals(expected, 0);
+        log.close();
+    }
+
+    /**
+     * The oldest segments are deleted once the total size exceeds the retention size.
+     */
+    @Test
+    public void retention() throws Exception {
+        final ChatLog log = new ChatLog(dir, 10, 512, 2048, Long.MAX_VALUE);
+        for (int i = 1; i <= 500; i++) {
+            log.append(msg("m" + i));
+        }
+
+        long totalSize = 0;
+        for (final File file : dir.listFiles()) {
+            totalSize += file.length();
+        }
+        Assert.assertTrue(totalSize <= 2048 + 512, "Total size [" + totalSize + "]");
+
+        final List<JSONObject> all = log.getLatest(500);
+        Assert.assertTrue(all.size() < 500);
+        Assert.assertEquals(all.get(0).optString(Common.CONTENT), "m500");
+        final long oldest = all.get(all.size() - 1).optLong(Keys.OBJECT_ID);
+        Assert.assertEquals(all.size(), 500 - oldest + 1);
+        log.close();
+    }
+
+    /**
+     * A ring without slots is rejected.
+     */
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void emptyRing() throws Exception {
+        new ChatLog(dir, 0, 1024, Long.MAX_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * Prints the time of page loads of the latest messages, which are served from memory.
+     */
+    @Test
+    public void pageLoadBenchmark() throws Exception {
+        final ChatLog log = new ChatLog(dir, 40, 1024 * 1024, Long.MAX_VALUE, Long.MAX_VALUE);
+        for (int i = 1; i <= 1000; i++) {
+            log.append(msg("m" + i));
+        }
+
+        final int loads = 100000;
+        final long start = System.nanoTime();
+        int cnt = 0;
+        for (int i = 0; i < loads; i++) {
+            cnt += log.getLatest(40).size();
+        }
+        final long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        System.out.println("Loaded [" + loads + "] chat room pages in [" + elapsed + "]ms");
+
+        Assert.assertEquals(cnt, loads * 40);
+        log.close();
+    }
+
+    private static JSONObject msg(final String content) {
+        return new JSONObject().put(Common.CONTENT, content).put(Common.TIME, System.currentTimeMillis());
+    }
+
+    private static List<String> contents(final List<JSONObject> msgs) {
+        final List<String> ret = new ArrayList<>();
+        for (final JSONObject msg : msgs) {
+            ret.add(msg.optString(Common.CONTENT));
+        }
+
+        return ret;
+    }
+}
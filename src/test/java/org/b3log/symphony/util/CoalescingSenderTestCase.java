@@ -0,0 +1,167 @@
+/*
+ * Symphony - A modern community (forum/BBS/SNS/blog) platform written in Java.
+ * Copyright (C) 2012-2018, b3log.org & hacpai.com
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.b3log.symphony.util;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link CoalescingSender} and {@link SessionRegistry} test case.
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.0.1, Oct 25, 2018
+ * @since 3.4.3
+ */
+public class CoalescingSenderTestCase {
+
+    /**
+     * Scheduler.
+     */
+    private ScheduledExecutorService scheduler;
+
+    @BeforeMethod
+    public void before() {
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @AfterMethod
+    public void after() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * A burst of identical commands to a user is sent once, different commands keep their order.
+     */
+    @Test
+    public void coalesce() throws Exception {
+        final List<String> sent = new CopyOnWriteArrayList<>();
+        final CountDownLatch flushed = new CountDownLatch(1);
+        final CoalescingSender sender = new CoalescingSender(scheduler, 50, (key, message) -> {
+            sent.add(key + ":" + message);
+            flushed.countDown();
+        });
+
+        for (int i = 0; i < 100; i++) {
+            sender.send("u1", "refreshNotification");
+        }
+        sender.send("u1", "refreshPoint");
+        sender.send("u1", "refreshNotification");
+        sender.send("u2", "refreshNotification");
+
+        Assert.assertTrue(flushed.await(5, TimeUnit.SECONDS));
+        Thread.sleep(100);
+
+        Assert.assertEquals(sent.size(), 3);
+        Assert.assertTrue(sent.indexOf("u1:refreshNotification") < sent.indexOf("u1:refreshPoint"));
+        Assert.assertTrue(sent.contains("u2:refreshNotification"));
+    }
+
+    /**
+     * Sends to many users within a window run in a single flush task.
+     */
+    @Test
+    public void batch() throws Exception {
+        final AtomicInteger flushes = new AtomicInteger();
+        final AtomicInteger sent = new AtomicInteger();
+        final ScheduledExecutorService counting = new ScheduledThreadPoolExecutor(1) {
+            @Override
+            public ScheduledFuture<?> schedule(final Runnable command, final long delay, final TimeUnit unit) {
+                flushes.incrementAndGet();
+
+                return super.schedule(command, delay, unit);
+            }
+        };
+        final CoalescingSender sender = new CoalescingSender(counting, 50, (key, message) -> sent.incrementAndGet());
+
+        for (int i = 0; i < 1000; i++) {
+            sender.send("u" + i, "refreshNotification");
+        }
+        Thread.sleep(300);
+        counting.shutdownNow();
+
+        Assert.assertEquals(sent.get(), 1000);
+        Assert.assertEquals(flushes.get(), 1);
+    }
+
+    /**
+     * Registry indexes sessions by user and drops empty users.
+     */
+    @Test
+    public void registry() {
+        final SessionRegistry<Object> registry = new SessionRegistry<>();
+        final Object s1 = new Object();
+        final Object s2 = new Object();
+        registry.add("u1", s1);
+        registry.add("u1", s2);
+        registry.add("u1", s2);
+        Assert.assertEquals(registry.get("u1").size(), 2);
+
+        Assert.assertTrue(registry.remove("u1", s1));
+        Assert.assertFalse(registry.remove("u1", s1));
+        Assert.assertTrue(registry.remove("u1", s2));
+        Assert.assertTrue(registry.get("u1").isEmpty());
+    }
+
+    /**
+     * Per-send cost does not grow with the count of online sessions.
+     */
+    @Test
+    public void sendBenchmark() {
+        final long small = benchmark(100);
+        final long large = benchmark(10000);
+        System.out.println("Targeted sends with [100] sessions took [" + small + "]ms, with [10000] sessions took [" + large + "]ms");
+
+        Assert.assertTrue(large < small * 5 + 100, "Targeted sends with 10000 sessions took [" + large + "]ms");
+    }
+
+    private long benchmark(final int users) {
+        final SessionRegistry<AtomicInteger> registry = new SessionRegistry<>();
+        for (int i = 0; i < users; i++) {
+            registry.add("u" + i, new AtomicInteger());
+        }
+        final CoalescingSender sender = new CoalescingSender(scheduler, TimeUnit.HOURS.toMillis(1),
+                (key, message) -> registry.get(key).forEach(AtomicInteger::incrementAndGet));
+
+        final List<String> targets = new ArrayList<>();
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < 100; i++) {
+            targets.add("u" + random.nextInt(users));
+        }
+
+        long ret = Long.MAX_VALUE;
+        for (int round = 0; round < 5; round++) {
+            final long start = System.nanoTime();
+            for (int i = 0; i < 200; i++) {
+                for (final String target : targets) {
+                    sender.send(target, "refreshNotification" + i);
+                }
+                sender.flush();
+            }
+            ret = Math.min(ret, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        }
+
+        return ret;
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ * Symphony - A modern community (forum/BBS/SNS/blog) platform written in Java.
+ * Copyright (C) 2012-2018, b3log.org & hacpai.com
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.b3log.symphony.util;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
+import org.b3log.latke.Latkes;
+import org.b3log.latke.ioc.BeanManager;
+import org.b3log.latke.ioc.Discoverer;
+import org.b3log.symphony.model.Article;
+import org.b3log.symphony.model.Comment;
+import org.b3log.symphony.model.Rendered;
+import org.json.JSONObject;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.parser.Parser;
+import org.jsoup.select.Elements;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.function.UnaryOperator;
+
+/**
+ * {@link ContentRenderer} test case.
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.1.0.0, Oct 25, 2018
+ * @since 3.4.3
+ */
+public class ContentRendererTestCase {
+
+    static {
+        Latkes.init();
+        try {
+            final Collection<Class<?>> classes = Discoverer.discover("org.b3log.symphony");
+            BeanManager.start(classes);
+        } catch (final Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Fake linker.
+     */
+    private static final UnaryOperator<String> LINKER = content -> content.replace(" [Java] ", " [Java](" + Latkes.getServePath() + "/tag/java) ");
+
+    /**
+     * Fake linker after the linked tag is renamed.
+     */
+    private static final UnaryOperator<String> RELINKER = content -> content.replace(" [Java] ", " [Java](" + Latkes.getServePath() + "/tag/jdk) ");
+
+    /**
+     * Persisted rendered of an article is identical to the on the fly output.
+     */
+    @Test
+    public void article() throws Exception {
+        final JSONObject article = new JSONObject();
+        article.put(Article.ARTICLE_TYPE, Article.ARTICLE_TYPE_C_NORMAL);
+        article.put(Article.ARTICLE_PERMALINK, "/article/1540000000000");
+        article.put(Article.ARTICLE_CONTENT, "Tagged [Java] :smile: [em00]\n\n" + getSyntax()
+                + "\n\n<p><a href=\"https://b3log.org/a.mp3\">a.mp3</a></p>");
+        article.put(Article.ARTICLE_REWARD_POINT, 10);
+        article.put(Article.ARTICLE_REWARD_CONTENT, "**Thanks** [Java] :heart:");
+
+        final JSONObject persisted = new JSONObject(ContentRenderer.renderArticle(ContentRenderer.linkArticle(article, LINKER)).toString());
+        final JSONObject legacy = legacyArticle(article);
+        Assert.assertEquals(persisted.optString(Rendered.RENDERED_CONTENT), legacy.optString(Article.ARTICLE_CONTENT));
+        Assert.assertEquals(persisted.optString(Rendered.RENDERED_REWARD_CONTENT), legacy.optString(Article.ARTICLE_REWARD_CONTENT));
+        Assert.assertEquals(persisted.optString(Rendered.RENDERED_TOC), legacy.optString(Article.ARTICLE_T_TOC));
+        Assert.assertFalse(persisted.optString(Rendered.RENDERED_TOC).isEmpty());
+        Assert.assertTrue(ContentRenderer.isFresh(persisted, ContentRenderer.hashArticle(ContentRenderer.linkArticle(article, LINKER))));
+        Assert.assertFalse(ContentRenderer.isFresh(persisted, ContentRenderer.hashArticle(ContentRenderer.linkArticle(article, RELINKER))));
+
+        article.put(Article.ARTICLE_REWARD_POINT, 0);
+        Assert.assertFalse(ContentRenderer.isFresh(persisted, ContentRenderer.hashArticle(ContentRenderer.linkArticle(article, LINKER))));
+        final JSONObject noReward = ContentRenderer.renderArticle(ContentRenderer.linkArticle(article, LINKER));
+        Assert.assertEquals(noReward.optString(Rendered.RENDERED_REWARD_CONTENT), legacyArticle(article).optString(Article.ARTICLE_REWARD_CONTENT));
+
+        article.put(Article.ARTICLE_CONTENT, article.optString(Article.ARTICLE_CONTENT) + " ");
+        Assert.assertFalse(ContentRenderer.isFresh(noReward, ContentRenderer.hashArticle(ContentRenderer.linkArticle(article, LINKER))));
+
+        noReward.put(Rendered.RENDERED_VERSION, ContentRenderer.VERSION - 1);
+        Assert.assertFalse(ContentRenderer.isFresh(noReward, noReward.optString(Rendered.RENDERED_SOURCE_HASH)));
+        Assert.assertFalse(ContentRenderer.isFresh(null, ""));
+    }
+
+    /**
+     * Persisted rendered of a thought is identical to the on the fly output.
+     */
+    @Test
+    public void thought() {
+        final JSONObject article = new JSONObject();
+        article.put(Article.ARTICLE_TYPE, Article.ARTICLE_TYPE_C_THOUGHT);
+        article.put(Article.ARTICLE_PERMALINK, "/article/1540000000001");
+        article.put(Article.ARTICLE_CONTENT, "<p>It's \"a\" [Java]\nthought</p><script>alert(1)</script><h1>a</h1><h2>b</h2><h3>c</h3>");
+        article.put(Article.ARTICLE_REWARD_CONTENT, "");
+
+        final JSONObject persisted = new JSONObject(ContentRenderer.renderArticle(ContentRenderer.linkArticle(article, LINKER)).toString());
+        final JSONObject legacy = legacyArticle(article);
+        Assert.assertEquals(persisted.optString(Rendered.RENDERED_CONTENT), legacy.optString(Article.ARTICLE_CONTENT));
+        Assert.assertEquals(persisted.optString(Rendered.RENDERED_TOC), "");
+        Assert.assertFalse(persisted.optString(Rendered.RENDERED_CONTENT).contains("script"));
+    }
+
+    /**
+     * Persisted rendered of a comment is identical to the on the fly output.
+     */
+    @Test
+    public void comment() throws Exception {
+        final JSONObject comment = new JSONObject();
+        comment.put(Comment.COMMENT_CONTENT, "Reply [Java] :+1: [em01] <script>alert(1)</script>\n\n" + getSyntax());
+
+        final JSONObject persisted = new JSONObject(ContentRenderer.renderComment(ContentRenderer.linkComment(comment, LINKER)).toString());
+        String legacy = LINKER.apply(comment.optString(Comment.COMMENT_CONTENT));
+        legacy = Emotions.convert(legacy);
+        legacy = Markdowns.toHTML(legacy);
+        legacy = Markdowns.clean(legacy, "");
+        legacy = MP3Players.render(legacy);
+        legacy = VideoPlayers.render(legacy);
+        Assert.assertEquals(persisted.optString(Rendered.RENDERED_CONTENT), legacy);
+        Assert.assertTrue(ContentRenderer.isFresh(persisted, ContentRenderer.hashComment(ContentRenderer.linkComment(comment, LINKER))));
+        Assert.assertFalse(ContentRenderer.isFresh(persisted, ContentRenderer.hashComment(ContentRenderer.linkComment(comment, RELINKER))));
+
+        comment.put(Comment.COMMENT_CONTENT, "Edited");
+        Assert.assertFalse(ContentRenderer.isFresh(persisted, ContentRenderer.hashComment(ContentRenderer.linkComment(comment, LINKER))));
+    }
+
+    private static String getSyntax() throws Exception {
+        try (final InputStream inputStream = ContentRendererTestCase.class.getResourceAsStream("/markdown_syntax.text")) {
+            return IOUtils.toString(inputStream, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Renders the specified article the same as article query service did before rendereds were persisted.
+     *
+     * @param source the specified article
+     * @return processed article
+     */
+    private static JSONObject legacyArticle(final JSONObject source) {
+        final JSONObject article = new JSONObject(source.toString());
+        final int articleType = article.optInt(Article.ARTICLE_TYPE);
+        String articleContent = article.optString(Article.ARTICLE_CONTENT);
+        if (Article.ARTICLE_TYPE_C_THOUGHT != articleType) {
+            articleContent = LINKER.apply(articleContent);
+            articleContent = Emotions.convert(articleContent);
+            article.put(Article.ARTICLE_CONTENT, articleContent);
+        }
+
+        if (article.optInt(Article.ARTICLE_REWARD_POINT) > 0) {
+            String rewardContent = article.optString(Article.ARTICLE_REWARD_CONTENT);
+            rewardContent = LINKER.apply(rewardContent);
+            rewardContent = Emotions.convert(rewardContent);
+            rewardContent = Markdowns.toHTML(rewardContent);
+            rewardContent = Markdowns.clean(rewardContent, Latkes.getServePath() + article.optString(Article.ARTICLE_PERMALINK));
+            article.put(Article.ARTICLE_REWARD_CONTENT, rewardContent);
+        }
+
+        String content = article.optString(Article.ARTICLE_CONTENT);
+        if (Article.ARTICLE_TYPE_C_THOUGHT != articleType) {
+            content = Markdowns.toHTML(content);
+            content = Markdowns.clean(content, Latkes.getServePath() + article.optString(Article.ARTICLE_PERMALINK));
+            content = MP3Players.render(content);
+            content = VideoPlayers.render(content);
+        } else {
+            final Document.OutputSettings outputSettings = new Document.OutputSettings();
+            outputSettings.prettyPrint(false);
+            content = Jsoup.clean(content, Latkes.getServePath() + article.optString(Article.ARTICLE_PERMALINK),
+                    org.jsoup.safety.Whitelist.relaxed().addAttributes(":all", "id", "target", "class").
+                            addTags("span", "hr").addAttributes("iframe", "src", "width", "height")
+                            .addAttributes("audio", "controls", "src"), outputSettings);
+            content = content.replace("\n", "\\n").replace("'", "\\'").replace("\"", "\\\"");
+        }
+        article.put(Article.ARTICLE_CONTENT, content);
+
+        article.put(Article.ARTICLE_T_TOC, "");
+        if (Article.ARTICLE_TYPE_C_THOUGHT == articleType) {
+            return article;
+        }
+
+        final Document doc = Jsoup.parse(content, StringUtils.EMPTY, Parser.htmlParser());
+        doc.outputSettings().prettyPrint(false);
+        final Elements hs = doc.select("h1, h2, h3, h4, h5");
+        if (hs.size() < 3) {
+            return article;
+        }
+
+        final StringBuilder listBuilder = new StringBuilder();
+        listBuilder.append("<ul class=\"article-toc\">");
+        for (int i = 0; i < hs.size(); i++) {
+            final Element element = hs.get(i);
+            final String tagName = element.tagName().toLowerCase();
+            final String id = "toc_" + tagName + "_" + i;
+            element.attr("id", id);
+            listBuilder.append("<li class='toc-").append(tagName).append("'><a data-id=\"").append(id).append("\" href=\"javascript:Comment._bgFade($('#").append(id).append("'))\">").append(element.text()).append(
+                    "</a></li>");
+        }
+        listBuilder.append("</ul>");
+        article.put(Article.ARTICLE_CONTENT, doc.select("body").html());
+        article.put(Article.ARTICLE_T_TOC, listBuilder.toString());
+
+        return article;
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Symphony - A modern community (forum/BBS/SNS/blog) platform written in Java.
+ * Copyright (C) 2012-2018, b3log.org & hacpai.com
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.b3log.symphony.util;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * {@link FeedMerger} test case.
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.0.0, Oct 25, 2018
+ * @since 3.4.3
+ */
+public class FeedMergerTestCase {
+
+    /**
+     * Newest first, the order of the multi-tag pages.
+     */
+    private static final Comparator<Item> BY_ID = (i1, i2) -> i2.id.compareTo(i1.id);
+
+    /**
+     * Score first then newest, the order of a sorted per-tag feed.
+     */
+    private static final Comparator<Item> BY_SCORE = Comparator.<Item>comparingInt(item -> item.score).reversed().thenComparing(BY_ID);
+
+    /**
+     * Every page of the merged feeds equals the page of the naive union.
+     */
+    @Test
+    public void compareWithNaive() {
+        final Random random = new Random(20181025);
+        for (int round = 0; round < 50; round++) {
+            final int tagCnt = 1 + random.nextInt(6);
+            final Map<Integer, List<Item>> tagItems = generate(random, tagCnt, 1 + random.nextInt(300));
+
+            for (final Comparator<Item> comparator : Arrays.asList(BY_ID, BY_SCORE)) {
+                final int pageSize = 1 + random.nextInt(20);
+                final List<Item> naive = naive(tagItems.values(), comparator);
+                final int pageCnt = naive.size() / pageSize + 2;
+                final List<Item> paged = new ArrayList<>();
+                for (int page = 1; page <= pageCnt; page++) {
+                    final int fetchSize = page * pageSize;
+                    final List<List<Item>> feeds = new ArrayList<>();
+                    for (final List<Item> items : tagItems.values()) {
+                        final List<Item> feed = items.stream().sorted(comparator).limit(fetchSize).collect(Collectors.toList());
+                        feeds.add(feed);
+                    }
+
+                    final List<Item> merged = FeedMerger.merge(feeds, comparator, item -> item.id, (page - 1) * pageSize, pageSize);
+                    final int from = Math.min(naive.size(), (page - 1) * pageSize);
+                    Assert.assertEquals(merged, naive.subList(from, Math.min(naive.size(), from + pageSize)));
+                    paged.addAll(merged);
+                }
+
+                Assert.assertEquals(paged, naive);
+            }
+        }
+    }
+
+    /**
+     * Empty feeds and empty pages.
+     */
+    @Test
+    public void empty() {
+        Assert.assertTrue(FeedMerger.merge(Collections.<List<Item>>emptyList(), BY_ID, item -> item.id, 0, 10).isEmpty());
+        Assert.assertTrue(FeedMerger.merge(Arrays.asList(Collections.<Item>emptyList(), Collections.<Item>emptyList()),
+                BY_ID, item -> item.id, 0, 10).isEmpty());
+        Assert.assertTrue(FeedMerger.merge(Collections.singletonList(Collections.singletonList(new Item("1", 0))),
+                BY_ID, item -> item.id, 0, 0).isEmpty());
+    }
+
+    private static Map<Integer, List<Item>> generate(final Random random, final int tagCnt, final int articleCnt) {
+        final Map<Integer, List<Item>> ret = new HashMap<>();
+        for (int tag = 0; tag < tagCnt; tag++) {
+            ret.put(tag, new ArrayList<>());
+        }
+
+        for (int i = 0; i < articleCnt; i++) {
+            final Item item = new Item(String.valueOf(1540000000000L + i), random.nextInt(10));
+            final int tags = 1 + random.nextInt(tagCnt);
+            final List<Integer> tagIds = new ArrayList<>(ret.keySet());
+            Collections.shuffle(tagIds, random);
+            for (final Integer tag : tagIds.subList(0, tags)) {
+                ret.get(tag).add(item);
+            }
+        }
+
+        return ret;
+    }
+
+    private static List<Item> naive(final Collection<List<Item>> tagItems, final Comparator<Item> comparator) {
+        final Map<String, Item> union = new HashMap<>();
+        for (final List<Item> items : tagItems) {
+            for (final Item item : items) {
+                union.put(item.id, item);
+            }
+        }
+
+        return union.values().stream().sorted(comparator).collect(Collectors.toList());
+    }
+
+    /**
+     * Feed item.
+     */
+    private static final class Item {
+
+        /**
+         * Id.
+         */
+        private final String id;
+
+        /**
+         * Score.
+         */
+        private final int score;
+
+        private Item(final String id, final int score) {
+            this.id = id;
+            this.score = score;
+        }
+
+        @Override
+        public String toString() {
+            return id + ":" + score;
+        }
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * Symphony - A modern community (forum/BBS/SNS/blog) platform written in Java.
+ * Copyright (C) 2012-2018, b3log.org & hacpai.com
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.b3log.symphony.util;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.IOUtils;
+import org.b3log.latke.Latkes;
+import org.b3log.symphony.model.feed.RSSCategory;
+import org.b3log.symphony.model.feed.RSSChannel;
+import org.b3log.symphony.model.feed.RSSItem;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * {@link FeedStore} test case.
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.0.0, Oct 25, 2018
+ * @since 3.4.3
+ */
+public class FeedStoreTestCase {
+
+    static {
+        Latkes.init();
+    }
+
+    /**
+     * Feeds are generated once, carry a strong ETag and a gzipped body.
+     */
+    @Test
+    public void get() throws Exception {
+        final List<Runnable> tasks = new ArrayList<>();
+        final FeedStore store = new FeedStore(tasks::add);
+        final AtomicInteger genCnt = new AtomicInteger();
+        final String rss = "<rss>" + String.join("", Collections.nCopies(100, "<item>Symphony 社区</item>")) + "</rss>";
+
+        final FeedStore.Feed feed = store.get("/rss/recent.xml", () -> {
+            genCnt.incrementAndGet();
+
+            return new FeedStore.Feed(rss, null);
+        });
+        Assert.assertSame(store.get("/rss/recent.xml", () -> new FeedStore.Feed("other", null)), feed);
+        Assert.assertEquals(genCnt.get(), 1);
+        Assert.assertTrue(tasks.isEmpty());
+
+        Assert.assertEquals(new String(feed.getBody(), StandardCharsets.UTF_8), rss);
+        Assert.assertEquals(IOUtils.toByteArray(new GZIPInputStream(new ByteArrayInputStream(feed.getGzipBody()))), feed.getBody());
+        Assert.assertTrue(feed.getGzipBody().length < feed.getBody().length);
+        Assert.assertEquals(feed.getETag(), new FeedStore.Feed(rss, null).getETag());
+        Assert.assertNotEquals(feed.getETag(), new FeedStore.Feed(rss + " ", null).getETag());
+        Assert.assertTrue(feed.getETag().startsWith("\""));
+        Assert.assertEquals(feed.getLastModified() % 1000, 0);
+
+        Assert.assertNull(store.get("/rss/domain/404.xml", () -> null));
+    }
+
+    /**
+     * Stale feeds are served while regenerated in background, only feeds selecting the changed tags become stale.
+     */
+    @Test
+    public void invalidate() throws Exception {
+        final List<Runnable> tasks = new ArrayList<>();
+        final FeedStore store = new FeedStore(tasks::add);
+        store.get("recent", () -> new FeedStore.Feed("recent 1", null));
+        store.get("java", () -> new FeedStore.Feed("java 1", Arrays.asList("Java", "JVM")));
+        store.get("go", () -> new FeedStore.Feed("go 1", Collections.singletonList("Go")));
+
+        store.invalidate(Arrays.asList(" java ", "B3log"));
+        Assert.assertEquals(body(store.get("recent", () -> new FeedStore.Feed("recent 2", null))), "recent 1");
+        Assert.assertEquals(body(store.get("java", () -> new FeedStore.Feed("java 2", null))), "java 1");
+        Assert.assertEquals(body(store.get("go", () -> new FeedStore.Feed("go 2", null))), "go 1");
+        Assert.assertEquals(tasks.size(), 2);
+
+        Assert.assertEquals(body(store.get("java", () -> new FeedStore.Feed("java 3", null))), "java 1");
+        Assert.assertEquals(tasks.size(), 2);
+
+        tasks.forEach(Runnable::run);
+        tasks.clear();
+        Assert.assertEquals(body(store.get("recent", () -> new FeedStore.Feed("recent 3", null))), "recent 2");
+        Assert.assertEquals(body(store.get("java", () -> new FeedStore.Feed("java 3", null))), "java 2");
+        Assert.assertTrue(tasks.isEmpty());
+
+        final FeedStore.Feed recent = store.get("recent", () -> null);
+        store.invalidateAll();
+        store.get("recent", () -> new FeedStore.Feed("recent 2", null));
+        tasks.forEach(Runnable::run);
+        Assert.assertSame(store.get("recent", () -> null), recent);
+    }
+
+    /**
+     * A failed regeneration keeps the stale feed and retries on the next request.
+     */
+    @Test
+    public void regenerateFailed() throws Exception {
+        final List<Runnable> tasks = new ArrayList<>();
+        final FeedStore store = new FeedStore(tasks::add);
+        store.get("recent", () -> new FeedStore.Feed("recent 1", null));
+        store.invalidateAll();
+
+        store.get("recent", () -> {
+            throw new IllegalStateException("database down");
+        });
+        tasks.remove(0).run();
+        Assert.assertEquals(body(store.get("recent", () -> new FeedStore.Feed("recent 2", null))), "recent 1");
+        tasks.remove(0).run();
+        Assert.assertEquals(body(store.get("recent", () -> null)), "recent 2");
+    }
+
+    /**
+     * Prints feed requests per second of generating on every request and of serving from the store. The generator
+     * does the per request work of {@code FeedProcessor} except the article queries, markdown is looked up by hash as
+     * rendered HTML is cached.
+     */
+    @Test
+    public void benchmark() throws Exception {
+        final String markdown = IOUtils.toString(FeedStoreTestCase.class.getResource("/markdown_syntax.text"), StandardCharsets.UTF_8);
+        final List<String> contents = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            contents.add(markdown.substring(i * 100, i * 100 + 2000));
+        }
+        final FeedStore.Generator generator = () -> {
+            final RSSChannel channel = new RSSChannel();
+            for (int i = 0; i < contents.size(); i++) {
+                final RSSItem item = new RSSItem();
+                item.setTitle("Article " + i);
+                final String content = Emotions.convert(Emotions.toAliases(contents.get(i)));
+                item.setDescription(DigestUtils.md5Hex(content) + content);
+                item.setPubDate(new Date(i * 1000L));
+                item.setLink("https://hacpai.com/article/" + i);
+                item.setGUID("https://hacpai.com/article/" + i);
+                item.setAuthor("88250");
+                final RSSCategory category = new RSSCategory();
+                category.setTerm("Symphony");
+                item.addCatetory(category);
+                channel.addItem(item);
+            }
+            channel.setTitle("Symphony");
+            channel.setLastBuildDate(new Date());
+            channel.setLink("https://hacpai.com");
+            channel.setAtomLink("https://hacpai.com/rss/recent.xml");
+            channel.setGenerator("Symphony");
+            channel.setLanguage("zh-cn");
+            channel.setDescription("Symphony");
+
+            return new FeedStore.Feed(channel.toString(), null);
+        };
+        generator.generate();
+
+        final int generatedRequests = 20;
+        long start = System.nanoTime();
+        for (int i = 0; i < generatedRequests; i++) {
+            generator.generate().getBody();
+        }
+        final double generatedRate = generatedRequests / ((System.nanoTime() - start) / 1e9);
+
+        final Executor executor = Runnable::run;
+        final FeedStore store = new FeedStore(executor);
+        final int cachedRequests = 200000;
+        start = System.nanoTime();
+        for (int i = 0; i < cachedRequests; i++) {
+            store.get("/rss/recent.xml", generator).getGzipBody();
+        }
+        final double cachedRate = cachedRequests / ((System.nanoTime() - start) / 1e9);
+
+        System.out.println(String.format("Feed requests per second: generated on every request [%.0f], served from feed store [%.0f]",
+                generatedRate, cachedRate));
+        Assert.assertTrue(cachedRate > generatedRate);
+    }
+
+    private static String body(final FeedStore.Feed feed) {
+        return new String(feed.getBody(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,258 @@
+/*
+ * Symphony - A modern community (forum/BBS/SNS/blog) platform written in Java.
+ * Copyright (C) 2012-2018, b3log.org & hacpai.com
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.b3log.symphony.util;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * {@link HomeTimeline} test case.
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.2.0, Oct 25, 2018
+ * @since 3.4.3
+ */
+public class HomeTimelineTestCase {
+
+    /**
+     * Every page walk equals the naive union of followed sources after random follow, unfollow and publish churn.
+     */
+    @Test
+    public void churn() throws Exception {
+        final Random random = new Random(20181025);
+        final FakeStore store = new FakeStore(random, 20, 30, 3, 200);
+        final HomeTimeline timeline = new HomeTimeline(store, 15, 6, Long.MAX_VALUE);
+
+        for (int op = 0; op < 3000; op++) {
+            final String userId = "u" + random.nextInt(20);
+            final String sourceId = "s" + random.nextInt(30);
+            switch (random.nextInt(4)) {
+                case 0:
+                    if (store.follows.get(userId).add(sourceId)) {
+                        timeline.follow(userId, sourceId);
+                    }
+
+                    break;
+                case 1:
+                    if (store.follows.get(userId).remove(sourceId)) {
+                        timeline.unfollow(userId, sourceId);
+                    }
+
+                    break;
+                case 2:
+                    final Set<String> sourceIds = new HashSet<>();
+                    for (int i = random.nextInt(3); i >= 0; i--) {
+                        sourceIds.add("s" + random.nextInt(30));
+                    }
+                    timeline.publish(store.publish(sourceIds), sourceIds);
+
+                    break;
+                default:
+                    final int pageSize = 1 + random.nextInt(10);
+                    Assert.assertEquals(walk(timeline, userId, pageSize), store.naive(userId), "User [" + userId + "], op [" + op + "]");
+            }
+        }
+
+        for (int i = 0; i < 20; i++) {
+            Assert.assertEquals(walk(timeline, "u" + i, 7), store.naive("u" + i));
+        }
+        Assert.assertTrue(timeline.getLoadedCount() <= 6);
+    }
+
+    /**
+     * Reads of a loaded timeline within its window and publishes of normal sources do not hit the loader, hot sources
+     * are merged on read.
+     */
+    @Test
+    public void fanOut() throws Exception {
+        final Random random = new Random(20181026);
+        final FakeStore store = new FakeStore(random, 2, 5, 0, 0);
+        store.hot.add("s0");
+        store.follows.get("u0").addAll(Arrays.asList("s0", "s1", "s2"));
+        final HomeTimeline timeline = new HomeTimeline(store, 100, 10, Long.MAX_VALUE);
+
+        Assert.assertTrue(timeline.get("u0", null, 10).isEmpty());
+        for (int i = 0; i < 20; i++) {
+            timeline.publish(store.publish(Collections.singleton("s" + (i % 3))), Collections.singleton("s" + (i % 3)));
+        }
+
+        store.getItemsCalls.set(0);
+        store.hotItemsCalls.set(0);
+        Assert.assertEquals(timeline.get("u0", null, 10), store.naive("u0").subList(0, 10));
+        Assert.assertEquals(store.getItemsCalls.get(), store.hotItemsCalls.get());
+        Assert.assertEquals(store.hotItemsCalls.get(), 1);
+
+        store.hot.clear();
+        store.follows.get("u0").remove("s0");
+        timeline.unfollow("u0", "s0");
+        store.getItemsCalls.set(0);
+        Assert.assertEquals(walk(timeline, "u0", 4), store.naive("u0"));
+        Assert.assertEquals(store.getItemsCalls.get(), 0);
+    }
+
+    /**
+     * Evicted and reloaded timelines are unregistered from the fan-out index.
+     */
+    @Test
+    public void unregister() throws Exception {
+        final Random random = new Random(20181027);
+        final FakeStore store = new FakeStore(random, 5, 10, 0, 0);
+        for (int i = 0; i < 5; i++) {
+            store.follows.get("u" + i).clear();
+            store.follows.get("u" + i).addAll(Arrays.asList("s" + (2 * i), "s" + (2 * i + 1)));
+        }
+        final HomeTimeline timeline = new HomeTimeline(store, 10, 2, Long.MAX_VALUE);
+
+        for (int i = 0; i < 5; i++) {
+            timeline.get("u" + i, null, 10);
+        }
+        Assert.assertEquals(timeline.getLoadedCount(), 2);
+        Assert.assertEquals(timeline.getRegisteredCount(), 4);
+
+        final HomeTimeline expiring = new HomeTimeline(store, 10, 2, 0);
+        expiring.get("u0", null, 10);
+        Assert.assertEquals(expiring.getRegisteredCount(), 2);
+        store.follows.get("u0").remove("s0");
+        Thread.sleep(2);
+        expiring.get("u0", null, 10);
+        Assert.assertEquals(expiring.getRegisteredCount(), 1);
+    }
+
+    private static List<String> walk(final HomeTimeline timeline, final String userId, final int pageSize) throws Exception {
+        final List<String> ret = new ArrayList<>();
+        String beforeId = null;
+        while (true) {
+            final List<String> page = timeline.get(userId, beforeId, pageSize);
+            Assert.assertTrue(page.size() <= pageSize);
+            ret.addAll(page);
+            if (page.size() < pageSize) {
+                return ret;
+            }
+
+            beforeId = page.get(page.size() - 1);
+        }
+    }
+
+    /**
+     * Fake store of follows and items.
+     */
+    private static final class FakeStore implements HomeTimeline.Loader {
+
+        /**
+         * Follows, &lt;userId, sourceIds&gt;.
+         */
+        private final Map<String, Set<String>> follows = new HashMap<>();
+
+        /**
+         * Items, &lt;itemId, sourceIds&gt;.
+         */
+        private final TreeMap<String, Set<String>> items = new TreeMap<>(Comparator.reverseOrder());
+
+        /**
+         * Hot source ids.
+         */
+        private final Set<String> hot = new HashSet<>();
+
+        /**
+         * Count of item loads.
+         */
+        private final AtomicInteger getItemsCalls = new AtomicInteger();
+
+        /**
+         * Count of item loads of hot sources.
+         */
+        private final AtomicInteger hotItemsCalls = new AtomicInteger();
+
+        /**
+         * Item id sequence.
+         */
+        private int sequence;
+
+        private FakeStore(final Random random, final int users, final int sources, final int hotSources, final int initialItems) {
+            for (int i = 0; i < users; i++) {
+                final Set<String> sourceIds = new HashSet<>();
+                for (int j = random.nextInt(6); j > 0; j--) {
+                    sourceIds.add("s" + random.nextInt(sources));
+                }
+                follows.put("u" + i, sourceIds);
+            }
+            for (int i = 0; i < hotSources; i++) {
+                hot.add("s" + i);
+            }
+            for (int i = 0; i < initialItems; i++) {
+                final Set<String> sourceIds = new HashSet<>();
+                for (int j = random.nextInt(3); j >= 0; j--) {
+                    sourceIds.add("s" + random.nextInt(sources));
+                }
+                publish(sourceIds);
+            }
+        }
+
+        private String publish(final Set<String> sourceIds) {
+            final String ret = String.format("%019d", ++sequence);
+            items.put(ret, new HashSet<>(sourceIds));
+
+            return ret;
+        }
+
+        private List<String> naive(final String userId) {
+            final Set<String> sourceIds = follows.get(userId);
+
+            return items.entrySet().stream().filter(item -> !Collections.disjoint(item.getValue(), sourceIds)).
+                    map(Map.Entry::getKey).collect(Collectors.toList());
+        }
+
+        @Override
+        public List<String> getSources(final String userId) {
+            return new ArrayList<>(follows.get(userId));
+        }
+
+        @Override
+        public Set<String> getHotSources(final List<String> sourceIds) {
+            return sourceIds.stream().filter(hot::contains).collect(Collectors.toSet());
+        }
+
+        @Override
+        public Map<String, Set<String>> getItems(final List<String> sourceIds, final String beforeId, final int size) {
+            getItemsCalls.incrementAndGet();
+            if (hot.containsAll(sourceIds)) {
+                hotItemsCalls.incrementAndGet();
+            }
+
+            final Map<String, Set<String>> ret = new LinkedHashMap<>();
+            final SortedMap<String, Set<String>> older = null == beforeId ? items : items.tailMap(beforeId, false);
+            for (final Map.Entry<String, Set<String>> item : older.entrySet()) {
+                if (ret.size() >= size) {
+                    break;
+                }
+
+                final Set<String> itemSources = new HashSet<>(item.getValue());
+                itemSources.retainAll(sourceIds);
+                if (!itemSources.isEmpty()) {
+                    ret.put(item.getKey(), itemSources);
+                }
+            }
+
+            return ret;
+        }
+    }
+}
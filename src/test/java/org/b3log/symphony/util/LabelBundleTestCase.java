@@ -0,0 +1,146 @@
+/*
+ * Symphony - A modern community (forum/BBS/SNS/blog) platform written in Java.
+ * Copyright (C) 2012-2018, b3log.org & hacpai.com
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.b3log.symphony.util;
+
+import freemarker.template.Template;
+import org.b3log.latke.Latkes;
+import org.b3log.latke.ioc.BeanManager;
+import org.b3log.latke.ioc.Discoverer;
+import org.b3log.latke.service.LangPropsService;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+
+/**
+ * {@link LabelBundle} test case.
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.0.0, Oct 25, 2018
+ * @since 3.4.3
+ */
+public class LabelBundleTestCase {
+
+    static {
+        Latkes.init();
+        try {
+            final Collection<Class<?>> classes = Discoverer.discover("org.b3log.symphony");
+            BeanManager.start(classes);
+        } catch (final Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Placeholders are filled by name, a placeholder without a variable is kept.
+     */
+    @Test
+    public void format() {
+        final Map<String, String> labels = new HashMap<>();
+        labels.put("tipLabel", "Spend {point} points, get ${point2} points, {user}");
+        labels.put("plainLabel", "Plain {}");
+        final LabelBundle bundle = new LabelBundle(labels);
+
+        Assert.assertEquals(bundle.format("tipLabel", "point", 20, "point2", "30"), "Spend 20 points, get 30 points, {user}");
+        Assert.assertEquals(bundle.format("tipLabel"), labels.get("tipLabel"));
+        Assert.assertSame(bundle.format("plainLabel", "point", 20), bundle.getLabel("plainLabel"));
+        Assert.assertNull(bundle.format("missingLabel"));
+        Assert.assertEquals(bundle.getLabels("tip"), Collections.singletonList(labels.get("tipLabel")));
+    }
+
+    /**
+     * Templates look labels up in the bundle of the processing locale, the data model takes precedence.
+     */
+    @Test
+    public void process() throws Exception {
+        final LangPropsService langPropsService = BeanManager.getInstance().getReference(LangPropsService.class);
+        final Template template = new Template("labels", "${loginLabel} ${logoutLabel}<#if missingLabel??>!</#if>", Skins.SKIN);
+        final Map<String, Object> dataModel = new HashMap<>();
+        dataModel.put("logoutLabel", "bye");
+
+        StringWriter writer = new StringWriter();
+        Skins.process(template, dataModel, Locale.US, TimeZone.getDefault(), writer);
+        Assert.assertEquals(writer.toString(), langPropsService.get("loginLabel", Locale.US) + " bye");
+
+        writer = new StringWriter();
+        Skins.process(template, dataModel, Locale.SIMPLIFIED_CHINESE, TimeZone.getDefault(), writer);
+        Assert.assertEquals(writer.toString(), langPropsService.get("loginLabel", Locale.SIMPLIFIED_CHINESE) + " bye");
+        Assert.assertSame(LabelBundle.get(Locale.US), LabelBundle.get(Locale.US));
+    }
+
+    /**
+     * Prints allocation and latency per rendering of a page using labels, copying all labels into the data model
+     * versus looking them up in the bundle.
+     */
+    @Test
+    public void benchmark() throws Exception {
+        final LangPropsService langPropsService = BeanManager.getInstance().getReference(LangPropsService.class);
+        final StringBuilder source = new StringBuilder("<html><body>");
+        for (final String key : Arrays.asList("loginLabel", "logoutLabel", "registerLabel", "searchLabel", "indexLabel",
+                "recentArticleLabel", "hotLabel", "perfectLabel", "qnaLabel", "breezemoonLabel", "settingsLabel",
+                "notificationAtLabel", "followLabel", "unfollowLabel", "articleLabel", "cmtLabel", "tagLabel",
+                "domainLabel", "aboutLabel", "submitLabel", "cancelLabel", "previewLabel", "helpLabel")) {
+            source.append("<a title=\"${").append(key).append("}\">${").append(key).append("}</a>");
+        }
+        source.append("<#list articles as article><p>${article}</p></#list></body></html>");
+        final Template template = new Template("labels", source.toString(), Skins.SKIN);
+        final List<String> articles = Collections.nCopies(20, "Article title");
+
+        final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        final long threadId = Thread.currentThread().getId();
+        final int rounds = 3000;
+        String copied = null;
+        String bundled = null;
+        for (int warm = 0; warm < 2; warm++) {
+            long allocated = threads.getThreadAllocatedBytes(threadId);
+            long start = System.nanoTime();
+            for (int i = 0; i < rounds; i++) {
+                final Map<String, Object> dataModel = new HashMap<>();
+                dataModel.putAll(langPropsService.getAll(Locale.US));
+                dataModel.put("articles", articles);
+                final StringWriter writer = new StringWriter();
+                Skins.process(template, dataModel, Locale.US, TimeZone.getDefault(), writer);
+                copied = writer.toString();
+            }
+            final long copiedNanos = (System.nanoTime() - start) / rounds;
+            final long copiedAllocated = (threads.getThreadAllocatedBytes(threadId) - allocated) / rounds;
+
+            allocated = threads.getThreadAllocatedBytes(threadId);
+            start = System.nanoTime();
+            for (int i = 0; i < rounds; i++) {
+                final Map<String, Object> dataModel = new HashMap<>();
+                dataModel.put("articles", articles);
+                final StringWriter writer = new StringWriter();
+                Skins.process(template, dataModel, Locale.US, TimeZone.getDefault(), writer);
+                bundled = writer.toString();
+            }
+            final long bundledNanos = (System.nanoTime() - start) / rounds;
+            final long bundledAllocated = (threads.getThreadAllocatedBytes(threadId) - allocated) / rounds;
+
+            if (1 == warm) {
+                System.out.println(String.format("Labels of [%d] keys: copied into data model [%d]us allocated [%d]KB, "
+                                + "looked up in bundle [%d]us allocated [%d]KB", langPropsService.getAll(Locale.US).size(),
+                        copiedNanos / 1000, copiedAllocated / 1024, bundledNanos / 1000, bundledAllocated / 1024));
+            }
+        }
+
+        Assert.assertEquals(bundled, copied);
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Symphony - A modern community (forum/BBS/SNS/blog) platform written in Java.
+ * Copyright (C) 2012-2018, b3log.org & hacpai.com
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.b3log.symphony.util;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.*;
+
+/**
+ * {@link Leaderboard} test case.
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.1.0.0, Oct 25, 2018
+ * @since 3.4.3
+ */
+public class LeaderboardTestCase {
+
+    /**
+     * Members are ordered by score descending then member ascending, updates reorder them.
+     */
+    @Test
+    public void order() {
+        final Leaderboard board = new Leaderboard(10);
+        board.set("b", 10);
+        board.set("a", 10);
+        board.set("c", 30);
+        board.set("d", 20);
+        Assert.assertEquals(board.getTop(3), Arrays.asList("c", "d", "a"));
+        Assert.assertEquals(board.getRank("b"), 4);
+
+        board.set("b", 40);
+        board.increment("a", 15);
+        board.remove("c");
+        Assert.assertEquals(board.getTop(10), Arrays.asList("b", "a", "d"));
+        Assert.assertEquals(board.getRank("a"), 2);
+        Assert.assertEquals(board.getRank("c"), -1);
+        Assert.assertEquals(board.getScore("a"), Long.valueOf(25));
+
+        board.max("d", 5);
+        Assert.assertEquals(board.getScore("d"), Long.valueOf(20));
+        board.max("d", 50);
+        Assert.assertEquals(board.getTop(1), Collections.singletonList("d"));
+    }
+
+    /**
+     * Members beyond the capacity are evicted, members below the floor are not tracked.
+     */
+    @Test
+    public void bounded() {
+        final Leaderboard board = new Leaderboard(3);
+        for (int i = 1; i <= 5; i++) {
+            board.set("m" + i, i * 10);
+        }
+        Assert.assertEquals(board.size(), 3);
+        Assert.assertEquals(board.getTop(5), Arrays.asList("m5", "m4", "m3"));
+        Assert.assertEquals(board.getRank("m2"), -1);
+
+        // The base score of an evicted member is unknown
+        board.increment("m1", 100);
+        Assert.assertNull(board.getScore("m1"));
+
+        // Below the floor (20)
+        board.set("m6", 15);
+        Assert.assertNull(board.getScore("m6"));
+
+        // A tracked member dropping below the floor leaves the board
+        board.set("m3", 5);
+        Assert.assertEquals(board.getRank("m3"), -1);
+        Assert.assertEquals(board.size(), 2);
+
+        board.max("m2", 45);
+        Assert.assertEquals(board.getTop(5), Arrays.asList("m5", "m2", "m4"));
+    }
+
+    /**
+     * Ranks and tops match a sorted reference after random updates and removals.
+     */
+    @Test
+    public void rank() {
+        final Leaderboard board = new Leaderboard(Integer.MAX_VALUE);
+        final Map<String, Long> scores = new HashMap<>();
+        final Random random = new Random(42);
+        for (int i = 0; i < 20000; i++) {
+            final String member = "m" + random.nextInt(2000);
+            if (0 == random.nextInt(10)) {
+                board.remove(member);
+                scores.remove(member);
+            } else {
+                final long score = random.nextInt(500);
+                board.set(member, score);
+                scores.put(member, score);
+            }
+        }
+
+        final List<String> expected = new ArrayList<>(scores.keySet());
+        expected.sort((m1, m2) -> {
+            final int ret = Long.compare(scores.get(m2), scores.get(m1));
+
+            return 0 != ret ? ret : m1.compareTo(m2);
+        });
+        Assert.assertEquals(board.size(), expected.size());
+        Assert.assertEquals(board.getTop(Integer.MAX_VALUE), expected);
+        Assert.assertEquals(board.getTop(10), expected.subList(0, 10));
+        for (int i = 0; i < expected.size(); i++) {
+            Assert.assertEquals(board.getRank(expected.get(i)), i + 1);
+        }
+        Assert.assertEquals(board.getRank("missing"), -1);
+    }
+}
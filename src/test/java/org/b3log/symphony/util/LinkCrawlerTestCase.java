@@ -0,0 +1,218 @@
+/*
+ * Symphony - A modern community (forum/BBS/SNS/blog) platform written in Java.
+ * Copyright (C) 2012-2018, b3log.org & hacpai.com
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.b3log.symphony.util;
+
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.io.IOUtils;
+import org.b3log.symphony.Waits;
+import org.json.JSONObject;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link LinkCrawler} test case, crawls pages served by a local embedded HTTP server.
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.1.0, Oct 25, 2018
+ * @since 3.4.3
+ */
+public class LinkCrawlerTestCase {
+
+    /**
+     * Paths requested by crawlers.
+     */
+    private final List<String> requests = new CopyOnWriteArrayList<>();
+
+    /**
+     * Request start times.
+     */
+    private final List<Long> starts = new CopyOnWriteArrayList<>();
+
+    /**
+     * Current concurrent requests.
+     */
+    private final AtomicInteger concurrent = new AtomicInteger();
+
+    /**
+     * Max concurrent requests.
+     */
+    private final AtomicInteger maxConcurrent = new AtomicInteger();
+
+    /**
+     * Page response delay in milliseconds.
+     */
+    private volatile long delay;
+
+    private HttpServer server;
+
+    private int port;
+
+    private LinkCrawler crawler;
+
+    @BeforeMethod
+    public void before() throws Exception {
+        requests.clear();
+        starts.clear();
+        maxConcurrent.set(0);
+        delay = 0;
+
+        server = HttpServer.create(new InetSocketAddress(0), 0); // Both 127.0.0.1 and localhost, two hosts
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/", exchange -> {
+            starts.add(System.currentTimeMillis());
+            maxConcurrent.accumulateAndGet(concurrent.incrementAndGet(), Math::max);
+            try {
+                requests.add(exchange.getRequestURI().getPath());
+                Thread.sleep(delay);
+
+                final byte[] data = ("<html><title>" + exchange.getRequestURI().getPath() + "</title></html>").getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(200, data.length);
+                try (final OutputStream outputStream = exchange.getResponseBody()) {
+                    outputStream.write(data);
+                }
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                concurrent.decrementAndGet();
+            }
+        });
+        server.start();
+        port = server.getAddress().getPort();
+    }
+
+    @AfterMethod
+    public void after() {
+        if (null != crawler) {
+            crawler.stop();
+        }
+        server.stop(0);
+    }
+
+    /**
+     * Repeated submits of a pending URL are crawled once.
+     */
+    @Test
+    public void dedupe() throws Exception {
+        delay = 200;
+        crawler = newCrawler(4, 100, 1, 0, 60 * 1000);
+        Assert.assertTrue(crawler.submit(url("127.0.0.1", "/a")));
+        for (int i = 0; i < 10; i++) {
+            Assert.assertFalse(crawler.submit(url("127.0.0.1", "/a")));
+        }
+
+        Waits.waitFor(() -> 1 == crawler.getCrawledCount());
+        Assert.assertEquals(requests.size(), 1);
+        Assert.assertEquals(crawler.getResult(url("127.0.0.1", "/a")).optString("title"), "/a");
+    }
+
+    /**
+     * A crawled URL is not crawled again until its cached result expires.
+     */
+    @Test
+    public void cache() throws Exception {
+        crawler = newCrawler(4, 100, 1, 0, 300);
+        Assert.assertTrue(crawler.submit(url("127.0.0.1", "/b")));
+        Waits.waitFor(() -> 1 == crawler.getCrawledCount());
+        Assert.assertFalse(crawler.submit(url("127.0.0.1", "/b")));
+
+        Thread.sleep(400);
+        Assert.assertNull(crawler.getResult(url("127.0.0.1", "/b")));
+        Assert.assertTrue(crawler.submit(url("127.0.0.1", "/b")));
+        Waits.waitFor(() -> 2 == crawler.getCrawledCount());
+        Assert.assertEquals(requests.size(), 2);
+    }
+
+    /**
+     * Crawls of a host are serialized and spaced by the politeness interval, other hosts are crawled in parallel.
+     */
+    @Test
+    public void politeness() throws Exception {
+        delay = 50;
+        crawler = newCrawler(8, 100, 1, 100, 60 * 1000);
+        for (int i = 0; i < 5; i++) {
+            Assert.assertTrue(crawler.submit(url("127.0.0.1", "/p" + i)));
+        }
+
+        Waits.waitFor(() -> 5 == crawler.getCrawledCount());
+        Assert.assertEquals(maxConcurrent.get(), 1);
+        for (int i = 1; i < starts.size(); i++) {
+            Assert.assertTrue(starts.get(i) - starts.get(i - 1) >= 150, "Crawled too fast " + starts);
+        }
+
+        maxConcurrent.set(0);
+        delay = 300;
+        Assert.assertTrue(crawler.submit(url("127.0.0.1", "/x")));
+        Assert.assertTrue(crawler.submit(url("localhost", "/y")));
+        Waits.waitFor(() -> 7 == crawler.getCrawledCount());
+        Assert.assertEquals(maxConcurrent.get(), 2);
+    }
+
+    /**
+     * Submits beyond the queue capacity are dropped.
+     */
+    @Test
+    public void bounded() throws Exception {
+        delay = 200;
+        crawler = newCrawler(1, 2, 1, 0, 60 * 1000);
+        Assert.assertTrue(crawler.submit(url("127.0.0.1", "/q0")));
+        Waits.waitFor(() -> 1 == requests.size());
+        Assert.assertTrue(crawler.submit(url("127.0.0.1", "/q1")));
+        Assert.assertTrue(crawler.submit(url("127.0.0.1", "/q2")));
+        Assert.assertFalse(crawler.submit(url("127.0.0.1", "/q3")));
+        Assert.assertFalse(crawler.submit("ftp://127.0.0.1/q4"));
+
+        Waits.waitFor(() -> 3 == crawler.getCrawledCount());
+        Assert.assertEquals(crawler.size(), 0);
+    }
+
+    private LinkCrawler newCrawler(final int workers, final int queueCapacity, final int perHostConcurrency,
+                                   final long perHostInterval, final long cacheTTL) {
+        final LinkCrawler ret = new LinkCrawler(LinkCrawlerTestCase::fetch, workers, queueCapacity, perHostConcurrency, perHostInterval, cacheTTL);
+        ret.start();
+
+        return ret;
+    }
+
+    private String url(final String host, final String path) {
+        return "http://" + host + ":" + port + path;
+    }
+
+    private static JSONObject fetch(final String url) throws Exception {
+        final HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
+        try (final InputStream input = conn.getInputStream()) {
+            final String html = IOUtils.toString(input, StandardCharsets.UTF_8);
+
+            return new JSONObject().put("title", html.substring(html.indexOf("<title>") + 7, html.indexOf("</title>")));
+        } finally {
+            conn.disconnect();
+        }
+    }
+}
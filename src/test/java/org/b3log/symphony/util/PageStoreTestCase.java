@@ -0,0 +1,174 @@
+/*
+ * Symphony - A modern community (forum/BBS/SNS/blog) platform written in Java.
+ * Copyright (C) 2012-2018, b3log.org & hacpai.com
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.b3log.symphony.util;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link PageStore} test case.
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.0.0, Oct 25, 2018
+ * @since 3.4.3
+ */
+public class PageStoreTestCase {
+
+    /**
+     * Pages round trip through gzip, hits and misses are counted.
+     */
+    @Test
+    public void get() throws Exception {
+        final PageStore store = new PageStore(1024 * 1024, Long.MAX_VALUE);
+        final String html = "<html><body>" + String.join("", Collections.nCopies(100, "<p>Symphony 社区</p>")) + "</body></html>";
+
+        final PageStore.Page page = store.get("/", () -> page(html, "index"));
+        Assert.assertEquals(new String(page.getBody(), StandardCharsets.UTF_8), html);
+        Assert.assertTrue(page.getGzipBody().length < html.getBytes(StandardCharsets.UTF_8).length);
+        Assert.assertEquals(page.getETag(), page(html).getETag());
+        Assert.assertNotEquals(page.getETag(), page(html + " ").getETag());
+
+        Assert.assertSame(store.get("/", () -> page("other")), page);
+        Assert.assertEquals(store.getHitCount(), 1);
+        Assert.assertEquals(store.getMissCount(), 1);
+        Assert.assertEquals(store.getBytes(), page.getGzipBody().length);
+
+        Assert.assertNull(store.get("/404", () -> null));
+        Assert.assertEquals(store.size(), 1);
+    }
+
+    /**
+     * Invalidating a tag removes exactly the pages depending on it.
+     */
+    @Test
+    public void invalidate() throws Exception {
+        final PageStore store = new PageStore(1024 * 1024, Long.MAX_VALUE);
+        store.get("/", () -> page("index", "index"));
+        store.get("/article/1", () -> page("article 1", "article-1", "tag-java"));
+        store.get("/article/2", () -> page("article 2", "article-2"));
+        store.get("/tag/java", () -> page("tag java", "tag-java"));
+
+        store.invalidate(Arrays.asList("index", "tag-java"));
+        Assert.assertEquals(store.size(), 1);
+        Assert.assertEquals(store.get("/article/2", () -> page("reloaded")).getBody(), "article 2".getBytes());
+        Assert.assertEquals(store.get("/article/1", () -> page("reloaded")).getBody(), "reloaded".getBytes());
+
+        store.clear();
+        Assert.assertEquals(store.size(), 0);
+        Assert.assertEquals(store.getBytes(), 0);
+    }
+
+    /**
+     * Least recently served pages are evicted beyond the byte budget, pages expire.
+     */
+    @Test
+    public void evict() throws Exception {
+        final int pageBytes = page("page 0").getGzipBody().length;
+        final PageStore store = new PageStore(pageBytes * 3, Long.MAX_VALUE);
+        for (int i = 0; i < 3; i++) {
+            final String content = "page " + i;
+            store.get(content, () -> page(content));
+        }
+        store.get("page 0", () -> page("reloaded"));
+        store.get("page 3", () -> page("page 3"));
+
+        Assert.assertEquals(store.size(), 3);
+        Assert.assertTrue(store.getBytes() <= pageBytes * 3);
+        Assert.assertEquals(store.get("page 0", () -> page("reloaded")).getBody(), "page 0".getBytes());
+        Assert.assertEquals(store.get("page 1", () -> page("reloaded")).getBody(), "reloaded".getBytes());
+
+        final PageStore expiring = new PageStore(1024, 0);
+        expiring.get("/", () -> page("old"));
+        Thread.sleep(5);
+        Assert.assertEquals(expiring.get("/", () -> page("new")).getBody(), "new".getBytes());
+    }
+
+    /**
+     * Concurrent misses of a key are collapsed into a single load.
+     */
+    @Test
+    public void collapse() throws Exception {
+        final PageStore store = new PageStore(1024 * 1024, Long.MAX_VALUE);
+        final AtomicInteger loadCnt = new AtomicInteger();
+        final CountDownLatch loading = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final int threads = 16;
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            final List<Future<PageStore.Page>> futures = new ArrayList<>();
+            futures.add(executor.submit(() -> store.get("/hot", () -> {
+                loadCnt.incrementAndGet();
+                loading.countDown();
+                release.await();
+
+                return page("hot", "index");
+            })));
+            loading.await();
+            for (int i = 1; i < threads; i++) {
+                futures.add(executor.submit(() -> store.get("/hot", () -> {
+                    loadCnt.incrementAndGet();
+
+                    return page("duplicated");
+                })));
+            }
+            while (store.getCollapsedCount() < threads - 1) {
+                Thread.sleep(1);
+            }
+            release.countDown();
+
+            for (final Future<PageStore.Page> future : futures) {
+                Assert.assertEquals(future.get().getBody(), "hot".getBytes());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Assert.assertEquals(loadCnt.get(), 1);
+        Assert.assertEquals(store.getMissCount(), threads);
+        Assert.assertEquals(store.getCollapsedCount(), threads - 1);
+    }
+
+    /**
+     * A page loaded across an invalidation is returned but not stored.
+     */
+    @Test
+    public void invalidateWhileLoading() throws Exception {
+        final PageStore store = new PageStore(1024 * 1024, Long.MAX_VALUE);
+        final PageStore.Page stale = store.get("/", () -> {
+            store.invalidate(Collections.singletonList("index"));
+
+            return page("stale", "index");
+        });
+        Assert.assertEquals(stale.getBody(), "stale".getBytes());
+        Assert.assertEquals(store.size(), 0);
+        Assert.assertEquals(store.get("/", () -> page("fresh", "index")).getBody(), "fresh".getBytes());
+        Assert.assertEquals(store.size(), 1);
+    }
+
+    private static PageStore.Page page(final String content, final String... tags) {
+        return new PageStore.Page(content.getBytes(StandardCharsets.UTF_8), "text/html;charset=UTF-8", Arrays.asList(tags));
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Symphony - A modern community (forum/BBS/SNS/blog) platform written in Java.
+ * Copyright (C) 2012-2018, b3log.org & hacpai.com
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.b3log.symphony.util;
+
+import org.b3log.latke.Keys;
+import org.b3log.symphony.model.Comment;
+import org.b3log.symphony.model.Pointtransfer;
+import org.b3log.symphony.model.Reward;
+import org.json.JSONObject;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.*;
+
+/**
+ * {@link PointtransferReferences} test case, counts the queries issued for decorating a page of pointtransfers.
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.0.0, Oct 25, 2018
+ * @since 3.4.3
+ */
+public class PointtransferReferencesTestCase {
+
+    /**
+     * The viewing user id.
+     */
+    private static final String USER_ID = "u0";
+
+    /**
+     * Issued queries, &lt;entity type, [ids of each query]&gt;.
+     */
+    private final Map<String, List<Set<String>>> queries = new HashMap<>();
+
+    /**
+     * A page of mixed pointtransfers is decorated with one query per entity type.
+     */
+    @Test
+    public void oneQueryPerType() throws Exception {
+        final List<JSONObject> records = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            records.add(record(Pointtransfer.TRANSFER_TYPE_C_ADD_ARTICLE, USER_ID, "sys", "a" + i));
+            records.add(record(Pointtransfer.TRANSFER_TYPE_C_ADD_COMMENT, "u" + (i + 1), USER_ID, "c" + i));
+            records.add(record(Pointtransfer.TRANSFER_TYPE_C_ARTICLE_REWARD, "u" + (i + 1), USER_ID, "r" + i));
+            records.add(record(Pointtransfer.TRANSFER_TYPE_C_ACCOUNT2ACCOUNT, USER_ID, "u" + (i + 5), "" + i));
+            records.add(record(Pointtransfer.TRANSFER_TYPE_C_INVITE_REGISTER, "sys", USER_ID, "u" + (i + 10)));
+        }
+
+        final PointtransferReferences refs = load(records);
+
+        Assert.assertEquals(queries.size(), 4);
+        for (final List<Set<String>> typeQueries : queries.values()) {
+            Assert.assertEquals(typeQueries.size(), 1);
+        }
+
+        Assert.assertEquals(queries.get("comment").get(0), set("c0", "c1", "c2", "c3"));
+        Assert.assertEquals(queries.get("reward").get(0), set("r0", "r1", "r2", "r3"));
+        Assert.assertEquals(queries.get("article").get(0), set("a0", "a1", "a2", "a3", "ca0", "ca1", "ca2", "ca3", "ra0", "ra1", "ra2", "ra3"));
+        Assert.assertEquals(queries.get("user").get(0), set("u1", "u2", "u3", "u4", "rs0", "rs1", "rs2", "rs3",
+                "u5", "u6", "u7", "u8", "u10", "u11", "u12", "u13"));
+
+        Assert.assertEquals(refs.getComment("c2").optString(Comment.COMMENT_ON_ARTICLE_ID), "ca2");
+        Assert.assertEquals(refs.getReward("r1").optString(Reward.SENDER_ID), "rs1");
+        Assert.assertNotNull(refs.getArticle("ra3"));
+        Assert.assertNotNull(refs.getUser("u12"));
+        Assert.assertNull(refs.getArticle("missing"));
+    }
+
+    /**
+     * Incoming two-way transfers reference the sender, outgoing ones reference the receiver.
+     */
+    @Test
+    public void peers() throws Exception {
+        final JSONObject in = record(Pointtransfer.TRANSFER_TYPE_C_COMMENT_REWARD, "u1", USER_ID, "r0");
+        final JSONObject out = record(Pointtransfer.TRANSFER_TYPE_C_COMMENT_REWARD, USER_ID, "u2", "r1");
+        final JSONObject rewardOut = record(Pointtransfer.TRANSFER_TYPE_C_ARTICLE_REWARD, USER_ID, "u3", "r2");
+        Assert.assertEquals(PointtransferReferences.getTypeStr(in, USER_ID), "14In");
+        Assert.assertEquals(PointtransferReferences.getTypeStr(out, USER_ID), "14");
+        Assert.assertEquals(PointtransferReferences.getTypeStr(rewardOut, USER_ID), "5In");
+
+        load(Arrays.asList(in, out, rewardOut));
+        Assert.assertEquals(queries.get("user").get(0), set("u1", "u2", "u3"));
+    }
+
+    /**
+     * A page without references issues no queries.
+     */
+    @Test
+    public void noReferences() throws Exception {
+        load(Arrays.asList(record(Pointtransfer.TRANSFER_TYPE_C_ACTIVITY_CHECKIN, "sys", USER_ID, ""),
+                record(Pointtransfer.TRANSFER_TYPE_C_CHARGE, "sys", USER_ID, "10-abc")));
+        Assert.assertTrue(queries.isEmpty());
+    }
+
+    private PointtransferReferences load(final List<JSONObject> records) throws Exception {
+        queries.clear();
+        final PointtransferReferences ret = new PointtransferReferences(records, USER_ID);
+        ret.load(loader("comment", id -> new JSONObject().put(Comment.COMMENT_ON_ARTICLE_ID, "ca" + id.substring(1))),
+                loader("reward", id -> new JSONObject().put(Reward.DATA_ID, "ra" + id.substring(1)).put(Reward.SENDER_ID, "rs" + id.substring(1))),
+                loader("article", id -> new JSONObject()),
+                loader("user", id -> new JSONObject()));
+
+        return ret;
+    }
+
+    private PointtransferReferences.Loader loader(final String type, final java.util.function.Function<String, JSONObject> entity) {
+        return ids -> {
+            queries.computeIfAbsent(type, k -> new ArrayList<>()).add(new HashSet<>(ids));
+            final Map<String, JSONObject> ret = new HashMap<>();
+            for (final String id : ids) {
+                ret.put(id, entity.apply(id).put(Keys.OBJECT_ID, id));
+            }
+
+            return ret;
+        };
+    }
+
+    private static JSONObject record(final int type, final String fromId, final String toId, final String dataId) {
+        return new JSONObject().put(Pointtransfer.TYPE, type).put(Pointtransfer.FROM_ID, fromId).
+                put(Pointtransfer.TO_ID, toId).put(Pointtransfer.DATA_ID, dataId);
+    }
+
+    private static Set<String> set(final String... ids) {
+        return new HashSet<>(Arrays.asList(ids));
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Symphony - A modern community (forum/BBS/SNS/blog) platform written in Java.
+ * Copyright (C) 2012-2018, b3log.org & hacpai.com
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.b3log.symphony.util;
+
+import org.b3log.symphony.util.PresenceRegistry.Presence;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.List;
+
+/**
+ * {@link PresenceRegistry} test case.
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.2.0, Oct 25, 2018
+ * @since 3.4.3
+ */
+public class PresenceRegistryTestCase {
+
+    /**
+     * Heartbeats are persisted only at the persist interval, transitions at the next drain.
+     */
+    @Test
+    public void throttle() {
+        final PresenceRegistry registry = new PresenceRegistry(60 * 1000);
+
+        registry.connect("u1", "1.1.1.1", 0);
+        List<Presence> due = registry.drain(0);
+        Assert.assertEquals(due.size(), 1);
+        Assert.assertTrue(due.get(0).isOnline());
+        Assert.assertEquals(due.get(0).getIp(), "1.1.1.1");
+
+        for (int i = 1; i <= 100; i++) {
+            registry.heartbeat("u1", "1.1.1.1", i * 100);
+            Assert.assertTrue(registry.drain(i * 100).isEmpty());
+        }
+
+        registry.heartbeat("u1", "2.2.2.2", 60 * 1000);
+        due = registry.drain(60 * 1000);
+        Assert.assertEquals(due.size(), 1);
+        Assert.assertEquals(due.get(0).getLastSeen(), 60 * 1000);
+        Assert.assertEquals(due.get(0).getIp(), "2.2.2.2");
+
+        registry.disconnect("u1", 61 * 1000);
+        Assert.assertFalse(registry.isOnline("u1"));
+        due = registry.drain(61 * 1000);
+        Assert.assertEquals(due.size(), 1);
+        Assert.assertFalse(due.get(0).isOnline());
+        Assert.assertTrue(registry.drain(200 * 1000).isEmpty());
+    }
+
+    /**
+     * A user stays online until the last connection closes.
+     */
+    @Test
+    public void connections() {
+        final PresenceRegistry registry = new PresenceRegistry(60 * 1000);
+
+        registry.connect("u1", null, 0);
+        registry.connect("u1", null, 0);
+        registry.connect("u2", null, 0);
+        Assert.assertEquals(registry.getOnlineCount(), 2);
+        Assert.assertEquals(registry.drain(0).size(), 2);
+
+        registry.disconnect("u1", 1);
+        Assert.assertTrue(registry.isOnline("u1"));
+        Assert.assertTrue(registry.drain(1).isEmpty());
+
+        registry.disconnect("u1", 2);
+        registry.connect("u1", null, 3);
+        Assert.assertTrue(registry.drain(3).isEmpty());
+
+        registry.disconnect("u1", 4);
+        Assert.assertFalse(registry.isOnline("u1"));
+        Assert.assertEquals(registry.getOnlineCount(), 1);
+        final List<Presence> due = registry.drain(4);
+        Assert.assertEquals(due.size(), 1);
+        Assert.assertFalse(due.get(0).isOnline());
+    }
+
+    /**
+     * A failed persisting is retried at the next drain.
+     */
+    @Test
+    public void invalidate() {
+        final PresenceRegistry registry = new PresenceRegistry(60 * 1000);
+
+        registry.connect("u1", null, 0);
+        registry.disconnect("u1", 0);
+        final List<Presence> due = registry.drain(0);
+        Assert.assertEquals(due.size(), 1);
+        Assert.assertTrue(registry.drain(1).isEmpty());
+
+        registry.invalidate(due.get(0));
+        final List<Presence> retried = registry.drain(2);
+        Assert.assertEquals(retried.size(), 1);
+        Assert.assertFalse(retried.get(0).isOnline());
+    }
+}
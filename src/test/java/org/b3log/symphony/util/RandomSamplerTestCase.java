@@ -0,0 +1,115 @@
+/*
+ * Symphony - A modern community (forum/BBS/SNS/blog) platform written in Java.
+ * Copyright (C) 2012-2018, b3log.org & hacpai.com
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.b3log.symphony.util;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.*;
+
+/**
+ * {@link RandomSampler} test case.
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.0.0, Oct 25, 2018
+ * @since 3.4.3
+ */
+public class RandomSamplerTestCase {
+
+    /**
+     * Chi-square critical value of 49 degrees of freedom at p = 0.001.
+     */
+    private static final double CHI_SQUARE_49_CRITICAL = 85.35;
+
+    /**
+     * Every id is picked with the same probability.
+     */
+    @Test
+    public void uniformity() {
+        final int n = 50;
+        final int k = 5;
+        final int rounds = 100000;
+        final RandomSampler sampler = new RandomSampler();
+        sampler.reset(ids(n));
+
+        final Random random = new Random(20181025);
+        final Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < rounds; i++) {
+            final List<String> sample = sampler.sample(k, random);
+            Assert.assertEquals(sample.size(), k);
+            Assert.assertEquals(new HashSet<>(sample).size(), k);
+            for (final String id : sample) {
+                counts.merge(id, 1, Integer::sum);
+            }
+        }
+
+        Assert.assertEquals(counts.size(), n);
+        Assert.assertTrue(chiSquare(counts.values(), (double) rounds * k / n) < CHI_SQUARE_49_CRITICAL);
+    }
+
+    /**
+     * Every id is equally likely to come first, the sample order is random.
+     */
+    @Test
+    public void order() {
+        final int n = 50;
+        final int rounds = 100000;
+        final RandomSampler sampler = new RandomSampler();
+        sampler.reset(ids(n));
+
+        final Random random = new Random(20181026);
+        final Map<String, Integer> firsts = new HashMap<>();
+        for (int i = 0; i < rounds; i++) {
+            firsts.merge(sampler.sample(10, random).get(0), 1, Integer::sum);
+        }
+
+        Assert.assertEquals(firsts.size(), n);
+        Assert.assertTrue(chiSquare(firsts.values(), (double) rounds / n) < CHI_SQUARE_49_CRITICAL);
+    }
+
+    /**
+     * Samples are capped by the count of ids.
+     */
+    @Test
+    public void bounds() {
+        final RandomSampler sampler = new RandomSampler();
+        Assert.assertTrue(sampler.sample(3).isEmpty());
+
+        sampler.reset(ids(3));
+        Assert.assertEquals(new HashSet<>(sampler.sample(10)), new HashSet<>(ids(3)));
+        Assert.assertTrue(sampler.sample(0).isEmpty());
+    }
+
+    private static List<String> ids(final int n) {
+        final List<String> ret = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            ret.add(String.valueOf(1540000000000L + i));
+        }
+
+        return ret;
+    }
+
+    private static double chiSquare(final Collection<Integer> counts, final double expected) {
+        double ret = 0;
+        for (final int count : counts) {
+            ret += (count - expected) * (count - expected) / expected;
+        }
+
+        return ret;
+    }
+}
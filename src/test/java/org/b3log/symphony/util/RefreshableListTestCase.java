@@ -0,0 +1,124 @@
+/*
+ * Symphony - A modern community (forum/BBS/SNS/blog) platform written in Java.
+ * Copyright (C) 2012-2018, b3log.org & hacpai.com
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.b3log.symphony.util;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * {@link RefreshableList} test case.
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.0.0, Oct 25, 2018
+ * @since 3.4.3
+ */
+public class RefreshableListTestCase {
+
+    /**
+     * Readers iterating and sampling concurrently with refreshes always see a complete list of a single generation.
+     */
+    @Test
+    public void stress() throws Exception {
+        final RefreshableList<Long> list = new RefreshableList<>("stress");
+        list.refresh(() -> load(1));
+
+        final AtomicBoolean stop = new AtomicBoolean();
+        final ExecutorService pool = Executors.newFixedThreadPool(9);
+        final List<Future<Integer>> readers = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            readers.add(pool.submit(() -> {
+                int ret = 0;
+                while (!stop.get()) {
+                    final List<Long> all = list.get();
+                    Assert.assertFalse(all.isEmpty());
+                    final long generation = all.get(0);
+                    Assert.assertEquals(all.size(), size(generation));
+                    for (final Long element : all) {
+                        Assert.assertEquals((long) element, generation);
+                    }
+
+                    final List<Long> sample = list.sample(5);
+                    Assert.assertEquals(sample.size(), 5);
+                    Assert.assertEquals(new HashSet<>(sample).size(), 1);
+                    ret++;
+                }
+
+                return ret;
+            }));
+        }
+
+        final Future<?> refresher = pool.submit(() -> {
+            for (long generation = 2; generation <= 2000; generation++) {
+                final long g = generation;
+                Assert.assertTrue(list.refresh(() -> load(g)));
+                if (0 == generation % 100) {
+                    Assert.assertFalse(list.refresh(() -> {
+                        throw new IllegalStateException("Refreshes failed");
+                    }));
+                }
+            }
+
+            return null;
+        });
+
+        refresher.get(60, TimeUnit.SECONDS);
+        stop.set(true);
+        for (final Future<Integer> reader : readers) {
+            Assert.assertTrue(0 < reader.get(10, TimeUnit.SECONDS));
+        }
+        pool.shutdown();
+
+        Assert.assertEquals(list.getSnapshot().getGeneration(), 2000);
+        Assert.assertEquals((long) list.get().get(0), 2000L);
+    }
+
+    /**
+     * Sampling does not modify the snapshot and picks distinct elements.
+     */
+    @Test
+    public void sample() {
+        final RefreshableList<Integer> list = new RefreshableList<>("sample");
+        Assert.assertTrue(list.sample(3).isEmpty());
+
+        list.refresh(() -> Arrays.asList(1, 2, 3, 4, 5));
+        for (int i = 0; i < 100; i++) {
+            final List<Integer> sample = list.sample(3);
+            Assert.assertEquals(sample.size(), 3);
+            Assert.assertEquals(new HashSet<>(sample).size(), 3);
+        }
+        Assert.assertEquals(list.sample(10).size(), 5);
+        Assert.assertEquals(list.get(), Arrays.asList(1, 2, 3, 4, 5));
+    }
+
+    private static List<Long> load(final long generation) {
+        final List<Long> ret = new ArrayList<>();
+        for (int i = 0; i < size(generation); i++) {
+            ret.add(generation);
+        }
+
+        return ret;
+    }
+
+    private static int size(final long generation) {
+        return 10 + (int) (generation % 50);
+    }
+}
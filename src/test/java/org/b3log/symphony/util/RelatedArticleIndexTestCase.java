@@ -0,0 +1,233 @@
+/*
+ * Symphony - A modern community (forum/BBS/SNS/blog) platform written in Java.
+ * Copyright (C) 2012-2018, b3log.org & hacpai.com
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.b3log.symphony.util;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.*;
+
+/**
+ * {@link RelatedArticleIndex} test case.
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.0.0, Oct 25, 2018
+ * @since 3.4.3
+ */
+public class RelatedArticleIndexTestCase {
+
+    /**
+     * Count of topics of generated articles.
+     */
+    private static final int TOPICS = 40;
+
+    /**
+     * Count of tags of a topic.
+     */
+    private static final int TOPIC_TAGS = 8;
+
+    /**
+     * Count of relevant articles shown on an article page.
+     */
+    private static final int FETCH_SIZE = 6;
+
+    /**
+     * Latin words are split by non letters, CJK text into bigrams.
+     */
+    @Test
+    public void tokenize() {
+        Assert.assertEquals(RelatedArticleIndex.tokenize("Java 并发编程, a B3log!"),
+                Arrays.asList("java", "并发", "发编", "编程", "b3log"));
+        Assert.assertEquals(RelatedArticleIndex.tokenize("问"), Collections.singletonList("问"));
+        Assert.assertTrue(RelatedArticleIndex.tokenize(null).isEmpty());
+    }
+
+    /**
+     * Puts, updates and removes are reflected by later reads.
+     */
+    @Test
+    public void incremental() {
+        final RelatedArticleIndex<String> index = new RelatedArticleIndex<>(3);
+        index.put("1", Arrays.asList("Java", "JVM"), "Java GC tuning", "1");
+        index.put("2", Arrays.asList("Java"), "Java lambda", "2");
+        index.put("3", Arrays.asList("Golang"), "Golang channel", "3");
+        index.put("4", Arrays.asList("golang", "Docker"), "Docker image", "4");
+
+        Assert.assertEquals(index.get("1", 3), Collections.singletonList("2"));
+        Assert.assertEquals(index.get("3", 3), Collections.singletonList("4"));
+        Assert.assertTrue(index.get("5", 3).isEmpty());
+        Assert.assertFalse(index.contains("5"));
+
+        index.put("5", Arrays.asList("JVM"), "JVM GC tuning", "5");
+        Assert.assertEquals(index.get("1", 3), Arrays.asList("5", "2"));
+        Assert.assertEquals(index.get("1", 1), Collections.singletonList("5"));
+
+        index.put("2", Arrays.asList("Docker"), "Docker compose", "2");
+        Assert.assertEquals(index.get("1", 3), Collections.singletonList("5"));
+        Assert.assertEquals(index.get("4", 3), Arrays.asList("2", "3"));
+
+        index.put("5", Arrays.asList("JVM"), "JVM GC tuning", "5'");
+        Assert.assertEquals(index.get("1", 3), Collections.singletonList("5'"));
+
+        index.remove("5");
+        Assert.assertTrue(index.get("1", 3).isEmpty());
+        Assert.assertTrue(index.get("5", 3).isEmpty());
+        Assert.assertEquals(index.size(), 4);
+    }
+
+    /**
+     * Compares the index with the current random tags method over generated articles, prints overlap and per-view
+     * cost.
+     */
+    @Test
+    public void evaluate() {
+        final Random random = new Random(20181025);
+        final List<Article> articles = new ArrayList<>();
+        final RelatedArticleIndex<String> index = new RelatedArticleIndex<>(FETCH_SIZE);
+        final Map<String, List<String>> tagArticles = new HashMap<>();
+        for (int i = 0; i < 20000; i++) {
+            final Article article = generate(random, i);
+            articles.add(article);
+            index.put(article.id, article.tags, article.title, article.id);
+            for (final String tag : article.tags) {
+                tagArticles.computeIfAbsent(tag, key -> new ArrayList<>()).add(0, article.id);
+            }
+        }
+        final Map<String, Article> byId = new HashMap<>();
+        articles.forEach(article -> byId.put(article.id, article));
+
+        final List<Article> views = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            views.add(articles.get(random.nextInt(articles.size())));
+        }
+
+        int indexShared = 0, indexSameTopic = 0, indexCnt = 0, naiveSameTopic = 0, naiveCnt = 0, overlap = 0;
+        for (final Article view : views) {
+            final List<String> related = index.get(view.id, FETCH_SIZE);
+            final List<String> naive = naive(random, view, tagArticles);
+            for (final String id : related) {
+                indexCnt++;
+                if (!Collections.disjoint(byId.get(id).tags, view.tags)) {
+                    indexShared++;
+                }
+                if (byId.get(id).topic == view.topic) {
+                    indexSameTopic++;
+                }
+                if (naive.contains(id)) {
+                    overlap++;
+                }
+            }
+            for (final String id : naive) {
+                naiveCnt++;
+                if (byId.get(id).topic == view.topic) {
+                    naiveSameTopic++;
+                }
+            }
+        }
+
+        Assert.assertEquals(indexCnt, views.size() * FETCH_SIZE);
+        Assert.assertTrue(indexShared > indexCnt * 0.95, "Neighbors sharing a tag [" + indexShared + "/" + indexCnt + "]");
+        Assert.assertTrue((double) indexSameTopic / indexCnt >= (double) naiveSameTopic / naiveCnt);
+
+        final long naiveStart = System.nanoTime();
+        for (final Article view : views) {
+            naive(random, view, tagArticles);
+        }
+        final long naiveTime = System.nanoTime() - naiveStart;
+        final long indexStart = System.nanoTime();
+        for (final Article view : views) {
+            index.get(view.id, FETCH_SIZE);
+        }
+        final long indexTime = System.nanoTime() - indexStart;
+
+        System.out.println("Related articles of [" + views.size() + "] views: same topic [index " + indexSameTopic + "/" + indexCnt
+                + ", current " + naiveSameTopic + "/" + naiveCnt + "], overlap with current [" + overlap + "/" + indexCnt
+                + "], per view [index " + indexTime / views.size() + "ns, current in memory " + naiveTime / views.size()
+                + "ns, current in production also queries the tag table and runs 2 queries per tag]");
+    }
+
+    /**
+     * Emulates the current method, picks up to 3 random tags and gets the latest articles of each.
+     *
+     * @param random      the specified random
+     * @param article     the specified article
+     * @param tagArticles the specified tag articles, &lt;tag, articleIds newest first&gt;
+     * @return relevant article ids
+     */
+    private static List<String> naive(final Random random, final Article article, final Map<String, List<String>> tagArticles) {
+        final List<String> tags = new ArrayList<>(article.tags);
+        Collections.shuffle(tags, random);
+        final int subCnt = Math.min(3, tags.size());
+        final int subFetchSize = FETCH_SIZE / subCnt;
+        final Set<String> ret = new LinkedHashSet<>();
+        for (final String tag : tags.subList(0, subCnt)) {
+            final List<String> ids = tagArticles.get(tag);
+            ret.addAll(ids.subList(0, Math.min(subFetchSize, ids.size())));
+        }
+        ret.remove(article.id);
+
+        return new ArrayList<>(ret);
+    }
+
+    private static Article generate(final Random random, final int i) {
+        final int topic = random.nextInt(TOPICS);
+        final Set<String> tags = new LinkedHashSet<>();
+        for (int j = 1 + random.nextInt(4); j > 0; j--) {
+            tags.add(0 == random.nextInt(10) ? "common" + random.nextInt(5) : "t" + topic + "x" + random.nextInt(TOPIC_TAGS));
+        }
+        final StringBuilder title = new StringBuilder();
+        for (int j = 2 + random.nextInt(5); j > 0; j--) {
+            title.append(0 == random.nextInt(3) ? "w" + random.nextInt(500) : "w" + topic + "y" + random.nextInt(20)).append(' ');
+        }
+
+        return new Article(String.format("%013d", i), topic, new ArrayList<>(tags), title.toString());
+    }
+
+    /**
+     * Generated article.
+     */
+    private static final class Article {
+
+        /**
+         * Id.
+         */
+        private final String id;
+
+        /**
+         * Topic.
+         */
+        private final int topic;
+
+        /**
+         * Tags.
+         */
+        private final List<String> tags;
+
+        /**
+         * Title.
+         */
+        private final String title;
+
+        private Article(final String id, final int topic, final List<String> tags, final String title) {
+            this.id = id;
+            this.topic = topic;
+            this.tags = tags;
+            this.title = title;
+        }
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * Symphony - A modern community (forum/BBS/SNS/blog) platform written in Java.
+ * Copyright (C) 2012-2018, b3log.org & hacpai.com
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.b3log.symphony.util;
+
+import freemarker.template.Template;
+import org.apache.commons.lang.StringUtils;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.StringWriter;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * {@link Skins} test case.
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.2.0.0, Oct 25, 2018
+ * @since 3.4.3
+ */
+public class SkinsTestCase {
+
+    /**
+     * Concurrent renderings of a shared template with different locales and time zones do not cross.
+     */
+    @Test
+    public void process() throws Exception {
+        final Template template = new Template("settings", "${.locale} ${number} ${date?string('HH:mm')}", Skins.SKIN);
+        final Object[][] settings = {
+                {Locale.US, TimeZone.getTimeZone("UTC"), "en_US 1,234.5 00:00"},
+                {Locale.GERMANY, TimeZone.getTimeZone("Asia/Shanghai"), "de_DE 1.234,5 08:00"},
+                {Locale.SIMPLIFIED_CHINESE, TimeZone.getTimeZone("America/New_York"), "zh_CN 1,234.5 19:00"}};
+
+        final int threads = 8;
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            final List<Future<Integer>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                final int offset = t;
+                futures.add(executor.submit(() -> {
+                    int crossed = 0;
+                    for (int i = 0; i < 2000; i++) {
+                        final Object[] setting = settings[(offset + i) % settings.length];
+                        final Map<String, Object> dataModel = new HashMap<>();
+                        dataModel.put("number", 1234.5);
+                        dataModel.put("date", new Date(0));
+                        final StringWriter writer = new StringWriter();
+                        Skins.process(template, dataModel, (Locale) setting[0], (TimeZone) setting[1], writer);
+                        if (!setting[2].equals(writer.toString())) {
+                            crossed++;
+                        }
+                    }
+
+                    return crossed;
+                }));
+            }
+
+            for (final Future<Integer> future : futures) {
+                Assert.assertEquals(future.get().intValue(), 0);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Assert.assertNotEquals(template.getLocale(), Locale.GERMANY);
+    }
+
+    /**
+     * Only the requested fragment is rendered, the template after it is not processed.
+     */
+    @Test
+    public void processFragment() throws Exception {
+        final Template template = new Template("fragments", "<#assign greeting = \"Hi\"><head>${title}</head>"
+                + "<@fragment name=\"#list\"><ul><#list items as item><li>${greeting} ${item}</li></#list></ul></@fragment>"
+                + "<@fragment name=\"#side\">${side}</@fragment>", Skins.SKIN);
+        final Map<String, Object> dataModel = new HashMap<>();
+        dataModel.put("title", "Symphony");
+        dataModel.put("items", Arrays.asList("a", "b"));
+
+        StringWriter writer = new StringWriter();
+        Assert.assertTrue(Skins.processFragment(template, dataModel, Locale.US, TimeZone.getDefault(), "#list", writer));
+        Assert.assertEquals(writer.toString(), "<ul><li>Hi a</li><li>Hi b</li></ul>");
+
+        dataModel.put("side", "side");
+        writer = new StringWriter();
+        Assert.assertFalse(Skins.processFragment(template, dataModel, Locale.US, TimeZone.getDefault(), "#none", writer));
+        Assert.assertEquals(writer.toString(), "");
+
+        writer = new StringWriter();
+        Skins.process(template, dataModel, Locale.US, TimeZone.getDefault(), writer);
+        Assert.assertEquals(writer.toString(), "<head>Symphony</head><ul><li>Hi a</li><li>Hi b</li></ul>side");
+    }
+
+    /**
+     * Fragments are declared only by templates using the fragment directive.
+     */
+    @Test
+    public void declaresFragment() throws Exception {
+        final Template template = new Template("declares", "<head>${title}</head><@fragment name=\"#comments\">"
+                + "<#list comments as comment>${comment}</#list></@fragment><!---- pjax {#side} start ---->", Skins.SKIN);
+
+        Assert.assertTrue(Skins.declaresFragment(template, "#comments"));
+        Assert.assertFalse(Skins.declaresFragment(template, "#side"));
+        Assert.assertFalse(Skins.declaresFragment(new Template("mobile", "<!---- pjax {#comments} start ---->", Skins.SKIN), "#comments"));
+    }
+
+    /**
+     * Prints bytes rendered and latency of pjax requests of index and article like pages, rendering the full page
+     * then extracting the container versus rendering the fragment only.
+     */
+    @Test
+    public void benchmarkFragment() throws Exception {
+        final String head = "<html><head><#list 1..40 as i><link rel=\"stylesheet\" href=\"/css/${i}.css\"></#list></head>"
+                + "<body><nav><#list navs as nav><a href=\"/domain/${nav}\">${nav}</a></#list></nav>";
+        final String side = "<div class=\"side\"><#list sideArticles as article><a href=\"/article/${article?c}\">"
+                + "Side article ${article?c} title</a></#list><#list sideTags as tag><a href=\"/tag/${tag}\">${tag}</a></#list>"
+                + "</div><footer><#list 1..30 as i><a href=\"/about/${i}\">Footer link ${i}</a></#list></footer></body></html>";
+        final Template index = new Template("index", head + "<@fragment name=\"#recent-pjax-container\"><!---- pjax {#recent-pjax-container} start ---->"
+                + "<ul><#list articles as article><li><a href=\"/article/${article?c}\">Article ${article?c} title</a>"
+                + "<span>${article?c} comments</span></li></#list></ul><!---- pjax {#recent-pjax-container} end ----></@fragment>" + side, Skins.SKIN);
+        final Template article = new Template("article", head + "<article><#list 1..200 as i><p>Article content paragraph ${i}</p></#list></article>"
+                + "<@fragment name=\"#comments\"><!---- pjax {#comments} start ----><ul><#list comments as comment>"
+                + "<li><img src=\"/avatar/${comment?c}\"><a href=\"/member/${comment?c}\">member${comment?c}</a>"
+                + "<p>Comment ${comment?c} content</p></li></#list></ul><!---- pjax {#comments} end ----></@fragment>" + side, Skins.SKIN);
+
+        final Map<String, Object> dataModel = new HashMap<>();
+        dataModel.put("navs", Arrays.asList("b3log", "java", "pipe", "solo", "golang", "symphony", "sym", "life"));
+        dataModel.put("articles", range(20));
+        dataModel.put("comments", range(30));
+        dataModel.put("sideArticles", range(30));
+        dataModel.put("sideTags", Arrays.asList("B3log", "Java", "Solo", "Pipe", "Symphony", "Wide", "Lute", "Vditor"));
+
+        benchmarkFragment("index", index, "#recent-pjax-container", dataModel);
+        benchmarkFragment("article", article, "#comments", dataModel);
+    }
+
+    private static void benchmarkFragment(final String page, final Template template, final String fragment,
+                                          final Map<String, Object> dataModel) throws Exception {
+        final int rounds = 3000;
+        String full = null;
+        String part = null;
+        for (int warm = 0; warm < 2; warm++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < rounds; i++) {
+                final StringWriter writer = new StringWriter();
+                Skins.process(template, dataModel, Locale.US, TimeZone.getDefault(), writer);
+                full = writer.toString();
+                StringUtils.substringBetween(full, "<!---- pjax {" + fragment + "} start ---->", "<!---- pjax {" + fragment + "} end ---->");
+            }
+            final long fullNanos = (System.nanoTime() - start) / rounds;
+
+            start = System.nanoTime();
+            for (int i = 0; i < rounds; i++) {
+                final StringWriter writer = new StringWriter();
+                Skins.processFragment(template, dataModel, Locale.US, TimeZone.getDefault(), fragment, writer);
+                part = writer.toString();
+            }
+            final long fragmentNanos = (System.nanoTime() - start) / rounds;
+
+            if (1 == warm) {
+                System.out.println(String.format("Pjax [%s] page: full render [%d] bytes in [%d]us, fragment render [%d] bytes in [%d]us",
+                        page, full.length(), fullNanos / 1000, part.length(), fragmentNanos / 1000));
+            }
+        }
+
+        Assert.assertTrue(full.contains(part));
+        Assert.assertTrue(part.length() < full.length());
+    }
+
+    private static List<Long> range(final int size) {
+        final List<Long> ret = new ArrayList<>();
+        for (long i = 0; i < size; i++) {
+            ret.add(1540000000000L + i);
+        }
+
+        return ret;
+    }
+}
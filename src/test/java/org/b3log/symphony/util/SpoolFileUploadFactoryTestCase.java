@@ -0,0 +1,247 @@
+/*
+ * Symphony - A modern community (forum/BBS/SNS/blog) platform written in Java.
+ * Copyright (C) 2012-2018, b3log.org & hacpai.com
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.b3log.symphony.util;
+
+import jodd.io.upload.MultipartStreamParser;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.b3log.symphony.util.SpoolFileUploadFactory.SpoolFileUpload;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * {@link SpoolFileUploadFactory} test case.
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.2.0.0, Oct 25, 2018
+ * @since 3.4.3
+ */
+public class SpoolFileUploadFactoryTestCase {
+
+    private static final String BOUNDARY = "----SymBoundary7MA4YWxkTrZu0gW";
+
+    private File dir;
+
+    @BeforeMethod
+    public void before() throws Exception {
+        dir = Files.createTempDirectory("spool").toFile();
+    }
+
+    @AfterMethod
+    public void after() throws Exception {
+        FileUtils.deleteDirectory(dir);
+    }
+
+    @Test
+    public void memory() throws Exception {
+        final SpoolFileUpload file = parse(dir, 1024, 4096, 100);
+        Assert.assertTrue(file.isValid());
+        Assert.assertTrue(file.isInMemory());
+        Assert.assertEquals(file.getSize(), 100);
+        Assert.assertEquals(file.getSha256(), DigestUtils.sha256Hex(new GeneratedInputStream(100)));
+        Assert.assertEquals(file.getMd5(), DigestUtils.md5Hex(new GeneratedInputStream(100)));
+        Assert.assertEquals(spooled(), 0);
+    }
+
+    @Test
+    public void spool() throws Exception {
+        final SpoolFileUpload file = parse(dir, 1024, 1024 * 1024, 200 * 1024);
+        Assert.assertTrue(file.isValid());
+        Assert.assertFalse(file.isInMemory());
+        Assert.assertEquals(spooled(), 1);
+        Assert.assertEquals(file.getSha256(), DigestUtils.sha256Hex(new GeneratedInputStream(200 * 1024)));
+
+        final File target = new File(dir, "store/a.zip");
+        Assert.assertTrue(file.moveTo(target));
+        Assert.assertEquals(target.length(), 200 * 1024);
+        Assert.assertEquals(spooled(), 0);
+    }
+
+    @Test
+    public void tooBig() throws Exception {
+        final SpoolFileUpload file = parse(dir, 1024, 64 * 1024, 64 * 1024 + 1);
+        Assert.assertFalse(file.isValid());
+        Assert.assertTrue(file.isFileTooBig());
+        Assert.assertEquals(spooled(), 0);
+
+        Assert.assertTrue(parse(dir, 1024, 64 * 1024, 64 * 1024).isValid());
+    }
+
+    @Test
+    public void dedupe() throws Exception {
+        final File target = new File(dir, "store/b.zip");
+        SpoolFileUpload file = parse(dir, 1024, 1024 * 1024, 10 * 1024);
+        Assert.assertTrue(file.moveTo(target));
+        final long lastModified = target.lastModified();
+
+        file = parse(dir, 1024, 1024 * 1024, 10 * 1024);
+        Assert.assertFalse(file.moveTo(target));
+        Assert.assertEquals(target.lastModified(), lastModified);
+        Assert.assertEquals(spooled(), 0);
+    }
+
+    /**
+     * All spooled parts of a request are deleted, the moved one is kept.
+     */
+    @Test
+    public void deleteAll() throws Exception {
+        final SpoolFileUploadFactory factory = new SpoolFileUploadFactory(new File(dir, "spool"), 1024, 1024 * 1024);
+        final MultipartStreamParser parser = new MultipartStreamParser(factory);
+        final String part = "--" + BOUNDARY + "\r\n" +
+                "Content-Disposition: form-data; name=\"%s\"; filename=\"%s.zip\"\r\n" +
+                "Content-Type: application/zip\r\n\r\n";
+        final InputStream input = new SequenceInputStream(Collections.enumeration(Arrays.asList(
+                new ByteArrayInputStream(String.format(part, "file", "a").getBytes(StandardCharsets.UTF_8)),
+                new GeneratedInputStream(10 * 1024),
+                new ByteArrayInputStream(("\r\n" + String.format(part, "file", "b")).getBytes(StandardCharsets.UTF_8)),
+                new GeneratedInputStream(20 * 1024),
+                new ByteArrayInputStream(("\r\n" + String.format(part, "other", "c")).getBytes(StandardCharsets.UTF_8)),
+                new GeneratedInputStream(30 * 1024),
+                new ByteArrayInputStream(("\r\n--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.UTF_8)))));
+        parser.parseRequestStream(input, "UTF-8");
+        Assert.assertEquals(spooled(), 3);
+
+        final File target = new File(dir, "store/c.zip");
+        Assert.assertNull(factory.getUpload("missing"));
+        Assert.assertTrue(factory.getUpload("file").moveTo(target));
+        factory.deleteAll();
+        Assert.assertEquals(spooled(), 0);
+        Assert.assertEquals(target.length(), 10 * 1024);
+    }
+
+    /**
+     * Uploads a file four times larger than the heap of a child JVM.
+     */
+    @Test
+    public void largerThanHeap() throws Exception {
+        final String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        final Process process = new ProcessBuilder(java, "-Xmx16m", "-cp", System.getProperty("java.class.path"),
+                LargeUpload.class.getName(), dir.getAbsolutePath()).redirectErrorStream(true).start();
+        final String output = new String(readAll(process.getInputStream()), StandardCharsets.UTF_8);
+        Assert.assertEquals(process.waitFor(), 0, output);
+    }
+
+    private int spooled() {
+        final String[] files = new File(dir, "spool").list();
+
+        return null == files ? 0 : files.length;
+    }
+
+    private static SpoolFileUpload parse(final File dir, final int memoryThreshold, final int maxFileSize, final long length) throws IOException {
+        final SpoolFileUploadFactory factory = new SpoolFileUploadFactory(new File(dir, "spool"), memoryThreshold, maxFileSize);
+        new MultipartStreamParser(factory).parseRequestStream(multipart(length), "UTF-8");
+
+        return factory.getUpload("file");
+    }
+
+    private static InputStream multipart(final long length) {
+        final String head = "--" + BOUNDARY + "\r\n" +
+                "Content-Disposition: form-data; name=\"file\"; filename=\"big.zip\"\r\n" +
+                "Content-Type: application/zip\r\n\r\n";
+        final String tail = "\r\n--" + BOUNDARY + "--\r\n";
+
+        return new SequenceInputStream(new SequenceInputStream(new ByteArrayInputStream(head.getBytes(StandardCharsets.UTF_8)),
+                new GeneratedInputStream(length)), new ByteArrayInputStream(tail.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static byte[] readAll(final InputStream input) throws IOException {
+        final ByteArrayOutputStream ret = new ByteArrayOutputStream();
+        final byte[] buf = new byte[4096];
+        int n;
+        while (-1 != (n = input.read(buf))) {
+            ret.write(buf, 0, n);
+        }
+
+        return ret.toByteArray();
+    }
+
+    /**
+     * Child JVM entry of {@link #largerThanHeap()}.
+     */
+    public static final class LargeUpload {
+
+        public static void main(final String[] args) throws Exception {
+            final long length = 64L * 1024 * 1024;
+            final File dir = new File(args[0]);
+            final SpoolFileUpload file = parse(dir, 64 * 1024, Integer.MAX_VALUE - 1, length);
+            if (!file.isValid() || file.isInMemory() || length != file.getSize()) {
+                throw new IllegalStateException("Invalid upload [size=" + file.getSize() + "]");
+            }
+
+            if (!DigestUtils.sha256Hex(new GeneratedInputStream(length)).equals(file.getSha256())) {
+                throw new IllegalStateException("Digest mismatch");
+            }
+
+            final File target = new File(dir, "store/large.zip");
+            file.moveTo(target);
+            if (length != target.length()) {
+                throw new IllegalStateException("Stored size mismatch");
+            }
+        }
+    }
+
+    /**
+     * Deterministic pseudo random bytes.
+     */
+    private static final class GeneratedInputStream extends InputStream {
+
+        private final long length;
+
+        private long position;
+
+        private long seed = 88250;
+
+        GeneratedInputStream(final long length) {
+            this.length = length;
+        }
+
+        @Override
+        public int read() {
+            if (position >= length) {
+                return -1;
+            }
+
+            position++;
+            seed = seed * 6364136223846793005L + 1442695040888963407L;
+
+            return (int) (seed >>> 56) & 0xFF;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) {
+            if (position >= length) {
+                return -1;
+            }
+
+            final int n = (int) Math.min(len, length - position);
+            for (int i = 0; i < n; i++) {
+                b[off + i] = (byte) read();
+            }
+
+            return n;
+        }
+    }
+}
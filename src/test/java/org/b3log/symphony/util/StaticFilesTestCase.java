@@ -0,0 +1,207 @@
+/*
+ * Symphony - A modern community (forum/BBS/SNS/blog) platform written in Java.
+ * Copyright (C) 2012-2018, b3log.org & hacpai.com
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.b3log.symphony.util;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * {@link StaticFiles} test case.
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.0.0, Oct 25, 2018
+ * @since 3.4.3
+ */
+public class StaticFilesTestCase {
+
+    private Server server;
+
+    private File dir;
+
+    private File file;
+
+    private byte[] content;
+
+    private String url;
+
+    @BeforeClass
+    public void before() throws Exception {
+        dir = Files.createTempDirectory("static-files").toFile();
+        file = new File(dir, "video.mp4");
+        content = new byte[1024 * 1024 + 17];
+        new Random(7).nextBytes(content);
+        FileUtils.writeByteArrayToFile(file, content);
+
+        server = new Server(0);
+        final ServletContextHandler handler = new ServletContextHandler();
+        handler.addServlet(new ServletHolder(new HttpServlet() {
+            @Override
+            protected void doGet(final HttpServletRequest req, final HttpServletResponse resp) throws IOException {
+                StaticFiles.send(new File(dir, req.getPathInfo().substring(1)), req, resp);
+            }
+        }), "/upload/*");
+        server.setHandler(handler);
+        server.start();
+
+        url = "http://127.0.0.1:" + ((ServerConnector) server.getConnectors()[0]).getLocalPort() + "/upload/video.mp4";
+    }
+
+    @AfterClass
+    public void after() throws Exception {
+        server.stop();
+        FileUtils.deleteDirectory(dir);
+    }
+
+    @Test
+    public void full() throws Exception {
+        final HttpURLConnection conn = open();
+        Assert.assertEquals(conn.getResponseCode(), 200);
+        Assert.assertEquals(conn.getHeaderField("ETag"), "\"" + DigestUtils.md5Hex(content) + "\"");
+        Assert.assertEquals(conn.getHeaderField("Accept-Ranges"), "bytes");
+        Assert.assertEquals(conn.getLastModified(), file.lastModified() / 1000 * 1000);
+        Assert.assertEquals(conn.getContentType(), "video/mp4");
+        Assert.assertEquals(read(conn), content);
+    }
+
+    @Test
+    public void ranges() throws Exception {
+        HttpURLConnection conn = open();
+        conn.setRequestProperty("Range", "bytes=100-199");
+        Assert.assertEquals(conn.getResponseCode(), 206);
+        Assert.assertEquals(conn.getHeaderField("Content-Range"), "bytes 100-199/" + content.length);
+        Assert.assertEquals(read(conn), Arrays.copyOfRange(content, 100, 200));
+
+        conn = open();
+        conn.setRequestProperty("Range", "bytes=1048576-");
+        Assert.assertEquals(conn.getResponseCode(), 206);
+        Assert.assertEquals(read(conn), Arrays.copyOfRange(content, 1048576, content.length));
+
+        conn = open();
+        conn.setRequestProperty("Range", "bytes=-10");
+        Assert.assertEquals(conn.getResponseCode(), 206);
+        Assert.assertEquals(read(conn), Arrays.copyOfRange(content, content.length - 10, content.length));
+
+        conn = open();
+        conn.setRequestProperty("Range", "bytes=0-99999999");
+        Assert.assertEquals(conn.getResponseCode(), 206);
+        Assert.assertEquals(read(conn).length, content.length);
+
+        conn = open();
+        conn.setRequestProperty("Range", "bytes=" + content.length + "-");
+        Assert.assertEquals(conn.getResponseCode(), 416);
+        Assert.assertEquals(conn.getHeaderField("Content-Range"), "bytes */" + content.length);
+
+        conn = open();
+        conn.setRequestProperty("Range", "bytes=0-1,5-6");
+        Assert.assertEquals(conn.getResponseCode(), 200);
+        Assert.assertEquals(read(conn).length, content.length);
+    }
+
+    @Test
+    public void ifRange() throws Exception {
+        final String etag = StaticFiles.getETag(file);
+
+        HttpURLConnection conn = open();
+        conn.setRequestProperty("Range", "bytes=0-9");
+        conn.setRequestProperty("If-Range", etag);
+        Assert.assertEquals(conn.getResponseCode(), 206);
+        Assert.assertEquals(read(conn).length, 10);
+
+        conn = open();
+        conn.setRequestProperty("Range", "bytes=0-9");
+        conn.setRequestProperty("If-Range", "\"stale\"");
+        Assert.assertEquals(conn.getResponseCode(), 200);
+        Assert.assertEquals(read(conn).length, content.length);
+    }
+
+    @Test
+    public void conditional() throws Exception {
+        final String etag = StaticFiles.getETag(file);
+
+        HttpURLConnection conn = open();
+        conn.setRequestProperty("If-None-Match", "\"other\", " + etag);
+        Assert.assertEquals(conn.getResponseCode(), 304);
+
+        conn = open();
+        conn.setRequestProperty("If-None-Match", "\"other\"");
+        conn.setIfModifiedSince(System.currentTimeMillis());
+        Assert.assertEquals(conn.getResponseCode(), 200);
+        read(conn);
+
+        conn = open();
+        conn.setIfModifiedSince(file.lastModified());
+        Assert.assertEquals(conn.getResponseCode(), 304);
+
+        conn = open();
+        conn.setIfModifiedSince(file.lastModified() - 60 * 1000);
+        Assert.assertEquals(conn.getResponseCode(), 200);
+        read(conn);
+    }
+
+    @Test
+    public void descriptors() throws Exception {
+        final File fds = new File("/proc/self/fd");
+        if (!fds.isDirectory()) {
+            return;
+        }
+
+        for (int i = 0; i < 10; i++) {
+            read(open());
+        }
+        final int before = fds.list().length;
+        for (int i = 0; i < 200; i++) {
+            final HttpURLConnection conn = open();
+            conn.setRequestProperty("Range", "bytes=" + i + "-" + (i + 1000));
+            read(conn);
+        }
+        final int after = fds.list().length;
+
+        Assert.assertTrue(after - before < 20, "Leaked descriptors [before=" + before + ", after=" + after + "]");
+    }
+
+    private HttpURLConnection open() throws IOException {
+        return (HttpURLConnection) new URL(url).openConnection();
+    }
+
+    private static byte[] read(final HttpURLConnection conn) throws IOException {
+        try (final InputStream input = conn.getInputStream()) {
+            return IOUtils.toByteArray(input);
+        }
+    }
+}
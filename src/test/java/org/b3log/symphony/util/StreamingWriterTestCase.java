@@ -0,0 +1,169 @@
+/*
+ * Symphony - A modern community (forum/BBS/SNS/blog) platform written in Java.
+ * Copyright (C) 2012-2018, b3log.org & hacpai.com
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.b3log.symphony.util;
+
+import freemarker.template.Template;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * {@link StreamingWriter} test case.
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.0.0, Oct 25, 2018
+ * @since 3.4.3
+ */
+public class StreamingWriterTestCase {
+
+    /**
+     * Output is buffered until flushed or the buffer is full, uncommitted output can be discarded.
+     */
+    @Test
+    public void write() throws Exception {
+        final StringWriter out = new StringWriter();
+        StreamingWriter writer = new StreamingWriter(out);
+        writer.write("<head>");
+        Assert.assertFalse(writer.isCommitted());
+        Assert.assertEquals(out.toString(), "");
+        writer.flush();
+        Assert.assertTrue(writer.isCommitted());
+        Assert.assertEquals(out.toString(), "<head>");
+
+        final String large = String.join("", Collections.nCopies(StreamingWriter.BUFFER_SIZE / 10 * 3, "<p>社区</p>"));
+        writer.write(large);
+        writer.write(large.toCharArray());
+        writer.write('!');
+        writer.close();
+        Assert.assertEquals(out.toString(), "<head>" + large + large + "!");
+
+        final StringWriter discarded = new StringWriter();
+        writer = new StreamingWriter(discarded);
+        writer.write("<head>");
+        writer.discard();
+        Assert.assertFalse(writer.isCommitted());
+        Assert.assertEquals(discarded.toString(), "");
+        try {
+            writer.write("more");
+            Assert.fail();
+        } catch (final IOException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Prints time to first byte and allocated bytes of rendering a thread with 1000 comments buffered and streamed.
+     */
+    @Test
+    public void benchmark() throws Exception {
+        final Template template = new Template("thread", "<html><head><#list 1..40 as i><link rel=\"stylesheet\" href=\"/css/${i}.css\"></#list>"
+                + "</head><body><nav><#list 1..20 as i><a href=\"/domain/${i}\">Domain ${i}</a></#list></nav><@flush/>"
+                + "<article><#list 1..100 as i><p>Article content paragraph ${i}</p></#list></article><ul><#list comments as comment>"
+                + "<li id=\"${comment?c}\"><img src=\"/avatar/${comment?c}\"><a href=\"/member/${comment?c}\">member${comment?c}</a>"
+                + "<div class=\"content-reset\"><p>Comment ${comment?c} content, 回帖内容 ${comment?c}.</p></div></li></#list></ul></body></html>",
+                Skins.SKIN);
+        final List<Long> comments = new ArrayList<>();
+        for (long i = 0; i < 1000; i++) {
+            comments.add(1540000000000L + i);
+        }
+        final Map<String, Object> dataModel = new HashMap<>();
+        dataModel.put("comments", comments);
+
+        final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        final long threadId = Thread.currentThread().getId();
+        final int rounds = 300;
+        for (int warm = 0; warm < 2; warm++) {
+            long ttfb = 0;
+            long total = 0;
+            long allocated = threads.getThreadAllocatedBytes(threadId);
+            for (int i = 0; i < rounds; i++) {
+                final Sink sink = new Sink();
+                final StringWriter buffer = new StringWriter();
+                Skins.process(template, dataModel, Locale.US, TimeZone.getDefault(), buffer);
+                final Writer out = new OutputStreamWriter(sink, StandardCharsets.UTF_8);
+                out.write(buffer.toString());
+                out.close();
+                ttfb += sink.firstByte - sink.start;
+                total += System.nanoTime() - sink.start;
+            }
+            final long bufferedAllocated = (threads.getThreadAllocatedBytes(threadId) - allocated) / rounds;
+            final long bufferedTTFB = ttfb / rounds;
+            final long bufferedTotal = total / rounds;
+
+            ttfb = 0;
+            total = 0;
+            long bytes = 0;
+            allocated = threads.getThreadAllocatedBytes(threadId);
+            for (int i = 0; i < rounds; i++) {
+                final Sink sink = new Sink();
+                final StreamingWriter writer = new StreamingWriter(new OutputStreamWriter(sink, StandardCharsets.UTF_8));
+                Skins.process(template, dataModel, Locale.US, TimeZone.getDefault(), writer);
+                writer.close();
+                ttfb += sink.firstByte - sink.start;
+                total += System.nanoTime() - sink.start;
+                bytes = sink.count;
+            }
+            final long streamedAllocated = (threads.getThreadAllocatedBytes(threadId) - allocated) / rounds;
+
+            if (1 == warm) {
+                System.out.println(String.format("Thread page of [%d] bytes: buffered TTFB [%d]us total [%d]us allocated [%d]KB, "
+                                + "streamed TTFB [%d]us total [%d]us allocated [%d]KB", bytes, bufferedTTFB / 1000, bufferedTotal / 1000,
+                        bufferedAllocated / 1024, ttfb / rounds / 1000, total / rounds / 1000, streamedAllocated / 1024));
+                Assert.assertTrue(ttfb / rounds < bufferedTTFB);
+            }
+        }
+    }
+
+    /**
+     * Output stream recording the time of the first byte.
+     */
+    private static final class Sink extends OutputStream {
+
+        /**
+         * Start time.
+         */
+        private final long start = System.nanoTime();
+
+        /**
+         * Time of the first byte.
+         */
+        private long firstByte;
+
+        /**
+         * Count of bytes.
+         */
+        private long count;
+
+        @Override
+        public void write(final int b) {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) {
+            if (0 == count) {
+                firstByte = System.nanoTime();
+            }
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Symphony - A modern community (forum/BBS/SNS/blog) platform written in Java.
+ * Copyright (C) 2012-2018, b3log.org & hacpai.com
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package org.b3log.symphony.util;
+
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * {@link StripedLocks} test case, hammers a check-then-act daily checkin from many users and threads.
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.0.0, Oct 25, 2018
+ * @since 3.4.3
+ */
+public class StripedLocksTestCase {
+
+    /**
+     * Checkin days, &lt;user id, day&gt;.
+     */
+    private final Map<String, Integer> checkins = new ConcurrentHashMap<>();
+
+    /**
+     * Succeeded checkins by user.
+     */
+    private final Map<String, AtomicInteger> succs = new ConcurrentHashMap<>();
+
+    @BeforeMethod
+    public void before() {
+        checkins.clear();
+        succs.clear();
+    }
+
+    /**
+     * Each user checks in exactly once however many threads race for it.
+     */
+    @Test
+    public void checkinOnce() throws Exception {
+        final StripedLocks locks = new StripedLocks(16);
+        final int users = 200;
+        final int attempts = 20;
+        final ExecutorService pool = Executors.newFixedThreadPool(32);
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < users * attempts; i++) {
+            final String userId = "user" + (i % users);
+            futures.add(pool.submit(() -> {
+                start.await();
+                checkin(locks, userId, 20181025);
+
+                return null;
+            }));
+        }
+
+        start.countDown();
+        for (final Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        Assert.assertEquals(succs.size(), users);
+        for (final AtomicInteger succ : succs.values()) {
+            Assert.assertEquals(succ.get(), 1);
+        }
+    }
+
+    /**
+     * A user holding its lock does not block users of other stripes.
+     */
+    @Test
+    public void noGlobalStall() throws Exception {
+        final StripedLocks locks = new StripedLocks(256);
+        final String slowUser = "slow";
+        final CountDownLatch locked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final Thread slow = new Thread(() -> {
+            final Lock lock = locks.get(slowUser);
+            lock.lock();
+            try {
+                locked.countDown();
+                release.await();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                lock.unlock();
+            }
+        });
+        slow.start();
+        locked.await();
+
+        final ExecutorService pool = Executors.newFixedThreadPool(8);
+        final List<Future<?>> futures = new ArrayList<>();
+        int others = 0;
+        for (int i = 0; others < 100; i++) {
+            final String userId = "other" + i;
+            if (locks.getStripe(userId) == locks.getStripe(slowUser)) {
+                continue;
+            }
+            others++;
+            futures.add(pool.submit(() -> {
+                checkin(locks, userId, 20181025);
+
+                return null;
+            }));
+        }
+
+        for (final Future<?> future : futures) {
+            future.get(5, TimeUnit.SECONDS);
+        }
+        Assert.assertEquals(succs.size(), 100);
+
+        final Future<?> blocked = pool.submit(() -> {
+            checkin(locks, slowUser, 20181025);
+
+            return null;
+        });
+        Thread.sleep(200);
+        Assert.assertFalse(blocked.isDone());
+
+        release.countDown();
+        blocked.get(5, TimeUnit.SECONDS);
+        Assert.assertEquals(succs.get(slowUser).get(), 1);
+        pool.shutdown();
+    }
+
+    private void checkin(final StripedLocks locks, final String userId, final int day) {
+        final Lock lock = locks.get(userId);
+        lock.lock();
+        try {
+            final Integer checkedDay = checkins.get(userId);
+            if (null != checkedDay && day == checkedDay) {
+                return;
+            }
+
+            Thread.yield();
+            checkins.put(userId, day);
+            succs.computeIfAbsent(userId, k -> new AtomicInteger()).incrementAndGet();
+        } finally {
+            lock.unlock();
+        }
+    }
+}